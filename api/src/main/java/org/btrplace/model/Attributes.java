@@ -147,7 +147,7 @@ public interface Attributes extends Copyable<Attributes> {
      * Get all the attributes keys that are registered.
      *
      * @param e the element
-     * @return a set that may be empty
+     * @return an unmodifiable set that may be empty
      */
     Set<String> getKeys(Element e);
 
@@ -162,13 +162,45 @@ public interface Attributes extends Copyable<Attributes> {
      * @param v the value to set
      * @return {@code true} if a previous value was overridden
      */
-    boolean castAndPut(Element e, String k, String v);
+    @SuppressWarnings("squid:S1166")
+    default boolean castAndPut(Element e, String k, String v) {
+        String x = v.toLowerCase().trim();
+        if ("true".equals(x)) {
+            return put(e, k, true);
+        } else if ("false".equals(x)) {
+            return put(e, k, false);
+        }
+        try {
+            return put(e, k, Integer.parseInt(x));
+        } catch (NumberFormatException ignored) {
+            //Not an int
+        }
+
+        try {
+            return put(e, k, Double.parseDouble(x));
+        } catch (NumberFormatException ignored) {
+            //not a double either
+        }
+
+        return put(e, k, v);
+    }
 
     /**
      * Remove all the attributes.
      */
     void clear();
 
+    /**
+     * Get the revision of the attributes.
+     * The revision changes each time the attributes are modified. It allows to
+     * memoise values computed from the attributes.
+     *
+     * @return a positive number. A negative number if the revisions are not tracked
+     */
+    default long getRevision() {
+        return -1;
+    }
+
     /**
      * Remove all the attributes of a given element.
      *
@@ -0,0 +1,666 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * A memory efficient implementation of {@link Attributes}.
+ * <p>
+ * The values are stored by attribute key rather than by element: for each kind of element and each key,
+ * a column stores the primitive values in arrays indexed by the element identifiers. There is then no
+ * per-element map and no boxing of the values.
+ * The implementation suits models where many elements share the same attributes and where the element
+ * identifiers are dense.
+ * <p>
+ * {@link #copy()} has a O(1) complexity and does not modify the copied instance, so several threads can
+ * copy it simultaneously provided that none of them modifies it. The copies share their columns. Each column
+ * is split into chunks of 256 consecutive identifiers stored in a {@link PersistentIntMap},
+ * so the first modification of a key after a copy only copies the column index, O(nb keys), and the
+ * modified chunk, not the whole column.
+ *
+ * @author Fabien Hermenier
+ */
+public class ColumnarAttributes implements Attributes {
+
+    private static final int CHUNK_BITS = 8;
+
+    /**
+     * The number of identifiers per chunk of a column.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Columns vmCols;
+
+    private Columns nodeCols;
+
+    /**
+     * The number of modifications.
+     */
+    private long revision;
+
+    /**
+     * Make a new empty list of attributes.
+     */
+    public ColumnarAttributes() {
+        vmCols = new Columns();
+        nodeCols = new Columns();
+    }
+
+    private Columns columns(Element e) {
+        if (e instanceof VM) {
+            return vmCols;
+        } else if (e instanceof Node) {
+            return nodeCols;
+        }
+        return null;
+    }
+
+    private Column column(Element e, String k) {
+        Columns cols = columns(e);
+        return cols == null ? null : cols.cols.get(k);
+    }
+
+    /**
+     * Get a column for a modification.
+     * The columns of the element kind are copied first if they are shared with another instance.
+     *
+     * @param e      the element
+     * @param k      the attribute identifier
+     * @param create {@code true} to create the column if it does not exist
+     * @return the column. {@code null} if it does not exist and {@code create} was {@code false}
+     */
+    private Column editable(Element e, String k, boolean create) {
+        Columns cols = columns(e);
+        if (cols == null) {
+            return null;
+        }
+        if (cols.shared) {
+            cols = new Columns(cols);
+            if (e instanceof VM) {
+                vmCols = cols;
+            } else {
+                nodeCols = cols;
+            }
+        }
+        Column c = cols.cols.get(k);
+        if (c == null) {
+            if (!create) {
+                return null;
+            }
+            c = new Column();
+            cols.cols.put(k, c);
+        }
+        revision++;
+        return c;
+    }
+
+    @Override
+    public boolean put(Element e, String k, boolean b) {
+        Column c = editable(e, k, true);
+        return c != null && c.put(e.id(), b);
+    }
+
+    @Override
+    public boolean put(Element e, String k, String s) {
+        Column c = editable(e, k, true);
+        return c != null && c.put(e.id(), s);
+    }
+
+    @Override
+    public boolean put(Element e, String k, double d) {
+        Column c = editable(e, k, true);
+        return c != null && c.put(e.id(), d);
+    }
+
+    @Override
+    public boolean put(Element e, String k, int d) {
+        Column c = editable(e, k, true);
+        return c != null && c.put(e.id(), d);
+    }
+
+    @Override
+    public Object get(Element e, String k) {
+        Column c = column(e, k);
+        return c == null ? null : c.get(e.id());
+    }
+
+    @Override
+    public boolean get(Element e, String k, boolean def) {
+        Chunk c = chunk(e, k);
+        int i = e.id() & CHUNK_MASK;
+        if (c == null || c.types[i] == Chunk.UNSET) {
+            return def;
+        }
+        if (c.types[i] == Chunk.BOOLEAN) {
+            return c.booleans.get(i);
+        }
+        return (Boolean) c.get(i);
+    }
+
+    @Override
+    public String get(Element e, String k, String def) {
+        Chunk c = chunk(e, k);
+        int i = e.id() & CHUNK_MASK;
+        if (c == null || c.types[i] == Chunk.UNSET) {
+            return def;
+        }
+        return (String) c.get(i);
+    }
+
+    @Override
+    public double get(Element e, String k, double def) {
+        Chunk c = chunk(e, k);
+        int i = e.id() & CHUNK_MASK;
+        if (c == null || c.types[i] == Chunk.UNSET) {
+            return def;
+        }
+        if (c.types[i] == Chunk.INT) {
+            return c.ints[i];
+        } else if (c.types[i] == Chunk.DOUBLE) {
+            return c.doubles[i];
+        }
+        return (double) c.get(i);
+    }
+
+    @Override
+    public int get(Element e, String k, int def) {
+        Chunk c = chunk(e, k);
+        int i = e.id() & CHUNK_MASK;
+        if (c == null || c.types[i] == Chunk.UNSET) {
+            return def;
+        }
+        if (c.types[i] == Chunk.INT) {
+            return c.ints[i];
+        }
+        return (int) c.get(i);
+    }
+
+    /**
+     * Get the chunk that stores the value of an element.
+     *
+     * @return the chunk. {@code null} if there is none
+     */
+    private Chunk chunk(Element e, String k) {
+        Column c = column(e, k);
+        return c == null ? null : c.chunks.get(e.id() >>> CHUNK_BITS);
+    }
+
+    @Override
+    public boolean isSet(Element e, String k) {
+        Column c = column(e, k);
+        return c != null && c.isSet(e.id());
+    }
+
+    @Override
+    public boolean unset(Element e, String k) {
+        if (!isSet(e, k)) {
+            return false;
+        }
+        Column c = editable(e, k, false);
+        c.unset(e.id());
+        if (c.chunks.isEmpty()) {
+            columns(e).cols.remove(k);
+        }
+        return true;
+    }
+
+    @Override
+    public Set<Element> getDefined() {
+        Set<Element> s = new HashSet<>();
+        defined(vmCols, VM::new, s);
+        defined(nodeCols, Node::new, s);
+        return s;
+    }
+
+    /**
+     * Collect the elements having at least one attribute, for a kind of element.
+     * The identifiers are gathered first, so an element is made once whatever its number of attributes.
+     */
+    private static void defined(Columns cols, IntFunction<Element> mk, Set<Element> s) {
+        BitSet ids = new BitSet();
+        for (Column c : cols.cols.values()) {
+            for (Chunk ch : c.chunks) {
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if (ch.types[i] != Chunk.UNSET) {
+                        ids.set(ch.base + i);
+                    }
+                }
+            }
+        }
+        for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+            s.add(mk.apply(i));
+        }
+    }
+
+    @Override
+    public Set<String> getKeys(Element e) {
+        Columns cols = columns(e);
+        if (cols == null) {
+            return Collections.emptySet();
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (Map.Entry<String, Column> entry : cols.cols.entrySet()) {
+            if (entry.getValue().isSet(e.id())) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void clear() {
+        vmCols = new Columns();
+        nodeCols = new Columns();
+        revision++;
+    }
+
+    @Override
+    public void clear(Element e) {
+        for (String k : getKeys(e)) {
+            unset(e, k);
+        }
+        revision++;
+    }
+
+    @Override
+    public long getRevision() {
+        return revision;
+    }
+
+    @Override
+    public Attributes copy() {
+        ColumnarAttributes cpy = new ColumnarAttributes();
+        //Only the shared columns are flagged. This instance is left untouched
+        vmCols.shared = true;
+        nodeCols.shared = true;
+        cpy.vmCols = vmCols;
+        cpy.nodeCols = nodeCols;
+        cpy.revision = revision;
+        return cpy;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (Element e : getDefined()) {
+            b.append(e).append(':');
+            for (String k : getKeys(e)) {
+                b.append(" <").append(k).append(',');
+                Object val = get(e, k);
+                if (val instanceof String) {
+                    b.append('"').append(val).append('"');
+                } else {
+                    b.append(val);
+                }
+                b.append('>');
+            }
+            b.append(String.format("%n"));
+        }
+        return b.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        //Computed over the columns, without materializing the elements
+        return vmCols.hash() * 31 + nodeCols.hash();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) {
+            return false;
+        }
+        if (o == this) {
+            return true;
+        }
+        if (!o.getClass().equals(getClass())) {
+            return false;
+        }
+        ColumnarAttributes that = (ColumnarAttributes) o;
+        return vmCols.sameAs(that.vmCols) && nodeCols.sameAs(that.nodeCols);
+    }
+
+    /**
+     * The columns of a kind of element, by attribute key.
+     * The empty columns are removed so two instances with the same content have the same keys.
+     */
+    private static final class Columns {
+
+        private final Map<String, Column> cols;
+
+        /**
+         * {@code true} iff the columns may be reachable from several instances.
+         */
+        private volatile boolean shared;
+
+        Columns() {
+            cols = new LinkedHashMap<>();
+        }
+
+        /**
+         * Copy shared columns. The chunks of each column are then shared.
+         */
+        Columns(Columns c) {
+            cols = new LinkedHashMap<>();
+            for (Map.Entry<String, Column> e : c.cols.entrySet()) {
+                cols.put(e.getKey(), new Column(e.getValue()));
+            }
+        }
+
+        int hash() {
+            int h = 0;
+            for (Map.Entry<String, Column> e : cols.entrySet()) {
+                h += e.getKey().hashCode() ^ e.getValue().hash();
+            }
+            return h;
+        }
+
+        boolean sameAs(Columns o) {
+            if (this == o) {
+                return true;
+            }
+            if (!cols.keySet().equals(o.cols.keySet())) {
+                return false;
+            }
+            for (Map.Entry<String, Column> e : cols.entrySet()) {
+                if (!e.getValue().sameAs(o.cols.get(e.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The values of an attribute, by chunks of consecutive element identifiers.
+     * Only the non-empty chunks are stored.
+     */
+    private static final class Column {
+
+        private final PersistentIntMap<Chunk> chunks;
+
+        Column() {
+            chunks = new PersistentIntMap<>();
+        }
+
+        Column(Column c) {
+            chunks = c.chunks.copy();
+        }
+
+        boolean isSet(int id) {
+            Chunk c = chunks.get(id >>> CHUNK_BITS);
+            return c != null && c.types[id & CHUNK_MASK] != Chunk.UNSET;
+        }
+
+        Object get(int id) {
+            Chunk c = chunks.get(id >>> CHUNK_BITS);
+            return c == null ? null : c.get(id & CHUNK_MASK);
+        }
+
+        /**
+         * Get the chunk of an identifier for a modification.
+         * It is created if needed, and copied first if it is shared.
+         */
+        private Chunk editable(int id) {
+            int k = id >>> CHUNK_BITS;
+            Chunk c = chunks.edit(k, Chunk::new);
+            if (c == null) {
+                c = new Chunk(k << CHUNK_BITS);
+                chunks.put(k, c);
+            }
+            return c;
+        }
+
+        boolean put(int id, boolean b) {
+            return editable(id).put(id & CHUNK_MASK, b);
+        }
+
+        boolean put(int id, int v) {
+            return editable(id).put(id & CHUNK_MASK, v);
+        }
+
+        boolean put(int id, double v) {
+            return editable(id).put(id & CHUNK_MASK, v);
+        }
+
+        boolean put(int id, String v) {
+            return editable(id).put(id & CHUNK_MASK, v);
+        }
+
+        void unset(int id) {
+            Chunk c = editable(id);
+            c.unset(id & CHUNK_MASK);
+            if (c.count == 0) {
+                chunks.remove(id >>> CHUNK_BITS);
+            }
+        }
+
+        int hash() {
+            int h = 0;
+            for (Chunk c : chunks) {
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if (c.types[i] != Chunk.UNSET) {
+                        h += (c.base + i) ^ c.hash(i);
+                    }
+                }
+            }
+            return h;
+        }
+
+        boolean sameAs(Column o) {
+            if (chunks.size() != o.chunks.size()) {
+                return false;
+            }
+            //The chunks are traversed by increasing identifiers
+            Iterator<Chunk> ite = o.chunks.iterator();
+            for (Chunk c : chunks) {
+                Chunk oc = ite.next();
+                if (c != oc && !c.sameAs(oc)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The values of an attribute for {@link #CHUNK_SIZE} consecutive identifiers.
+     * The type of each value is stored aside so a chunk may mix types.
+     * The arrays dedicated to each type are allocated on demand.
+     */
+    private static final class Chunk {
+
+        static final byte UNSET = 0;
+
+        static final byte BOOLEAN = 1;
+
+        static final byte INT = 2;
+
+        static final byte DOUBLE = 3;
+
+        static final byte STRING = 4;
+
+        /**
+         * The first identifier of the chunk.
+         */
+        private final int base;
+
+        private final byte[] types;
+
+        /**
+         * The number of values that are set.
+         */
+        private int count;
+
+        private BitSet booleans;
+
+        private int[] ints;
+
+        private double[] doubles;
+
+        private String[] strings;
+
+        Chunk(int base) {
+            this.base = base;
+            types = new byte[CHUNK_SIZE];
+        }
+
+        Chunk(Chunk c) {
+            base = c.base;
+            types = c.types.clone();
+            count = c.count;
+            booleans = c.booleans == null ? null : (BitSet) c.booleans.clone();
+            ints = c.ints == null ? null : c.ints.clone();
+            doubles = c.doubles == null ? null : c.doubles.clone();
+            strings = c.strings == null ? null : c.strings.clone();
+        }
+
+        Object get(int i) {
+            switch (types[i]) {
+                case UNSET:
+                    return null;
+                case BOOLEAN:
+                    return booleans.get(i);
+                case INT:
+                    return ints[i];
+                case DOUBLE:
+                    return doubles[i];
+                default:
+                    return strings[i];
+            }
+        }
+
+        /**
+         * Set the type of a value.
+         *
+         * @return {@code true} iff a value was already set
+         */
+        private boolean type(int i, byte t) {
+            byte prev = types[i];
+            types[i] = t;
+            if (prev == STRING && t != STRING) {
+                strings[i] = null;
+            }
+            if (prev == UNSET && t != UNSET) {
+                count++;
+            } else if (prev != UNSET && t == UNSET) {
+                count--;
+            }
+            return prev != UNSET;
+        }
+
+        boolean put(int i, boolean b) {
+            boolean prev = type(i, BOOLEAN);
+            if (booleans == null) {
+                booleans = new BitSet(CHUNK_SIZE);
+            }
+            booleans.set(i, b);
+            return prev;
+        }
+
+        boolean put(int i, int v) {
+            boolean prev = type(i, INT);
+            if (ints == null) {
+                ints = new int[CHUNK_SIZE];
+            }
+            ints[i] = v;
+            return prev;
+        }
+
+        boolean put(int i, double v) {
+            boolean prev = type(i, DOUBLE);
+            if (doubles == null) {
+                doubles = new double[CHUNK_SIZE];
+            }
+            doubles[i] = v;
+            return prev;
+        }
+
+        boolean put(int i, String v) {
+            boolean prev = type(i, STRING);
+            if (strings == null) {
+                strings = new String[CHUNK_SIZE];
+            }
+            strings[i] = v;
+            return prev;
+        }
+
+        boolean unset(int i) {
+            return type(i, UNSET);
+        }
+
+        boolean sameAs(Chunk o) {
+            if (base != o.base || count != o.count) {
+                return false;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                if (types[i] != o.types[i] || !sameValue(i, o)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Compare two values of the same type, as their boxed values would be.
+         */
+        private boolean sameValue(int i, Chunk o) {
+            switch (types[i]) {
+                case UNSET:
+                    return true;
+                case BOOLEAN:
+                    return booleans.get(i) == o.booleans.get(i);
+                case INT:
+                    return ints[i] == o.ints[i];
+                case DOUBLE:
+                    return Double.doubleToLongBits(doubles[i]) == Double.doubleToLongBits(o.doubles[i]);
+                default:
+                    return strings[i].equals(o.strings[i]);
+            }
+        }
+
+        /**
+         * The hash code of a set value, as the one of its boxed value.
+         */
+        int hash(int i) {
+            switch (types[i]) {
+                case BOOLEAN:
+                    return Boolean.hashCode(booleans.get(i));
+                case INT:
+                    return Integer.hashCode(ints[i]);
+                case DOUBLE:
+                    return Double.hashCode(doubles[i]);
+                default:
+                    return strings[i].hashCode();
+            }
+        }
+    }
+}
@@ -22,57 +22,97 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
 /**
  * Default implementation for {@link Attributes}.
+ * <p>
+ * {@link #copy()} has a O(1) complexity: the attributes are stored in a
+ * {@link PersistentIntMap} indexed by the element identifiers. A modification
+ * after a copy only copies the attributes of the modified element and the path
+ * to it.
  *
  * @author Fabien Hermenier
  */
 public class DefaultAttributes implements Attributes {
 
-    private Map<VM, Map<String, Object>> vmAttrs;
-    private Map<Node, Map<String, Object>> nodeAttrs;
+    private PersistentIntMap<ElementAttributes<VM>> vmAttrs;
+    private PersistentIntMap<ElementAttributes<Node>> nodeAttrs;
+
+    /**
+     * The number of modifications.
+     */
+    private long revision;
 
     /**
      * Make a new empty list of attributes.
      */
     public DefaultAttributes() {
-        vmAttrs = new HashMap<>();
-        nodeAttrs = new HashMap<>();
+        vmAttrs = new PersistentIntMap<>();
+        nodeAttrs = new PersistentIntMap<>();
     }
 
-    private boolean putObject(Element e, String k, Object v) {
-        Map<String, Object> m;
-        if (e instanceof VM) {
-            m = vmAttrs.get(e);
-            if (m == null) {
-                m = new HashMap<>();
-                vmAttrs.put((VM) e, m);
+    /**
+     * Get the attributes of an element.
+     *
+     * @param e the element
+     * @return the attributes. {@code null} if there is none
+     */
+    private Map<String, Object> attributes(Element e) {
+        ElementAttributes<?> m;
+        if (e instanceof Node) {
+            m = nodeAttrs.get(e.id());
+        } else if (e instanceof VM) {
+            m = vmAttrs.get(e.id());
+        } else {
+            return null;
+        }
+        return m != null && m.element.equals(e) ? m : null;
+    }
+
+    /**
+     * Get the attributes of an element for a modification.
+     * They are copied first if they are shared with another instance.
+     *
+     * @param attrs  the attributes by element
+     * @param e      the element
+     * @param create {@code true} to create the attributes if they do not exist
+     * @return the attributes. {@code null} if they do not exist and {@code create} was {@code false}
+     */
+    private <E extends Element> Map<String, Object> editable(PersistentIntMap<ElementAttributes<E>> attrs, E e, boolean create) {
+        ElementAttributes<E> m = attrs.get(e.id());
+        if (m == null || !m.element.equals(e)) {
+            if (!create) {
+                return null;
             }
+            m = new ElementAttributes<>(e);
+            attrs.put(e.id(), m);
+            return m;
+        }
+        return attrs.edit(e.id(), o -> new ElementAttributes<>(o.element, o));
+    }
+
+    private Map<String, Object> editable(Element e, boolean create) {
+        if (e instanceof VM) {
+            return editable(vmAttrs, (VM) e, create);
         } else if (e instanceof Node) {
-            m = nodeAttrs.get(e);
-            if (m == null) {
-                m = new HashMap<>();
-                nodeAttrs.put((Node) e, m);
-            }
-        } else {
+            return editable(nodeAttrs, (Node) e, create);
+        }
+        return null;
+    }
+
+    private boolean putObject(Element e, String k, Object v) {
+        Map<String, Object> m = editable(e, true);
+        if (m == null) {
             return false;
         }
+        revision++;
         return m.put(k, v) != null;
     }
 
     @Override
     public Object get(Element e, String k) {
-        Map<String, Object> m;
-        if (e instanceof Node) {
-            m = nodeAttrs.get(e);
-        } else if (e instanceof VM) {
-            m = vmAttrs.get(e);
-        } else {
-            return null;
-        }
+        Map<String, Object> m = attributes(e);
         return m == null ? null : m.get(k);
     }
 
@@ -120,52 +160,35 @@ public class DefaultAttributes implements Attributes {
 
     @Override
     public boolean isSet(Element e, String k) {
-        Map<String, Object> m;
-        if (e instanceof Node) {
-            m = nodeAttrs.get(e);
-        } else if (e instanceof VM) {
-            m = vmAttrs.get(e);
-        } else {
-            return false;
-        }
+        Map<String, Object> m = attributes(e);
         return m != null && m.containsKey(k);
     }
 
     @Override
     public boolean unset(Element e, String k) {
-        Map<String, Object> m;
-        if (e instanceof Node) {
-            m = nodeAttrs.get(e);
-        } else if (e instanceof VM) {
-            m = vmAttrs.get(e);
-        } else {
+        if (!isSet(e, k)) {
             return false;
         }
-        return m != null && m.remove(k) != null;
+        revision++;
+        return editable(e, false).remove(k) != null;
     }
 
     @Override
     public Attributes copy() {
         DefaultAttributes cpy = new DefaultAttributes();
-        for (Map.Entry<VM, Map<String, Object>> e : vmAttrs.entrySet()) {
-            cpy.vmAttrs.put(e.getKey(), new HashMap<>(e.getValue()));
-        }
-
-        for (Map.Entry<Node, Map<String, Object>> e : nodeAttrs.entrySet()) {
-            cpy.nodeAttrs.put(e.getKey(), new HashMap<>(e.getValue()));
-        }
-
+        cpy.vmAttrs = vmAttrs.copy();
+        cpy.nodeAttrs = nodeAttrs.copy();
         return cpy;
     }
 
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        for (Map.Entry<VM, Map<String, Object>> e : vmAttrs.entrySet()) {
-            b.append(String.format("%s:%s%n", e.getKey(), stringify(e.getValue())));
+        for (ElementAttributes<VM> m : vmAttrs) {
+            b.append(String.format("%s:%s%n", m.element, stringify(m)));
         }
-        for (Map.Entry<Node, Map<String, Object>> e : nodeAttrs.entrySet()) {
-            b.append(String.format("%s:%s%n", e.getKey(), stringify(e.getValue())));
+        for (ElementAttributes<Node> m : nodeAttrs) {
+            b.append(String.format("%s:%s%n", m.element, stringify(m)));
         }
         return b.toString();
     }
@@ -187,7 +210,27 @@ public class DefaultAttributes implements Attributes {
 
     @Override
     public int hashCode() {
-        return Objects.hash(vmAttrs, nodeAttrs);
+        int h = 0;
+        for (ElementAttributes<VM> m : vmAttrs) {
+            h += m.element.hashCode() ^ m.hashCode();
+        }
+        for (ElementAttributes<Node> m : nodeAttrs) {
+            h += m.element.hashCode() ^ m.hashCode();
+        }
+        return h;
+    }
+
+    private static <E extends Element> boolean sameAttributes(PersistentIntMap<ElementAttributes<E>> m1, PersistentIntMap<ElementAttributes<E>> m2) {
+        if (m1.size() != m2.size()) {
+            return false;
+        }
+        for (ElementAttributes<E> m : m1) {
+            ElementAttributes<E> o = m2.get(m.element.id());
+            if (o == null || !o.element.equals(m.element) || !o.equals(m)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -202,21 +245,26 @@ public class DefaultAttributes implements Attributes {
             return false;
         }
         DefaultAttributes that = (DefaultAttributes) o;
-        return vmAttrs.equals(that.vmAttrs) && nodeAttrs.equals(that.nodeAttrs);
+        return sameAttributes(vmAttrs, that.vmAttrs) && sameAttributes(nodeAttrs, that.nodeAttrs);
     }
 
     @Override
     public Set<Element> getDefined() {
         Set<Element> s = new HashSet<>(vmAttrs.size() + nodeAttrs.size());
-        s.addAll(vmAttrs.keySet());
-        s.addAll(nodeAttrs.keySet());
+        for (ElementAttributes<VM> m : vmAttrs) {
+            s.add(m.element);
+        }
+        for (ElementAttributes<Node> m : nodeAttrs) {
+            s.add(m.element);
+        }
         return s;
     }
 
     @Override
     public void clear() {
-        this.vmAttrs.clear();
-        this.nodeAttrs.clear();
+        vmAttrs.clear();
+        nodeAttrs.clear();
+        revision++;
     }
 
     @Override
@@ -239,49 +287,44 @@ public class DefaultAttributes implements Attributes {
         return putObject(e, k, d);
     }
 
+    @Override
+    public long getRevision() {
+        return revision;
+    }
+
     @Override
     public Set<String> getKeys(Element e) {
-        Map<String, Object> m;
-        if (e instanceof Node) {
-            m = nodeAttrs.get(e);
-        } else if (e instanceof VM) {
-            m = vmAttrs.get(e);
-        } else {
-            return Collections.emptySet();
-        }
-        return m == null ? Collections.emptySet() : m.keySet();
+        Map<String, Object> m = attributes(e);
+        return m == null ? Collections.emptySet() : Collections.unmodifiableSet(m.keySet());
     }
 
     @Override
-    @SuppressWarnings("squid:S1166")
-    public boolean castAndPut(Element e, String k, String v) {
-        String x = v.toLowerCase().trim();
-        if ("true".equals(x)) {
-            return put(e, k, true);
-        } else if ("false".equals(x)) {
-            return put(e, k, false);
+    public void clear(Element e) {
+        revision++;
+        if (attributes(e) == null) {
+            return;
         }
-        try {
-            return put(e, k, Integer.parseInt(x));
-        } catch (NumberFormatException ignored) {
-            //Not an int
+        if (e instanceof VM) {
+            vmAttrs.remove(e.id());
+        } else {
+            nodeAttrs.remove(e.id());
         }
+    }
 
-        try {
-            return put(e, k, Double.parseDouble(x));
-        } catch (NumberFormatException ignored) {
-            //not a double either
-        }
+    /**
+     * The attributes of an element.
+     */
+    private static final class ElementAttributes<E extends Element> extends HashMap<String, Object> {
 
-        return put(e, k, v);
-    }
+        private final E element;
 
-    @Override
-    public void clear(Element e) {
-        if (e instanceof VM) {
-            this.vmAttrs.remove(e);
-        } else if (e instanceof Node) {
-            this.nodeAttrs.remove(e);
+        ElementAttributes(E e) {
+            this.element = e;
+        }
+
+        ElementAttributes(E e, Map<String, Object> m) {
+            super(m);
+            this.element = e;
         }
     }
 }
@@ -15,16 +15,15 @@
  * You should have received a copy of the GNU Lesser General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package org.btrplace.model;
 
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.set.hash.THashSet;
 
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -34,6 +33,11 @@ import java.util.Set;
  * {@link #getRunningVMs(Collection)}, {@link #getSleepingVMs(java.util.Collection)} have a O(n) complexity.
  * <p>
  * Methods {@code is*()} have a O(1) complexity.
+ * <p>
+ * The mapping is copy-on-write: {@link #copy()} has a O(1) complexity and the copies share
+ * the unchanged parts of their state. A modification only copies the path to the modified VM or node
+ * and the set of VMs hosted by the modified node. The per-node and per-state getters return
+ * live read-only views.
  *
  * @author Fabien Hermenier
  */
@@ -49,50 +53,51 @@ public class DefaultMapping extends AbstractMapping {
 
     private static final int OFFLINE_STATE = 1;
 
+    private static final Integer[] STATES = {RUNNING_STATE, SLEEPING_STATE, READY_STATE};
+
     /**
      * The node by states (online, offline)
      */
-    private Set<Node>[] nodeState;
+    private PersistentIntMap<Node>[] nodeState;
 
     /**
      * The state of each VM.
      */
-    private TIntIntHashMap st;
+    private PersistentIntMap<Integer> st;
 
     /**
      * The current location of the VMs.
      */
-    private TIntObjectHashMap<Node> place;
+    private PersistentIntMap<Node> place;
 
     /**
      * The VMs that are in the ready state.
      */
-    private Set<VM> vmReady;
+    private PersistentIntMap<VM> vmReady;
 
     /**
      * The VMs hosted by each node, by state (running or sleeping)
      */
-    private TIntObjectHashMap<Set<VM>>[] host;
+    private PersistentIntMap<Hosted>[] host;
 
     /**
      * Create a new mapping.
      */
     @SuppressWarnings("unchecked")
     public DefaultMapping() {
+        nodeState = new PersistentIntMap[2];
+        nodeState[ONLINE_STATE] = new PersistentIntMap<>();
+        nodeState[OFFLINE_STATE] = new PersistentIntMap<>();
 
-        nodeState = new Set[2];
-        nodeState[ONLINE_STATE] = new THashSet<>();
-        nodeState[OFFLINE_STATE] = new THashSet<>();
-
-        vmReady = new THashSet<>();
+        vmReady = new PersistentIntMap<>();
 
-        place = new TIntObjectHashMap<>();
+        place = new PersistentIntMap<>();
 
-        host = new TIntObjectHashMap[2];
-        host[RUNNING_STATE] = new TIntObjectHashMap<>();
-        host[SLEEPING_STATE] = new TIntObjectHashMap<>();
+        host = new PersistentIntMap[2];
+        host[RUNNING_STATE] = new PersistentIntMap<>();
+        host[SLEEPING_STATE] = new PersistentIntMap<>();
 
-        st = new TIntIntHashMap(100, 0.5f, -1, -1);
+        st = new PersistentIntMap<>();
     }
 
     /**
@@ -105,216 +110,160 @@ public class DefaultMapping extends AbstractMapping {
         MappingUtils.fill(m, this);
     }
 
+    private int stateOf(VM v) {
+        Integer s = st.get(v.id());
+        return s == null ? -1 : s;
+    }
+
+    /**
+     * Get the set of VMs hosted by a node for a modification.
+     * The set is copied first if it is shared with another mapping.
+     */
+    private Set<VM> editableHost(int state, int nId) {
+        Hosted s = host[state].edit(nId, Hosted::new);
+        if (s == null) {
+            s = new Hosted();
+            host[state].put(nId, s);
+        }
+        return s;
+    }
+
+    private boolean hosts(int state, int nId) {
+        Set<VM> s = host[state].get(nId);
+        return s != null && !s.isEmpty();
+    }
+
     @Override
     public boolean isRunning(VM v) {
-        return st.get(v.id()) == RUNNING_STATE;
+        return stateOf(v) == RUNNING_STATE;
     }
 
     @Override
     public boolean isSleeping(VM v) {
-        return st.get(v.id()) == SLEEPING_STATE;
+        return stateOf(v) == SLEEPING_STATE;
     }
 
     @Override
     public boolean isReady(VM v) {
-        return st.get(v.id()) == READY_STATE;
+        return stateOf(v) == READY_STATE;
     }
 
     @Override
     public boolean isOnline(Node n) {
-        return nodeState[ONLINE_STATE].contains(n);
+        return nodeState[ONLINE_STATE].containsKey(n.id());
     }
 
     @Override
     public boolean isOffline(Node n) {
-        return nodeState[OFFLINE_STATE].contains(n);
+        return nodeState[OFFLINE_STATE].containsKey(n.id());
     }
 
     @Override
     public boolean addRunningVM(VM vm, Node n) {
-        if (!nodeState[ONLINE_STATE].contains(n)) {
-            return false;
-        }
-        Node old;
-
-        int vmId = vm.id();
-        int nId = n.id();
-        Set<VM> on = host[RUNNING_STATE].get(nId);
-        if (on == null) {
-            on = new THashSet<>();
-            host[RUNNING_STATE].put(nId, on);
-        }
-        switch (st.get(vmId)) {
-            case RUNNING_STATE:
-                old = place.put(vmId, n);
-                if (!old.equals(n)) {
-                    host[RUNNING_STATE].get(old.id()).remove(vm);
-                    on.add(vm);
-                }
-                break;
-            case SLEEPING_STATE:
-                old = place.put(vmId, n);
-                host[SLEEPING_STATE].get(old.id()).remove(vm);
-                on.add(vm);
-                st.put(vmId, RUNNING_STATE);
-                break;
-            case READY_STATE:
-                place.put(vmId, n);
-                on.add(vm);
-                vmReady.remove(vm);
-                st.put(vmId, RUNNING_STATE);
-                break;
-            default:
-                place.put(vmId, n);
-                on.add(vm);
-                st.put(vmId, RUNNING_STATE);
-                break;
-        }
-        return true;
+        return addHostedVM(vm, n, RUNNING_STATE);
     }
 
     @Override
     public boolean addSleepingVM(VM vm, Node n) {
-        if (!nodeState[ONLINE_STATE].contains(n)) {
+        return addHostedVM(vm, n, SLEEPING_STATE);
+    }
+
+    private boolean addHostedVM(VM vm, Node n, int state) {
+        if (!isOnline(n)) {
             return false;
         }
-        int nId = n.id();
         int vmId = vm.id();
-        Set<VM> on = host[SLEEPING_STATE].get(nId);
-        if (on == null) {
-            on = new THashSet<>();
-            host[SLEEPING_STATE].put(nId, on);
-        }
-        Node old;
-        switch (st.get(vmId)) {
-            case RUNNING_STATE:
-                //If was running, sync the state
-                old = place.put(vmId, n);
-                host[RUNNING_STATE].get(old.id()).remove(vm);
-                on.add(vm);
-                st.put(vmId, SLEEPING_STATE);
-                break;
-            case SLEEPING_STATE:
-                //If was sleeping, sync the state
-                old = place.put(vmId, n);
-                if (!old.equals(n)) {
-                    host[SLEEPING_STATE].get(old.id()).remove(vm);
-                    on.add(vm);
-                }
-                break;
-            case READY_STATE:
-                place.put(vmId, n);
-                on.add(vm);
-                vmReady.remove(vm);
-                st.put(vmId, SLEEPING_STATE);
-                break;
-            default:
-                //it's a new VM
-                place.put(vmId, n);
-                host[SLEEPING_STATE].get(nId).add(vm);
-                st.put(vmId, SLEEPING_STATE);
-                break;
-        }
-        st.put(vm.id(), SLEEPING_STATE);
+        int cur = stateOf(vm);
+        if (cur == READY_STATE) {
+            vmReady.remove(vmId);
+        } else if (cur >= 0) {
+            Node old = place.get(vmId);
+            if (cur == state && old.equals(n)) {
+                return true;
+            }
+            editableHost(cur, old.id()).remove(vm);
+        }
+        place.put(vmId, n);
+        editableHost(state, n.id()).add(vm);
+        st.put(vmId, STATES[state]);
         return true;
     }
 
     @Override
     public boolean addReadyVM(VM vm) {
-
-        Node n = place.remove(vm.id());
-        int state = st.get(vm.id());
-        if (state == RUNNING_STATE) {
-            //If was running, sync the state
-            host[RUNNING_STATE].get(n.id()).remove(vm);
-        } else if (state == SLEEPING_STATE) {
-                //If was sleeping, sync the state
-                host[SLEEPING_STATE].get(n.id()).remove(vm);
-        }
-        st.put(vm.id(), READY_STATE);
-        vmReady.add(vm);
+        int vmId = vm.id();
+        int state = stateOf(vm);
+        if (state == READY_STATE) {
+            return true;
+        }
+        if (state >= 0) {
+            Node n = place.remove(vmId);
+            editableHost(state, n.id()).remove(vm);
+        }
+        st.put(vmId, STATES[READY_STATE]);
+        vmReady.put(vmId, vm);
         return true;
     }
 
     @Override
     public boolean remove(VM vm) {
-        if (place.containsKey(vm.id())) {
-            Node n = this.place.remove(vm.id());
-            //The VM exists and is already placed
-            if (st.get(vm.id()) == RUNNING_STATE) {
-                host[RUNNING_STATE].get(n.id()).remove(vm);
-            } else if (st.get(vm.id()) == SLEEPING_STATE) {
-                host[SLEEPING_STATE].get(n.id()).remove(vm);
-            }
-            st.remove(vm.id());
-            return true;
-        } else if (st.get(vm.id()) == READY_STATE) {
-
-            vmReady.remove(vm);
-            st.remove(vm.id());
-            return true;
+        int vmId = vm.id();
+        int state = stateOf(vm);
+        if (state < 0) {
+            return false;
+        }
+        if (state == READY_STATE) {
+            vmReady.remove(vmId);
+        } else {
+            Node n = place.remove(vmId);
+            editableHost(state, n.id()).remove(vm);
         }
-        return false;
+        st.remove(vmId);
+        return true;
     }
 
     @Override
     public boolean remove(Node n) {
-        if (nodeState[ONLINE_STATE].contains(n)) {
-            int nId = n.id();
-            Set<VM> on = host[RUNNING_STATE].get(nId);
-            if (on != null) {
-                if (!on.isEmpty()) {
-                    return false;
-                }
-                host[RUNNING_STATE].remove(nId);
-            }
-
-            on = host[SLEEPING_STATE].get(nId);
-            if (on != null) {
-                if (!on.isEmpty()) {
-                    return false;
-                }
-                host[SLEEPING_STATE].remove(nId);
+        int nId = n.id();
+        if (isOnline(n)) {
+            if (hosts(RUNNING_STATE, nId) || hosts(SLEEPING_STATE, nId)) {
+                return false;
             }
-            return nodeState[ONLINE_STATE].remove(n);
+            host[RUNNING_STATE].remove(nId);
+            host[SLEEPING_STATE].remove(nId);
+            return nodeState[ONLINE_STATE].remove(nId) != null;
         }
-
-        return nodeState[OFFLINE_STATE].remove(n);
+        return nodeState[OFFLINE_STATE].remove(nId) != null;
     }
 
     @Override
     public boolean addOnlineNode(Node n) {
-        nodeState[OFFLINE_STATE].remove(n);
-        nodeState[ONLINE_STATE].add(n);
+        nodeState[OFFLINE_STATE].remove(n.id());
+        nodeState[ONLINE_STATE].put(n.id(), n);
         return true;
     }
 
     @Override
     public boolean addOfflineNode(Node n) {
         int nId = n.id();
-        if (nodeState[ONLINE_STATE].contains(n)) {
-            Set<VM> on = host[SLEEPING_STATE].get(nId);
-            if (on != null && !on.isEmpty()) {
-                return false;
-            }
-            on = host[RUNNING_STATE].get(nId);
-            if (on != null && !on.isEmpty()) {
+        if (isOnline(n)) {
+            if (hosts(SLEEPING_STATE, nId) || hosts(RUNNING_STATE, nId)) {
                 return false;
             }
-            nodeState[ONLINE_STATE].remove(n);
+            nodeState[ONLINE_STATE].remove(nId);
         }
-        nodeState[OFFLINE_STATE].add(n);
+        nodeState[OFFLINE_STATE].put(nId, n);
         return true;
     }
 
     @Override
     public Set<Node> getOnlineNodes() {
-        return nodeState[ONLINE_STATE];
+        return new NodeView(ONLINE_STATE);
     }
 
     @Override
     public Set<Node> getOfflineNodes() {
-        return nodeState[OFFLINE_STATE];
+        return new NodeView(OFFLINE_STATE);
     }
 
     @Override
@@ -329,38 +278,36 @@ public class DefaultMapping extends AbstractMapping {
 
     @Override
     public Set<VM> getSleepingVMs(Node n) {
-        Set<VM> in = host[SLEEPING_STATE].get(n.id());
-        if (in == null) {
+        if (!host[SLEEPING_STATE].containsKey(n.id())) {
             return Collections.emptySet();
         }
-        return in;
+        return new HostedView(SLEEPING_STATE, n.id());
     }
 
     @Override
     public Set<VM> getRunningVMs(Node n) {
-        Set<VM> in = host[RUNNING_STATE].get(n.id());
-        if (in == null) {
+        if (!host[RUNNING_STATE].containsKey(n.id())) {
             return Collections.emptySet();
         }
-        return in;
+        return new HostedView(RUNNING_STATE, n.id());
     }
 
     @Override
     public Set<VM> getReadyVMs() {
-        return vmReady;
+        return new ReadyView();
     }
 
     @Override
     public Set<VM> getAllVMs() {
-        final Set<VM> s = new HashSet<>(vmReady);
-        host[RUNNING_STATE].forEachEntry((a, b) -> {
-            s.addAll(b);
-            return true;
-        });
-        host[SLEEPING_STATE].forEachEntry((a, b) -> {
-            s.addAll(b);
-            return true;
-        });
+        final Set<VM> s = new HashSet<>(st.size());
+        for (VM v : vmReady) {
+            s.add(v);
+        }
+        for (PersistentIntMap<Hosted> h : host) {
+            for (Hosted on : h) {
+                s.addAll(on);
+            }
+        }
         return s;
     }
 
@@ -370,8 +317,11 @@ public class DefaultMapping extends AbstractMapping {
                 nodeState[OFFLINE_STATE].size() +
                         nodeState[ONLINE_STATE].size()
         );
-        ns.addAll(nodeState[OFFLINE_STATE]);
-        ns.addAll(nodeState[ONLINE_STATE]);
+        for (PersistentIntMap<Node> s : nodeState) {
+            for (Node n : s) {
+                ns.add(n);
+            }
+        }
         return ns;
     }
 
@@ -400,43 +350,46 @@ public class DefaultMapping extends AbstractMapping {
 
     @Override
     public Mapping copy() {
-        return new DefaultMapping(this);
+        DefaultMapping c = new DefaultMapping();
+        for (int i = 0; i < 2; i++) {
+            c.nodeState[i] = nodeState[i].copy();
+            c.host[i] = host[i].copy();
+        }
+        c.vmReady = vmReady.copy();
+        c.place = place.copy();
+        c.st = st.copy();
+        return c;
     }
 
     @Override
     public boolean contains(Node n) {
-        return nodeState[OFFLINE_STATE].contains(n) || nodeState[ONLINE_STATE].contains(n);
+        return nodeState[OFFLINE_STATE].containsKey(n.id()) || nodeState[ONLINE_STATE].containsKey(n.id());
     }
 
     @Override
     public boolean contains(VM vm) {
-        return st.get(vm.id()) >= 0;
+        return st.containsKey(vm.id());
     }
 
     @Override
     public void clear() {
-        for (Set<Node> s : nodeState) {
+        for (PersistentIntMap<Node> s : nodeState) {
             s.clear();
         }
-        st.clear();
-        vmReady.clear();
-        place.clear();
-        for (TIntObjectHashMap<Set<VM>> h : host) {
-            h.clear();
-        }
+        clearAllVMs();
     }
 
     @Override
     public void clearNode(Node u) {
         //Get the VMs on the node
-        for (TIntObjectHashMap<Set<VM>> h : host) {
+        for (PersistentIntMap<Hosted> h : host) {
             Set<VM> s = h.get(u.id());
             if (s != null) {
                 for (VM vm : s) {
                     place.remove(vm.id());
                     st.remove(vm.id());
                 }
-                s.clear();
+                h.put(u.id(), new Hosted());
             }
         }
     }
@@ -446,7 +399,7 @@ public class DefaultMapping extends AbstractMapping {
         place.clear();
         st.clear();
         vmReady.clear();
-        for (TIntObjectHashMap<Set<VM>> h : host) {
+        for (PersistentIntMap<Hosted> h : host) {
             h.clear();
         }
     }
@@ -493,4 +446,122 @@ public class DefaultMapping extends AbstractMapping {
         return st.size();
     }
 
+    /**
+     * The VMs hosted by a node.
+     */
+    private static final class Hosted extends THashSet<VM> {
+
+        Hosted() {
+            super();
+        }
+
+        Hosted(Set<VM> s) {
+            super(s);
+        }
+    }
+
+    /**
+     * A read-only iterator over elements.
+     */
+    private static final class ReadOnlyIterator<E> implements Iterator<E> {
+
+        private final Iterator<E> ite;
+
+        ReadOnlyIterator(Iterator<E> ite) {
+            this.ite = ite;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return ite.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return ite.next();
+        }
+    }
+
+    /**
+     * Live view over the nodes in a given state.
+     */
+    private final class NodeView extends AbstractSet<Node> {
+
+        private final int state;
+
+        NodeView(int state) {
+            this.state = state;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Node && nodeState[state].containsKey(((Node) o).id());
+        }
+
+        @Override
+        public int size() {
+            return nodeState[state].size();
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return nodeState[state].iterator();
+        }
+    }
+
+    /**
+     * Live view over the ready VMs.
+     */
+    private final class ReadyView extends AbstractSet<VM> {
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof VM && vmReady.containsKey(((VM) o).id());
+        }
+
+        @Override
+        public int size() {
+            return vmReady.size();
+        }
+
+        @Override
+        public Iterator<VM> iterator() {
+            return vmReady.iterator();
+        }
+    }
+
+    /**
+     * Live view over the VMs hosted by a node in a given state.
+     */
+    private final class HostedView extends AbstractSet<VM> {
+
+        private final int state;
+
+        private final int nId;
+
+        HostedView(int state, int nId) {
+            this.state = state;
+            this.nId = nId;
+        }
+
+        private Set<VM> current() {
+            Set<VM> s = host[state].get(nId);
+            return s == null ? Collections.emptySet() : s;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return current().contains(o);
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+
+        @Override
+        public Iterator<VM> iterator() {
+            return new ReadOnlyIterator<>(current().iterator());
+        }
+    }
 }
@@ -20,8 +20,10 @@ package org.btrplace.model;
 
 import org.btrplace.model.view.ModelView;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
@@ -41,6 +43,8 @@ public class DefaultModel implements Model {
 
     private ElementBuilder elemBuilder;
 
+    private List<ModelDeltaListener> deltaListeners;
+
     /**
      * Make a new instance that rely on a {@link DefaultElementBuilder}.
      */
@@ -54,10 +58,23 @@ public class DefaultModel implements Model {
      * @param eb the builder to use
      */
     public DefaultModel(ElementBuilder eb) {
+        this(eb, new DefaultMapping());
+    }
+
+    /**
+     * Make a new instance relying on a given element builder and a given mapping.
+     * This allows to pick a mapping implementation that fits the instance,
+     * for example a {@link DenseMapping} when the element identifiers are dense.
+     *
+     * @param eb the builder to use
+     * @param m  the mapping to use
+     */
+    public DefaultModel(ElementBuilder eb, Mapping m) {
         this.resources = new HashMap<>();
         attrs = new DefaultAttributes();
-        cfg = new DefaultMapping();
+        cfg = m;
         elemBuilder = eb;
+        deltaListeners = new ArrayList<>();
     }
 
     @Override
@@ -133,8 +150,7 @@ public class DefaultModel implements Model {
 
     @Override
     public Model copy() {
-        DefaultModel m = new DefaultModel(elemBuilder.copy());
-        MappingUtils.fill(cfg, m.cfg);
+        DefaultModel m = new DefaultModel(elemBuilder.copy(), cfg.copy());
         for (ModelView rc : resources.values()) {
             m.attach(rc.copy());
         }
@@ -142,6 +158,44 @@ public class DefaultModel implements Model {
         return m;
     }
 
+    /**
+     * Add a listener notified each time a change is applied using {@link #apply(ModelDelta)}.
+     * Listeners are not carried by the copies.
+     *
+     * @param l the listener to add
+     */
+    public void addDeltaListener(ModelDeltaListener l) {
+        deltaListeners.add(l);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener to remove
+     * @return {@code true} iff the listener was registered
+     */
+    public boolean removeDeltaListener(ModelDeltaListener l) {
+        return deltaListeners.remove(l);
+    }
+
+    /**
+     * Apply a delta in place and notify the listeners after each change.
+     *
+     * @param d the delta to apply
+     * @return {@code true} iff all the changes were applied
+     * @see ModelDelta#apply(Model, ModelDeltaListener)
+     */
+    public boolean apply(ModelDelta d) {
+        if (deltaListeners.isEmpty()) {
+            return d.apply(this);
+        }
+        return d.apply(this, (mo, c) -> {
+            for (ModelDeltaListener l : deltaListeners) {
+                l.applied(mo, c);
+            }
+        });
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import gnu.trove.set.hash.THashSet;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Mapping} backed by primitive arrays indexed by the element identifiers.
+ * It fits the dense identifier spaces provided by {@link DefaultElementBuilder}.
+ * <p>
+ * Each VM belongs to one list: the ready VMs, or the running or the sleeping VMs of a node.
+ * Lists are intrusive doubly linked lists stored inside int arrays so the state and the location of a VM
+ * are encoded by the identifier of its list. Nodes are stored the same way inside an online
+ * and an offline list.
+ * <p>
+ * Methods {@link #getOnlineNodes()}, {@link #getOfflineNodes()}, {@link #getReadyVMs()},
+ * {@link #getRunningVMs(Node)} and {@link #getSleepingVMs(Node)} return live read-only views so they do not allocate
+ * memory proportional to their size.
+ * Methods {@link #getRunningVMs()}, {@link #getSleepingVMs()}, {@link #getAllVMs()}, {@link #getAllNodes()},
+ * {@link #getRunningVMs(Collection)}, {@link #getSleepingVMs(java.util.Collection)} return new sets and have
+ * a O(n) complexity.
+ * <p>
+ * Methods {@code is*()}, {@code add*()}, {@code remove()} and {@link #getVMLocation(VM)} have a O(1) amortized complexity.
+ * The memory usage is proportional to the highest element identifier.
+ *
+ * @author Fabien Hermenier
+ */
+public class DenseMapping extends AbstractMapping {
+
+    private static final int NONE = -1;
+
+    private static final int READY_LIST = 0;
+
+    private static final int ONLINE = 0;
+
+    private static final int OFFLINE = 1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The list each VM belongs to. {@link #NONE} if the VM is not in the mapping.
+     */
+    private int[] vmList;
+
+    private int[] vmNext;
+
+    private int[] vmPrev;
+
+    private VM[] vms;
+
+    /**
+     * Head, tail and size of each VM list.
+     */
+    private int[] head;
+
+    private int[] tail;
+
+    private int[] size;
+
+    private int nbVMs;
+
+    /**
+     * The state of each node. {@link #NONE} if the node is not in the mapping.
+     */
+    private int[] nodeList;
+
+    private int[] nodeNext;
+
+    private int[] nodePrev;
+
+    private Node[] nodes;
+
+    private int[] nodeHead;
+
+    private int[] nodeTail;
+
+    private int[] nodeSize;
+
+    /**
+     * Make a new mapping.
+     */
+    public DenseMapping() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Make a new mapping with initial capacities.
+     *
+     * @param nbVMs   the expected number of VMs
+     * @param nbNodes the expected number of nodes
+     */
+    public DenseMapping(int nbVMs, int nbNodes) {
+        vmList = new int[Math.max(1, nbVMs)];
+        Arrays.fill(vmList, NONE);
+        vmNext = new int[vmList.length];
+        vmPrev = new int[vmList.length];
+        vms = new VM[vmList.length];
+
+        nodeList = new int[Math.max(1, nbNodes)];
+        Arrays.fill(nodeList, NONE);
+        nodeNext = new int[nodeList.length];
+        nodePrev = new int[nodeList.length];
+        nodes = new Node[nodeList.length];
+
+        head = new int[1 + 2 * nodeList.length];
+        Arrays.fill(head, NONE);
+        tail = new int[head.length];
+        Arrays.fill(tail, NONE);
+        size = new int[head.length];
+
+        nodeHead = new int[]{NONE, NONE};
+        nodeTail = new int[]{NONE, NONE};
+        nodeSize = new int[2];
+    }
+
+    /**
+     * Make a new mapping from an existing one.
+     *
+     * @param m the mapping to copy
+     */
+    public DenseMapping(Mapping m) {
+        this();
+        MappingUtils.fill(m, this);
+    }
+
+    private static int runningList(int nId) {
+        return 1 + 2 * nId;
+    }
+
+    private static int sleepingList(int nId) {
+        return 2 + 2 * nId;
+    }
+
+    private static boolean isRunningList(int l) {
+        return l > READY_LIST && l % 2 == 1;
+    }
+
+    private static boolean isSleepingList(int l) {
+        return l > READY_LIST && l % 2 == 0;
+    }
+
+    private static int hostOf(int l) {
+        return (l - 1) / 2;
+    }
+
+    private int listOf(VM v) {
+        int id = v.id();
+        return id >= 0 && id < vmList.length ? vmList[id] : NONE;
+    }
+
+    private int stateOf(Node n) {
+        int id = n.id();
+        return id >= 0 && id < nodeList.length ? nodeList[id] : NONE;
+    }
+
+    private void ensureVM(int id) {
+        if (id >= vmList.length) {
+            int l = Math.max(id + 1, vmList.length + (vmList.length >> 1));
+            int old = vmList.length;
+            vmList = Arrays.copyOf(vmList, l);
+            Arrays.fill(vmList, old, l, NONE);
+            vmNext = Arrays.copyOf(vmNext, l);
+            vmPrev = Arrays.copyOf(vmPrev, l);
+            vms = Arrays.copyOf(vms, l);
+        }
+    }
+
+    private void ensureNode(int id) {
+        if (id >= nodeList.length) {
+            int l = Math.max(id + 1, nodeList.length + (nodeList.length >> 1));
+            int old = nodeList.length;
+            nodeList = Arrays.copyOf(nodeList, l);
+            Arrays.fill(nodeList, old, l, NONE);
+            nodeNext = Arrays.copyOf(nodeNext, l);
+            nodePrev = Arrays.copyOf(nodePrev, l);
+            nodes = Arrays.copyOf(nodes, l);
+
+            int oldLists = head.length;
+            int nbLists = 1 + 2 * l;
+            head = Arrays.copyOf(head, nbLists);
+            Arrays.fill(head, oldLists, nbLists, NONE);
+            tail = Arrays.copyOf(tail, nbLists);
+            Arrays.fill(tail, oldLists, nbLists, NONE);
+            size = Arrays.copyOf(size, nbLists);
+        }
+    }
+
+    private void link(VM v, int l) {
+        int id = v.id();
+        vms[id] = v;
+        vmList[id] = l;
+        vmNext[id] = NONE;
+        vmPrev[id] = tail[l];
+        if (tail[l] == NONE) {
+            head[l] = id;
+        } else {
+            vmNext[tail[l]] = id;
+        }
+        tail[l] = id;
+        size[l]++;
+    }
+
+    private void unlink(int id) {
+        int l = vmList[id];
+        int p = vmPrev[id];
+        int n = vmNext[id];
+        if (p == NONE) {
+            head[l] = n;
+        } else {
+            vmNext[p] = n;
+        }
+        if (n == NONE) {
+            tail[l] = p;
+        } else {
+            vmPrev[n] = p;
+        }
+        size[l]--;
+        vmList[id] = NONE;
+    }
+
+    private void linkNode(Node n, int s) {
+        int id = n.id();
+        nodes[id] = n;
+        nodeList[id] = s;
+        nodeNext[id] = NONE;
+        nodePrev[id] = nodeTail[s];
+        if (nodeTail[s] == NONE) {
+            nodeHead[s] = id;
+        } else {
+            nodeNext[nodeTail[s]] = id;
+        }
+        nodeTail[s] = id;
+        nodeSize[s]++;
+    }
+
+    private void unlinkNode(int id) {
+        int s = nodeList[id];
+        int p = nodePrev[id];
+        int n = nodeNext[id];
+        if (p == NONE) {
+            nodeHead[s] = n;
+        } else {
+            nodeNext[p] = n;
+        }
+        if (n == NONE) {
+            nodeTail[s] = p;
+        } else {
+            nodePrev[n] = p;
+        }
+        nodeSize[s]--;
+        nodeList[id] = NONE;
+    }
+
+    /**
+     * Move a VM to a given list.
+     */
+    private void moveTo(VM v, int l) {
+        int id = v.id();
+        ensureVM(id);
+        int cur = vmList[id];
+        if (cur == l) {
+            return;
+        }
+        if (cur == NONE) {
+            nbVMs++;
+        } else {
+            unlink(id);
+        }
+        link(v, l);
+    }
+
+    private boolean hosts(int nId) {
+        return size[runningList(nId)] > 0 || size[sleepingList(nId)] > 0;
+    }
+
+    @Override
+    public boolean isRunning(VM v) {
+        return isRunningList(listOf(v));
+    }
+
+    @Override
+    public boolean isSleeping(VM v) {
+        return isSleepingList(listOf(v));
+    }
+
+    @Override
+    public boolean isReady(VM v) {
+        return listOf(v) == READY_LIST;
+    }
+
+    @Override
+    public boolean isOnline(Node n) {
+        return stateOf(n) == ONLINE;
+    }
+
+    @Override
+    public boolean isOffline(Node n) {
+        return stateOf(n) == OFFLINE;
+    }
+
+    @Override
+    public boolean addRunningVM(VM vm, Node n) {
+        if (!isOnline(n)) {
+            return false;
+        }
+        moveTo(vm, runningList(n.id()));
+        return true;
+    }
+
+    @Override
+    public boolean addSleepingVM(VM vm, Node n) {
+        if (!isOnline(n)) {
+            return false;
+        }
+        moveTo(vm, sleepingList(n.id()));
+        return true;
+    }
+
+    @Override
+    public boolean addReadyVM(VM vm) {
+        moveTo(vm, READY_LIST);
+        return true;
+    }
+
+    @Override
+    public boolean remove(VM vm) {
+        if (listOf(vm) == NONE) {
+            return false;
+        }
+        unlink(vm.id());
+        vms[vm.id()] = null;
+        nbVMs--;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Node n) {
+        int s = stateOf(n);
+        if (s == NONE || s == ONLINE && hosts(n.id())) {
+            return false;
+        }
+        unlinkNode(n.id());
+        nodes[n.id()] = null;
+        return true;
+    }
+
+    @Override
+    public boolean addOnlineNode(Node n) {
+        int s = stateOf(n);
+        if (s == ONLINE) {
+            return true;
+        }
+        ensureNode(n.id());
+        if (s == OFFLINE) {
+            unlinkNode(n.id());
+        }
+        linkNode(n, ONLINE);
+        return true;
+    }
+
+    @Override
+    public boolean addOfflineNode(Node n) {
+        int s = stateOf(n);
+        if (s == OFFLINE) {
+            return true;
+        }
+        ensureNode(n.id());
+        if (s == ONLINE) {
+            if (hosts(n.id())) {
+                return false;
+            }
+            unlinkNode(n.id());
+        }
+        linkNode(n, OFFLINE);
+        return true;
+    }
+
+    @Override
+    public Set<Node> getOnlineNodes() {
+        return new NodeView(ONLINE);
+    }
+
+    @Override
+    public Set<Node> getOfflineNodes() {
+        return new NodeView(OFFLINE);
+    }
+
+    @Override
+    public Set<VM> getRunningVMs() {
+        return getRunningVMs(getOnlineNodes());
+    }
+
+    @Override
+    public Set<VM> getSleepingVMs() {
+        return getSleepingVMs(getOnlineNodes());
+    }
+
+    @Override
+    public Set<VM> getSleepingVMs(Node n) {
+        if (stateOf(n) != ONLINE) {
+            return Collections.emptySet();
+        }
+        return new VMView(sleepingList(n.id()));
+    }
+
+    @Override
+    public Set<VM> getRunningVMs(Node n) {
+        if (stateOf(n) != ONLINE) {
+            return Collections.emptySet();
+        }
+        return new VMView(runningList(n.id()));
+    }
+
+    @Override
+    public Set<VM> getReadyVMs() {
+        return new VMView(READY_LIST);
+    }
+
+    @Override
+    public Set<VM> getAllVMs() {
+        Set<VM> s = new THashSet<>(nbVMs);
+        for (int i = 0; i < vmList.length; i++) {
+            if (vmList[i] != NONE) {
+                s.add(vms[i]);
+            }
+        }
+        return s;
+    }
+
+    @Override
+    public Set<Node> getAllNodes() {
+        Set<Node> ns = new THashSet<>(getNbNodes());
+        ns.addAll(getOnlineNodes());
+        ns.addAll(getOfflineNodes());
+        return ns;
+    }
+
+    @Override
+    public Node getVMLocation(VM vm) {
+        int l = listOf(vm);
+        if (l == NONE || l == READY_LIST) {
+            return null;
+        }
+        return nodes[hostOf(l)];
+    }
+
+    @Override
+    public Set<VM> getRunningVMs(Collection<Node> ns) {
+        Set<VM> s = new THashSet<>();
+        for (Node n : ns) {
+            s.addAll(getRunningVMs(n));
+        }
+        return s;
+    }
+
+    @Override
+    public Set<VM> getSleepingVMs(Collection<Node> ns) {
+        Set<VM> s = new THashSet<>();
+        for (Node n : ns) {
+            s.addAll(getSleepingVMs(n));
+        }
+        return s;
+    }
+
+    @Override
+    public boolean contains(VM vm) {
+        return listOf(vm) != NONE;
+    }
+
+    @Override
+    public boolean contains(Node node) {
+        return stateOf(node) != NONE;
+    }
+
+    @Override
+    public void clear() {
+        clearAllVMs();
+        Arrays.fill(nodeList, NONE);
+        Arrays.fill(nodes, null);
+        Arrays.fill(nodeHead, NONE);
+        Arrays.fill(nodeTail, NONE);
+        Arrays.fill(nodeSize, 0);
+    }
+
+    @Override
+    public void clearNode(Node u) {
+        if (stateOf(u) != ONLINE) {
+            return;
+        }
+        int[] ls = {runningList(u.id()), sleepingList(u.id())};
+        for (int l : ls) {
+            while (head[l] != NONE) {
+                int id = head[l];
+                unlink(id);
+                vms[id] = null;
+                nbVMs--;
+            }
+        }
+    }
+
+    @Override
+    public void clearAllVMs() {
+        Arrays.fill(vmList, NONE);
+        Arrays.fill(vms, null);
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+        Arrays.fill(size, 0);
+        nbVMs = 0;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nodeSize[ONLINE] + nodeSize[OFFLINE];
+    }
+
+    @Override
+    public int getNbVMs() {
+        return nbVMs;
+    }
+
+    @Override
+    public Mapping copy() {
+        DenseMapping c = new DenseMapping(1, 1);
+        c.copyFrom(this);
+        return c;
+    }
+
+    /**
+     * Replace the content of this mapping by the content of another one.
+     * The copy is a raw copy of the arrays so it is not proportional to the number of elements
+     * but to the highest element identifier.
+     *
+     * @param src the mapping to copy
+     */
+    void copyFrom(DenseMapping src) {
+        vmList = src.vmList.clone();
+        vmNext = src.vmNext.clone();
+        vmPrev = src.vmPrev.clone();
+        vms = src.vms.clone();
+        head = src.head.clone();
+        tail = src.tail.clone();
+        size = src.size.clone();
+        nbVMs = src.nbVMs;
+        nodeList = src.nodeList.clone();
+        nodeNext = src.nodeNext.clone();
+        nodePrev = src.nodePrev.clone();
+        nodes = src.nodes.clone();
+        nodeHead = src.nodeHead.clone();
+        nodeTail = src.nodeTail.clone();
+        nodeSize = src.nodeSize.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+
+        for (Node n : getOnlineNodes()) {
+            buf.append(n);
+            buf.append(':');
+            if (this.getRunningVMs(n).isEmpty() && this.getSleepingVMs(n).isEmpty()) {
+                buf.append(" - ");
+            }
+            for (VM vm : this.getRunningVMs(n)) {
+                buf.append(' ').append(vm);
+            }
+            for (VM vm : this.getSleepingVMs(n)) {
+                buf.append(" (").append(vm).append(')');
+            }
+            buf.append('\n');
+        }
+
+        for (Node n : getOfflineNodes()) {
+            buf.append('(').append(n).append(")\n");
+        }
+
+        buf.append("READY");
+
+        for (VM vm : this.getReadyVMs()) {
+            buf.append(' ').append(vm);
+        }
+
+        return buf.append('\n').toString();
+    }
+
+    /**
+     * A live, read-only, view over a list of VMs.
+     */
+    private class VMView extends AbstractSet<VM> {
+
+        private final int list;
+
+        VMView(int l) {
+            list = l;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof VM && listOf((VM) o) == list;
+        }
+
+        @Override
+        public int size() {
+            return size[list];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size[list] == 0;
+        }
+
+        @Override
+        public Iterator<VM> iterator() {
+            return new Iterator<VM>() {
+                private int next = head[list];
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public VM next() {
+                    if (next == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    VM v = vms[next];
+                    next = vmNext[next];
+                    return v;
+                }
+            };
+        }
+    }
+
+    /**
+     * A live, read-only, view over the nodes in a given state.
+     */
+    private class NodeView extends AbstractSet<Node> {
+
+        private final int state;
+
+        NodeView(int s) {
+            state = s;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Node && stateOf((Node) o) == state;
+        }
+
+        @Override
+        public int size() {
+            return nodeSize[state];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return nodeSize[state] == 0;
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return new Iterator<Node>() {
+                private int next = nodeHead[state];
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public Node next() {
+                    if (next == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    Node n = nodes[next];
+                    next = nodeNext[next];
+                    return n;
+                }
+            };
+        }
+    }
+}
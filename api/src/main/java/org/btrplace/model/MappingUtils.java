@@ -40,6 +40,11 @@ public final class MappingUtils {
      * @param dst the destination mapping
      */
     public static void fill(Mapping src, Mapping dst) {
+        if (src instanceof DenseMapping && dst instanceof DenseMapping && dst.getNbNodes() == 0 && dst.getNbVMs() == 0) {
+            //Raw copy of the arrays
+            ((DenseMapping) dst).copyFrom((DenseMapping) src);
+            return;
+        }
         for (Node off : src.getOfflineNodes()) {
             dst.addOfflineNode(off);
         }
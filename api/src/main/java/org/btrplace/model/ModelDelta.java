@@ -0,0 +1,652 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import org.btrplace.model.view.ModelView;
+import org.btrplace.model.view.ShareableResource;
+
+import java.util.*;
+
+/**
+ * An ordered list of changes to apply on a model.
+ * <p>
+ * A delta records the elements that appear, disappear or change their state,
+ * the values that change inside {@link ShareableResource}s, and the attributes that
+ * are set or unset. It is applied in place using {@link #apply(Model)}, or
+ * {@link DefaultModel#apply(ModelDelta)} to notify the model listeners.
+ * A delta between two models is computed using {@link #diff(Model, Model)}.
+ * <p>
+ * A delta does not attach or detach views. The views must be managed separately.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDelta implements Iterable<ModelDelta.Change> {
+
+    /**
+     * The possible operations.
+     */
+    public enum Operation {
+        /**
+         * Set a node online. See {@link Mapping#addOnlineNode(Node)}.
+         */
+        ONLINE_NODE,
+        /**
+         * Set a node offline. See {@link Mapping#addOfflineNode(Node)}.
+         */
+        OFFLINE_NODE,
+        /**
+         * Remove a node. See {@link Mapping#remove(Node)}.
+         */
+        REMOVE_NODE,
+        /**
+         * Set a VM ready. See {@link Mapping#addReadyVM(VM)}.
+         */
+        READY_VM,
+        /**
+         * Set a VM running. See {@link Mapping#addRunningVM(VM, Node)}.
+         */
+        RUNNING_VM,
+        /**
+         * Set a VM sleeping. See {@link Mapping#addSleepingVM(VM, Node)}.
+         */
+        SLEEPING_VM,
+        /**
+         * Remove a VM. See {@link Mapping#remove(VM)}.
+         */
+        REMOVE_VM,
+        /**
+         * Set or unset a VM consumption. See {@link ShareableResource#setConsumption(VM, int)}.
+         */
+        CONSUMPTION,
+        /**
+         * Set or unset a node capacity. See {@link ShareableResource#setCapacity(Node, int)}.
+         */
+        CAPACITY,
+        /**
+         * Set or unset an attribute. See {@link Attributes#put(Element, String, String)}.
+         */
+        ATTRIBUTE
+    }
+
+    /**
+     * A single change.
+     */
+    public static final class Change {
+
+        private final Operation op;
+
+        private final Element element;
+
+        private final Node host;
+
+        private final String key;
+
+        private final Object value;
+
+        /**
+         * Make a new change.
+         *
+         * @param o the operation
+         * @param e the element to modify
+         * @param h the host for {@link Operation#RUNNING_VM} and {@link Operation#SLEEPING_VM}. {@code null} otherwise
+         * @param k the resource identifier or the attribute key. {@code null} otherwise
+         * @param v the new value for a resource or an attribute. {@code null} to unset it
+         */
+        public Change(Operation o, Element e, Node h, String k, Object v) {
+            op = o;
+            element = e;
+            host = h;
+            key = k;
+            value = v;
+        }
+
+        /**
+         * Get the operation.
+         *
+         * @return the operation
+         */
+        public Operation getOperation() {
+            return op;
+        }
+
+        /**
+         * Get the element that is modified.
+         *
+         * @return a VM or a node
+         */
+        public Element getElement() {
+            return element;
+        }
+
+        /**
+         * Get the host of a running or a sleeping VM.
+         *
+         * @return the host. {@code null} for the other operations
+         */
+        public Node getHost() {
+            return host;
+        }
+
+        /**
+         * Get the resource identifier or the attribute key.
+         *
+         * @return the key. {@code null} for the operations over the mapping
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Get the new value of a resource or an attribute.
+         *
+         * @return an {@link Integer} for a resource, a {@link Boolean}, {@link Integer}, {@link Double} or
+         * {@link String} for an attribute. {@code null} when the value is unset
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Change c = (Change) o;
+            return op == c.op && element.equals(c.element) && Objects.equals(host, c.host)
+                    && Objects.equals(key, c.key) && Objects.equals(value, c.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(op, element, host, key, value);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder(op.toString().toLowerCase()).append('(').append(element);
+            if (host != null) {
+                b.append(", ").append(host);
+            }
+            if (key != null) {
+                b.append(", ").append(key).append('=').append(value);
+            }
+            return b.append(')').toString();
+        }
+    }
+
+    private final List<Change> changes;
+
+    /**
+     * Make an empty delta.
+     */
+    public ModelDelta() {
+        changes = new ArrayList<>();
+    }
+
+    /**
+     * Append a change.
+     *
+     * @param c the change to append
+     * @return the current delta
+     */
+    public ModelDelta add(Change c) {
+        changes.add(c);
+        return this;
+    }
+
+    /**
+     * Set a node online. The node is created if needed.
+     *
+     * @param n the node
+     * @return the current delta
+     */
+    public ModelDelta addOnlineNode(Node n) {
+        return add(new Change(Operation.ONLINE_NODE, n, null, null, null));
+    }
+
+    /**
+     * Set a node offline. The node is created if needed.
+     *
+     * @param n the node
+     * @return the current delta
+     */
+    public ModelDelta addOfflineNode(Node n) {
+        return add(new Change(Operation.OFFLINE_NODE, n, null, null, null));
+    }
+
+    /**
+     * Remove a node from the mapping.
+     *
+     * @param n the node
+     * @return the current delta
+     */
+    public ModelDelta remove(Node n) {
+        return add(new Change(Operation.REMOVE_NODE, n, null, null, null));
+    }
+
+    /**
+     * Set a VM ready. The VM is created if needed.
+     *
+     * @param v the VM
+     * @return the current delta
+     */
+    public ModelDelta addReadyVM(VM v) {
+        return add(new Change(Operation.READY_VM, v, null, null, null));
+    }
+
+    /**
+     * Set a VM running. The VM is created if needed.
+     *
+     * @param v the VM
+     * @param n the hosting node
+     * @return the current delta
+     */
+    public ModelDelta addRunningVM(VM v, Node n) {
+        return add(new Change(Operation.RUNNING_VM, v, n, null, null));
+    }
+
+    /**
+     * Set a VM sleeping. The VM is created if needed.
+     *
+     * @param v the VM
+     * @param n the hosting node
+     * @return the current delta
+     */
+    public ModelDelta addSleepingVM(VM v, Node n) {
+        return add(new Change(Operation.SLEEPING_VM, v, n, null, null));
+    }
+
+    /**
+     * Remove a VM from the mapping.
+     *
+     * @param v the VM
+     * @return the current delta
+     */
+    public ModelDelta remove(VM v) {
+        return add(new Change(Operation.REMOVE_VM, v, null, null, null));
+    }
+
+    /**
+     * Set the consumption of a VM.
+     *
+     * @param rc  the resource identifier
+     * @param v   the VM
+     * @param val the new consumption
+     * @return the current delta
+     */
+    public ModelDelta setConsumption(String rc, VM v, int val) {
+        return add(new Change(Operation.CONSUMPTION, v, null, rc, val));
+    }
+
+    /**
+     * Unset the consumption of a VM so it uses the resource default value.
+     *
+     * @param rc the resource identifier
+     * @param v  the VM
+     * @return the current delta
+     */
+    public ModelDelta unsetConsumption(String rc, VM v) {
+        return add(new Change(Operation.CONSUMPTION, v, null, rc, null));
+    }
+
+    /**
+     * Set the capacity of a node.
+     *
+     * @param rc  the resource identifier
+     * @param n   the node
+     * @param val the new capacity
+     * @return the current delta
+     */
+    public ModelDelta setCapacity(String rc, Node n, int val) {
+        return add(new Change(Operation.CAPACITY, n, null, rc, val));
+    }
+
+    /**
+     * Unset the capacity of a node so it uses the resource default value.
+     *
+     * @param rc the resource identifier
+     * @param n  the node
+     * @return the current delta
+     */
+    public ModelDelta unsetCapacity(String rc, Node n) {
+        return add(new Change(Operation.CAPACITY, n, null, rc, null));
+    }
+
+    /**
+     * Set a boolean attribute.
+     *
+     * @param e the element
+     * @param k the attribute key
+     * @param b the value
+     * @return the current delta
+     */
+    public ModelDelta put(Element e, String k, boolean b) {
+        return add(new Change(Operation.ATTRIBUTE, e, null, k, b));
+    }
+
+    /**
+     * Set an integer attribute.
+     *
+     * @param e the element
+     * @param k the attribute key
+     * @param i the value
+     * @return the current delta
+     */
+    public ModelDelta put(Element e, String k, int i) {
+        return add(new Change(Operation.ATTRIBUTE, e, null, k, i));
+    }
+
+    /**
+     * Set a real attribute.
+     *
+     * @param e the element
+     * @param k the attribute key
+     * @param d the value
+     * @return the current delta
+     */
+    public ModelDelta put(Element e, String k, double d) {
+        return add(new Change(Operation.ATTRIBUTE, e, null, k, d));
+    }
+
+    /**
+     * Set a string attribute.
+     *
+     * @param e the element
+     * @param k the attribute key
+     * @param s the value
+     * @return the current delta
+     */
+    public ModelDelta put(Element e, String k, String s) {
+        return add(new Change(Operation.ATTRIBUTE, e, null, k, s));
+    }
+
+    /**
+     * Unset an attribute.
+     *
+     * @param e the element
+     * @param k the attribute key
+     * @return the current delta
+     */
+    public ModelDelta unset(Element e, String k) {
+        return add(new Change(Operation.ATTRIBUTE, e, null, k, null));
+    }
+
+    /**
+     * Get the changes.
+     *
+     * @return an unmodifiable list, in the order the changes are applied
+     */
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Get the number of changes.
+     *
+     * @return a positive number
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Indicates if there is no change.
+     *
+     * @return {@code true} iff the delta is empty
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return getChanges().iterator();
+    }
+
+    /**
+     * Apply the changes in place.
+     * The changes are applied all together or not at all.
+     *
+     * @param mo the model to modify
+     * @return {@code true} iff all the changes were applied. {@code false} if a change cannot
+     * be applied. The model is then left unchanged
+     * @see #apply(Model, ModelDeltaListener)
+     */
+    public boolean apply(Model mo) {
+        return apply(mo, null);
+    }
+
+    /**
+     * Apply the changes in place.
+     * The changes are applied all together or not at all: they are first applied on a copy
+     * of the model, which is cheap for the copy-on-write models, and on the model itself
+     * only if they all succeed.
+     *
+     * @param mo the model to modify
+     * @param l  a listener notified after each change applied on {@code mo}. May be {@code null}
+     * @return {@code true} iff all the changes were applied. {@code false} if a change cannot
+     * be applied. The model is then left unchanged and the listener is not notified
+     */
+    public boolean apply(Model mo, ModelDeltaListener l) {
+        Model trial = mo.copy();
+        for (Change c : changes) {
+            if (!applyChange(trial, c)) {
+                return false;
+            }
+        }
+        for (Change c : changes) {
+            applyChange(mo, c);
+            if (l != null) {
+                l.applied(mo, c);
+            }
+        }
+        return true;
+    }
+
+    private static boolean applyChange(Model mo, Change c) {
+        Mapping map = mo.getMapping();
+        switch (c.op) {
+            case ONLINE_NODE:
+                return declare(mo, (Node) c.element) && map.addOnlineNode((Node) c.element);
+            case OFFLINE_NODE:
+                return declare(mo, (Node) c.element) && map.addOfflineNode((Node) c.element);
+            case REMOVE_NODE:
+                return map.remove((Node) c.element);
+            case READY_VM:
+                return declare(mo, (VM) c.element) && map.addReadyVM((VM) c.element);
+            case RUNNING_VM:
+                return declare(mo, (VM) c.element) && map.addRunningVM((VM) c.element, c.host);
+            case SLEEPING_VM:
+                return declare(mo, (VM) c.element) && map.addSleepingVM((VM) c.element, c.host);
+            case REMOVE_VM:
+                return map.remove((VM) c.element);
+            case CONSUMPTION:
+            case CAPACITY:
+                return applyResource(mo, c);
+            default:
+                return applyAttribute(mo.getAttributes(), c);
+        }
+    }
+
+    private static boolean applyResource(Model mo, Change c) {
+        ShareableResource rc = ShareableResource.get(mo, c.key);
+        if (rc == null) {
+            return false;
+        }
+        if (c.op == Operation.CONSUMPTION) {
+            if (c.value == null) {
+                rc.unset((VM) c.element);
+            } else {
+                rc.setConsumption((VM) c.element, (Integer) c.value);
+            }
+        } else if (c.value == null) {
+            rc.unset((Node) c.element);
+        } else {
+            rc.setCapacity((Node) c.element, (Integer) c.value);
+        }
+        return true;
+    }
+
+    private static boolean applyAttribute(Attributes attrs, Change c) {
+        Object v = c.value;
+        if (v == null) {
+            attrs.unset(c.element, c.key);
+        } else if (v instanceof Boolean) {
+            attrs.put(c.element, c.key, (Boolean) v);
+        } else if (v instanceof Integer) {
+            attrs.put(c.element, c.key, (Integer) v);
+        } else if (v instanceof Double) {
+            attrs.put(c.element, c.key, (Double) v);
+        } else {
+            attrs.put(c.element, c.key, v.toString());
+        }
+        return true;
+    }
+
+    private static boolean declare(Model mo, VM v) {
+        return mo.contains(v) || mo.newVM(v.id()) != null;
+    }
+
+    private static boolean declare(Model mo, Node n) {
+        return mo.contains(n) || mo.newNode(n.id()) != null;
+    }
+
+    /**
+     * Compute the changes that turn a model into another.
+     * The changes cover the mapping, the attributes and the {@link ShareableResource}s
+     * that are attached to both models. The other views, and the views that are attached
+     * to only one of the models, are ignored. They must be attached or detached separately
+     * for the delta to turn {@code src} into {@code dst}.
+     *
+     * @param src the source model
+     * @param dst the destination model
+     * @return the delta to apply on {@code src} to get {@code dst}
+     */
+    public static ModelDelta diff(Model src, Model dst) {
+        ModelDelta d = new ModelDelta();
+        Mapping from = src.getMapping();
+        Mapping to = dst.getMapping();
+
+        //VMs that disappear, new or online nodes, then the VM changes and the nodes to turn off or remove
+        for (VM v : from.getAllVMs()) {
+            if (!to.contains(v)) {
+                d.remove(v);
+            }
+        }
+        for (Node n : to.getOnlineNodes()) {
+            if (!from.isOnline(n)) {
+                d.addOnlineNode(n);
+            }
+        }
+        for (VM v : to.getAllVMs()) {
+            Node host = to.getVMLocation(v);
+            if (to.isReady(v) && !from.isReady(v)) {
+                d.addReadyVM(v);
+            } else if (to.isRunning(v) && (!from.isRunning(v) || !host.equals(from.getVMLocation(v)))) {
+                d.addRunningVM(v, host);
+            } else if (to.isSleeping(v) && (!from.isSleeping(v) || !host.equals(from.getVMLocation(v)))) {
+                d.addSleepingVM(v, host);
+            }
+        }
+        for (Node n : to.getOfflineNodes()) {
+            if (!from.isOffline(n)) {
+                d.addOfflineNode(n);
+            }
+        }
+        for (Node n : from.getAllNodes()) {
+            if (!to.contains(n)) {
+                d.remove(n);
+            }
+        }
+
+        for (ModelView v : dst.getViews()) {
+            if (v instanceof ShareableResource && src.getView(v.getIdentifier()) != null) {
+                diff(d, (ShareableResource) src.getView(v.getIdentifier()), (ShareableResource) v);
+            }
+        }
+        diff(d, src.getAttributes(), dst.getAttributes());
+        return d;
+    }
+
+    private static void diff(ModelDelta d, ShareableResource from, ShareableResource to) {
+        String id = to.getResourceIdentifier();
+        for (VM v : to.getDefinedVMs()) {
+            if (!from.consumptionDefined(v) || from.getConsumption(v) != to.getConsumption(v)) {
+                d.setConsumption(id, v, to.getConsumption(v));
+            }
+        }
+        for (VM v : from.getDefinedVMs()) {
+            if (!to.consumptionDefined(v)) {
+                d.unsetConsumption(id, v);
+            }
+        }
+        for (Node n : to.getDefinedNodes()) {
+            if (!from.capacityDefined(n) || from.getCapacity(n) != to.getCapacity(n)) {
+                d.setCapacity(id, n, to.getCapacity(n));
+            }
+        }
+        for (Node n : from.getDefinedNodes()) {
+            if (!to.capacityDefined(n)) {
+                d.unsetCapacity(id, n);
+            }
+        }
+    }
+
+    private static void diff(ModelDelta d, Attributes from, Attributes to) {
+        for (Element e : to.getDefined()) {
+            for (String k : to.getKeys(e)) {
+                Object v = to.get(e, k);
+                if (!v.equals(from.get(e, k))) {
+                    d.add(new Change(Operation.ATTRIBUTE, e, null, k, v));
+                }
+            }
+        }
+        for (Element e : from.getDefined()) {
+            for (String k : from.getKeys(e)) {
+                if (!to.isSet(e, k)) {
+                    d.unset(e, k);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return changes.equals(((ModelDelta) o).changes);
+    }
+
+    @Override
+    public int hashCode() {
+        return changes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+/**
+ * A listener notified each time a change of a {@link ModelDelta} is applied on a model.
+ *
+ * @author Fabien Hermenier
+ */
+@FunctionalInterface
+public interface ModelDeltaListener {
+
+    /**
+     * Notify a change has been applied.
+     *
+     * @param mo the modified model
+     * @param c  the applied change
+     */
+    void applied(Model mo, ModelDelta.Change c);
+}
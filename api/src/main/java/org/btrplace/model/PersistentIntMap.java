@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+
+/**
+ * A map indexed by integers that shares its unchanged parts with its copies.
+ * <p>
+ * The map is a 32-ary trie over the bits of the keys. A trie node reachable from
+ * several maps is flagged as shared and is copied before being modified, while the
+ * other nodes are modified in place. {@link #copy()} then has a O(1) complexity while
+ * a modification only copies the nodes along the path to the key, so O(log32(key)).
+ * Copying a map does not modify it: it only flags its root as shared. A map can then be
+ * copied by several threads simultaneously, provided that none of them modifies it.
+ * <p>
+ * The values are shared with the copies as well. {@link #edit(int, UnaryOperator)} provides
+ * a value that can be modified in place, copying it first when it may be shared.
+ * <p>
+ * {@code null} values are not supported. The iterators traverse the values by increasing
+ * unsigned key and are not fail-fast.
+ * <p>
+ * The map is used to implement the copy-on-write of the model, its mapping and its views,
+ * with the element identifiers as keys.
+ *
+ * @param <V> the value type
+ * @author Fabien Hermenier
+ */
+public final class PersistentIntMap<V> implements Iterable<V> {
+
+    private static final int BITS = 5;
+
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * Enough to traverse the 32 bits of a key.
+     */
+    private static final int MAX_DEPTH = 7;
+
+    /**
+     * A trie node.
+     */
+    private static final class TNode {
+
+        private final Object[] slots;
+
+        private int count;
+
+        /**
+         * {@code true} iff the node may be reachable from several maps.
+         */
+        private volatile boolean shared;
+
+        /**
+         * For a leaf, the slots that store a value only reachable from this node.
+         */
+        private int owned;
+
+        TNode() {
+            slots = new Object[WIDTH];
+        }
+
+        /**
+         * Copy a shared node. The children are then reachable from two nodes.
+         */
+        TNode(TNode n) {
+            slots = n.slots.clone();
+            count = n.count;
+            for (Object o : slots) {
+                if (o instanceof TNode) {
+                    ((TNode) o).shared = true;
+                }
+            }
+        }
+    }
+
+    private TNode root;
+
+    /**
+     * The shift of the root, 0 when the root is a leaf.
+     */
+    private int shift;
+
+    private int size;
+
+    /**
+     * Make a new empty map.
+     */
+    public PersistentIntMap() {
+        root = new TNode();
+    }
+
+    private PersistentIntMap(TNode root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Make a new map having the same content that this one.
+     * The trie nodes and the values are then shared by the two maps
+     * so any modification copies the modified path first.
+     *
+     * @return the new map
+     */
+    public PersistentIntMap<V> copy() {
+        root.shared = true;
+        return new PersistentIntMap<>(root, shift, size);
+    }
+
+    private boolean fits(int k) {
+        return shift + BITS >= Integer.SIZE || (k >>> (shift + BITS)) == 0;
+    }
+
+    /**
+     * Get the value associated to a key.
+     *
+     * @param k the key
+     * @return the value. {@code null} if there is no value for this key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int k) {
+        if (!fits(k)) {
+            return null;
+        }
+        TNode n = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            n = (TNode) n.slots[(k >>> s) & MASK];
+            if (n == null) {
+                return null;
+            }
+        }
+        return (V) n.slots[k & MASK];
+    }
+
+    /**
+     * Check if a key is associated to a value.
+     *
+     * @param k the key
+     * @return {@code true} iff there is a value
+     */
+    public boolean containsKey(int k) {
+        return get(k) != null;
+    }
+
+    private static TNode editable(TNode n) {
+        return n.shared ? new TNode(n) : n;
+    }
+
+    /**
+     * Get the leaf that stores a key for a modification.
+     * The missing nodes are created and the shared nodes are copied.
+     *
+     * @param k the key
+     * @return the leaf
+     */
+    private TNode editableLeaf(int k) {
+        while (!fits(k)) {
+            TNode r = new TNode();
+            if (root.count > 0) {
+                r.slots[0] = root;
+                r.count = 1;
+            }
+            root = r;
+            shift += BITS;
+        }
+        root = editable(root);
+        TNode n = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            int i = (k >>> s) & MASK;
+            TNode c = (TNode) n.slots[i];
+            if (c == null) {
+                c = new TNode();
+                n.slots[i] = c;
+                n.count++;
+            } else if (c.shared) {
+                c = new TNode(c);
+                n.slots[i] = c;
+            }
+            n = c;
+        }
+        return n;
+    }
+
+    /**
+     * Associate a value to a key.
+     *
+     * @param k the key
+     * @param v the value. Must not be {@code null}
+     * @return the previous value, {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int k, V v) {
+        TNode n = editableLeaf(k);
+        int i = k & MASK;
+        Object old = n.slots[i];
+        n.slots[i] = v;
+        n.owned |= 1 << i;
+        if (old == null) {
+            n.count++;
+            size++;
+        }
+        return (V) old;
+    }
+
+    /**
+     * Get the value associated to a key for a modification in place.
+     * If the value may be shared with a copy of this map, it is replaced
+     * by a copy first.
+     *
+     * @param k   the key
+     * @param cpy the function to copy a shared value
+     * @return the value that can be modified. {@code null} if there is no value for this key
+     */
+    @SuppressWarnings("unchecked")
+    public V edit(int k, UnaryOperator<V> cpy) {
+        if (get(k) == null) {
+            return null;
+        }
+        TNode n = editableLeaf(k);
+        int i = k & MASK;
+        if ((n.owned & (1 << i)) == 0) {
+            n.slots[i] = cpy.apply((V) n.slots[i]);
+            n.owned |= 1 << i;
+        }
+        return (V) n.slots[i];
+    }
+
+    /**
+     * Remove the value associated to a key.
+     *
+     * @param k the key
+     * @return the removed value, {@code null} if there was none
+     */
+    public V remove(int k) {
+        V old = get(k);
+        if (old != null) {
+            root = remove(root, shift, k);
+            size--;
+            if (root == null) {
+                root = new TNode();
+                shift = 0;
+            }
+        }
+        return old;
+    }
+
+    private TNode remove(TNode n, int s, int k) {
+        TNode e = editable(n);
+        int i = (k >>> s) & MASK;
+        if (s == 0) {
+            e.slots[i] = null;
+            e.owned &= ~(1 << i);
+            e.count--;
+        } else {
+            TNode c = remove((TNode) e.slots[i], s - BITS, k);
+            e.slots[i] = c;
+            if (c == null) {
+                e.count--;
+            }
+        }
+        return e.count == 0 ? null : e;
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return a positive integer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map is empty.
+     *
+     * @return {@code true} iff there is no value
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the values.
+     */
+    public void clear() {
+        root = new TNode();
+        shift = 0;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * Depth-first traversal of the trie.
+     */
+    private final class ValueIterator implements Iterator<V> {
+
+        private final TNode[] stack = new TNode[MAX_DEPTH];
+
+        private final int[] pos = new int[MAX_DEPTH];
+
+        private final int leaf = shift / BITS;
+
+        private int depth;
+
+        private Object next;
+
+        ValueIterator() {
+            stack[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (pos[depth] == WIDTH) {
+                    depth--;
+                    continue;
+                }
+                Object o = stack[depth].slots[pos[depth]++];
+                if (o == null) {
+                    continue;
+                }
+                if (depth == leaf) {
+                    next = o;
+                    return;
+                }
+                depth++;
+                stack[depth] = (TNode) o;
+                pos[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V v = (V) next;
+            advance();
+            return v;
+        }
+    }
+}
@@ -105,4 +105,9 @@ public class AmongChecker extends AllowAllConstraintChecker<Among> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
@@ -75,4 +75,9 @@ public abstract class DenyMyVMsActions<C extends SatConstraint> extends AllowAll
     public boolean startRunningVMPlacement(RunningVMPlacement a) {
         return !getVMs().contains(a.getVM());
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
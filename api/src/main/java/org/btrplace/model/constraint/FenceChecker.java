@@ -58,4 +58,9 @@ public class FenceChecker extends AllowAllConstraintChecker<Fence> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
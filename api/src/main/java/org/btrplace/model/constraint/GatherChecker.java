@@ -88,4 +88,9 @@ public class GatherChecker extends AllowAllConstraintChecker<Gather> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
@@ -101,4 +101,9 @@ public class NoDelayChecker extends AllowAllConstraintChecker<NoDelay> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
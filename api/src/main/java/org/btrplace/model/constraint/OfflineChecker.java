@@ -55,4 +55,9 @@ public class OfflineChecker extends AllowAllConstraintChecker<Offline> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
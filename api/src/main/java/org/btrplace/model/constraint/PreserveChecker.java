@@ -85,4 +85,9 @@ public class PreserveChecker extends AllowAllConstraintChecker<Preserve> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
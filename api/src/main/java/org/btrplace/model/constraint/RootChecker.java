@@ -41,4 +41,9 @@ public class RootChecker extends AllowAllConstraintChecker<Root> {
     public boolean start(MigrateVM a) {
         return !getVMs().contains(a.getVM());
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
@@ -232,4 +232,17 @@ public interface SatConstraintChecker<C extends SatConstraint> {
      * @return a non-null constraint
      */
     C getConstraint();
+
+    /**
+     * Tell if the checker only reacts to the actions and the events that involve
+     * the VMs or the nodes of its constraint.
+     * A local checker is then only notified for these actions and events, while
+     * the others are notified for every action and event of the plan.
+     * It is always notified for the origin and the resulting model.
+     *
+     * @return {@code true} iff the checker is local. {@code false} by default
+     */
+    default boolean isLocal() {
+        return false;
+    }
 }
@@ -95,4 +95,9 @@ public class SplitChecker extends AllowAllConstraintChecker<Split> {
         }
         return true;
     }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
 }
@@ -18,14 +18,16 @@
 
 package org.btrplace.model.view;
 
-import gnu.trove.impl.Constants;
-import gnu.trove.map.hash.TObjectIntHashMap;
+import org.btrplace.model.Element;
 import org.btrplace.model.Model;
 import org.btrplace.model.Node;
+import org.btrplace.model.PersistentIntMap;
 import org.btrplace.model.VM;
 import org.btrplace.model.constraint.SideConstraint;
 
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
@@ -48,6 +50,10 @@ import java.util.StringJoiner;
  * <p>
  * By default, if there is no {@link org.btrplace.model.constraint.Overbook} constraint for a node, a conservative ratio
  * of <b>1</b> is used. This means one unit of virtual resources consumes one unit of physical resources.
+ * <p>
+ * {@link #copy()} has a O(1) complexity: the consumptions and the capacities are stored
+ * in a {@link PersistentIntMap} indexed by the element identifiers, so a modification
+ * after a copy only copies the path to the modified element.
  *
  * @author Fabien Hermenier
  */
@@ -60,8 +66,12 @@ public class ShareableResource implements ModelView {
      */
     public static final String VIEW_ID_BASE = "ShareableResource.";
 
-    private TObjectIntHashMap<VM> vmsConsumption;
-    private TObjectIntHashMap<Node> nodesCapacity;
+    private PersistentIntMap<Amount<VM>> vmsConsumption;
+    private PersistentIntMap<Amount<Node>> nodesCapacity;
+
+    private final int defConsumption;
+
+    private final int defCapacity;
 
     private String viewId;
 
@@ -88,8 +98,10 @@ public class ShareableResource implements ModelView {
      */
     public ShareableResource(String id, int defCapacity, int defConsumption) {
         this.rcId = id;
-        vmsConsumption = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, defConsumption);
-        nodesCapacity = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, defCapacity);
+        vmsConsumption = new PersistentIntMap<>();
+        nodesCapacity = new PersistentIntMap<>();
+        this.defConsumption = defConsumption;
+        this.defCapacity = defCapacity;
         if (defCapacity < 0) {
             throw new IllegalArgumentException(String.format("The %s default capacity must be >= 0", rcId));
         }
@@ -108,7 +120,8 @@ public class ShareableResource implements ModelView {
      * @return its consumption if it was defined otherwise the default value.
      */
     public int getConsumption(VM vm) {
-        return vmsConsumption.get(vm);
+        Amount<VM> a = vmsConsumption.get(vm.id());
+        return a == null ? defConsumption : a.value;
     }
 
     /**
@@ -118,25 +131,26 @@ public class ShareableResource implements ModelView {
      * @return its capacity if it was defined otherwise the default value.
      */
     public int getCapacity(Node n) {
-        return nodesCapacity.get(n);
+        Amount<Node> a = nodesCapacity.get(n.id());
+        return a == null ? defCapacity : a.value;
     }
 
     /**
      * Get the VMs with defined consumptions.
      *
-     * @return a set that may be empty
+     * @return a read-only view of the VMs, that may be empty
      */
     public Set<VM> getDefinedVMs() {
-        return vmsConsumption.keySet();
+        return new DefinedElements<>(vmsConsumption);
     }
 
     /**
      * Get the nodes with defined capacities
      *
-     * @return a set that may be empty
+     * @return a read-only view of the nodes, that may be empty
      */
     public Set<Node> getDefinedNodes() {
-        return nodesCapacity.keySet();
+        return new DefinedElements<>(nodesCapacity);
     }
 
     /**
@@ -150,7 +164,7 @@ public class ShareableResource implements ModelView {
         if (val < 0) {
             throw new IllegalArgumentException(String.format("The '%s' consumption of VM '%s' must be >= 0", rcId, vm));
         }
-        vmsConsumption.put(vm, val);
+        vmsConsumption.put(vm.id(), new Amount<>(vm, val));
         return this;
     }
 
@@ -165,7 +179,7 @@ public class ShareableResource implements ModelView {
         if (val < 0) {
             throw new IllegalArgumentException(String.format("The '%s' capacity of node '%s' must be >= 0", rcId, n));
         }
-        nodesCapacity.put(n, val);
+        nodesCapacity.put(n.id(), new Amount<>(n, val));
         return this;
     }
 
@@ -175,7 +189,9 @@ public class ShareableResource implements ModelView {
      * @param vm the VM
      */
     public void unset(VM vm) {
-        vmsConsumption.remove(vm);
+        if (vmsConsumption.containsKey(vm.id())) {
+            vmsConsumption.remove(vm.id());
+        }
     }
 
     /**
@@ -184,7 +200,9 @@ public class ShareableResource implements ModelView {
      * @param n the node
      */
     public void unset(Node n) {
-        nodesCapacity.remove(n);
+        if (nodesCapacity.containsKey(n.id())) {
+            nodesCapacity.remove(n.id());
+        }
     }
 
     /**
@@ -194,7 +212,7 @@ public class ShareableResource implements ModelView {
      * @return {@code true} iff the consumption is defined.
      */
     public boolean consumptionDefined(VM vm) {
-        return vmsConsumption.containsKey(vm);
+        return vmsConsumption.containsKey(vm.id());
     }
 
     /**
@@ -204,7 +222,7 @@ public class ShareableResource implements ModelView {
      * @return {@code true} iff the capacity is defined}.
      */
     public boolean capacityDefined(Node n) {
-        return nodesCapacity.containsKey(n);
+        return nodesCapacity.containsKey(n.id());
     }
 
     /**
@@ -232,7 +250,7 @@ public class ShareableResource implements ModelView {
      * @return the value.
      */
     public int getDefaultConsumption() {
-        return vmsConsumption.getNoEntryValue();
+        return defConsumption;
     }
 
     /**
@@ -241,7 +259,7 @@ public class ShareableResource implements ModelView {
      * @return the value.
      */
     public int getDefaultCapacity() {
-        return nodesCapacity.getNoEntryValue();
+        return defCapacity;
     }
 
     @Override
@@ -255,8 +273,8 @@ public class ShareableResource implements ModelView {
 
         ShareableResource that = (ShareableResource) o;
 
-        if (!this.vmsConsumption.equals(that.vmsConsumption) ||
-                !this.nodesCapacity.equals(that.nodesCapacity)) {
+        if (!sameAmounts(vmsConsumption, that.vmsConsumption) ||
+                !sameAmounts(nodesCapacity, that.nodesCapacity)) {
             return false;
         }
         return rcId.equals(that.getResourceIdentifier()) && getDefaultCapacity() == that.getDefaultCapacity()
@@ -265,35 +283,48 @@ public class ShareableResource implements ModelView {
 
     @Override
     public int hashCode() {
-        return Objects.hash(rcId, vmsConsumption, nodesCapacity);
+        return Objects.hash(rcId, hashAmounts(vmsConsumption), hashAmounts(nodesCapacity));
+    }
+
+    private static <E extends Element> boolean sameAmounts(PersistentIntMap<Amount<E>> m1, PersistentIntMap<Amount<E>> m2) {
+        if (m1.size() != m2.size()) {
+            return false;
+        }
+        for (Amount<E> a : m1) {
+            Amount<E> b = m2.get(a.element.id());
+            if (b == null || b.value != a.value || !b.element.equals(a.element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <E extends Element> int hashAmounts(PersistentIntMap<Amount<E>> m) {
+        int h = 0;
+        for (Amount<E> a : m) {
+            h += a.element.hashCode() ^ a.value;
+        }
+        return h;
     }
 
     @Override
     public ShareableResource copy() {
-        ShareableResource rc = new ShareableResource(rcId, nodesCapacity.getNoEntryValue(), vmsConsumption.getNoEntryValue());
-        vmsConsumption.forEachEntry((vm, c) -> {
-            rc.vmsConsumption.put(vm, c);
-            return true;
-        });
-        nodesCapacity.forEachEntry((n, c) -> {
-            rc.nodesCapacity.put(n, c);
-            return true;
-        });
+        ShareableResource rc = new ShareableResource(rcId, defCapacity, defConsumption);
+        rc.vmsConsumption = vmsConsumption.copy();
+        rc.nodesCapacity = nodesCapacity.copy();
         return rc;
     }
 
     @Override
     public String toString() {
         StringJoiner joiner = new StringJoiner(",", String.format("rc:%s:", rcId), "");
-        for (Node n : nodesCapacity.keySet()) {
-            int c = nodesCapacity.get(n);
-            joiner.add(String.format("<node %s,%d>", n, c));
+        for (Amount<Node> a : nodesCapacity) {
+            joiner.add(String.format("<node %s,%d>", a.element, a.value));
         }
 
         StringJoiner vmJoiner = new StringJoiner(",");
-        for (VM vm : vmsConsumption.keySet()) {
-            int c = vmsConsumption.get(vm);
-            vmJoiner.add(String.format("<VM %s,%d>", vm, c));
+        for (Amount<VM> a : vmsConsumption) {
+            vmJoiner.add(String.format("<VM %s,%d>", a.element, a.value));
         }
         return String.format("%s%s", joiner, vmJoiner);
     }
@@ -315,7 +346,7 @@ public class ShareableResource implements ModelView {
         int s = 0;
         for (VM u : ids) {
             if (consumptionDefined(u) || undef) {
-                s += vmsConsumption.get(u);
+                s += getConsumption(u);
             }
         }
         return s;
@@ -332,7 +363,7 @@ public class ShareableResource implements ModelView {
         int s = 0;
         for (Node u : ids) {
             if (capacityDefined(u) || undef) {
-                s += nodesCapacity.get(u);
+                s += getCapacity(u);
             }
         }
         return s;
@@ -347,4 +378,61 @@ public class ShareableResource implements ModelView {
     public static ShareableResource get(Model mo, String id) {
         return (ShareableResource) mo.getView(VIEW_ID_BASE + id);
     }
+
+    /**
+     * The amount of resource of an element. Immutable as it can be shared between copies.
+     */
+    private static final class Amount<E extends Element> {
+
+        private final E element;
+
+        private final int value;
+
+        Amount(E e, int v) {
+            element = e;
+            value = v;
+        }
+    }
+
+    /**
+     * A read-only view of the elements having a defined amount.
+     */
+    private static final class DefinedElements<E extends Element> extends AbstractSet<E> {
+
+        private final PersistentIntMap<Amount<E>> amounts;
+
+        DefinedElements(PersistentIntMap<Amount<E>> m) {
+            amounts = m;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Element)) {
+                return false;
+            }
+            Amount<E> a = amounts.get(((Element) o).id());
+            return a != null && a.element.equals(o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            Iterator<Amount<E>> it = amounts.iterator();
+            return new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return it.next().element;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return amounts.size();
+        }
+    }
 }
@@ -81,6 +81,29 @@ public class DefaultRouting extends Routing {
         return new LinkedHashMap<>();
     }
 
+    /**
+     * Make the cache large enough to store the routes of a given node.
+     * The cache is indexed by the node identifiers, which may exceed the number of connected nodes.
+     *
+     * @param id the node identifier
+     */
+    private void ensureCacheCapacity(int id) {
+        if (routingCache != null && routingCache.length > id) {
+            return;
+        }
+        int cacheSize = id + 1;
+        for (Node n : net.getConnectedNodes()) {
+            cacheSize = Math.max(cacheSize, n.id() + 1);
+        }
+        Map<Link, Boolean>[][] cache = new LinkedHashMap[cacheSize][cacheSize]; // OK for the warning
+        if (routingCache != null) {
+            for (int i = 0; i < routingCache.length; i++) {
+                System.arraycopy(routingCache[i], 0, cache[i], 0, routingCache[i].length);
+            }
+        }
+        routingCache = cache;
+    }
+
     @Override
     public List<Link> getPath(Node n1, Node n2) {
         if (net == null || n1.equals(n2)) {
@@ -88,10 +111,7 @@ public class DefaultRouting extends Routing {
         }
 
         // Initialize the cache
-        if (routingCache == null) {
-            int cacheSize = net.getConnectedNodes().size();
-            routingCache = new LinkedHashMap[cacheSize][cacheSize]; // OK for the warning
-        }
+        ensureCacheCapacity(Math.max(n1.id(), n2.id()));
 
         // Fill the cache if needed
         if (routingCache[n1.id()][n2.id()] == null) {
@@ -117,10 +137,7 @@ public class DefaultRouting extends Routing {
         }
 
         // Initialize the cache (should be already done)
-        if (routingCache == null) {
-            int cacheSize = net.getConnectedNodes().size();
-            routingCache = new LinkedHashMap[cacheSize][cacheSize]; // OK for the warning
-        }
+        ensureCacheCapacity(Math.max(n1.id(), n2.id()));
 
         // Fill the appropriate cache entry from getPath method if needed
         if (routingCache[n1.id()][n2.id()] == null) {
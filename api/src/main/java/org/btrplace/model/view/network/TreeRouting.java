@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.model.view.network;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.btrplace.model.Node;
+import org.btrplace.model.PhysicalElement;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A {@link Routing} dedicated to tree-like topologies (tree, fat-tree, ...).
+ * <p>
+ * The first time a route is asked, a routing table is computed once for all using a breadth-first
+ * traversal of the switches and links, rooted on the first switch of the network.
+ * The path between two nodes then goes through their lowest common ancestor in that spanning tree:
+ * it is computed in a time proportional to the height of the tree and encoded as a compact array of
+ * link indexes. The bottleneck bandwidth of a path is computed the same way, without materializing
+ * the path.
+ * <p>
+ * On a tree topology, the path is the unique existing path.
+ * On a topology with redundant paths such as a fat-tree, the network should be built with a core switch
+ * first so the routes are the usual up-down paths.
+ * <p>
+ * The routing table is immutable once computed, so it is shared without any lock among the threads and
+ * the copies of the routing (see {@link #copy()}) that rely on the same links.
+ * It is re-computed when the number of links in the network changes.
+ * <p>
+ * If instantiated manually, it should be first attached to an existing network view,
+ * see {@link #setNetwork(Network)}.
+ *
+ * @author Fabien Hermenier
+ * @see #setNetwork(Network)
+ */
+public class TreeRouting extends Routing {
+
+    private volatile Table table;
+
+    @Override
+    public List<Link> getPath(Node n1, Node n2) {
+        if (net == null || n1.equals(n2)) {
+            return Collections.emptyList();
+        }
+        Table t = table();
+        int[] path = t.path(n1, n2);
+        Link[] links = new Link[path.length];
+        for (int i = 0; i < path.length; i++) {
+            links[i] = t.links[index(path[i])];
+        }
+        return Collections.unmodifiableList(Arrays.asList(links));
+    }
+
+    @Override
+    public int getMaxBW(Node n1, Node n2) {
+        if (net == null || n1.equals(n2)) {
+            return Integer.MAX_VALUE;
+        }
+        return table().bottleneck(n1, n2);
+    }
+
+    @Override
+    public LinkDirection getLinkDirection(Node n1, Node n2, Link l) {
+        if (net == null || n1.equals(n2)) {
+            return LinkDirection.NONE;
+        }
+        Table t = table();
+        for (int step : t.path(n1, n2)) {
+            if (t.links[index(step)].equals(l)) {
+                //Same convention as DefaultRouting
+                return step >= 0 ? LinkDirection.DOWNLINK : LinkDirection.UPLINK;
+            }
+        }
+        return LinkDirection.NONE;
+    }
+
+    /**
+     * Get the index of a link inside an encoded path.
+     *
+     * @param step the encoded step
+     * @return the index of the link in {@link Network#getLinks()}
+     */
+    private static int index(int step) {
+        return step >= 0 ? step : ~step;
+    }
+
+    /**
+     * Get the routing table, compute it if needed.
+     * Concurrent threads may compute the table simultaneously, they will end up with equivalent tables.
+     *
+     * @return the up-to-date routing table
+     */
+    private Table table() {
+        Table t = table;
+        if (t == null || t.links.length != net.getLinks().size()) {
+            t = new Table(net);
+            table = t;
+        }
+        return t;
+    }
+
+    @Override
+    public Routing copy() {
+        TreeRouting clone = new TreeRouting();
+        clone.net = net; // Do not associate view->routing, only routing->view
+        clone.table = table; // Immutable, the links are shared among the copies
+        return clone;
+    }
+
+    /**
+     * The immutable routing table.
+     * Every switch and node is a vertex of the spanning tree computed by the breadth-first traversal.
+     * Each step of a path is the index of the crossed link when it is crossed from its element to
+     * its switch, the bitwise complement of the index otherwise.
+     */
+    private static final class Table {
+
+        private final Link[] links;
+
+        private final TIntIntHashMap nodes;
+
+        /**
+         * The step to go from each vertex to its parent. Meaningless for a root.
+         */
+        private final int[] up;
+
+        private final int[] parent;
+
+        private final int[] depth;
+
+        Table(Network net) {
+            links = net.getLinks().toArray(new Link[0]);
+            List<Switch> switches = net.getSwitches();
+            TIntIntHashMap sws = new TIntIntHashMap(switches.size(), 0.5f, -1, -1);
+            nodes = new TIntIntHashMap(links.length, 0.5f, -1, -1);
+            for (Switch s : switches) {
+                sws.put(s.id(), sws.size());
+            }
+            int nbVertices = sws.size();
+            for (Link l : links) {
+                if (l.getElement() instanceof Node && nodes.putIfAbsent(((Node) l.getElement()).id(), nbVertices) == -1) {
+                    nbVertices++;
+                }
+            }
+
+            //The adjacency lists, in a compressed form: the incident links of vertex v are in
+            //incident[offsets[v]] to incident[offsets[v + 1] - 1]
+            int[] sw = new int[links.length];
+            int[] elmt = new int[links.length];
+            int[] offsets = new int[nbVertices + 1];
+            for (int i = 0; i < links.length; i++) {
+                sw[i] = sws.get(links[i].getSwitch().id());
+                elmt[i] = vertex(sws, links[i].getElement());
+                offsets[sw[i] + 1]++;
+                offsets[elmt[i] + 1]++;
+            }
+            for (int v = 0; v < nbVertices; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] incident = new int[2 * links.length];
+            int[] fill = Arrays.copyOf(offsets, nbVertices);
+            for (int i = 0; i < links.length; i++) {
+                incident[fill[sw[i]]++] = i;
+                incident[fill[elmt[i]]++] = i;
+            }
+
+            up = new int[nbVertices];
+            parent = new int[nbVertices];
+            depth = new int[nbVertices];
+            Arrays.fill(parent, -1);
+            boolean[] visited = new boolean[nbVertices];
+            Deque<Integer> queue = new ArrayDeque<>();
+            //One tree per connected component, the first switch being the main root
+            for (int root = 0; root < nbVertices; root++) {
+                if (visited[root]) {
+                    continue;
+                }
+                visited[root] = true;
+                queue.add(root);
+                while (!queue.isEmpty()) {
+                    int v = queue.poll();
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int l = incident[k];
+                        boolean fromSwitch = sw[l] == v;
+                        int next = fromSwitch ? elmt[l] : sw[l];
+                        if (!visited[next]) {
+                            visited[next] = true;
+                            parent[next] = v;
+                            depth[next] = depth[v] + 1;
+                            //Going up from 'next' means reaching the switch when we came from it
+                            up[next] = fromSwitch ? l : ~l;
+                            queue.add(next);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int vertex(TIntIntHashMap sws, PhysicalElement pe) {
+            if (pe instanceof Node) {
+                return nodes.get(((Node) pe).id());
+            }
+            return sws.get(((Switch) pe).id());
+        }
+
+        /**
+         * Get the lowest common ancestor of two vertices.
+         *
+         * @return the vertex. {@code -1} if the vertices are not connected
+         */
+        private int ancestor(int u, int v) {
+            while (depth[u] > depth[v]) {
+                u = parent[u];
+            }
+            while (depth[v] > depth[u]) {
+                v = parent[v];
+            }
+            while (u != v) {
+                u = parent[u];
+                v = parent[v];
+                if (u < 0 || v < 0) {
+                    return -1;
+                }
+            }
+            return u;
+        }
+
+        /**
+         * Compute the encoded path between two nodes.
+         *
+         * @return the steps. An empty array if there is no path
+         */
+        int[] path(Node n1, Node n2) {
+            int src = nodes.get(n1.id());
+            int dst = nodes.get(n2.id());
+            if (src < 0 || dst < 0) {
+                return new int[0];
+            }
+            int lca = ancestor(src, dst);
+            if (lca < 0) {
+                return new int[0];
+            }
+            int[] path = new int[depth[src] + depth[dst] - 2 * depth[lca]];
+            int i = 0;
+            for (int v = src; v != lca; v = parent[v]) {
+                path[i++] = up[v];
+            }
+            //Going down, the links are crossed the other way
+            i = path.length - 1;
+            for (int v = dst; v != lca; v = parent[v]) {
+                path[i--] = ~up[v];
+            }
+            return path;
+        }
+
+        /**
+         * Compute the bottleneck bandwidth between two nodes.
+         *
+         * @return the bandwidth. {@link Integer#MAX_VALUE} if there is no path
+         */
+        int bottleneck(Node n1, Node n2) {
+            int src = nodes.get(n1.id());
+            int dst = nodes.get(n2.id());
+            int max = Integer.MAX_VALUE;
+            if (src < 0 || dst < 0) {
+                return max;
+            }
+            int lca = ancestor(src, dst);
+            if (lca < 0) {
+                return max;
+            }
+            for (int v = src; v != lca; v = parent[v]) {
+                max = Math.min(max, capacity(links[index(up[v])]));
+            }
+            for (int v = dst; v != lca; v = parent[v]) {
+                max = Math.min(max, capacity(links[index(up[v])]));
+            }
+            return max;
+        }
+
+        private static int capacity(Link l) {
+            int c = l.getCapacity();
+            Switch sw = l.getSwitch();
+            if (sw.getCapacity() >= 0 && sw.getCapacity() < c) {
+                //The >= 0 stays for historical reasons
+                c = sw.getCapacity();
+            }
+            return c;
+        }
+    }
+}
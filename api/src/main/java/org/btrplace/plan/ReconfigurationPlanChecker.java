@@ -19,6 +19,8 @@
 package org.btrplace.plan;
 
 import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
 import org.btrplace.model.constraint.SatConstraint;
 import org.btrplace.model.constraint.SatConstraintChecker;
 import org.btrplace.plan.event.Action;
@@ -31,16 +33,28 @@ import org.btrplace.plan.event.Event;
 import org.btrplace.plan.event.ForgeVM;
 import org.btrplace.plan.event.KillVM;
 import org.btrplace.plan.event.MigrateVM;
+import org.btrplace.plan.event.NodeEvent;
 import org.btrplace.plan.event.ResumeVM;
+import org.btrplace.plan.event.RunningVMPlacement;
 import org.btrplace.plan.event.ShutdownNode;
 import org.btrplace.plan.event.ShutdownVM;
 import org.btrplace.plan.event.SubstitutedVMEvent;
 import org.btrplace.plan.event.SuspendVM;
+import org.btrplace.plan.event.VMEvent;
 import org.btrplace.scheduler.UnconsistentSolutionException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Checker to verify if a reconfiguration plan satisfies a set of
@@ -52,6 +66,11 @@ import java.util.PriorityQueue;
  * <p>
  * Actions start and end moment are notified in the increasing order of their associated moment with
  * a priority given to the end moments.
+ * <p>
+ * The checkers that are {@link SatConstraintChecker#isLocal() local} are only notified
+ * about the actions and the events that involve the elements of their constraint.
+ * Independent groups of checkers can also be checked concurrently using {@link #setParallelism(int)}.
+ * The groups are formed so that the checkers watching a same element are checked together.
  *
  * @author Fabien Hermenier
  */
@@ -63,6 +82,30 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
     private static final TimedBasedActionComparator ENDS_CMP = new TimedBasedActionComparator(false, true);
     private List<SatConstraintChecker<?>> checkers;
 
+    /**
+     * The checkers that are notified for every action and event.
+     */
+    private List<SatConstraintChecker<?>> globals;
+
+    /**
+     * The local checkers, indexed by the elements of their constraint.
+     */
+    private Map<VM, List<SatConstraintChecker<?>>> byVM;
+
+    private Map<Node, List<SatConstraintChecker<?>>> byNode;
+
+    /**
+     * The registration order of each checker.
+     */
+    private Map<SatConstraintChecker<?>, Integer> rank;
+
+    private int parallelism = 1;
+
+    /**
+     * The pool to check the groups of checkers. {@code null} to rely on the common pool.
+     */
+    private ForkJoinPool executor;
+
     /**
      * Make a new instance.
      */
@@ -92,7 +135,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(Allocate a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -106,7 +149,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public Object visit(AllocateEvent a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (!c.consume(a)) {
                 return c.getConstraint();
             }
@@ -116,17 +159,23 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(SubstitutedVMEvent a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        List<SatConstraintChecker<?>> notified = dispatch(a);
+        for (SatConstraintChecker<?> c : notified) {
             if (!c.consume(a)) {
                 return c.getConstraint();
             }
         }
+        //The local checkers that were watching the old VM now watch the new one
+        List<SatConstraintChecker<?>> watchers = byVM == null ? null : byVM.get(a.getVM());
+        if (watchers != null) {
+            byVM.computeIfAbsent(a.getNewVM(), k -> new ArrayList<>()).addAll(watchers);
+        }
         return null;
     }
 
     @Override
     public SatConstraint visit(BootNode a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -141,7 +190,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(BootVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -156,7 +205,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(ForgeVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -171,7 +220,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(KillVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -185,7 +234,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public SatConstraint visit(MigrateVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -199,7 +248,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public Object visit(ResumeVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -213,7 +262,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public Object visit(ShutdownNode a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -227,7 +276,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public Object visit(ShutdownVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -241,7 +290,7 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
 
     @Override
     public Object visit(SuspendVM a) {
-        for (SatConstraintChecker<?> c : checkers) {
+        for (SatConstraintChecker<?> c : dispatch(a)) {
             if (startingEvent) {
                 if (!c.start(a)) {
                     return c.getConstraint();
@@ -263,8 +312,173 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
         if (checkers.isEmpty()) {
             return;
         }
+        if (parallelism > 1 && checkers.size() > 1) {
+            checkInParallel(p);
+            return;
+        }
+        replay(p);
+        Model mo = p.getResult();
+        if (mo == null) {
+            throw new UnconsistentSolutionException(p.getOrigin(), p, "The resulting reconfiguration plan is not applyable");
+        }
+        checkModel(mo, false);
+    }
+
+    /**
+     * Check the plan using groups of checkers that replay the plan concurrently.
+     * Each group gets its own sub-checker, so the checkers are never shared among threads.
+     * When several groups detect a violation, the one reported by the group
+     * having the lowest registration order is thrown.
+     *
+     * @param p the plan to check
+     * @throws SatConstraintViolationException if a violation is detected
+     */
+    private void checkInParallel(ReconfigurationPlan p) throws SatConstraintViolationException {
+        //Computed once as applying a plan is costly
+        Model res = p.getResult();
+        List<ReconfigurationPlanChecker> groups = new ArrayList<>();
+        for (List<SatConstraintChecker<?>> l : groups(parallelism)) {
+            ReconfigurationPlanChecker g = new ReconfigurationPlanChecker();
+            g.checkers.addAll(l);
+            groups.add(g);
+        }
+        ForkJoinPool pool = executor != null ? executor : ForkJoinPool.commonPool();
+        try {
+            List<Future<SatConstraintViolationException>> outcomes = new ArrayList<>(groups.size());
+            for (ReconfigurationPlanChecker g : groups) {
+                outcomes.add(pool.submit(() -> {
+                    try {
+                        g.replay(p);
+                        if (res != null) {
+                            g.checkModel(res, false);
+                        }
+                    } catch (SatConstraintViolationException ex) {
+                        return ex;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<SatConstraintViolationException> f : outcomes) {
+                SatConstraintViolationException ex = f.get();
+                if (ex != null) {
+                    throw ex;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        if (res == null) {
+            throw new UnconsistentSolutionException(p.getOrigin(), p, "The resulting reconfiguration plan is not applyable");
+        }
+    }
+
+    /**
+     * Split the checkers into groups that do not watch any common element.
+     * The local checkers that share a VM or a node through their constraint are connected, and each
+     * non-local checker is a component on its own. The components are then assigned, largest first,
+     * to the least loaded group. Inside a group, the checkers stay in their registration order.
+     *
+     * @param nb the maximum number of groups
+     * @return the non-empty groups, ordered by the registration order of their first checker
+     */
+    List<List<SatConstraintChecker<?>>> groups(int nb) {
+        //Union-find over the checkers, through the elements they watch
+        int[] parent = new int[checkers.size()];
+        Map<VM, Integer> vmOwner = new HashMap<>();
+        Map<Node, Integer> nodeOwner = new HashMap<>();
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            SatConstraintChecker<?> c = checkers.get(i);
+            if (!c.isLocal()) {
+                continue;
+            }
+            for (VM v : c.getConstraint().getInvolvedVMs()) {
+                Integer o = vmOwner.putIfAbsent(v, i);
+                if (o != null) {
+                    union(parent, i, o);
+                }
+            }
+            for (Node n : c.getConstraint().getInvolvedNodes()) {
+                Integer o = nodeOwner.putIfAbsent(n, i);
+                if (o != null) {
+                    union(parent, i, o);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> components = new HashMap<>();
+        for (int i = 0; i < parent.length; i++) {
+            components.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        }
+        List<List<Integer>> sorted = new ArrayList<>(components.values());
+        sorted.sort((a, b) -> b.size() != a.size() ? b.size() - a.size() : a.get(0) - b.get(0));
+
+        int nbGroups = Math.min(nb, sorted.size());
+        List<List<Integer>> groups = new ArrayList<>(nbGroups);
+        for (int i = 0; i < nbGroups; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (List<Integer> comp : sorted) {
+            List<Integer> to = groups.get(0);
+            for (List<Integer> g : groups) {
+                if (g.size() < to.size()) {
+                    to = g;
+                }
+            }
+            to.addAll(comp);
+        }
+        groups.forEach(Collections::sort);
+        groups.sort(Comparator.comparingInt(g -> g.get(0)));
+        List<List<SatConstraintChecker<?>>> res = new ArrayList<>(nbGroups);
+        for (List<Integer> g : groups) {
+            List<SatConstraintChecker<?>> l = new ArrayList<>(g.size());
+            for (int i : g) {
+                l.add(checkers.get(i));
+            }
+            res.add(l);
+        }
+        return res;
+    }
 
+    /**
+     * Merge the component of a checker with the one of another checker.
+     *
+     * @param parent the union-find forest
+     * @param i      the checker
+     * @param j      the other checker
+     */
+    private static void union(int[] parent, int i, int j) {
+        parent[find(parent, i)] = find(parent, j);
+    }
+
+    private static int find(int[] parent, int i) {
+        int r = i;
+        while (parent[r] != r) {
+            r = parent[r];
+        }
+        //Path compression
+        while (parent[i] != r) {
+            int next = parent[i];
+            parent[i] = r;
+            i = next;
+        }
+        return r;
+    }
+
+    /**
+     * Notify the checkers about the origin model and then about the actions and events of the plan.
+     *
+     * @param p the plan to replay
+     * @throws SatConstraintViolationException if a violation is detected
+     */
+    private void replay(ReconfigurationPlan p) throws SatConstraintViolationException {
         checkModel(p.getOrigin(), true);
+        index();
 
         if (!p.getActions().isEmpty()) {
             PriorityQueue<Action> starts = new PriorityQueue<>(p.getActions().size(), STARTS_CMP);
@@ -304,11 +518,134 @@ public class ReconfigurationPlanChecker implements ActionVisitor {
                 curMoment = Math.min(nextEnd, nextStart);
             }
         }
-        Model mo = p.getResult();
-        if (mo == null) {
-            throw new UnconsistentSolutionException(p.getOrigin(), p, "The resulting reconfiguration plan is not applyable");
+    }
+
+    /**
+     * Index the local checkers by the VMs and the nodes of their constraint.
+     * Made once the origin model has been notified as the checkers may
+     * have updated their elements.
+     */
+    private void index() {
+        globals = new ArrayList<>();
+        byVM = new HashMap<>();
+        byNode = new HashMap<>();
+        rank = new IdentityHashMap<>();
+        for (SatConstraintChecker<?> c : checkers) {
+            rank.put(c, rank.size());
+            if (!c.isLocal()) {
+                globals.add(c);
+                continue;
+            }
+            SatConstraint cstr = c.getConstraint();
+            for (VM v : cstr.getInvolvedVMs()) {
+                byVM.computeIfAbsent(v, k -> new ArrayList<>()).add(c);
+            }
+            for (Node n : cstr.getInvolvedNodes()) {
+                byNode.computeIfAbsent(n, k -> new ArrayList<>()).add(c);
+            }
         }
-        checkModel(mo, false);
+    }
+
+    /**
+     * Get the checkers to notify about an action or an event.
+     * These are the non-local checkers and the local checkers that
+     * are interested by one of the elements involved in the action or the event,
+     * sorted by registration order.
+     *
+     * @param e the action or the event
+     * @return a list of checkers
+     */
+    private List<SatConstraintChecker<?>> dispatch(Event e) {
+        if (globals == null || globals.size() == checkers.size()) {
+            return checkers;
+        }
+        Set<SatConstraintChecker<?>> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (e instanceof VMEvent) {
+            addAll(selected, byVM.get(((VMEvent) e).getVM()));
+        }
+        if (e instanceof NodeEvent) {
+            addAll(selected, byNode.get(((NodeEvent) e).getNode()));
+        }
+        if (e instanceof RunningVMPlacement) {
+            addAll(selected, byNode.get(((RunningVMPlacement) e).getDestinationNode()));
+        }
+        if (e instanceof MigrateVM) {
+            addAll(selected, byNode.get(((MigrateVM) e).getSourceNode()));
+        } else if (e instanceof ResumeVM) {
+            addAll(selected, byNode.get(((ResumeVM) e).getSourceNode()));
+        } else if (e instanceof SuspendVM) {
+            addAll(selected, byNode.get(((SuspendVM) e).getSourceNode()));
+            addAll(selected, byNode.get(((SuspendVM) e).getDestinationNode()));
+        } else if (e instanceof ShutdownVM) {
+            addAll(selected, byNode.get(((ShutdownVM) e).getNode()));
+        } else if (e instanceof KillVM) {
+            addAll(selected, byNode.get(((KillVM) e).getNode()));
+        } else if (e instanceof Allocate) {
+            addAll(selected, byNode.get(((Allocate) e).getHost()));
+        }
+        if (selected.isEmpty()) {
+            return globals;
+        }
+        List<SatConstraintChecker<?>> res = new ArrayList<>(globals.size() + selected.size());
+        res.addAll(globals);
+        res.addAll(selected);
+        res.sort(Comparator.comparingInt(rank::get));
+        return res;
+    }
+
+    private static void addAll(Set<SatConstraintChecker<?>> to, List<SatConstraintChecker<?>> from) {
+        if (from != null) {
+            to.addAll(from);
+        }
+    }
+
+    /**
+     * Set the number of groups of checkers that are checked concurrently.
+     * With a value greater than 1, the checkers are split into at most that number of
+     * groups, each replaying the plan in its own task. The checkers watching a same element
+     * through their constraint are in a same group. Other checkers of different
+     * groups must not share any state.
+     * With multiple violations, the reported one may differ from a sequential check.
+     *
+     * @param p the parallelism level. Must be strictly positive
+     * @return the current checker
+     */
+    public ReconfigurationPlanChecker setParallelism(int p) {
+        if (p < 1) {
+            throw new IllegalArgumentException("The parallelism level must be strictly positive");
+        }
+        parallelism = p;
+        return this;
+    }
+
+    /**
+     * Get the number of groups of checkers that are checked concurrently.
+     *
+     * @return a strictly positive value. {@code 1} by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the pool that checks the groups of checkers concurrently.
+     * The pool is never shut down by the checker.
+     *
+     * @param p the pool to use. {@code null} to rely on {@link ForkJoinPool#commonPool()}
+     * @return the current checker
+     */
+    public ReconfigurationPlanChecker setExecutor(ForkJoinPool p) {
+        executor = p;
+        return this;
+    }
+
+    /**
+     * Get the pool that checks the groups of checkers concurrently.
+     *
+     * @return the pool. {@code null} if the common pool is used
+     */
+    public ForkJoinPool getExecutor() {
+        return executor;
     }
 
     private void visitAndThrowOnViolation(Action a) throws SatConstraintViolationException {
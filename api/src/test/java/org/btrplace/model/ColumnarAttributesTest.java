@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2016 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link ColumnarAttributes}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ColumnarAttributesTest {
+
+    private static Model mo = new DefaultModel();
+    private static List<VM> vms = Util.newVMs(mo, 10);
+    private static List<Node> nodes = Util.newNodes(mo, 10);
+
+    @Test
+    public void testInstantiation() {
+        Attributes attrs = new ColumnarAttributes();
+        Assert.assertFalse(attrs.toString().contains("null"));
+        Assert.assertTrue(attrs.getDefined().isEmpty());
+    }
+
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testPutAndGetString() {
+        Attributes attrs = new ColumnarAttributes();
+
+        Assert.assertFalse(attrs.put(vms.get(0), "foo", "bar"));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", ""), "bar");
+        Assert.assertTrue(attrs.put(vms.get(0), "foo", "baz"));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", ""), "baz");
+
+        Assert.assertEquals(attrs.get(vms.get(0), "__", "++"), "++");
+    }
+
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testPutAndGetDouble() {
+        Attributes attrs = new ColumnarAttributes();
+
+        Assert.assertFalse(attrs.put(vms.get(0), "foo", 17.3));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", 8.5), 17.3);
+        Assert.assertEquals(attrs.get(vms.get(0), "fiz", 8.5), 8.5);
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testPutAndGetBoolean() {
+        Attributes attrs = new ColumnarAttributes();
+
+        Assert.assertFalse(attrs.put(vms.get(0), "foo", true));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", false), true);
+        Assert.assertTrue(attrs.put(vms.get(0), "foo", false));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", true), false);
+        Assert.assertEquals(attrs.get(vms.get(0), "__", true), true);
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testCastAndPut() {
+        ColumnarAttributes attrs = new ColumnarAttributes();
+
+        attrs.castAndPut(vms.get(0), "foo", "foo");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), String.class);
+        attrs.castAndPut(vms.get(0), "foo", "true");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), Boolean.class);
+
+        attrs.castAndPut(vms.get(0), "foo", "false");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), Boolean.class);
+
+        attrs.castAndPut(vms.get(0), "foo", "True");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), Boolean.class);
+
+        attrs.castAndPut(vms.get(0), "foo", "135");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), Integer.class);
+
+        attrs.castAndPut(vms.get(0), "foo", "13.56");
+        Assert.assertEquals(attrs.get(vms.get(0), "foo").getClass(), Double.class);
+    }
+
+    @Test(dependsOnMethods = {"testPutAndGetString", "testInstantiation"})
+    public void testIsSet() {
+        Attributes attrs = new ColumnarAttributes();
+        Assert.assertFalse(attrs.isSet(vms.get(0), "foo"));
+        attrs.put(vms.get(0), "foo", "bar");
+        Assert.assertTrue(attrs.isSet(vms.get(0), "foo"));
+
+    }
+
+    @Test(dependsOnMethods = {"testPutAndGetString", "testInstantiation"})
+    public void testUnset() {
+        Attributes attrs = new ColumnarAttributes();
+
+        Assert.assertFalse(attrs.unset(vms.get(0), "foo"));
+        attrs.put(vms.get(0), "foo", "bar");
+        Assert.assertTrue(attrs.unset(vms.get(0), "foo"));
+        Assert.assertFalse(attrs.isSet(vms.get(0), "foo"));
+        Assert.assertFalse(attrs.unset(vms.get(0), "foo"));
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation", "testUnset"})
+    public void testClone() {
+        Attributes attrs = new ColumnarAttributes();
+        List<Node> l = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Node u = mo.newNode();
+            attrs.put(u, Integer.toString(i), i);
+            l.add(u);
+        }
+        Attributes attrs2 = attrs.copy();
+
+        attrs.unset(l.get(0), "0");
+        Assert.assertEquals(attrs2.get(l.get(0), "0", -1), 0);
+
+        attrs2.unset(l.get(1), "1");
+        Assert.assertEquals(attrs.get(l.get(1), "1", -2), 1);
+    }
+
+    @Test(dependsOnMethods = {"testClone"})
+    public void testCopyOnWrite() {
+        Attributes attrs = new ColumnarAttributes();
+        attrs.put(nodes.get(0), "foo", 1);
+        attrs.put(vms.get(0), "bar", "x");
+        Attributes attrs2 = attrs.copy();
+        Attributes attrs3 = attrs2.copy();
+
+        attrs2.put(nodes.get(0), "foo", 2);
+        attrs2.put(nodes.get(1), "foo", 3);
+        attrs.clear(vms.get(0));
+        attrs3.put(vms.get(0), "baz", true);
+
+        Assert.assertEquals(attrs.get(nodes.get(0), "foo", -1), 1);
+        Assert.assertFalse(attrs.isSet(nodes.get(1), "foo"));
+        Assert.assertFalse(attrs.isSet(vms.get(0), "bar"));
+        Assert.assertEquals(attrs2.get(nodes.get(0), "foo", -1), 2);
+        Assert.assertEquals(attrs2.get(vms.get(0), "bar", ""), "x");
+        Assert.assertFalse(attrs2.isSet(vms.get(0), "baz"));
+        Assert.assertEquals(attrs3.get(nodes.get(0), "foo", -1), 1);
+        Assert.assertEquals(attrs3.getKeys(vms.get(0)).size(), 2);
+
+        //Still modifiable in place after the first copy
+        attrs2.put(nodes.get(0), "foo", 4);
+        Assert.assertEquals(attrs2.get(nodes.get(0), "foo", -1), 4);
+        Assert.assertEquals(attrs3.get(nodes.get(0), "foo", -1), 1);
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation", "testUnset", "testClone"})
+    public void testEqualsHashCode() {
+        Attributes attrs = new ColumnarAttributes();
+        for (int i = 0; i < 5; i++) {
+            attrs.put(nodes.get(0), Integer.toString(i), i);
+            attrs.put(vms.get(0), Integer.toString(i), i);
+        }
+        Assert.assertTrue(attrs.equals(attrs));
+        Attributes attrs2 = attrs.copy();
+        Assert.assertTrue(attrs2.equals(attrs));
+        Assert.assertTrue(attrs.equals(attrs));
+        Assert.assertEquals(attrs.hashCode(), attrs2.hashCode());
+        attrs.unset(nodes.get(0), "0");
+        Assert.assertFalse(attrs2.equals(attrs));
+        Assert.assertFalse(attrs.equals(attrs2));
+        Assert.assertNotSame(attrs.hashCode(), attrs2.hashCode());
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testClear() {
+        Attributes attrs = new ColumnarAttributes();
+        for (int i = 0; i < 5; i++) {
+            attrs.put(nodes.get(i), Integer.toString(i), i);
+            attrs.put(vms.get(i), Integer.toString(i), i);
+        }
+        attrs.clear();
+        Assert.assertTrue(attrs.getDefined().isEmpty());
+        attrs.put(nodes.get(0), "foo", true);
+        attrs.put(vms.get(0), "bar", true);
+        attrs.clear(nodes.get(0));
+        Assert.assertTrue(attrs.isSet(vms.get(0), "bar"));
+        Assert.assertFalse(attrs.isSet(nodes.get(0), "foo"));
+        attrs.clear(vms.get(0));
+        Assert.assertFalse(attrs.isSet(vms.get(0), "bar"));
+
+    }
+
+    @Test
+    public void testRevision() {
+        Attributes attrs = new ColumnarAttributes();
+        long r = attrs.getRevision();
+        Assert.assertTrue(r >= 0);
+        attrs.put(vms.get(0), "foo", 1);
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.get(vms.get(0), "foo", 0);
+        Assert.assertFalse(attrs.unset(vms.get(0), "bar"));
+        Assert.assertEquals(attrs.getRevision(), r);
+        Assert.assertTrue(attrs.unset(vms.get(0), "foo"));
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.clear(nodes.get(0));
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.clear();
+        Assert.assertTrue(attrs.getRevision() > r);
+    }
+
+    @Test
+    public void testGetKeys() {
+        Attributes attrs = new ColumnarAttributes();
+        VM u = vms.get(0);
+        attrs.put(u, "foo", 1);
+        attrs.put(u, "bar", 1);
+        Set<String> s = attrs.getKeys(u);
+        Assert.assertEquals(s.size(), 2);
+        Assert.assertTrue(s.containsAll(Arrays.asList("foo", "bar")));
+        Assert.assertEquals(attrs.getKeys(mo.newVM()).size(), 0);
+        Assert.assertEquals(attrs.getKeys(mo.newNode()).size(), 0);
+    }
+
+    @Test
+    public void testColumns() {
+        Attributes attrs = new ColumnarAttributes();
+        VM v = new VM(1000);
+        //Mixed types in a column
+        attrs.put(vms.get(0), "foo", 3);
+        attrs.put(vms.get(1), "foo", 2.5);
+        attrs.put(v, "foo", "bar");
+        attrs.put(nodes.get(0), "foo", true);
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", 0), 3);
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", 0.0), 3.0);
+        Assert.assertEquals(attrs.get(vms.get(1), "foo", 0.0), 2.5);
+        Assert.assertEquals(attrs.get(v, "foo", ""), "bar");
+        Assert.assertTrue(attrs.get(nodes.get(0), "foo", false));
+        Assert.assertFalse(attrs.isSet(nodes.get(1), "foo"));
+        Assert.assertFalse(attrs.isSet(vms.get(2), "foo"));
+        Assert.assertEquals(attrs.getDefined().size(), 4);
+
+        //Type change
+        Assert.assertTrue(attrs.put(v, "foo", 7));
+        Assert.assertEquals(attrs.get(v, "foo"), 7);
+        Assert.assertTrue(attrs.put(vms.get(0), "foo", false));
+        Assert.assertEquals(attrs.get(vms.get(0), "foo"), false);
+
+        //Same content as the default implementation
+        Attributes def = new DefaultAttributes();
+        for (Element e : attrs.getDefined()) {
+            for (String k : attrs.getKeys(e)) {
+                def.castAndPut(e, k, attrs.get(e, k).toString());
+            }
+        }
+        for (Element e : def.getDefined()) {
+            Assert.assertEquals(attrs.getKeys(e), def.getKeys(e));
+            for (String k : def.getKeys(e)) {
+                Assert.assertEquals(attrs.get(e, k), def.get(e, k));
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedCopyOnWrite() {
+        Attributes attrs = new ColumnarAttributes();
+        //Sparse identifiers, over several chunks
+        for (int i = 0; i < 5000; i += 7) {
+            attrs.put(new VM(i), "foo", i);
+        }
+        Attributes cpy = attrs.copy();
+        Assert.assertEquals(cpy, attrs);
+        Assert.assertEquals(cpy.hashCode(), attrs.hashCode());
+
+        cpy.put(new VM(7), "foo", -1);
+        cpy.unset(new VM(4998), "foo");
+        for (int i = 0; i < 5000; i += 7) {
+            Assert.assertEquals(attrs.get(new VM(i), "foo", -2), i);
+        }
+        Assert.assertEquals(cpy.get(new VM(7), "foo", -2), -1);
+        Assert.assertFalse(cpy.isSet(new VM(4998), "foo"));
+        Assert.assertEquals(cpy.getDefined().size(), attrs.getDefined().size() - 1);
+        Assert.assertNotEquals(cpy, attrs);
+
+        //The equality only depends on the values, not on the history
+        cpy.put(new VM(7), "foo", 7);
+        cpy.put(new VM(4998), "foo", 4998);
+        Assert.assertEquals(cpy, attrs);
+        Assert.assertEquals(cpy.hashCode(), attrs.hashCode());
+        cpy.put(new VM(10000), "bar", true);
+        cpy.unset(new VM(10000), "bar");
+        Assert.assertEquals(cpy, attrs);
+        Assert.assertEquals(cpy.getKeys(new VM(10000)).size(), 0);
+    }
+
+    @Test
+    public void testCopyLeavesSourceUntouched() throws Exception {
+        Attributes attrs = new ColumnarAttributes();
+        attrs.put(vms.get(0), "foo", 1);
+        long rev = attrs.getRevision();
+        String str = attrs.toString();
+        List<Attributes> copies = Collections.synchronizedList(new ArrayList<>());
+        Thread[] ts = new Thread[4];
+        for (int i = 0; i < ts.length; i++) {
+            int x = i;
+            ts[i] = new Thread(() -> {
+                Attributes cpy = attrs.copy();
+                cpy.put(vms.get(0), "foo", x + 10);
+                copies.add(cpy);
+            });
+            ts[i].start();
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        Assert.assertEquals(attrs.getRevision(), rev);
+        Assert.assertEquals(attrs.toString(), str);
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", -1), 1);
+        Set<Integer> values = new HashSet<>();
+        for (Attributes cpy : copies) {
+            values.add(cpy.get(vms.get(0), "foo", -1));
+        }
+        Assert.assertEquals(values, new HashSet<>(Arrays.asList(10, 11, 12, 13)));
+        //The source is still modifiable, without altering the copies
+        attrs.put(vms.get(0), "foo", 2);
+        Assert.assertEquals(attrs.get(vms.get(0), "foo", -1), 2);
+        for (Attributes cpy : copies) {
+            Assert.assertTrue(cpy.get(vms.get(0), "foo", -1) >= 10);
+        }
+    }
+}
@@ -138,6 +138,62 @@ public class DefaultAttributesTest {
         Assert.assertEquals(attrs.get(l.get(1), "1", -2), 1);
     }
 
+    @Test(dependsOnMethods = {"testClone"})
+    public void testCopyOnWrite() {
+        Attributes attrs = new DefaultAttributes();
+        attrs.put(nodes.get(0), "foo", 1);
+        attrs.put(vms.get(0), "bar", "x");
+        Attributes attrs2 = attrs.copy();
+        Attributes attrs3 = attrs2.copy();
+
+        attrs2.put(nodes.get(0), "foo", 2);
+        attrs2.put(nodes.get(1), "foo", 3);
+        attrs.clear(vms.get(0));
+        attrs3.put(vms.get(0), "baz", true);
+
+        Assert.assertEquals(attrs.get(nodes.get(0), "foo", -1), 1);
+        Assert.assertFalse(attrs.isSet(nodes.get(1), "foo"));
+        Assert.assertFalse(attrs.isSet(vms.get(0), "bar"));
+        Assert.assertEquals(attrs2.get(nodes.get(0), "foo", -1), 2);
+        Assert.assertEquals(attrs2.get(vms.get(0), "bar", ""), "x");
+        Assert.assertFalse(attrs2.isSet(vms.get(0), "baz"));
+        Assert.assertEquals(attrs3.get(nodes.get(0), "foo", -1), 1);
+        Assert.assertEquals(attrs3.getKeys(vms.get(0)).size(), 2);
+
+        //Still modifiable in place after the first copy
+        attrs2.put(nodes.get(0), "foo", 4);
+        Assert.assertEquals(attrs2.get(nodes.get(0), "foo", -1), 4);
+        Assert.assertEquals(attrs3.get(nodes.get(0), "foo", -1), 1);
+    }
+
+    @Test(dependsOnMethods = {"testCopyOnWrite"})
+    public void testCopyOnWriteManyElements() {
+        List<Node> l = Util.newNodes(new DefaultModel(), 1000);
+        Attributes attrs = new DefaultAttributes();
+        for (int i = 0; i < l.size(); i++) {
+            attrs.put(l.get(i), "foo", i);
+        }
+        Attributes attrs2 = attrs.copy();
+        for (int i = 0; i < l.size(); i += 2) {
+            attrs2.put(l.get(i), "foo", -i);
+        }
+        attrs2.clear(l.get(1));
+        for (int i = 0; i < l.size(); i++) {
+            Assert.assertEquals(attrs.get(l.get(i), "foo", 0), i);
+        }
+        Assert.assertEquals(attrs2.get(l.get(4), "foo", 0), -4);
+        Assert.assertEquals(attrs2.get(l.get(5), "foo", 0), 5);
+        Assert.assertEquals(attrs.getDefined().size(), 1000);
+        Assert.assertEquals(attrs2.getDefined().size(), 999);
+        Assert.assertNotEquals(attrs, attrs2);
+        attrs2.put(l.get(1), "foo", 1);
+        for (int i = 0; i < l.size(); i += 2) {
+            attrs2.put(l.get(i), "foo", i);
+        }
+        Assert.assertEquals(attrs, attrs2);
+        Assert.assertEquals(attrs.hashCode(), attrs2.hashCode());
+    }
+
     @Test(dependsOnMethods = {"testInstantiation", "testUnset", "testClone"})
     public void testEqualsHashCode() {
         Attributes attrs = new DefaultAttributes();
@@ -175,6 +231,27 @@ public class DefaultAttributesTest {
 
     }
 
+    @Test
+    public void testRevision() {
+        Attributes attrs = new DefaultAttributes();
+        long r = attrs.getRevision();
+        Assert.assertTrue(r >= 0);
+        attrs.put(vms.get(0), "foo", 1);
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.get(vms.get(0), "foo", 0);
+        Assert.assertFalse(attrs.unset(vms.get(0), "bar"));
+        Assert.assertEquals(attrs.getRevision(), r);
+        Assert.assertTrue(attrs.unset(vms.get(0), "foo"));
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.clear(nodes.get(0));
+        Assert.assertTrue(attrs.getRevision() > r);
+        r = attrs.getRevision();
+        attrs.clear();
+        Assert.assertTrue(attrs.getRevision() > r);
+    }
+
     @Test
     public void testGetKeys() {
         Attributes attrs = new DefaultAttributes();
@@ -187,4 +264,13 @@ public class DefaultAttributesTest {
         Assert.assertEquals(attrs.getKeys(mo.newVM()).size(), 0);
         Assert.assertEquals(attrs.getKeys(mo.newNode()).size(), 0);
     }
+
+    @Test(expectedExceptions = {UnsupportedOperationException.class})
+    public void testGetKeysIsReadOnly() {
+        Attributes attrs = new DefaultAttributes();
+        VM u = vms.get(0);
+        attrs.put(u, "foo", 1);
+        Attributes cpy = attrs.copy();
+        cpy.getKeys(u).remove("foo");
+    }
 }
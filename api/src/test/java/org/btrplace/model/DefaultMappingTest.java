@@ -471,6 +471,45 @@ public class DefaultMappingTest {
 
     }
 
+    @Test(dependsOnMethods = {"testClone"})
+    public void testCopyOnWrite() {
+        Mapping c1 = new DefaultMapping();
+        c1.addOnlineNode(ns.get(0));
+        c1.addOnlineNode(ns.get(1));
+        c1.addRunningVM(vms.get(0), ns.get(0));
+        c1.addSleepingVM(vms.get(1), ns.get(0));
+        c1.addReadyVM(vms.get(2));
+        Set<VM> on0 = c1.getRunningVMs(ns.get(0));
+
+        Mapping c2 = c1.copy();
+        Mapping ref = new DefaultMapping(c1);
+        //Modify the copy, the original is unchanged
+        c2.addRunningVM(vms.get(0), ns.get(1));
+        c2.addRunningVM(vms.get(2), ns.get(0));
+        c2.addOfflineNode(ns.get(2));
+        Assert.assertEquals(c1, ref);
+        Assert.assertEquals(c1.getVMLocation(vms.get(0)), ns.get(0));
+        Assert.assertTrue(c1.isReady(vms.get(2)));
+        Assert.assertFalse(c1.contains(ns.get(2)));
+        Assert.assertEquals(c2.getVMLocation(vms.get(0)), ns.get(1));
+
+        //Modify the original, the copy is unchanged and the views stay alive
+        Mapping ref2 = new DefaultMapping(c2);
+        c1.remove(vms.get(0));
+        c1.addReadyVM(vms.get(1));
+        Assert.assertTrue(on0.isEmpty());
+        Assert.assertEquals(c2, ref2);
+        Assert.assertTrue(c2.isSleeping(vms.get(1)));
+
+        //Chained copies
+        Mapping c3 = c2.copy();
+        Mapping c4 = c3.copy();
+        c4.clearNode(ns.get(0));
+        Assert.assertEquals(c3, ref2);
+        Assert.assertEquals(c2, ref2);
+        Assert.assertEquals(c4.getNbVMs(), 1);
+    }
+
     @Test(dependsOnMethods = {"testClone"})
     public void testEquals() {
         Mapping c1 = new DefaultMapping();
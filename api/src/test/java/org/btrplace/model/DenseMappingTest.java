@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link DenseMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DenseMappingTest {
+
+    private static List<VM> vms = Util.newVMs(10);
+    private static List<Node> ns = Util.newNodes(10);
+
+    @Test
+    public void testInstantiation() {
+        Mapping c = new DenseMapping();
+        Assert.assertTrue(c.getAllNodes().isEmpty());
+        Assert.assertTrue(c.getOnlineNodes().isEmpty());
+        Assert.assertTrue(c.getOfflineNodes().isEmpty());
+        Assert.assertTrue(c.getAllVMs().isEmpty());
+        Assert.assertTrue(c.getReadyVMs().isEmpty());
+        Assert.assertTrue(c.getRunningVMs(new Node(100)).isEmpty());
+        Assert.assertTrue(c.getSleepingVMs(new Node(100)).isEmpty());
+        Assert.assertNull(c.getVMLocation(new VM(100)));
+        Assert.assertFalse(c.remove(new Node(1)));
+        Assert.assertFalse(c.remove(new VM(1)));
+        Assert.assertFalse(c.contains(new Node(1)));
+        Assert.assertFalse(c.contains(new VM(1)));
+        Assert.assertEquals(c.getNbNodes(), 0);
+        Assert.assertEquals(c.getNbVMs(), 0);
+        Assert.assertNotNull(c.toString());
+    }
+
+    @Test
+    public void testStateTransitions() {
+        Mapping c = new DenseMapping(1, 1);
+        Node n0 = ns.get(0);
+        Node n1 = ns.get(1);
+        VM v = vms.get(5);
+
+        //Not online
+        Assert.assertFalse(c.addRunningVM(v, n0));
+        Assert.assertFalse(c.addSleepingVM(v, n0));
+        Assert.assertFalse(c.contains(v));
+
+        Assert.assertTrue(c.addOnlineNode(n0));
+        Assert.assertTrue(c.addOnlineNode(n1));
+        Assert.assertTrue(c.addReadyVM(v));
+        Assert.assertTrue(c.isReady(v));
+        Assert.assertNull(c.getVMLocation(v));
+
+        Assert.assertTrue(c.addRunningVM(v, n0));
+        Assert.assertTrue(c.isRunning(v));
+        Assert.assertEquals(c.getVMLocation(v), n0);
+        Assert.assertTrue(c.getRunningVMs(n0).contains(v));
+        Assert.assertTrue(c.getReadyVMs().isEmpty());
+
+        Assert.assertTrue(c.addSleepingVM(v, n1));
+        Assert.assertTrue(c.isSleeping(v));
+        Assert.assertEquals(c.getVMLocation(v), n1);
+        Assert.assertTrue(c.getRunningVMs(n0).isEmpty());
+        Assert.assertEquals(c.getSleepingVMs(n1).size(), 1);
+        Assert.assertEquals(c.getNbVMs(), 1);
+
+        //Cannot turn off or remove a node that is hosting VMs
+        Assert.assertFalse(c.addOfflineNode(n1));
+        Assert.assertFalse(c.remove(n1));
+        Assert.assertTrue(c.addOfflineNode(n0));
+        Assert.assertTrue(c.isOffline(n0));
+
+        Assert.assertTrue(c.remove(v));
+        Assert.assertFalse(c.contains(v));
+        Assert.assertEquals(c.getNbVMs(), 0);
+        Assert.assertTrue(c.remove(n1));
+        Assert.assertEquals(c.getNbNodes(), 1);
+    }
+
+    @Test
+    public void testLiveViews() {
+        Mapping c = new DenseMapping();
+        Set<Node> on = c.getOnlineNodes();
+        Set<VM> ready = c.getReadyVMs();
+        c.addOnlineNode(ns.get(2));
+        c.addReadyVM(vms.get(3));
+        c.addReadyVM(vms.get(1));
+        Assert.assertEquals(on.size(), 1);
+        Assert.assertTrue(on.contains(ns.get(2)));
+        //Insertion order is kept
+        Iterator<VM> ite = ready.iterator();
+        Assert.assertEquals(ite.next(), vms.get(3));
+        Assert.assertEquals(ite.next(), vms.get(1));
+        Assert.assertFalse(ite.hasNext());
+        Set<VM> running = c.getRunningVMs(ns.get(2));
+        c.addRunningVM(vms.get(3), ns.get(2));
+        Assert.assertEquals(running.size(), 1);
+        Assert.assertEquals(ready.size(), 1);
+    }
+
+    @Test
+    public void testGrowth() {
+        Mapping c = new DenseMapping(1, 1);
+        Node n = new Node(500);
+        VM v = new VM(1000);
+        c.addOnlineNode(n);
+        c.addRunningVM(v, n);
+        Assert.assertEquals(c.getVMLocation(v), n);
+        Assert.assertEquals(c.getRunningVMs(n).size(), 1);
+        Assert.assertTrue(c.getRunningVMs().contains(v));
+    }
+
+    @Test
+    public void testClear() {
+        Mapping c = new DenseMapping();
+        c.addOnlineNode(ns.get(0));
+        c.addOnlineNode(ns.get(1));
+        c.addRunningVM(vms.get(0), ns.get(0));
+        c.addSleepingVM(vms.get(1), ns.get(0));
+        c.addRunningVM(vms.get(2), ns.get(1));
+        c.addReadyVM(vms.get(3));
+
+        c.clearNode(ns.get(0));
+        Assert.assertEquals(c.getNbVMs(), 2);
+        Assert.assertFalse(c.contains(vms.get(0)));
+        Assert.assertFalse(c.contains(vms.get(1)));
+
+        c.clearAllVMs();
+        Assert.assertEquals(c.getNbVMs(), 0);
+        Assert.assertEquals(c.getNbNodes(), 2);
+        Assert.assertTrue(c.getRunningVMs(ns.get(1)).isEmpty());
+
+        c.clear();
+        Assert.assertEquals(c.getNbNodes(), 0);
+        Assert.assertTrue(c.getAllNodes().isEmpty());
+    }
+
+    @Test
+    public void testCopy() {
+        Mapping c = new DenseMapping();
+        c.addOnlineNode(ns.get(0));
+        c.addOfflineNode(ns.get(1));
+        c.addRunningVM(vms.get(0), ns.get(0));
+        c.addSleepingVM(vms.get(1), ns.get(0));
+        c.addReadyVM(vms.get(2));
+
+        Mapping cp = c.copy();
+        Assert.assertTrue(cp instanceof DenseMapping);
+        Assert.assertEquals(cp, c);
+        Assert.assertEquals(cp.hashCode(), c.hashCode());
+        Assert.assertEquals(new DefaultMapping(c), c);
+        Assert.assertEquals(new DenseMapping(c), c);
+
+        //Independent copies
+        cp.addRunningVM(vms.get(2), ns.get(0));
+        Assert.assertTrue(c.isReady(vms.get(2)));
+        Assert.assertNotEquals(cp, c);
+    }
+
+    /**
+     * Apply the same random operations on a {@link DefaultMapping} and a {@link DenseMapping}
+     * and check they always agree.
+     */
+    @Test
+    public void testEquivalence() {
+        Random rnd = new Random(12);
+        List<VM> vs = new ArrayList<>(Util.newVMs(30));
+        List<Node> nodes = new ArrayList<>(Util.newNodes(8));
+        Mapping ref = new DefaultMapping();
+        Mapping dense = new DenseMapping(2, 2);
+        for (int i = 0; i < 5000; i++) {
+            VM v = vs.get(rnd.nextInt(vs.size()));
+            Node n = nodes.get(rnd.nextInt(nodes.size()));
+            switch (rnd.nextInt(8)) {
+                case 0:
+                    Assert.assertEquals(dense.addOnlineNode(n), ref.addOnlineNode(n));
+                    break;
+                case 1:
+                    Assert.assertEquals(dense.addOfflineNode(n), ref.addOfflineNode(n));
+                    break;
+                case 2:
+                    Assert.assertEquals(dense.addRunningVM(v, n), ref.addRunningVM(v, n));
+                    break;
+                case 3:
+                    Assert.assertEquals(dense.addSleepingVM(v, n), ref.addSleepingVM(v, n));
+                    break;
+                case 4:
+                    Assert.assertEquals(dense.addReadyVM(v), ref.addReadyVM(v));
+                    break;
+                case 5:
+                    Assert.assertEquals(dense.remove(v), ref.remove(v));
+                    break;
+                case 6:
+                    Assert.assertEquals(dense.remove(n), ref.remove(n));
+                    break;
+                default:
+                    Assert.assertEquals(dense.getVMLocation(v), ref.getVMLocation(v));
+                    Assert.assertEquals(dense.isRunning(v), ref.isRunning(v));
+                    Assert.assertEquals(dense.isSleeping(v), ref.isSleeping(v));
+                    Assert.assertEquals(dense.isReady(v), ref.isReady(v));
+            }
+            Assert.assertEquals(dense.getNbVMs(), ref.getNbVMs());
+            Assert.assertEquals(dense.getNbNodes(), ref.getNbNodes());
+        }
+        Assert.assertEquals(dense, ref);
+        Assert.assertEquals(ref, dense);
+        Assert.assertEquals(dense.getAllVMs(), ref.getAllVMs());
+        Assert.assertEquals(dense.getRunningVMs(), ref.getRunningVMs());
+        Assert.assertEquals(dense.getSleepingVMs(), ref.getSleepingVMs());
+    }
+
+    @Test
+    public void testInModel() {
+        Model mo = new DefaultModel(new DefaultElementBuilder(), new DenseMapping());
+        Node n = mo.newNode();
+        VM v = mo.newVM();
+        mo.getMapping().addOnlineNode(n);
+        mo.getMapping().addRunningVM(v, n);
+        Model cp = mo.copy();
+        Assert.assertTrue(cp.getMapping() instanceof DenseMapping);
+        Assert.assertEquals(cp, mo);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import org.btrplace.model.view.ShareableResource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ModelDelta}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaTest {
+
+    private static Model makeModel() {
+        Model mo = new DefaultModel();
+        Node n0 = mo.newNode();
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        VM v0 = mo.newVM();
+        VM v1 = mo.newVM();
+        VM v2 = mo.newVM();
+        VM v3 = mo.newVM();
+        mo.getMapping().on(n0, n1).off(n2).run(n0, v0, v1).run(n1, v2).ready(v3);
+        ShareableResource cpu = new ShareableResource("cpu", 4, 1);
+        cpu.setConsumption(v0, 2).setCapacity(n1, 8);
+        mo.attach(cpu);
+        mo.getAttributes().put(v0, "template", "small");
+        mo.getAttributes().put(n0, "boot", 7);
+        return mo;
+    }
+
+    @Test
+    public void testRecordAndApply() {
+        Model mo = makeModel();
+        VM v0 = new VM(0);
+        VM v4 = new VM(4);
+        Node n0 = new Node(0);
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        ModelDelta d = new ModelDelta()
+                .addOnlineNode(n2)
+                .addRunningVM(v0, n2)
+                .addSleepingVM(v4, n1)
+                .setConsumption("cpu", v4, 3)
+                .unsetCapacity("cpu", n1)
+                .put(v0, "template", "large")
+                .put(n0, "cost", 1.5)
+                .unset(n0, "boot");
+        Assert.assertEquals(d.size(), 8);
+        Assert.assertFalse(d.isEmpty());
+        Assert.assertTrue(d.apply(mo));
+
+        Mapping m = mo.getMapping();
+        Assert.assertTrue(m.isOnline(n2));
+        Assert.assertEquals(m.getVMLocation(v0), n2);
+        Assert.assertTrue(m.isSleeping(v4));
+        Assert.assertTrue(mo.contains(v4));
+        ShareableResource cpu = ShareableResource.get(mo, "cpu");
+        Assert.assertEquals(cpu.getConsumption(v4), 3);
+        Assert.assertFalse(cpu.capacityDefined(n1));
+        Assert.assertEquals(mo.getAttributes().get(v0, "template", ""), "large");
+        Assert.assertEquals(mo.getAttributes().get(n0, "cost", 0d), 1.5);
+        Assert.assertFalse(mo.getAttributes().isSet(n0, "boot"));
+    }
+
+    @Test
+    public void testApplyFailure() {
+        Model mo = makeModel();
+        Node n2 = new Node(2);
+        ModelDelta d = new ModelDelta()
+                .remove(new VM(3))
+                .addRunningVM(new VM(0), n2) //n2 is offline
+                .remove(new VM(1));
+        List<ModelDelta.Change> applied = new ArrayList<>();
+        Model ref = mo.copy();
+        Assert.assertFalse(d.apply(mo, (m, c) -> applied.add(c)));
+        //Nothing was applied
+        Assert.assertTrue(applied.isEmpty());
+        Assert.assertTrue(mo.getMapping().contains(new VM(3)));
+        Assert.assertTrue(mo.getMapping().contains(new VM(1)));
+        Assert.assertEquals(mo, ref);
+
+        //A new element is not declared when the delta fails
+        Assert.assertFalse(new ModelDelta().addReadyVM(new VM(10)).setConsumption("mem", new VM(0), 5).apply(mo));
+        Assert.assertFalse(mo.contains(new VM(10)));
+        Assert.assertTrue(new ModelDelta().addReadyVM(new VM(10)).apply(mo));
+        Assert.assertTrue(mo.getMapping().isReady(new VM(10)));
+    }
+
+    @Test
+    public void testDiff() {
+        Model src = makeModel();
+        Model dst = src.copy();
+        Mapping m = dst.getMapping();
+        Node n0 = new Node(0);
+        Node n2 = new Node(2);
+        Node n3 = dst.newNode();
+        VM v5 = dst.newVM();
+        m.addOnlineNode(n2);
+        m.addOnlineNode(n3);
+        m.addRunningVM(new VM(0), n2);
+        m.addRunningVM(new VM(1), n2);
+        m.addSleepingVM(new VM(2), n3);
+        m.addReadyVM(v5);
+        m.remove(new VM(3));
+        m.addOfflineNode(new Node(1));
+        m.addOfflineNode(n0);
+        m.remove(n0);
+        ShareableResource cpu = ShareableResource.get(dst, "cpu");
+        cpu.setConsumption(v5, 6).setCapacity(n3, 12);
+        cpu.unset(new VM(0));
+        dst.getAttributes().put(new VM(0), "template", "large");
+        dst.getAttributes().put(n3, "boot", true);
+        dst.getAttributes().unset(n0, "boot");
+
+        ModelDelta d = ModelDelta.diff(src, dst);
+        Assert.assertFalse(d.isEmpty());
+        Assert.assertTrue(d.apply(src));
+        Assert.assertEquals(src, dst);
+        Assert.assertTrue(ModelDelta.diff(src, dst).isEmpty());
+    }
+
+    @Test
+    public void testListeners() {
+        DefaultModel mo = (DefaultModel) makeModel();
+        List<ModelDelta.Change> applied = new ArrayList<>();
+        ModelDeltaListener l = (m, c) -> {
+            Assert.assertSame(m, mo);
+            applied.add(c);
+        };
+        mo.addDeltaListener(l);
+        ModelDelta d = new ModelDelta().addReadyVM(new VM(0)).put(new VM(0), "foo", true);
+        Assert.assertTrue(mo.apply(d));
+        Assert.assertEquals(applied, d.getChanges());
+        Assert.assertTrue(mo.getMapping().isReady(new VM(0)));
+
+        DefaultModel cpy = (DefaultModel) mo.copy();
+        Assert.assertTrue(cpy.apply(new ModelDelta().remove(new VM(0))));
+        Assert.assertEquals(applied.size(), 2);
+
+        Assert.assertTrue(mo.removeDeltaListener(l));
+        Assert.assertFalse(mo.removeDeltaListener(l));
+        Assert.assertTrue(mo.apply(new ModelDelta().remove(new VM(0))));
+        Assert.assertEquals(applied.size(), 2);
+    }
+
+    @Test
+    public void testEqualsHashCode() {
+        ModelDelta d1 = new ModelDelta().addOnlineNode(new Node(0)).setCapacity("cpu", new Node(0), 5);
+        ModelDelta d2 = new ModelDelta().addOnlineNode(new Node(0)).setCapacity("cpu", new Node(0), 5);
+        Assert.assertEquals(d1, d2);
+        Assert.assertEquals(d1.hashCode(), d2.hashCode());
+        Assert.assertNotEquals(d1, d2.remove(new Node(0)));
+        Assert.assertNotNull(d1.toString());
+        int nb = 0;
+        for (ModelDelta.Change c : d1) {
+            Assert.assertNotNull(c.getOperation());
+            nb++;
+        }
+        Assert.assertEquals(nb, 2);
+    }
+}
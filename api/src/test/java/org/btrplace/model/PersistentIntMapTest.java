@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link PersistentIntMap}.
+ *
+ * @author Fabien Hermenier
+ */
+public class PersistentIntMapTest {
+
+    @Test
+    public void testBasics() {
+        PersistentIntMap<String> m = new PersistentIntMap<>();
+        Assert.assertTrue(m.isEmpty());
+        Assert.assertNull(m.get(3));
+        Assert.assertNull(m.put(3, "a"));
+        Assert.assertEquals(m.put(3, "b"), "a");
+        Assert.assertNull(m.put(100000, "c"));
+        Assert.assertNull(m.put(-1, "d"));
+        Assert.assertNull(m.put(Integer.MAX_VALUE, "e"));
+        Assert.assertEquals(m.size(), 4);
+        Assert.assertEquals(m.get(3), "b");
+        Assert.assertEquals(m.get(100000), "c");
+        Assert.assertEquals(m.get(-1), "d");
+        Assert.assertEquals(m.get(Integer.MAX_VALUE), "e");
+        Assert.assertFalse(m.containsKey(4));
+
+        //Values by increasing unsigned keys
+        List<String> l = new ArrayList<>();
+        m.forEach(l::add);
+        Assert.assertEquals(l.toString(), "[b, c, e, d]");
+
+        Assert.assertEquals(m.remove(-1), "d");
+        Assert.assertNull(m.remove(-1));
+        Assert.assertEquals(m.size(), 3);
+        m.remove(3);
+        m.remove(100000);
+        m.remove(Integer.MAX_VALUE);
+        Assert.assertTrue(m.isEmpty());
+        Assert.assertFalse(m.iterator().hasNext());
+
+        m.put(5, "x");
+        m.clear();
+        Assert.assertTrue(m.isEmpty());
+        Assert.assertNull(m.get(5));
+    }
+
+    @Test
+    public void testCopy() {
+        PersistentIntMap<Integer> m1 = new PersistentIntMap<>();
+        for (int i = 0; i < 2000; i++) {
+            m1.put(i, i);
+        }
+        PersistentIntMap<Integer> m2 = m1.copy();
+
+        m2.put(5, -5);
+        m2.remove(1500);
+        m1.put(3000, 3000);
+        Assert.assertEquals(m1.get(5).intValue(), 5);
+        Assert.assertEquals(m1.get(1500).intValue(), 1500);
+        Assert.assertNull(m2.get(3000));
+        Assert.assertEquals(m2.get(5).intValue(), -5);
+        Assert.assertNull(m2.get(1500));
+        Assert.assertEquals(m1.size(), 2001);
+        Assert.assertEquals(m2.size(), 1999);
+    }
+
+    /**
+     * Compare random operations with a {@link HashMap}, with copies in between.
+     */
+    @Test
+    public void testRandom() {
+        Random rnd = new Random(7);
+        PersistentIntMap<Integer> m = new PersistentIntMap<>();
+        Map<Integer, Integer> ref = new HashMap<>();
+        List<PersistentIntMap<Integer>> snapshots = new ArrayList<>();
+        List<Map<Integer, Integer>> refs = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int k = rnd.nextInt(5000);
+            if (rnd.nextInt(3) == 0) {
+                Assert.assertEquals(m.remove(k), ref.remove(k));
+            } else {
+                Assert.assertEquals(m.put(k, i), ref.put(k, i));
+            }
+            if (i % 2000 == 0) {
+                snapshots.add(m.copy());
+                refs.add(new HashMap<>(ref));
+            }
+        }
+        Assert.assertEquals(m.size(), ref.size());
+        for (Map.Entry<Integer, Integer> e : ref.entrySet()) {
+            Assert.assertEquals(m.get(e.getKey()), e.getValue());
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            PersistentIntMap<Integer> s = snapshots.get(i);
+            Map<Integer, Integer> r = refs.get(i);
+            Assert.assertEquals(s.size(), r.size());
+            for (Map.Entry<Integer, Integer> e : r.entrySet()) {
+                Assert.assertEquals(s.get(e.getKey()), e.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testEdit() {
+        PersistentIntMap<List<Integer>> m1 = new PersistentIntMap<>();
+        List<Integer> l = new ArrayList<>();
+        m1.put(7, l);
+        Assert.assertSame(m1.edit(7, ArrayList::new), l);
+        Assert.assertNull(m1.edit(8, ArrayList::new));
+
+        //The value is copied once in each map
+        PersistentIntMap<List<Integer>> m2 = m1.copy();
+        List<Integer> l2 = m2.edit(7, ArrayList::new);
+        Assert.assertNotSame(l2, l);
+        Assert.assertSame(m2.edit(7, ArrayList::new), l2);
+        l2.add(1);
+        List<Integer> l1 = m1.edit(7, ArrayList::new);
+        Assert.assertNotSame(l1, l);
+        Assert.assertSame(m1.edit(7, ArrayList::new), l1);
+        l1.add(2);
+        Assert.assertEquals(m1.get(7), Collections.singletonList(2));
+        Assert.assertEquals(m2.get(7), Collections.singletonList(1));
+        Assert.assertTrue(l.isEmpty());
+    }
+
+    /**
+     * Copy a same map from several threads, then modify the copies.
+     */
+    @Test
+    public void testConcurrentCopies() throws InterruptedException {
+        PersistentIntMap<Integer> m = new PersistentIntMap<>();
+        for (int i = 0; i < 5000; i++) {
+            m.put(i, i);
+        }
+        int nbThreads = 8;
+        List<PersistentIntMap<Integer>> copies = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < nbThreads; t++) {
+            PersistentIntMap<Integer> c = new PersistentIntMap<>();
+            copies.add(c);
+            int id = t;
+            threads.add(new Thread(() -> {
+                PersistentIntMap<Integer> cpy = m.copy();
+                for (int i = id; i < 5000; i += nbThreads) {
+                    cpy.put(i, -id);
+                }
+                synchronized (copies) {
+                    copies.set(id, cpy);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        m.put(0, 42);
+        Assert.assertEquals(m.get(0).intValue(), 42);
+        for (int i = 1; i < 5000; i++) {
+            Assert.assertEquals(m.get(i).intValue(), i);
+        }
+        for (int t = 0; t < nbThreads; t++) {
+            PersistentIntMap<Integer> c = copies.get(t);
+            Assert.assertEquals(c.size(), 5000);
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertEquals(c.get(i).intValue(), i % nbThreads == t ? -t : i);
+            }
+        }
+    }
+}
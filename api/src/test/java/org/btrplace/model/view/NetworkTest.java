@@ -69,6 +69,26 @@ public class NetworkTest {
         Assert.assertTrue(net.getRouting().getPath(n1, n2).containsAll(net.getLinks()));
     }
 
+    /**
+     * The routes of nodes having identifiers greater than the number of connected nodes.
+     */
+    @Test
+    public void defaultRoutingSparseIdsTest() {
+        Model mo = new DefaultModel();
+        Network net = new Network();
+        Switch s = net.newSwitch(1000);
+        mo.newNode();
+        mo.newNode();
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        net.connect(2000, s, n1, n2);
+        Assert.assertEquals(net.getRouting().getPath(n1, n2).size(), 2);
+        Node n3 = mo.newNode();
+        net.connect(2000, s, n3);
+        Assert.assertEquals(net.getRouting().getPath(n3, n1).size(), 2);
+        Assert.assertEquals(net.getRouting().getPath(n1, n2).size(), 2);
+    }
+
     /**
      * Test the static routing implementation.
      */
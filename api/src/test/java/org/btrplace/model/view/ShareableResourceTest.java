@@ -184,6 +184,58 @@ public class ShareableResourceTest {
         Assert.assertEquals(rc1, rc2);
     }
 
+    @Test(dependsOnMethods = {"testClone"})
+    public void testCopyOnWrite() {
+        ShareableResource rc1 = new ShareableResource("foo", 7, 2);
+        rc1.setConsumption(vms.get(0), 3);
+        rc1.setCapacity(nodes.get(0), 10);
+        ShareableResource rc2 = rc1.copy();
+        ShareableResource rc3 = rc2.copy();
+
+        rc2.setConsumption(vms.get(0), 4);
+        rc2.unset(nodes.get(0));
+        Assert.assertEquals(rc1.getConsumption(vms.get(0)), 3);
+        Assert.assertEquals(rc1.getCapacity(nodes.get(0)), 10);
+        Assert.assertEquals(rc3.getConsumption(vms.get(0)), 3);
+        //Default values survive the copy
+        Assert.assertEquals(rc2.getCapacity(nodes.get(0)), 7);
+        Assert.assertEquals(rc2.getConsumption(vms.get(1)), 2);
+
+        rc1.setCapacity(nodes.get(1), 5);
+        Assert.assertFalse(rc3.capacityDefined(nodes.get(1)));
+        Assert.assertEquals(rc3.getDefinedNodes().size(), 1);
+    }
+
+    @Test(dependsOnMethods = {"testCopyOnWrite"})
+    public void testCopyOnWriteManyElements() {
+        List<VM> l = Util.newVMs(new DefaultModel(), 1000);
+        ShareableResource rc1 = new ShareableResource("foo");
+        for (int i = 0; i < l.size(); i++) {
+            rc1.setConsumption(l.get(i), i);
+        }
+        ShareableResource rc2 = rc1.copy();
+        for (int i = 0; i < l.size(); i += 2) {
+            rc2.setConsumption(l.get(i), 2 * i);
+        }
+        rc2.unset(l.get(1));
+        for (int i = 0; i < l.size(); i++) {
+            Assert.assertEquals(rc1.getConsumption(l.get(i)), i);
+        }
+        Assert.assertEquals(rc2.getConsumption(l.get(4)), 8);
+        Assert.assertEquals(rc2.getConsumption(l.get(5)), 5);
+        Assert.assertEquals(rc1.getDefinedVMs().size(), 1000);
+        Assert.assertEquals(rc2.getDefinedVMs().size(), 999);
+        Assert.assertTrue(rc1.getDefinedVMs().contains(l.get(1)));
+        Assert.assertFalse(rc2.getDefinedVMs().contains(l.get(1)));
+        Assert.assertNotEquals(rc1, rc2);
+        rc2.setConsumption(l.get(1), 1);
+        for (int i = 0; i < l.size(); i += 2) {
+            rc2.setConsumption(l.get(i), i);
+        }
+        Assert.assertEquals(rc1, rc2);
+        Assert.assertEquals(rc1.hashCode(), rc2.hashCode());
+    }
+
     @Test
     public void testSubstitution() {
         ShareableResource rc = new ShareableResource("foo");
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.model.view.network;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.PhysicalElement;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link TreeRouting}.
+ *
+ * @author Fabien Hermenier
+ */
+public class TreeRoutingTest {
+
+    /**
+     * A 3-level tree: one core switch, 2 aggregation switches, 2 edge switches per aggregation
+     * and 2 nodes per edge switch.
+     */
+    private static Network makeTree(Model mo, Routing r) {
+        Network net = new Network(r);
+        Switch core = net.newSwitch(10000);
+        for (int a = 0; a < 2; a++) {
+            Switch agg = net.newSwitch(5000);
+            net.connect(4000, core, agg);
+            for (int e = 0; e < 2; e++) {
+                Switch edge = net.newSwitch();
+                net.connect(2000 - a * 500, agg, edge);
+                net.connect(1000 + e * 100, edge, mo.newNode(), mo.newNode());
+            }
+        }
+        return net;
+    }
+
+    /**
+     * On a tree, the routes must be the same as the ones of {@link DefaultRouting}.
+     */
+    @Test
+    public void testSameAsDefaultRouting() {
+        Model mo = new DefaultModel();
+        Network ref = makeTree(mo, new DefaultRouting());
+        Network net = makeTree(new DefaultModel(), new TreeRouting());
+        Assert.assertEquals(net.getLinks(), ref.getLinks());
+        for (Node n1 : ref.getConnectedNodes()) {
+            for (Node n2 : ref.getConnectedNodes()) {
+                List<Link> path = net.getRouting().getPath(n1, n2);
+                Assert.assertEquals(path, ref.getRouting().getPath(n1, n2), n1 + " -> " + n2);
+                Assert.assertEquals(net.getRouting().getMaxBW(n1, n2), ref.getRouting().getMaxBW(n1, n2));
+                for (Link l : net.getLinks()) {
+                    Assert.assertEquals(net.getRouting().getLinkDirection(n1, n2, l),
+                            ref.getRouting().getLinkDirection(n1, n2, l));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBottleneck() {
+        Model mo = new DefaultModel();
+        Network net = makeTree(mo, new TreeRouting());
+        List<Node> nodes = net.getConnectedNodes();
+        //Same edge switch
+        Assert.assertEquals(net.getRouting().getPath(nodes.get(0), nodes.get(1)).size(), 2);
+        Assert.assertEquals(net.getRouting().getMaxBW(nodes.get(0), nodes.get(1)), 1000);
+        //Through the second aggregation switch
+        Assert.assertEquals(net.getRouting().getPath(nodes.get(4), nodes.get(6)).size(), 4);
+        Assert.assertEquals(net.getRouting().getMaxBW(nodes.get(4), nodes.get(6)), 1000);
+        //Through the core
+        Assert.assertEquals(net.getRouting().getPath(nodes.get(3), nodes.get(7)).size(), 6);
+        Assert.assertEquals(net.getRouting().getMaxBW(nodes.get(3), nodes.get(7)), 1100);
+        Assert.assertEquals(net.getRouting().getMaxBW(nodes.get(3), nodes.get(3)), Integer.MAX_VALUE);
+    }
+
+    /**
+     * With redundant paths, the route must be a connected path.
+     */
+    @Test
+    public void testFatTree() {
+        Model mo = new DefaultModel();
+        Network net = new Network(new TreeRouting());
+        Switch c1 = net.newSwitch();
+        Switch c2 = net.newSwitch();
+        Switch e1 = net.newSwitch();
+        Switch e2 = net.newSwitch();
+        net.connect(1000, c1, e1, e2);
+        net.connect(1000, c2, e1, e2);
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        net.connect(500, e1, n1);
+        net.connect(500, e2, n2);
+        List<Link> path = net.getRouting().getPath(n1, n2);
+        Assert.assertEquals(path.size(), 4);
+        PhysicalElement cur = n1;
+        for (Link l : path) {
+            Assert.assertTrue(l.getElement().equals(cur) || l.getSwitch().equals(cur));
+            Assert.assertEquals(net.getRouting().getLinkDirection(n1, n2, l),
+                    l.getElement().equals(cur) ? Routing.LinkDirection.DOWNLINK : Routing.LinkDirection.UPLINK);
+            cur = l.getElement().equals(cur) ? l.getSwitch() : l.getElement();
+        }
+        Assert.assertEquals(cur, n2);
+        Assert.assertEquals(net.getRouting().getMaxBW(n1, n2), 500);
+    }
+
+    @Test
+    public void testDisconnectedAndUpdates() {
+        Model mo = new DefaultModel();
+        Network net = new Network(new TreeRouting());
+        Switch s1 = net.newSwitch();
+        Switch s2 = net.newSwitch();
+        //Sparse identifiers
+        for (int i = 0; i < 10; i++) {
+            mo.newNode();
+        }
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        Node n3 = mo.newNode();
+        net.connect(1000, s1, n1);
+        net.connect(1000, s2, n2);
+        Assert.assertTrue(net.getRouting().getPath(n1, n2).isEmpty());
+        Assert.assertTrue(net.getRouting().getPath(n1, n3).isEmpty());
+        Assert.assertEquals(net.getRouting().getLinkDirection(n1, n2, net.getLinks().get(0)), Routing.LinkDirection.NONE);
+
+        Network cpy = (Network) net.copy();
+        //The routing table is re-computed once the network changes
+        net.connect(100, s1, s2);
+        Assert.assertEquals(net.getRouting().getPath(n1, n2).size(), 3);
+        Assert.assertEquals(net.getRouting().getMaxBW(n1, n2), 100);
+        Assert.assertTrue(cpy.getRouting().getPath(n1, n2).isEmpty());
+    }
+}
@@ -19,6 +19,13 @@
 package org.btrplace.plan;
 
 import org.btrplace.model.*;
+import org.btrplace.model.constraint.Ban;
+import org.btrplace.model.constraint.BanChecker;
+import org.btrplace.model.constraint.Fence;
+import org.btrplace.model.constraint.Lonely;
+import org.btrplace.model.constraint.Online;
+import org.btrplace.model.constraint.Root;
+import org.btrplace.model.constraint.SatConstraint;
 import org.btrplace.model.constraint.SatConstraintChecker;
 import org.btrplace.plan.event.BootNode;
 import org.btrplace.plan.event.BootVM;
@@ -27,7 +34,10 @@ import org.mockito.InOrder;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
@@ -108,4 +118,138 @@ public class ReconfigurationPlanCheckerTest {
         order.verify(chk).endsWith(mo);
 
     }
+
+    @Test
+    public void testLocalDispatch() throws SatConstraintViolationException {
+        Model mo = new DefaultModel();
+        Mapping m = mo.getMapping();
+        List<Node> ns = Util.newNodes(mo, 3);
+        List<VM> vms = Util.newVMs(mo, 2);
+        for (Node n : ns) {
+            m.addOnlineNode(n);
+        }
+        m.addRunningVM(vms.get(0), ns.get(0));
+        m.addRunningVM(vms.get(1), ns.get(0));
+
+        int[] notified = {0};
+        BanChecker chk = new BanChecker(new Ban(vms.get(0), Collections.singleton(ns.get(2)))) {
+            @Override
+            public boolean start(MigrateVM a) {
+                notified[0]++;
+                return super.start(a);
+            }
+        };
+        Assert.assertTrue(chk.isLocal());
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+        p.add(new MigrateVM(vms.get(1), ns.get(0), ns.get(1), 0, 3));
+        p.add(new MigrateVM(vms.get(0), ns.get(0), ns.get(1), 3, 5));
+        ReconfigurationPlanChecker rc = new ReconfigurationPlanChecker();
+        rc.addChecker(chk);
+        rc.check(p);
+        //Only notified for the migration of its VM
+        Assert.assertEquals(notified[0], 1);
+
+        //The violation of the first registered checker is reported
+        p = new DefaultReconfigurationPlan(mo);
+        p.add(new MigrateVM(vms.get(0), ns.get(0), ns.get(2), 0, 3));
+        Root root = new Root(vms.get(0));
+        Ban ban = new Ban(vms.get(0), Collections.singleton(ns.get(2)));
+        rc = new ReconfigurationPlanChecker();
+        rc.addChecker(root.getChecker());
+        rc.addChecker(ban.getChecker());
+        try {
+            rc.check(p);
+            Assert.fail();
+        } catch (ContinuousViolationException ex) {
+            Assert.assertEquals(ex.getConstraint(), root);
+        }
+    }
+
+    @Test
+    public void testParallelism() throws SatConstraintViolationException {
+        Model mo = new DefaultModel();
+        Mapping m = mo.getMapping();
+        List<Node> ns = Util.newNodes(mo, 3);
+        List<VM> vms = Util.newVMs(mo, 3);
+        for (Node n : ns) {
+            m.addOnlineNode(n);
+        }
+        for (VM v : vms) {
+            m.addRunningVM(v, ns.get(0));
+        }
+        Fence fence = new Fence(vms.get(1), ns.get(0), ns.get(1));
+        List<SatConstraint> cstrs = Arrays.asList(new Ban(vms.get(0), Collections.singleton(ns.get(2))),
+                fence,
+                new Root(vms.get(2)),
+                new Online(ns.get(1)));
+
+        ReconfigurationPlanChecker rc = new ReconfigurationPlanChecker();
+        Assert.assertEquals(rc.getParallelism(), 1);
+        Assert.assertEquals(rc.setParallelism(3).getParallelism(), 3);
+        cstrs.forEach(c -> rc.addChecker(c.getChecker()));
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+        p.add(new MigrateVM(vms.get(0), ns.get(0), ns.get(1), 0, 3));
+        rc.check(p);
+
+        ReconfigurationPlanChecker rc2 = new ReconfigurationPlanChecker().setParallelism(3);
+        cstrs.forEach(c -> rc2.addChecker(c.getChecker()));
+        p.add(new MigrateVM(vms.get(1), ns.get(0), ns.get(2), 0, 3));
+        try {
+            rc2.check(p);
+            Assert.fail();
+        } catch (ContinuousViolationException ex) {
+            Assert.assertEquals(ex.getConstraint(), fence);
+        }
+    }
+
+    @Test
+    public void testGroups() {
+        Model mo = new DefaultModel();
+        List<Node> ns = Util.newNodes(mo, 4);
+        List<VM> vms = Util.newVMs(mo, 4);
+        ReconfigurationPlanChecker rc = new ReconfigurationPlanChecker();
+        //fence and online watch the same node, ban and root the same VM
+        SatConstraintChecker<?> fence = new Fence(vms.get(1), ns.get(0), ns.get(1)).getChecker();
+        SatConstraintChecker<?> ban = new Ban(vms.get(0), Collections.singleton(ns.get(2))).getChecker();
+        SatConstraintChecker<?> online = new Online(ns.get(1)).getChecker();
+        SatConstraintChecker<?> root = new Root(vms.get(0)).getChecker();
+        SatConstraintChecker<?> lonely = new Lonely(Collections.singleton(vms.get(3))).getChecker();
+        Arrays.asList(fence, ban, online, root, lonely).forEach(rc::addChecker);
+
+        Assert.assertEquals(rc.groups(1), Collections.singletonList(Arrays.asList(fence, ban, online, root, lonely)));
+        //The non-local checker is on its own
+        Assert.assertEquals(rc.groups(5), Arrays.asList(Arrays.asList(fence, online), Arrays.asList(ban, root), Collections.singletonList(lonely)));
+        Assert.assertEquals(rc.groups(2), Arrays.asList(Arrays.asList(fence, online, lonely), Arrays.asList(ban, root)));
+    }
+
+    @Test
+    public void testExecutor() throws SatConstraintViolationException {
+        Model mo = new DefaultModel();
+        Mapping m = mo.getMapping();
+        List<Node> ns = Util.newNodes(mo, 3);
+        List<VM> vms = Util.newVMs(mo, 2);
+        ns.forEach(m::addOnlineNode);
+        vms.forEach(v -> m.addRunningVM(v, ns.get(0)));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ReconfigurationPlanChecker rc = new ReconfigurationPlanChecker().setParallelism(2).setExecutor(pool);
+            Assert.assertSame(rc.getExecutor(), pool);
+            rc.addChecker(new Ban(vms.get(0), Collections.singleton(ns.get(2))).getChecker());
+            rc.addChecker(new Fence(vms.get(1), ns.get(0), ns.get(1)).getChecker());
+            ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+            p.add(new MigrateVM(vms.get(0), ns.get(0), ns.get(1), 0, 3));
+            rc.check(p);
+            Assert.assertFalse(pool.isShutdown());
+            //Still usable
+            rc.check(p);
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertNull(new ReconfigurationPlanChecker().getExecutor());
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testBadParallelism() {
+        new ReconfigurationPlanChecker().setParallelism(0);
+    }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.scheduler.choco;
+
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.view.network.Network;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.UnstatableProblemException;
+import org.btrplace.scheduler.choco.runner.InstanceSolver;
+import org.btrplace.scheduler.choco.runner.SolutionStatistics;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A handle over a solving process running in background.
+ * It is made by {@link ChocoScheduler#solveAsync(Instance)}.
+ * <p>
+ * The handle provides the first computed plan, the improving plans as soon as they are computed,
+ * the best plan computed so far and the final result. The solving process can be cancelled at any moment.
+ * In that case, the final result is the best plan computed so far.
+ * <p>
+ * The solving process relies on the {@link InstanceSolver} of the scheduler. The plans are built by the solving
+ * thread, once per solution, so the handle never reads the problem while it is being solved. Only the last
+ * {@link Parameters#getMaxRetainedSolutions()} plans are retained, plus the best one.
+ * When a {@link Network} view is attached, the placement is first computed on a copy of the model without
+ * the view, as in {@link DefaultChocoScheduler#solve(Instance)}. Only the plans of the second stage are then notified.
+ *
+ * @author Fabien Hermenier
+ */
+public class AsyncSolving {
+
+    private final Parameters params;
+
+    private final InstanceSolver solver;
+
+    private final Instance instance;
+
+    private final AtomicBoolean cancelled;
+
+    private final CompletableFuture<ReconfigurationPlan> first;
+
+    private final CompletableFuture<ReconfigurationPlan> last;
+
+    private final CompletableFuture<SolvingStatistics> result;
+
+    /**
+     * The last improving plans, ordered by time.
+     * The oldest plans are discarded by batches, once they are at least as many as the retained ones.
+     */
+    private final List<ReconfigurationPlan> plans;
+
+    /**
+     * The number of plans discarded from {@link #plans}.
+     */
+    private int offset;
+
+    /**
+     * The number of computed plans.
+     */
+    private int nbPlans;
+
+    /**
+     * The number of retained plans. Negative to retain all of them.
+     */
+    private final int maxRetained;
+
+    private boolean done;
+
+    /**
+     * Make a new handle.
+     *
+     * @param ps the parameters to use. They are copied so later modifications are ignored
+     * @param s  the solver to use
+     * @param i  the instance to solve
+     */
+    AsyncSolving(Parameters ps, InstanceSolver s, Instance i) {
+        params = new DefaultParameters(ps);
+        params.addSolutionListener((x, st) -> onSolution(st));
+        solver = s;
+        instance = i;
+        cancelled = new AtomicBoolean(false);
+        params.addStopCriterion(cancelled::get);
+        first = new CompletableFuture<>();
+        last = new CompletableFuture<>();
+        result = new CompletableFuture<>();
+        plans = new ArrayList<>();
+        //The best plan is always retained
+        maxRetained = ps.getMaxRetainedSolutions() < 0 ? -1 : Math.max(1, ps.getMaxRetainedSolutions());
+        done = false;
+    }
+
+    /**
+     * Start the solving process.
+     *
+     * @param exe the executor running the solving process
+     * @return {@code this}
+     */
+    AsyncSolving start(Executor exe) {
+        exe.execute(this::run);
+        return this;
+    }
+
+    private void run() {
+        SolvingStatistics st = null;
+        Exception ex = null;
+        try {
+            st = solve();
+        } catch (Exception e) {
+            ex = e;
+        }
+        synchronized (this) {
+            done = true;
+            notifyAll();
+        }
+        ReconfigurationPlan best = getBestPlan();
+        if (best == null && cancelled.get() && (ex instanceof UnstatableProblemException || ex == null && !st.completed())) {
+            //Stopped before any plan, so the existence of a solution is unknown
+            CancellationException e = new CancellationException("Cancelled before the first plan");
+            e.initCause(ex);
+            ex = e;
+        }
+        if (ex != null) {
+            first.completeExceptionally(ex);
+            last.completeExceptionally(ex);
+            result.completeExceptionally(ex);
+        } else {
+            //No-op if a plan has already been computed
+            first.complete(null);
+            last.complete(cancelled.get() ? best : st.lastSolution());
+            result.complete(st);
+        }
+    }
+
+    private SolvingStatistics solve() throws Exception {
+        Model mo = instance.getModel();
+        Network net = Network.get(mo);
+        if (net == null) {
+            return solve(params, instance);
+        }
+        //The network view is useless to take placement decisions.
+        //It is removed from a copy, the model of the caller must stay untouched
+        Parameters ps = new DefaultParameters(params);
+        ps.getSolutionListeners().clear();
+        Model cpy = mo.copy();
+        cpy.detach(Network.get(cpy));
+        SolvingStatistics placement = solve(ps, new Instance(cpy, instance.getSatConstraints(), instance.getOptConstraint()));
+        ReconfigurationPlan p = placement.lastSolution();
+        if (p == null || cancelled.get()) {
+            return placement;
+        }
+        ps = new DefaultParameters(params);
+        if (ps.getTimeLimit() > 0) {
+            //The remaining time, in seconds
+            double timeout = params.getTimeLimit() - placement.getMetrics().timeCount() / 1000;
+            ps.setTimeLimit((int) timeout);
+        }
+        return solve(ps, DefaultChocoScheduler.networkStage(instance, p));
+    }
+
+    private SolvingStatistics solve(Parameters ps, Instance i) throws SchedulerException {
+        solver.solve(ps, i);
+        return solver.getStatistics();
+    }
+
+    /**
+     * Snapshot the plan of a solution.
+     * This is called by the solving thread so the plan is built while the problem is not modified.
+     */
+    private void onSolution(SolutionStatistics st) {
+        ReconfigurationPlan p = st.getReconfigurationPlan();
+        synchronized (this) {
+            plans.add(p);
+            nbPlans++;
+            int drop = firstRetained() - offset;
+            if (drop > 0 && drop >= plans.size() - drop) {
+                plans.subList(0, drop).clear();
+                offset += drop;
+            }
+            notifyAll();
+        }
+        if (!first.isDone()) {
+            first.complete(p);
+        }
+    }
+
+    /**
+     * Get the index of the oldest retained plan.
+     */
+    private synchronized int firstRetained() {
+        return maxRetained < 0 ? 0 : Math.max(0, nbPlans - maxRetained);
+    }
+
+    /**
+     * Get the first computed plan.
+     * The future completes with {@code null} if there is no solution and exceptionally
+     * if the solving process failed or was cancelled before the first plan.
+     *
+     * @return a future plan
+     */
+    public CompletableFuture<ReconfigurationPlan> getFirstPlan() {
+        return first;
+    }
+
+    /**
+     * Get the final plan, so the best computed plan once the solving process is over.
+     * The future completes with {@code null} if there is no solution and exceptionally
+     * if the solving process failed or was cancelled before the first plan.
+     *
+     * @return a future plan
+     */
+    public CompletableFuture<ReconfigurationPlan> getFinalPlan() {
+        return last;
+    }
+
+    /**
+     * Get the statistics of the solving process, once it is over.
+     * The future completes exceptionally if the solving process failed or was cancelled before the first plan.
+     *
+     * @return the future statistics
+     */
+    public CompletableFuture<SolvingStatistics> getStatistics() {
+        return result;
+    }
+
+    /**
+     * Get the best plan computed so far.
+     *
+     * @return a plan. {@code null} if no plan has been computed for the moment
+     */
+    public synchronized ReconfigurationPlan getBestPlan() {
+        if (plans.isEmpty()) {
+            return null;
+        }
+        return plans.get(plans.size() - 1);
+    }
+
+    /**
+     * Stream the improving plans, from the first one.
+     * The stream blocks until the next plan is computed and ends with the solving process.
+     * The plans that are no longer retained when the stream reaches them are skipped.
+     *
+     * @return a stream of plans
+     */
+    public Stream<ReconfigurationPlan> plans() {
+        Iterator<ReconfigurationPlan> it = new Iterator<ReconfigurationPlan>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return waitFor(next);
+            }
+
+            @Override
+            public ReconfigurationPlan next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                synchronized (AsyncSolving.this) {
+                    next = Math.max(next, firstRetained());
+                    return plans.get(next++ - offset);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Wait for a solution or the end of the solving process.
+     *
+     * @param idx the solution index
+     * @return {@code true} iff the solution exists
+     */
+    private synchronized boolean waitFor(int idx) {
+        while (nbPlans <= idx && !done) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return nbPlans > idx;
+    }
+
+
+    /**
+     * Stop the solving process.
+     * The final result is the best plan computed so far. If no plan has been computed, the
+     * futures complete exceptionally with a {@link CancellationException} as it is not known
+     * whether a solution exists.
+     *
+     * @return {@code true} if the process has been cancelled. {@code false} if it was already over or cancelled
+     */
+    public synchronized boolean cancel() {
+        return !done && cancelled.compareAndSet(false, true);
+    }
+
+    /**
+     * Check if the solving process has been cancelled.
+     *
+     * @return {@code true} iff {@link #cancel()} succeeded
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Check if the solving process is over.
+     *
+     * @return {@code true} iff the solving process is over
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+}
@@ -18,11 +18,14 @@
 
 package org.btrplace.scheduler.choco;
 
+import org.btrplace.model.Instance;
 import org.btrplace.scheduler.Scheduler;
 import org.btrplace.scheduler.SchedulerException;
 import org.btrplace.scheduler.choco.runner.InstanceSolver;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
 
+import java.util.concurrent.Executor;
+
 /**
  * A scheduler based on the Choco constraint solver.
  *
@@ -66,4 +69,27 @@ public interface ChocoScheduler extends Scheduler, Parameters {
      * @return the registered parameters
      */
     Parameters getParameters();
+
+    /**
+     * Solve an instance in background, using a dedicated thread.
+     * The parameters are the current ones. Their later modifications are ignored.
+     * The instance is solved by {@link #getInstanceSolver()}, that must not solve another
+     * instance meanwhile.
+     *
+     * @param i the instance to solve
+     * @return a handle over the solving process
+     */
+    AsyncSolving solveAsync(Instance i);
+
+    /**
+     * Solve an instance in background.
+     * The parameters are the current ones. Their later modifications are ignored.
+     * The instance is solved by {@link #getInstanceSolver()}, that must not solve another
+     * instance meanwhile.
+     *
+     * @param i   the instance to solve
+     * @param exe the executor running the solving process
+     * @return a handle over the solving process
+     */
+    AsyncSolving solveAsync(Instance i, Executor exe);
 }
@@ -30,17 +30,24 @@ import org.btrplace.plan.event.MigrateVM;
 import org.btrplace.scheduler.SchedulerException;
 import org.btrplace.scheduler.UnconsistentSolutionException;
 import org.btrplace.scheduler.choco.constraint.ChocoMapper;
+import org.btrplace.scheduler.choco.constraint.mttr.SearchPipeline;
+import org.btrplace.scheduler.choco.constraint.mttr.VMPlacementHeuristic;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
 import org.btrplace.scheduler.choco.duration.DurationEvaluators;
 import org.btrplace.scheduler.choco.runner.InstanceSolver;
+import org.btrplace.scheduler.choco.runner.SolutionListener;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
 import org.btrplace.scheduler.choco.runner.StagedSolvingStatistics;
 import org.btrplace.scheduler.choco.runner.single.SingleRunner;
 import org.btrplace.scheduler.choco.transition.TransitionFactory;
 import org.btrplace.scheduler.choco.view.ChocoView;
+import org.chocosolver.util.criteria.Criterion;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +55,10 @@ import java.util.stream.Collectors;
  * A same instance cannot be used to solve multiple problems simultaneously.
  * <p>
  * By default, the algorithm relies on a {@link SingleRunner} solver.
+ * When instances are solved periodically and only slightly change between two calls,
+ * consider a {@link org.btrplace.scheduler.choco.runner.single.IncrementalRunner}.
+ * To use several cores on a single instance, consider a
+ * {@link org.btrplace.scheduler.choco.runner.portfolio.PortfolioRunner}.
  *
  * @author Fabien Hermenier
  */
@@ -128,25 +139,7 @@ public class DefaultChocoScheduler implements ChocoScheduler {
             if (p == null) {
                 return null;
             }
-
-            // Add Fence constraints for each destination node chosen
-            List<SatConstraint> newCstrs = p.getActions().stream()
-                    .filter(a -> a instanceof MigrateVM)
-                    .map(a -> new Fence(((MigrateVM) a).getVM(),
-                            Collections.singleton(((MigrateVM) a).getDestinationNode())))
-                    .collect(Collectors.toList());
-
-            Model result = p.getResult();
-            if (result == null) {
-                throw new UnconsistentSolutionException(mo, p, "The plan cannot be applied");
-            }
-            // Add Root constraints to all staying VMs
-            newCstrs.addAll(mo.getMapping().getRunningVMs().stream().filter(v -> p.getOrigin().getMapping().getVMLocation(v).id() ==
-                    result.getMapping().getVMLocation(v).id()).map(Root::new).collect(Collectors.toList()));
-
-
-            // Add the old constraints
-            newCstrs.addAll(cstrs);
+            Instance next = networkStage(i, p);
             // Re-attach the network view
             mo.attach(net);
 
@@ -158,12 +151,56 @@ public class DefaultChocoScheduler implements ChocoScheduler {
                 ps.setTimeLimit((int) timeout);
             }
 
-            return runner.solve(ps, new Instance(mo, newCstrs, i.getOptConstraint()));
+            return runner.solve(ps, next);
         }
         // Solve and return the computed plan
         return runner.solve(params, new Instance(mo, cstrs, i.getOptConstraint()));
     }
 
+    /**
+     * Make the instance to solve once the placement has been computed without the network view.
+     * The VMs are fenced to their destination node and the staying VMs are rooted.
+     *
+     * @param i the original instance
+     * @param p the plan computed without the network view
+     * @return the instance to solve with the network view
+     */
+    static Instance networkStage(Instance i, ReconfigurationPlan p) {
+        Model mo = i.getModel();
+        // Add Fence constraints for each destination node chosen
+        List<SatConstraint> newCstrs = p.getActions().stream()
+                .filter(a -> a instanceof MigrateVM)
+                .map(a -> new Fence(((MigrateVM) a).getVM(),
+                        Collections.singleton(((MigrateVM) a).getDestinationNode())))
+                .collect(Collectors.toList());
+
+        Model result = p.getResult();
+        if (result == null) {
+            throw new UnconsistentSolutionException(mo, p, "The plan cannot be applied");
+        }
+        // Add Root constraints to all staying VMs
+        newCstrs.addAll(mo.getMapping().getRunningVMs().stream().filter(v -> p.getOrigin().getMapping().getVMLocation(v).id() ==
+                result.getMapping().getVMLocation(v).id()).map(Root::new).collect(Collectors.toList()));
+
+        // Add the old constraints
+        newCstrs.addAll(i.getSatConstraints());
+        return new Instance(mo, newCstrs, i.getOptConstraint());
+    }
+
+    @Override
+    public AsyncSolving solveAsync(Instance i) {
+        return solveAsync(i, r -> {
+            Thread t = new Thread(r, "solveAsync");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    @Override
+    public AsyncSolving solveAsync(Instance i, Executor exe) {
+        return new AsyncSolving(params, runner, i).start(exe);
+    }
+
     @Override
     public DefaultChocoScheduler setParameters(Parameters p) {
         params = p;
@@ -279,4 +316,104 @@ public class DefaultChocoScheduler implements ChocoScheduler {
     public Parameters setEnvironmentFactory(EnvironmentFactory f) {
         return params.setEnvironmentFactory(f);
     }
+
+    @Override
+    public Parameters setVMPlacementHeuristic(VMPlacementHeuristic h) {
+        return params.setVMPlacementHeuristic(h);
+    }
+
+    @Override
+    public VMPlacementHeuristic getVMPlacementHeuristic() {
+        return params.getVMPlacementHeuristic();
+    }
+
+    @Override
+    public Parameters setLoadEstimator(GlobalLoadEstimator e) {
+        return params.setLoadEstimator(e);
+    }
+
+    @Override
+    public GlobalLoadEstimator getLoadEstimator() {
+        return params.getLoadEstimator();
+    }
+
+    @Override
+    public boolean addSolutionListener(SolutionListener l) {
+        return params.addSolutionListener(l);
+    }
+
+    @Override
+    public boolean removeSolutionListener(SolutionListener l) {
+        return params.removeSolutionListener(l);
+    }
+
+    @Override
+    public List<SolutionListener> getSolutionListeners() {
+        return params.getSolutionListeners();
+    }
+
+    @Override
+    public boolean addStopCriterion(Criterion c) {
+        return params.addStopCriterion(c);
+    }
+
+    @Override
+    public boolean removeStopCriterion(Criterion c) {
+        return params.removeStopCriterion(c);
+    }
+
+    @Override
+    public List<Criterion> getStopCriteria() {
+        return params.getStopCriteria();
+    }
+
+    @Override
+    public Parameters setMaxRetainedSolutions(int n) {
+        return params.setMaxRetainedSolutions(n);
+    }
+
+    @Override
+    public int getMaxRetainedSolutions() {
+        return params.getMaxRetainedSolutions();
+    }
+
+    @Override
+    public Parameters setBuildParallelism(int n) {
+        return params.setBuildParallelism(n);
+    }
+
+    @Override
+    public int getBuildParallelism() {
+        return params.getBuildParallelism();
+    }
+
+    @Override
+    public Parameters setExecutor(ForkJoinPool p) {
+        return params.setExecutor(p);
+    }
+
+    @Override
+    public ForkJoinPool getExecutor() {
+        return params.getExecutor();
+    }
+
+    @Override
+    public Parameters setCompactMode(boolean b) {
+        return params.setCompactMode(b);
+    }
+
+    @Override
+    public boolean isCompactMode() {
+        return params.isCompactMode();
+    }
+
+    @Override
+    public Parameters setSearchPipeline(SearchPipeline p) {
+        return params.setSearchPipeline(p);
+    }
+
+    @Override
+    public SearchPipeline getSearchPipeline() {
+        return params.getSearchPipeline();
+    }
 }
@@ -19,7 +19,12 @@
 package org.btrplace.scheduler.choco;
 
 import org.btrplace.scheduler.choco.constraint.ChocoMapper;
+import org.btrplace.scheduler.choco.constraint.mttr.SearchPipeline;
+import org.btrplace.scheduler.choco.constraint.mttr.VMPlacementHeuristic;
+import org.btrplace.scheduler.choco.constraint.mttr.load.BiggestDimension;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
 import org.btrplace.scheduler.choco.duration.DurationEvaluators;
+import org.btrplace.scheduler.choco.runner.SolutionListener;
 import org.btrplace.scheduler.choco.transition.TransitionFactory;
 import org.btrplace.scheduler.choco.view.ChocoView;
 import org.btrplace.scheduler.choco.view.DefaultAliasedCumulatives;
@@ -27,14 +32,17 @@ import org.btrplace.scheduler.choco.view.DefaultCumulatives;
 import org.btrplace.scheduler.choco.view.VectorPacking;
 import org.chocosolver.memory.IEnvironment;
 import org.chocosolver.memory.trailing.EnvironmentTrailing;
+import org.chocosolver.util.criteria.Criterion;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Default implementation of {@link Parameters}.
  * <ul>
  * <li>repair mode is disabled</li>
+ * <li>compact mode is disabled</li>
  * <li>no time limit</li>
  * <li>a default horizon of 1 hour</li>
  * <li>the transition factory comes from {@link org.btrplace.scheduler.choco.transition.TransitionFactory#newBundle()}</li>
@@ -44,6 +52,11 @@ import java.util.List;
  * <li>the {@link org.btrplace.scheduler.choco.view.Cumulatives} view is {@link org.btrplace.scheduler.choco.view.DefaultCumulatives}</li>
  * <li>the {@link org.btrplace.scheduler.choco.view.AliasedCumulatives} view is {@link org.btrplace.scheduler.choco.view.DefaultAliasedCumulatives}</li>
  * <li>The {@link IEnvironment} is the default choco trailing environment. For large scale experiment, use</li>
+ * <li>the VMs are placed using {@link VMPlacementHeuristic#WORST_FIT}</li>
+ * <li>each objective uses its default {@link SearchPipeline}</li>
+ * <li>the load estimator is {@link BiggestDimension}</li>
+ * <li>no solution listener, no stop criterion and the last 10 solutions are retained</li>
+ * <li>no shared pool, each solving process creates its own pools</li>
  * </ul>
  *
  * @author Fabien Hermenier
@@ -77,6 +90,30 @@ public class DefaultParameters implements Parameters {
 
     private int verbosityLevel;
 
+    private VMPlacementHeuristic placement = VMPlacementHeuristic.WORST_FIT;
+
+    private GlobalLoadEstimator loadEstimator = new BiggestDimension();
+
+    private List<SolutionListener> listeners;
+
+    private List<Criterion> stopCriteria;
+
+    /**
+     * Retain the last 10 solutions by default.
+     */
+    private int maxRetained = 10;
+
+    /**
+     * Sequential build by default.
+     */
+    private int buildParallelism = 1;
+
+    private ForkJoinPool executor = null;
+
+    private boolean compact = false;
+
+    private SearchPipeline pipeline = null;
+
     /**
      * New set of parameters.
      */
@@ -90,6 +127,8 @@ public class DefaultParameters implements Parameters {
         views.add(VectorPacking.class);
         views.add(DefaultCumulatives.class);
         views.add(DefaultAliasedCumulatives.class);
+        listeners = new ArrayList<>();
+        stopCriteria = new ArrayList<>();
     }
 
     /**
@@ -110,6 +149,15 @@ public class DefaultParameters implements Parameters {
         views = ps.getChocoViews();
         mapper = ps.getMapper();
         envf = ps.getEnvironmentFactory();
+        placement = ps.getVMPlacementHeuristic();
+        loadEstimator = ps.getLoadEstimator();
+        listeners = new ArrayList<>(ps.getSolutionListeners());
+        stopCriteria = new ArrayList<>(ps.getStopCriteria());
+        maxRetained = ps.getMaxRetainedSolutions();
+        buildParallelism = ps.getBuildParallelism();
+        executor = ps.getExecutor();
+        compact = ps.isCompactMode();
+        pipeline = ps.getSearchPipeline();
     }
 
     @Override
@@ -241,4 +289,114 @@ public class DefaultParameters implements Parameters {
         envf = f;
         return this;
     }
+
+    @Override
+    public DefaultParameters setVMPlacementHeuristic(VMPlacementHeuristic h) {
+        placement = h;
+        return this;
+    }
+
+    @Override
+    public VMPlacementHeuristic getVMPlacementHeuristic() {
+        return placement;
+    }
+
+    @Override
+    public DefaultParameters setLoadEstimator(GlobalLoadEstimator e) {
+        loadEstimator = e;
+        return this;
+    }
+
+    @Override
+    public GlobalLoadEstimator getLoadEstimator() {
+        return loadEstimator;
+    }
+
+    @Override
+    public boolean addSolutionListener(SolutionListener l) {
+        return listeners.add(l);
+    }
+
+    @Override
+    public boolean removeSolutionListener(SolutionListener l) {
+        return listeners.remove(l);
+    }
+
+    @Override
+    public List<SolutionListener> getSolutionListeners() {
+        return listeners;
+    }
+
+    @Override
+    public boolean addStopCriterion(Criterion c) {
+        return stopCriteria.add(c);
+    }
+
+    @Override
+    public boolean removeStopCriterion(Criterion c) {
+        return stopCriteria.remove(c);
+    }
+
+    @Override
+    public List<Criterion> getStopCriteria() {
+        return stopCriteria;
+    }
+
+    @Override
+    public DefaultParameters setMaxRetainedSolutions(int n) {
+        maxRetained = n;
+        return this;
+    }
+
+    @Override
+    public int getMaxRetainedSolutions() {
+        return maxRetained;
+    }
+
+    @Override
+    public DefaultParameters setBuildParallelism(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The build parallelism must be strictly positive");
+        }
+        buildParallelism = n;
+        return this;
+    }
+
+    @Override
+    public int getBuildParallelism() {
+        return buildParallelism;
+    }
+
+    @Override
+    public DefaultParameters setExecutor(ForkJoinPool p) {
+        executor = p;
+        return this;
+    }
+
+    @Override
+    public ForkJoinPool getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public DefaultParameters setCompactMode(boolean b) {
+        compact = b;
+        return this;
+    }
+
+    @Override
+    public boolean isCompactMode() {
+        return compact;
+    }
+
+    @Override
+    public DefaultParameters setSearchPipeline(SearchPipeline p) {
+        pipeline = p;
+        return this;
+    }
+
+    @Override
+    public SearchPipeline getSearchPipeline() {
+        return pipeline;
+    }
 }
@@ -63,10 +63,12 @@ import org.chocosolver.util.ESat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -100,6 +102,8 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
 
     private Set<VM> manageable;
 
+    private boolean compact;
+
     private List<VM> vms;
     private TObjectIntHashMap<VM> revVMs;
 
@@ -123,7 +127,12 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
 
     private Map<String, ChocoView> coreViews;
 
-    private List<Solution> solutions;
+    private Deque<Solution> solutions;
+
+    /**
+     * The maximum number of retained solutions. Negative to retain all of them.
+     */
+    private int maxRetained;
 
     /**
      * Make a new RP where the next state for every VM is indicated.
@@ -151,6 +160,7 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         this.sleeping = new HashSet<>(sleeping);
         this.killed = new HashSet<>(killed);
         this.manageable = new HashSet<>(preRooted);
+        this.compact = ps.isCompactMode();
         this.useLabels = ps.getVerbosity() > 0;
         this.amFactory = ps.getTransitionFactory();
         model = m;
@@ -165,7 +175,9 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         this.solvingPolicy = ResolutionPolicy.SATISFACTION;
         objective = null;
 
-        this.solutions = new ArrayList<>();
+        this.solutions = new ArrayDeque<>();
+        //The last solution is always retained to make the resulting plan
+        this.maxRetained = ps.getMaxRetainedSolutions() < 0 ? -1 : Math.max(1, ps.getMaxRetainedSolutions());
 
         fillElements();
 
@@ -217,6 +229,9 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
             Solution s = new Solution(csp);
             s.record();
             solutions.add(s);
+            if (maxRetained > 0 && solutions.size() > maxRetained) {
+                solutions.removeFirst();
+            }
         });
 
         if (solvingPolicy == ResolutionPolicy.SATISFACTION) {
@@ -283,11 +298,7 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
             //It is certain the CSP has no solution
             return null;
         }
-        Solution s = null;
-        if (!solutions.isEmpty()) {
-            s = solutions.get(solutions.size() - 1);
-        }
-        return buildReconfigurationPlan(s, model.copy());
+        return buildReconfigurationPlan(solutions.peekLast(), model.copy());
     }
 
     /**
@@ -598,6 +609,11 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         return Collections.unmodifiableSet(manageable);
     }
 
+    @Override
+    public boolean isCompactMode() {
+        return compact;
+    }
+
     @Override
     public Logger getLogger() {
         return LOGGER;
@@ -19,11 +19,17 @@
 package org.btrplace.scheduler.choco;
 
 import org.btrplace.scheduler.choco.constraint.ChocoMapper;
+import org.btrplace.scheduler.choco.constraint.mttr.SearchPipeline;
+import org.btrplace.scheduler.choco.constraint.mttr.VMPlacementHeuristic;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
 import org.btrplace.scheduler.choco.duration.DurationEvaluators;
+import org.btrplace.scheduler.choco.runner.SolutionListener;
 import org.btrplace.scheduler.choco.transition.TransitionFactory;
 import org.btrplace.scheduler.choco.view.ChocoView;
+import org.chocosolver.util.criteria.Criterion;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Parameters for a {@link ChocoScheduler}.
@@ -224,4 +230,176 @@ public interface Parameters {
      * @return a list of views that may be empty
      */
     List<Class<? extends ChocoView>> getChocoViews();
+
+    /**
+     * Set the heuristic the objectives rely on to select the host of the VMs to place.
+     *
+     * @param h the heuristic to use
+     * @return {@code this}
+     */
+    Parameters setVMPlacementHeuristic(VMPlacementHeuristic h);
+
+    /**
+     * Get the heuristic the objectives rely on to select the host of the VMs to place.
+     *
+     * @return the heuristic
+     */
+    VMPlacementHeuristic getVMPlacementHeuristic();
+
+    /**
+     * Set the estimator that reduces the per-resource load of a node into a single value.
+     *
+     * @param e the estimator to use
+     * @return {@code this}
+     */
+    Parameters setLoadEstimator(GlobalLoadEstimator e);
+
+    /**
+     * Get the estimator that reduces the per-resource load of a node into a single value.
+     *
+     * @return the estimator
+     */
+    GlobalLoadEstimator getLoadEstimator();
+
+    /**
+     * Add a listener notified each time a solution is computed.
+     *
+     * @param l the listener to add
+     * @return {@code true} if the listener has been added
+     */
+    boolean addSolutionListener(SolutionListener l);
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener to remove
+     * @return {@code true} if the listener has been removed
+     */
+    boolean removeSolutionListener(SolutionListener l);
+
+    /**
+     * Get the listeners notified each time a solution is computed.
+     *
+     * @return a list of listeners that may be empty
+     */
+    List<SolutionListener> getSolutionListeners();
+
+    /**
+     * Add a criterion to stop the search.
+     * The criteria are checked all along the search, that stops once one of them is met.
+     * The result is then the best solution computed so far.
+     *
+     * @param c the criterion to add
+     * @return {@code true} if the criterion has been added
+     */
+    boolean addStopCriterion(Criterion c);
+
+    /**
+     * Remove a stop criterion.
+     *
+     * @param c the criterion to remove
+     * @return {@code true} if the criterion has been removed
+     */
+    boolean removeStopCriterion(Criterion c);
+
+    /**
+     * Get the criteria to stop the search.
+     *
+     * @return a list of criteria that may be empty
+     */
+    List<Criterion> getStopCriteria();
+
+    /**
+     * Set the maximum number of solutions retained in the solving statistics.
+     * Only the last solutions, so the best ones when optimizing, are retained.
+     * The last solution is always available as it is the result of the solving process.
+     * The plans of the retained solutions are built once the solving process is over, so
+     * retaining all the solutions might be costly for large problems.
+     *
+     * @param n a positive number, {@code 0} to retain none, a negative number to retain all of them
+     * @return {@code this}
+     */
+    Parameters setMaxRetainedSolutions(int n);
+
+    /**
+     * Get the maximum number of solutions retained in the solving statistics.
+     *
+     * @return a positive number, {@code 0} to retain none, a negative number to retain all of them
+     */
+    int getMaxRetainedSolutions();
+
+    /**
+     * Set the number of threads used to build the problem.
+     * With more than one thread, the pre-computations that do not alter the CSP, such as
+     * the analysis of the constraints, are performed on the pool stated by {@link #getExecutor()}, or
+     * on a pool created for the build otherwise. The creation of the variables, including the
+     * evaluation of the action durations, and the posting of the constraints stay sequential.
+     *
+     * @param n a positive number. {@code 1} to build the problem sequentially
+     * @return {@code this}
+     */
+    Parameters setBuildParallelism(int n);
+
+    /**
+     * Get the number of threads used to build the problem.
+     *
+     * @return a positive number. {@code 1} when the problem is built sequentially
+     */
+    int getBuildParallelism();
+
+    /**
+     * Set the pool that runs the parallel parts of the solving process, such as the
+     * problem build, the workers of a portfolio or the partitions of a split instance.
+     * These parts share the pool, even when they are nested, and never shut it down.
+     * When no pool is set, each solving process creates the pools it needs and shuts them
+     * down once it is done.
+     *
+     * @param p the pool to use. {@code null} to let each solving process create its own pools
+     * @return the current instance
+     */
+    Parameters setExecutor(ForkJoinPool p);
+
+    /**
+     * Get the pool that runs the parallel parts of the solving process.
+     *
+     * @return the pool. {@code null} if each solving process creates its own pools
+     */
+    ForkJoinPool getExecutor();
+
+    /**
+     * State if the running VMs that are not manageable are modelled in a compact manner.
+     * In compact mode, these VMs have constant slices and no variable of their own.
+     * Their consumption is turned into constant per-node load offsets
+     * in the packing and the scheduling constraints.
+     * This reduces the size of the problem to the number of manageable VMs,
+     * which is relevant in repair mode.
+     *
+     * @param b {@code true} to use the compact mode
+     * @return the current instance
+     */
+    Parameters setCompactMode(boolean b);
+
+    /**
+     * Indicate if the running VMs that are not manageable are modelled in a compact manner.
+     *
+     * @return {@code true} iff the compact mode is used
+     */
+    boolean isCompactMode();
+
+    /**
+     * Set the search strategy to use with the {@link org.btrplace.model.constraint.MinMTTR}
+     * and the {@link org.btrplace.model.constraint.MinMigrations} objectives.
+     *
+     * @param p the pipeline to use. {@code null} to use the default pipeline of each objective
+     * @return the current instance
+     */
+    Parameters setSearchPipeline(SearchPipeline p);
+
+    /**
+     * Get the search strategy to use with the {@link org.btrplace.model.constraint.MinMTTR}
+     * and the {@link org.btrplace.model.constraint.MinMigrations} objectives.
+     *
+     * @return the pipeline. {@code null} if each objective uses its default pipeline
+     */
+    SearchPipeline getSearchPipeline();
 }
@@ -242,7 +242,9 @@ public interface ReconfigurationProblem {
     ReconfigurationPlan buildReconfigurationPlan(Solution s, Model src) throws SchedulerException;
 
     /**
-     * Return all the solutions that have been computed from a previous {@link #solve(int, boolean)} call.
+     * Return the solutions that have been computed from a previous {@link #solve(int, boolean)} call.
+     * Only the last solutions are retained, according to {@link Parameters#getMaxRetainedSolutions()}.
+     * The last one is always retained.
      * @return a list of plan that may be empty
      * @throws SchedulerException if an error occurred
      */
@@ -371,6 +373,14 @@ public interface ReconfigurationProblem {
      */
     Set<VM> getManageableVMs();
 
+    /**
+     * Indicate if the running VMs that are not manageable are modelled in a compact manner.
+     *
+     * @return {@code true} iff the compact mode is used
+     * @see Parameters#setCompactMode(boolean)
+     */
+    boolean isCompactMode();
+
     /**
      * Get the logger.
      *
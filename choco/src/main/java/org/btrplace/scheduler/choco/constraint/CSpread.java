@@ -26,12 +26,9 @@ import org.btrplace.model.constraint.Spread;
 import org.btrplace.scheduler.choco.Parameters;
 import org.btrplace.scheduler.choco.ReconfigurationProblem;
 import org.btrplace.scheduler.choco.Slice;
-import org.btrplace.scheduler.choco.extensions.ChocoUtils;
+import org.btrplace.scheduler.choco.extensions.ContinuousSpread;
 import org.btrplace.scheduler.choco.transition.VMTransition;
 import org.chocosolver.solver.Model;
-import org.chocosolver.solver.constraints.Arithmetic;
-import org.chocosolver.solver.constraints.Operator;
-import org.chocosolver.solver.variables.BoolVar;
 import org.chocosolver.solver.variables.IntVar;
 
 import java.util.*;
@@ -68,53 +65,30 @@ public class CSpread implements ChocoConstraint {
         csp.post(csp.allDifferent(running.toArray(new IntVar[running.size()]), "BC"));
 
         if (cstr.isContinuous()) {
+            //A d-slice never starts on a host before the c-slice of another VM leaves it
             List<VM> vms = new ArrayList<>(cstr.getInvolvedVMs());
+            IntVar[] dHosts = new IntVar[vms.size()];
+            IntVar[] dStarts = new IntVar[vms.size()];
+            IntVar[] cHosts = new IntVar[vms.size()];
+            IntVar[] cEnds = new IntVar[vms.size()];
             for (int i = 0; i < vms.size(); i++) {
-                VM vm = vms.get(i);
-                VMTransition aI = rp.getVMAction(vm);
-                for (int j = 0; j < i; j++) {
-                    VM vmJ = vms.get(j);
-                    VMTransition aJ = rp.getVMAction(vmJ);
-                    disallowOverlap(rp, aI, aJ);
+                VMTransition a = rp.getVMAction(vms.get(i));
+                Slice d = a.getDSlice();
+                Slice c = a.getCSlice();
+                if (d != null) {
+                    dHosts[i] = d.getHoster();
+                    dStarts[i] = d.getStart();
+                }
+                if (c != null) {
+                    cHosts[i] = c.getHoster();
+                    cEnds[i] = c.getEnd();
                 }
             }
+            csp.post(new ContinuousSpread(dHosts, dStarts, cHosts, cEnds));
         }
         return true;
     }
 
-    private static void disallowOverlap(ReconfigurationProblem rp, VMTransition t1, VMTransition t2) {
-        Slice dI = t1.getDSlice();
-        Slice cI = t1.getCSlice();
-
-        Slice dJ = t2.getDSlice();
-        Slice cJ = t2.getCSlice();
-
-
-        if (dI != null && cJ != null) {
-            precedenceIfOverlap(rp, dI, cJ);
-        }
-        //The inverse relation
-        if (dJ != null && cI != null) {
-            precedenceIfOverlap(rp, dJ, cI);
-        }
-    }
-
-    /**
-     * Establish the precedence constraint {@code c.getEnd() <= d.getStart()} if the two slices may overlap.
-     */
-    private static void precedenceIfOverlap(ReconfigurationProblem rp, Slice d, Slice c) {
-        Model csp = rp.getModel();
-        //No need to place the constraints if the slices do not have a chance to overlap
-        if (!(c.getHoster().isInstantiated() && !d.getHoster().contains(c.getHoster().getValue()))
-                && !(d.getHoster().isInstantiated() && !c.getHoster().contains(d.getHoster().getValue()))
-                ) {
-            BoolVar eq = csp.boolVar(rp.makeVarLabel(d.getHoster(), "", c.getHoster(), "?"));
-            new Arithmetic(d.getHoster(), Operator.EQ, c.getHoster()).reifyWith(eq);
-            Arithmetic leqCstr = new Arithmetic(c.getEnd(), Operator.LE, d.getStart());
-            ChocoUtils.postImplies(rp, eq, leqCstr);
-        }
-    }
-
     private List<IntVar> placementVariables(ReconfigurationProblem rp) {
         List<IntVar> running = new ArrayList<>();
         for (VM vmId : cstr.getInvolvedVMs()) {
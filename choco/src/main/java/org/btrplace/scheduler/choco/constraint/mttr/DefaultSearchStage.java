@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.Slice;
+import org.btrplace.scheduler.choco.transition.RelocatableVM;
+import org.btrplace.scheduler.choco.transition.Transition;
+import org.btrplace.scheduler.choco.transition.VMTransition;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainMax;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainMin;
+import org.chocosolver.solver.search.strategy.selectors.variables.FirstFail;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.search.strategy.strategy.IntStrategy;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.List;
+
+/**
+ * The stages of the default search pipelines.
+ * See {@link SearchPipeline#newMinMTTR()} and {@link SearchPipeline#newMinMigrations()}.
+ *
+ * @author Fabien Hermenier
+ */
+public enum DefaultSearchStage implements SearchStage {
+
+    /**
+     * Place the VMs that may have to move for exclusion issues.
+     * The placement is random, with the VMs trying to stay on their current node first.
+     */
+    EXCLUDED_VMS_PLACEMENT {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            if (!ctx.getExcludedVMActions().isEmpty()) {
+                ctx.placeVMs(strategies, ctx.getExcludedVMActions(), false);
+            }
+        }
+    },
+
+    /**
+     * Place the manageable VMs using the placement heuristic stated by the parameters.
+     */
+    BAD_VMS_PLACEMENT {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ctx.placeVMs(strategies, ctx.getBadVMActions(), true);
+        }
+    },
+
+    /**
+     * Place the other running VMs using the placement heuristic stated by the parameters.
+     */
+    GOOD_VMS_PLACEMENT {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ctx.placeVMs(strategies, ctx.getGoodVMActions(), true);
+        }
+    },
+
+    /**
+     * Choose the relocation method of the VMs. Try to re-instantiate first.
+     */
+    RELOCATION_METHODS {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ReconfigurationProblem rp = ctx.getProblem();
+            IntVar[] migs = rp.getVMActions().stream()
+                    .filter(t -> t instanceof RelocatableVM)
+                    .map(t -> ((RelocatableVM) t).getRelocationMethod())
+                    .toArray(IntVar[]::new);
+            strategies.add(Search.intVarSearch(new FirstFail(rp.getModel()), new IntDomainMax(), migs));
+        }
+    },
+
+    /**
+     * Schedule the node actions, to boot some nodes if needed.
+     */
+    NODE_STARTS {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ReconfigurationProblem rp = ctx.getProblem();
+            if (!rp.getNodeActions().isEmpty()) {
+                IntVar[] starts = rp.getNodeActions().stream().map(Transition::getStart).toArray(IntVar[]::new);
+                strategies.add(new IntStrategy(starts, new FirstFail(rp.getModel()), new IntDomainMin()));
+            }
+        }
+    },
+
+    /**
+     * Fix the duration of the node actions. The side effect will be that states will be fixed as well
+     * with the objective to not do un-necessary actions.
+     */
+    NODE_DURATIONS {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ReconfigurationProblem rp = ctx.getProblem();
+            if (!rp.getNodeActions().isEmpty()) {
+                IntVar[] durations = rp.getNodeActions().stream().map(Transition::getDuration).toArray(IntVar[]::new);
+                strategies.add(new IntStrategy(durations, new FirstFail(rp.getModel()), new IntDomainMin()));
+            }
+        }
+    },
+
+    /**
+     * Start the VM actions, those on the leaves of the movement graph first. See {@link StartOnLeafNodes}.
+     */
+    VM_STARTS {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ReconfigurationProblem rp = ctx.getProblem();
+            MovementGraph gr = new MovementGraph(rp);
+            IntVar[] starts = SearchContext.dSlices(rp.getVMActions()).map(Slice::getStart).filter(v -> !v.isInstantiated()).toArray(IntVar[]::new);
+            strategies.add(new IntStrategy(starts, new StartOnLeafNodes(rp, gr), new IntDomainMin()));
+        }
+    },
+
+    /**
+     * Schedule the actions on the stable nodes first. See {@link OnStableNodeFirst}.
+     */
+    STABLE_NODES_FIRST {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            OnStableNodeFirst h = ctx.getSchedulingHeuristic();
+            strategies.add(new IntStrategy(h.getScope(), h, new IntDomainMin()));
+        }
+    },
+
+    /**
+     * Terminate the VM actions as soon as possible.
+     */
+    VM_ENDS {
+        @Override
+        public void build(SearchContext ctx, List<AbstractStrategy<?>> strategies) {
+            ReconfigurationProblem rp = ctx.getProblem();
+            IntVar[] ends = rp.getVMActions().stream().map(VMTransition::getEnd).filter(v -> !v.isInstantiated()).toArray(IntVar[]::new);
+            strategies.add(Search.intVarSearch(new MyInputOrder<>(rp.getSolver()), new IntDomainMin(), ends));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.model.VM;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.Map;
+
+/**
+ * Placement heuristic implementing an indexed first fit.
+ * The VM is placed on the node having the smallest index among those that can host it.
+ *
+ * @author Fabien Hermenier
+ */
+public class IndexedFirstFit extends IndexedFit {
+
+    /**
+     * New heuristic.
+     * Will try to make the VM stay on their current node in prior if possible
+     *
+     * @param vmMap the VM -> placement variable mapping
+     * @param rp    the CSP to solve
+     * @param load  the load estimator for the node.
+     */
+    public IndexedFirstFit(Map<IntVar, VM> vmMap, ReconfigurationProblem rp, GlobalLoadEstimator load) {
+        this(vmMap, rp, load, true);
+    }
+
+    /**
+     * New heuristic.
+     *
+     * @param vmMap     the VM -> placement variable mapping
+     * @param rp        the CSP to solve
+     * @param load      the load estimator for the node.
+     * @param stayFirst {@code true} to try to let the VM on place first if possible
+     */
+    public IndexedFirstFit(Map<IntVar, VM> vmMap, ReconfigurationProblem rp, GlobalLoadEstimator load, boolean stayFirst) {
+        super(vmMap, rp, load, stayFirst);
+    }
+
+    @Override
+    protected double priority(NodeSlackIndex idx, int pos) {
+        return idx.firstNode(pos);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.model.VM;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
+import org.btrplace.scheduler.choco.view.CShareableResource;
+import org.btrplace.scheduler.choco.view.ChocoView;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base of the placement heuristics that rely on a {@link NodeSlackIndex}
+ * to pick a node that can host the VM without browsing the whole domain of
+ * its placement variable.
+ * When no node of the domain has a sufficient slack, the smallest value of the domain is selected.
+ *
+ * @author Fabien Hermenier
+ */
+public abstract class IndexedFit implements IntValueSelector {
+
+    private final boolean stayFirst;
+
+    private final Map<IntVar, VM> vmMap;
+
+    private final ReconfigurationProblem rp;
+
+    private final List<CShareableResource> rcs;
+
+    private final NodeSlackIndex index;
+
+    /**
+     * The usage of each VM for each dimension, computed on demand.
+     */
+    private final int[][] usages;
+
+    /**
+     * New heuristic.
+     *
+     * @param vmMap     the VM -> placement variable mapping
+     * @param rp        the CSP to solve
+     * @param load      the load estimator for the node.
+     * @param stayFirst {@code true} to try to let the VM on place first if possible
+     */
+    protected IndexedFit(Map<IntVar, VM> vmMap, ReconfigurationProblem rp, GlobalLoadEstimator load, boolean stayFirst) {
+        this.stayFirst = stayFirst;
+        this.vmMap = vmMap;
+        this.rp = rp;
+        rcs = new ArrayList<>();
+        for (String s : rp.getViews()) {
+            ChocoView cv = rp.getView(s);
+            if (cv instanceof CShareableResource) {
+                rcs.add((CShareableResource) cv);
+            }
+        }
+        index = new NodeSlackIndex(rp, rcs, load);
+        usages = new int[rp.getVMs().size()][];
+    }
+
+    /**
+     * Get the priority of a position in the index. The node having the lowest priority is selected.
+     * The priority of a position must never be greater than the priority of the positions below it.
+     *
+     * @param idx the index
+     * @param pos the position in the index
+     * @return the priority
+     */
+    protected abstract double priority(NodeSlackIndex idx, int pos);
+
+    @Override
+    public int selectValue(IntVar v) {
+        VM vm = vmMap.get(v);
+        int[] usage = usage(rp.getVM(vm));
+        if (stayFirst && VMPlacementUtils.canStay(rp, vm)) {
+            int curPos = rp.getNode(rp.getSourceModel().getMapping().getVMLocation(vm));
+            if (index.fits(curPos, usage)) {
+                return curPos;
+            }
+        }
+        int nIdx = index.lookup(v, usage, pos -> priority(index, pos));
+        return nIdx < 0 ? v.getLB() : nIdx;
+    }
+
+    private int[] usage(int vIdx) {
+        int[] usage = usages[vIdx];
+        if (usage == null) {
+            usage = new int[rcs.size()];
+            for (int i = 0; i < rcs.size(); i++) {
+                usage[i] = rcs.get(i).getVMAllocation(vIdx);
+            }
+            usages[vIdx] = usage;
+        }
+        return usage;
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
+import org.btrplace.scheduler.choco.view.CShareableResource;
+import org.btrplace.scheduler.choco.view.Packing;
+import org.btrplace.scheduler.choco.view.VectorPacking;
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.memory.IStateInt;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A tournament tree over the nodes that indexes, for each node, its remaining capacity
+ * (its slack) on each shareable resource and its global load.
+ * Each inner position of the tree stores the maximum slack per dimension, and the
+ * minimum and the maximum global load of the nodes below it. This allows to find a
+ * node that can host a VM in a logarithmic time in most of the cases.
+ * <p>
+ * The index listens to the changes of the assigned load of the nodes made by the packing constraint.
+ * Each change is also recorded in the trail of the solver so the nodes are re-indexed upon backtrack.
+ * The impacted nodes are re-indexed lazily, when a node is looked for.
+ *
+ * @author Fabien Hermenier
+ */
+public class NodeSlackIndex implements IntConsumer {
+
+    private final List<CShareableResource> rcs;
+
+    private final VectorPacking packing;
+
+    private final GlobalLoadEstimator globalLoad;
+
+    private final IEnvironment env;
+
+    private final int nbNodes;
+
+    /**
+     * Number of leaves. A power of 2.
+     */
+    private final int size;
+
+    /**
+     * The capacity of each node for each dimension. [nbDims][nbNodes]
+     */
+    private int[][] capacities;
+
+    /**
+     * The maximum slack of the nodes under each position for each dimension. [nbDims][2 * size]
+     */
+    private final int[][] slacks;
+
+    private final double[] minLoads;
+
+    private final double[] maxLoads;
+
+    private final boolean[] isDirty;
+
+    private final int[] dirty;
+
+    private int nbDirty;
+
+    private boolean built;
+
+    /**
+     * The pending positions during a lookup, as a binary heap.
+     */
+    private int[] heap;
+
+    private double[] heapKeys;
+
+    private final double[] normalised;
+
+    /**
+     * Make a new index.
+     * It is registered as a listener of the packing view.
+     *
+     * @param rp   the problem
+     * @param rcs  the resources to index
+     * @param load the estimator that computes the global load of a node
+     */
+    public NodeSlackIndex(ReconfigurationProblem rp, List<CShareableResource> rcs, GlobalLoadEstimator load) {
+        this.rcs = rcs;
+        this.globalLoad = load;
+        this.env = rp.getModel().getEnvironment();
+        this.packing = (VectorPacking) rp.getView(Packing.VIEW_ID);
+        nbNodes = rp.getNodes().size();
+        int s = 1;
+        while (s < nbNodes) {
+            s <<= 1;
+        }
+        size = s;
+        slacks = new int[rcs.size()][2 * size];
+        minLoads = new double[2 * size];
+        maxLoads = new double[2 * size];
+        isDirty = new boolean[nbNodes];
+        dirty = new int[nbNodes];
+        heap = new int[16];
+        heapKeys = new double[16];
+        normalised = new double[rcs.size()];
+        packing.addAssignedLoadListener(this);
+    }
+
+    /**
+     * Notify the index that the assigned load of a node is about to change.
+     *
+     * @param nIdx the node index
+     */
+    @Override
+    public void accept(int nIdx) {
+        markDirty(nIdx);
+        env.save(() -> markDirty(nIdx));
+    }
+
+    private void markDirty(int nIdx) {
+        if (!isDirty[nIdx]) {
+            isDirty[nIdx] = true;
+            dirty[nbDirty++] = nIdx;
+        }
+    }
+
+    /**
+     * Check if a VM fits on a node.
+     *
+     * @param nIdx  the node index
+     * @param usage the VM usage for each dimension
+     * @return {@code true} iff the slack of the node is sufficient on each dimension
+     */
+    public boolean fits(int nIdx, int[] usage) {
+        sync();
+        return fitsBelow(size + nIdx, usage);
+    }
+
+    /**
+     * Get the lowest global load of the nodes below a position.
+     *
+     * @param pos the position in the tree
+     * @return the minimum global load
+     */
+    public double minLoad(int pos) {
+        return minLoads[pos];
+    }
+
+    /**
+     * Get the highest global load of the nodes below a position.
+     *
+     * @param pos the position in the tree
+     * @return the maximum global load
+     */
+    public double maxLoad(int pos) {
+        return maxLoads[pos];
+    }
+
+    /**
+     * Get the index of the first node below a position.
+     *
+     * @param pos the position in the tree
+     * @return a node index
+     */
+    public int firstNode(int pos) {
+        int depth = 31 - Integer.numberOfLeadingZeros(pos);
+        return (pos - (1 << depth)) * (size >> depth);
+    }
+
+    /**
+     * Look for the node in the domain of a variable that can host a VM and that
+     * has the lowest priority.
+     * The priority of a position must never be greater than the priority of the positions below it.
+     *
+     * @param v        the placement variable
+     * @param usage    the VM usage for each dimension
+     * @param priority the priority of each position in the tree
+     * @return the node index. {@code -1} if no node in the domain can host the VM
+     */
+    public int lookup(IntVar v, int[] usage, IntToDoubleFunction priority) {
+        sync();
+        int nb = 0;
+        nb = push(nb, 1, priority.applyAsDouble(1));
+        while (nb > 0) {
+            int pos = heap[0];
+            nb = pop(nb);
+            int first = firstNode(pos);
+            if (first >= nbNodes || !fitsBelow(pos, usage)) {
+                continue;
+            }
+            int last = first + (size >> (31 - Integer.numberOfLeadingZeros(pos))) - 1;
+            if (v.nextValue(first - 1) > last) {
+                //No node of the domain below
+                continue;
+            }
+            if (pos >= size) {
+                return pos - size;
+            }
+            nb = push(nb, 2 * pos, priority.applyAsDouble(2 * pos));
+            nb = push(nb, 2 * pos + 1, priority.applyAsDouble(2 * pos + 1));
+        }
+        return -1;
+    }
+
+    private boolean fitsBelow(int pos, int[] usage) {
+        for (int d = 0; d < usage.length; d++) {
+            if (slacks[d][pos] < usage[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build the index at the first use, then re-index the modified nodes.
+     */
+    private void sync() {
+        if (!built) {
+            build();
+            return;
+        }
+        for (int i = 0; i < nbDirty; i++) {
+            int nIdx = dirty[i];
+            isDirty[nIdx] = false;
+            int pos = size + nIdx;
+            indexLeaf(nIdx);
+            for (pos >>= 1; pos > 0; pos >>= 1) {
+                merge(pos);
+            }
+        }
+        nbDirty = 0;
+    }
+
+    private void build() {
+        capacities = new int[rcs.size()][nbNodes];
+        for (int d = 0; d < rcs.size(); d++) {
+            CShareableResource rc = rcs.get(d);
+            for (int nIdx = 0; nIdx < nbNodes; nIdx++) {
+                capacities[d][nIdx] = (int) (rc.getVirtualUsage().get(nIdx).getUB() * rc.getOverbookRatio(nIdx));
+            }
+            Arrays.fill(slacks[d], Integer.MIN_VALUE);
+        }
+        Arrays.fill(minLoads, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxLoads, Double.NEGATIVE_INFINITY);
+        for (int nIdx = 0; nIdx < nbNodes; nIdx++) {
+            indexLeaf(nIdx);
+            isDirty[nIdx] = false;
+        }
+        for (int pos = size - 1; pos > 0; pos--) {
+            merge(pos);
+        }
+        nbDirty = 0;
+        built = true;
+    }
+
+    private void indexLeaf(int nIdx) {
+        IStateInt[][] loads = packing.assignedLoad();
+        int pos = size + nIdx;
+        for (int d = 0; d < rcs.size(); d++) {
+            int used = loads[d][nIdx].get() + packing.getLoadOffset(d, nIdx);
+            int capa = capacities[d][nIdx];
+            slacks[d][pos] = capa - used;
+            normalised[d] = capa > 0 ? 1.0d * used / capa : Double.POSITIVE_INFINITY;
+        }
+        double l = globalLoad.getLoad(normalised);
+        minLoads[pos] = l;
+        maxLoads[pos] = l;
+    }
+
+    private void merge(int pos) {
+        int left = 2 * pos;
+        int right = left + 1;
+        for (int[] s : slacks) {
+            s[pos] = Math.max(s[left], s[right]);
+        }
+        minLoads[pos] = Math.min(minLoads[left], minLoads[right]);
+        maxLoads[pos] = Math.max(maxLoads[left], maxLoads[right]);
+    }
+
+    /**
+     * Add a position to the heap. Ties are broken by the node indexes.
+     */
+    private int push(int nb, int pos, double key) {
+        if (nb == heap.length) {
+            heap = Arrays.copyOf(heap, nb * 2);
+            heapKeys = Arrays.copyOf(heapKeys, nb * 2);
+        }
+        int i = nb;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(key, pos, heapKeys[parent], heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapKeys[i] = heapKeys[parent];
+            i = parent;
+        }
+        heap[i] = pos;
+        heapKeys[i] = key;
+        return nb + 1;
+    }
+
+    /**
+     * Remove the head of the heap.
+     */
+    private int pop(int nb) {
+        int last = nb - 1;
+        int pos = heap[last];
+        double key = heapKeys[last];
+        int i = 0;
+        while (2 * i + 1 < last) {
+            int child = 2 * i + 1;
+            if (child + 1 < last && before(heapKeys[child + 1], heap[child + 1], heapKeys[child], heap[child])) {
+                child++;
+            }
+            if (!before(heapKeys[child], heap[child], key, pos)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heap[i] = pos;
+        heapKeys[i] = key;
+        return last;
+    }
+
+    private boolean before(double k1, int p1, double k2, int p2) {
+        return k1 < k2 || k1 == k2 && firstNode(p1) < firstNode(p2);
+    }
+}
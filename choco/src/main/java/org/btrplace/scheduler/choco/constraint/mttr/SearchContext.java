@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.model.Mapping;
+import org.btrplace.model.VM;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.Slice;
+import org.btrplace.scheduler.choco.constraint.CObjective;
+import org.btrplace.scheduler.choco.transition.VMTransition;
+import org.btrplace.scheduler.choco.view.CShareableResource;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.search.strategy.strategy.IntStrategy;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The elements shared by the stages of a {@link SearchPipeline}.
+ * The VMs to place are split into three groups:
+ * <ul>
+ * <li>the manageable VMs that are running and will stay running, they may have to move for exclusion issues</li>
+ * <li>the manageable VMs, that are supposed to be on bad nodes</li>
+ * <li>the other running VMs, that have a pretty low chance to move</li>
+ * </ul>
+ * The last two groups are sorted by decreasing weight with regards to the shareable resources.
+ *
+ * @author Fabien Hermenier
+ */
+public class SearchContext {
+
+    private final ReconfigurationProblem rp;
+
+    private final Parameters ps;
+
+    private final CObjective objective;
+
+    private final IntVar cost;
+
+    private final OnStableNodeFirst schedHeuristic;
+
+    private final Map<IntVar, VM> placement;
+
+    private final List<VMTransition> excludedActions;
+
+    private final List<VMTransition> badActions;
+
+    private final List<VMTransition> goodActions;
+
+    private final boolean useResources;
+
+    /**
+     * The host selector stated by the parameters, shared by the placement stages.
+     */
+    private IntValueSelector hostSelector;
+
+    /**
+     * The random host selector, shared by the placement stages that ignore the resources.
+     */
+    private IntValueSelector randomHostSelector;
+
+    /**
+     * Make a new context.
+     *
+     * @param rp        the problem
+     * @param ps        the parameters
+     * @param objective the objective to optimise
+     * @param cost      the variable denoting the cost of the objective
+     */
+    public SearchContext(ReconfigurationProblem rp, Parameters ps, CObjective objective, IntVar cost) {
+        this.rp = rp;
+        this.ps = ps;
+        this.objective = objective;
+        this.cost = cost;
+        schedHeuristic = new OnStableNodeFirst(rp);
+        placement = VMPlacementUtils.makePlacementMap(rp);
+
+        Mapping map = rp.getSourceModel().getMapping();
+        //Get the VMs to place
+        Set<VM> onBadNodes = new HashSet<>(rp.getManageableVMs());
+
+        //Get the VMs that runs and have a pretty low chances to move
+        Set<VM> onGoodNodes = map.getRunningVMs(map.getOnlineNodes());
+        onGoodNodes.removeAll(onBadNodes);
+
+        //Get the VMs to move for exclusion issue
+        excludedActions = new HashSet<>(rp.getManageableVMs()).stream()
+                .filter(vm -> map.isRunning(vm) && rp.getFutureRunningVMs().contains(vm))
+                .map(rp::getVMAction)
+                .collect(Collectors.toList());
+
+        List<CShareableResource> rcs = rp.getSourceModel().getViews().stream()
+                .filter(v -> v instanceof ShareableResource)
+                .map(v -> (CShareableResource) rp.getView(v.getIdentifier()))
+                .collect(Collectors.toList());
+        useResources = !rcs.isEmpty();
+        Map<VM, Integer> costs = CShareableResource.getWeights(rp, rcs);
+        badActions = new ArrayList<>(rp.getVMActions(onBadNodes));
+        goodActions = new ArrayList<>(rp.getVMActions(onGoodNodes));
+        badActions.sort((v2, v1) -> costs.get(v1.getVM()) - costs.get(v2.getVM()));
+        goodActions.sort((v2, v1) -> costs.get(v1.getVM()) - costs.get(v2.getVM()));
+    }
+
+    /**
+     * Get the problem.
+     *
+     * @return the problem
+     */
+    public ReconfigurationProblem getProblem() {
+        return rp;
+    }
+
+    /**
+     * Get the parameters.
+     *
+     * @return the parameters
+     */
+    public Parameters getParameters() {
+        return ps;
+    }
+
+    /**
+     * Get the objective to optimise.
+     *
+     * @return the objective
+     */
+    public CObjective getObjective() {
+        return objective;
+    }
+
+    /**
+     * Get the variable denoting the cost of the objective.
+     *
+     * @return a variable
+     */
+    public IntVar getCost() {
+        return cost;
+    }
+
+    /**
+     * Get the heuristic that schedules the actions on stable nodes first.
+     * It is shared by the placement and the scheduling stages.
+     *
+     * @return the heuristic
+     */
+    public OnStableNodeFirst getSchedulingHeuristic() {
+        return schedHeuristic;
+    }
+
+    /**
+     * Get the actions of the manageable VMs that are running and will stay running.
+     *
+     * @return a list of actions, may be empty
+     */
+    public List<VMTransition> getExcludedVMActions() {
+        return excludedActions;
+    }
+
+    /**
+     * Get the actions of the manageable VMs, by decreasing weight.
+     *
+     * @return a list of actions, may be empty
+     */
+    public List<VMTransition> getBadVMActions() {
+        return badActions;
+    }
+
+    /**
+     * Get the actions of the running VMs that are not manageable, by decreasing weight.
+     *
+     * @return a list of actions, may be empty
+     */
+    public List<VMTransition> getGoodVMActions() {
+        return goodActions;
+    }
+
+    /**
+     * Get the placement variables that are not instantiated.
+     *
+     * @return an array of variables, may be empty
+     */
+    public IntVar[] getHostingVariables() {
+        return dSlices(rp.getVMActions()).map(Slice::getHoster).filter(v -> !v.isInstantiated()).toArray(IntVar[]::new);
+    }
+
+    /**
+     * Get the d-slices of the given actions.
+     *
+     * @param l the actions
+     * @return the existing d-slices
+     */
+    public static Stream<Slice> dSlices(List<VMTransition> l) {
+        return l.stream().map(VMTransition::getDSlice).filter(Objects::nonNull);
+    }
+
+    /**
+     * Get the selector that picks the host of a VM.
+     * The selectors are made at the first call and then shared by the placement stages,
+     * so the indexes of the indexed heuristics are only built and maintained once.
+     *
+     * @param withResources {@code true} for the placement heuristic stated by the parameters
+     *                      when there are shareable resources. {@code false} for a random placement
+     * @return the selector
+     */
+    public IntValueSelector getHostSelector(boolean withResources) {
+        if (withResources) {
+            if (hostSelector == null) {
+                hostSelector = VMPlacementUtils.makeHostSelector(rp, ps, placement, useResources);
+            }
+            return hostSelector;
+        }
+        if (randomHostSelector == null) {
+            randomHostSelector = VMPlacementUtils.makeHostSelector(rp, ps, placement, false);
+        }
+        return randomHostSelector;
+    }
+
+    /**
+     * Append the strategy that places the VMs associated to the given actions.
+     * The VMs try first to stay on their current node.
+     *
+     * @param strategies    the strategies to complete
+     * @param actions       the actions
+     * @param withResources {@code true} to use the placement heuristic stated by the parameters
+     *                      when there are shareable resources. {@code false} for a random placement
+     * @see #getHostSelector(boolean)
+     */
+    public void placeVMs(List<AbstractStrategy<?>> strategies, List<VMTransition> actions, boolean withResources) {
+        if (!actions.isEmpty()) {
+            IntVar[] hosts = dSlices(actions).map(Slice::getHoster).filter(v -> !v.isInstantiated()).toArray(IntVar[]::new);
+            if (hosts.length > 0) {
+                strategies.add(new IntStrategy(hosts, new HostingVariableSelector(rp.getModel(), schedHeuristic), getHostSelector(withResources)));
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.limits.FailCounter;
+import org.chocosolver.solver.search.loop.lns.neighbors.INeighbor;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainMin;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.search.strategy.strategy.IntStrategy;
+import org.chocosolver.solver.search.strategy.strategy.StrategiesSequencer;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A declarative description of the search strategy used by
+ * {@link CMinMTTR} and {@link org.btrplace.scheduler.choco.constraint.migration.CMinMigrations}.
+ * <p>
+ * The pipeline is a sequence of {@link SearchStage} that are branched on in order.
+ * The stages can be re-ordered, removed, or replaced by custom ones, for example
+ * to rely on {@link Search#activityBasedSearch(IntVar...)} or {@link Search#domOverWDegSearch(IntVar...)}.
+ * A last stage that instantiates the end of the reconfiguration and the cost is always
+ * appended as the cost constraints are posted when it is reached.
+ * <p>
+ * The pipeline can also wrap the search with a last-conflict heuristic, and turn on
+ * Luby restarts or a large neighbourhood search. As a large neighbourhood search
+ * never proves optimality, it should be used with a time limit.
+ * <p>
+ * A pipeline is set using {@link org.btrplace.scheduler.choco.Parameters#setSearchPipeline(SearchPipeline)}.
+ * It does not retain any state from the problems it is applied on.
+ *
+ * @author Fabien Hermenier
+ */
+public class SearchPipeline {
+
+    private final List<SearchStage> stages;
+
+    private int lastConflict = 0;
+
+    private int lubyScale = 0;
+
+    private Function<SearchContext, INeighbor> neighbours = null;
+
+    private long lnsFailLimit = 0;
+
+    /**
+     * Make a new pipeline.
+     *
+     * @param stages the stages, in order
+     */
+    public SearchPipeline(SearchStage... stages) {
+        this.stages = new ArrayList<>(Arrays.asList(stages));
+    }
+
+    /**
+     * Make the default pipeline of {@link CMinMTTR}.
+     *
+     * @return a new pipeline
+     */
+    public static SearchPipeline newMinMTTR() {
+        return new SearchPipeline(DefaultSearchStage.EXCLUDED_VMS_PLACEMENT,
+                DefaultSearchStage.BAD_VMS_PLACEMENT,
+                DefaultSearchStage.GOOD_VMS_PLACEMENT,
+                DefaultSearchStage.RELOCATION_METHODS,
+                DefaultSearchStage.NODE_STARTS,
+                DefaultSearchStage.VM_STARTS,
+                DefaultSearchStage.STABLE_NODES_FIRST,
+                DefaultSearchStage.VM_ENDS);
+    }
+
+    /**
+     * Make the default pipeline of {@link org.btrplace.scheduler.choco.constraint.migration.CMinMigrations}.
+     * This is the pipeline of {@link CMinMTTR} that also fixes the duration of the node actions.
+     *
+     * @return a new pipeline
+     */
+    public static SearchPipeline newMinMigrations() {
+        SearchPipeline p = newMinMTTR();
+        p.stages.add(p.stages.indexOf(DefaultSearchStage.NODE_STARTS) + 1, DefaultSearchStage.NODE_DURATIONS);
+        return p;
+    }
+
+    /**
+     * Get the stages.
+     *
+     * @return the stages, in order
+     */
+    public List<SearchStage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Append a stage.
+     *
+     * @param s the stage to add
+     * @return {@code this}
+     */
+    public SearchPipeline add(SearchStage s) {
+        stages.add(s);
+        return this;
+    }
+
+    /**
+     * Insert a stage at a given position.
+     *
+     * @param idx the position
+     * @param s   the stage to insert
+     * @return {@code this}
+     */
+    public SearchPipeline add(int idx, SearchStage s) {
+        stages.add(idx, s);
+        return this;
+    }
+
+    /**
+     * Replace a stage.
+     *
+     * @param old the stage to replace
+     * @param s   the new stage
+     * @return {@code true} iff the stage was replaced
+     */
+    public boolean replace(SearchStage old, SearchStage s) {
+        int idx = stages.indexOf(old);
+        if (idx < 0) {
+            return false;
+        }
+        stages.set(idx, s);
+        return true;
+    }
+
+    /**
+     * Remove a stage.
+     *
+     * @param s the stage to remove
+     * @return {@code true} iff the stage was removed
+     */
+    public boolean remove(SearchStage s) {
+        return stages.remove(s);
+    }
+
+    /**
+     * Wrap the search with a last-conflict heuristic.
+     * See {@link Search#lastConflict(AbstractStrategy, int)}.
+     *
+     * @param k the number of conflicting variables to remember. {@code 0} to disable
+     * @return {@code this}
+     */
+    public SearchPipeline setLastConflict(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of conflicting variables must be >= 0");
+        }
+        lastConflict = k;
+        return this;
+    }
+
+    /**
+     * Get the number of conflicting variables remembered by the last-conflict heuristic.
+     *
+     * @return {@code 0} if the heuristic is not used
+     */
+    public int getLastConflict() {
+        return lastConflict;
+    }
+
+    /**
+     * Restart the search according to a Luby sequence of failure limits.
+     *
+     * @param scale the scale factor of the sequence. {@code 0} to disable the restarts
+     * @return {@code this}
+     */
+    public SearchPipeline setLubyRestarts(int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("The scale factor must be >= 0");
+        }
+        lubyScale = scale;
+        return this;
+    }
+
+    /**
+     * Get the scale factor of the Luby restarts.
+     *
+     * @return {@code 0} if the restarts are disabled
+     */
+    public int getLubyRestarts() {
+        return lubyScale;
+    }
+
+    /**
+     * Use a large neighbourhood search once a first solution is computed.
+     *
+     * @param n         the function that makes the neighbourhood from the context of the search.
+     *                  {@code null} to disable the large neighbourhood search
+     * @param failLimit the number of failures before moving to another neighbour. &gt; 0
+     * @return {@code this}
+     */
+    public SearchPipeline setLNS(Function<SearchContext, INeighbor> n, long failLimit) {
+        if (n != null && failLimit <= 0) {
+            throw new IllegalArgumentException("The fail limit must be > 0");
+        }
+        neighbours = n;
+        lnsFailLimit = failLimit;
+        return this;
+    }
+
+    /**
+     * Install the search on the solver of a problem.
+     *
+     * @param ctx the context of the search
+     */
+    public void apply(SearchContext ctx) {
+        ReconfigurationProblem rp = ctx.getProblem();
+        Solver s = rp.getSolver();
+        List<AbstractStrategy<?>> strategies = new ArrayList<>();
+        for (SearchStage st : stages) {
+            st.build(ctx, strategies);
+        }
+        //At this stage only it matters to plug the cost constraints
+        strategies.add(new IntStrategy(new IntVar[]{rp.getEnd(), ctx.getCost()}, new MyInputOrder<>(s, ctx.getObjective()), new IntDomainMin()));
+
+        AbstractStrategy<?> search = new StrategiesSequencer(s.getEnvironment(), strategies.toArray(new AbstractStrategy[strategies.size()]));
+        if (lastConflict > 0) {
+            search = Search.lastConflict(search, lastConflict);
+        }
+        s.setSearch(search);
+        if (lubyScale > 0) {
+            s.setLubyRestart(lubyScale, 2, new FailCounter(rp.getModel(), lubyScale), Integer.MAX_VALUE);
+        }
+        if (neighbours != null) {
+            s.setLNS(neighbours.apply(ctx), new FailCounter(rp.getModel(), lnsFailLimit));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+
+import java.util.List;
+
+/**
+ * A stage of a {@link SearchPipeline}.
+ * A stage appends the strategies that branch on a part of the problem.
+ * See {@link DefaultSearchStage} for the stages of the default pipelines.
+ *
+ * @author Fabien Hermenier
+ */
+@FunctionalInterface
+public interface SearchStage {
+
+    /**
+     * Append the strategies of the stage.
+     *
+     * @param ctx        the context of the search
+     * @param strategies the strategies of the previous stages. To complete
+     */
+    void build(SearchContext ctx, List<AbstractStrategy<?>> strategies);
+}
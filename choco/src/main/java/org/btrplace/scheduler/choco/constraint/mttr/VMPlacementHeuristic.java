@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+/**
+ * The heuristics that select the host of the VMs to place.
+ *
+ * @author Fabien Hermenier
+ */
+public enum VMPlacementHeuristic {
+
+    /**
+     * Host the VMs on the least loaded node, with regards to the
+     * {@link org.btrplace.scheduler.choco.Parameters#getLoadEstimator()}.
+     * It requires shareable resources and falls back to {@link #RANDOM} otherwise.
+     * See {@link WorstFit}.
+     */
+    WORST_FIT,
+
+    /**
+     * Host the VMs on the least loaded node that can host them, with regards to the
+     * {@link org.btrplace.scheduler.choco.Parameters#getLoadEstimator()}.
+     * The nodes are indexed by their load so the decisions do not browse all the nodes.
+     * It requires shareable resources and falls back to {@link #RANDOM} otherwise.
+     * See {@link IndexedWorstFit}.
+     */
+    INDEXED_WORST_FIT,
+
+    /**
+     * Host the VMs on the most loaded node that can host them, with regards to the
+     * {@link org.btrplace.scheduler.choco.Parameters#getLoadEstimator()}.
+     * It requires shareable resources and falls back to {@link #RANDOM} otherwise.
+     * See {@link IndexedBestFit}.
+     */
+    INDEXED_BEST_FIT,
+
+    /**
+     * Host the VMs on the first node that can host them.
+     * It requires shareable resources and falls back to {@link #RANDOM} otherwise.
+     * See {@link IndexedFirstFit}.
+     */
+    INDEXED_FIRST_FIT,
+
+    /**
+     * Host the VMs on random nodes, according to {@link org.btrplace.scheduler.choco.Parameters#getRandomSeed()}.
+     * See {@link RandomVMPlacement}.
+     */
+    RANDOM
+}
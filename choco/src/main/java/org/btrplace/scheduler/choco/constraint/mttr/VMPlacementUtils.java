@@ -20,7 +20,9 @@ package org.btrplace.scheduler.choco.constraint.mttr;
 
 import org.btrplace.model.Mapping;
 import org.btrplace.model.VM;
+import org.btrplace.scheduler.choco.Parameters;
 import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
 import org.chocosolver.solver.variables.IntVar;
 
 import java.util.HashMap;
@@ -68,4 +70,32 @@ public final class VMPlacementUtils {
         }
         return false;
     }
+
+    /**
+     * Make the selector that picks the host of the VMs to place, as stated by the parameters.
+     * The placement is random when there is no shareable resource to balance.
+     *
+     * @param rp           the problem
+     * @param ps           the parameters
+     * @param map          the VM -> placement variable mapping
+     * @param useResources {@code true} if the problem has shareable resources
+     * @return the selector
+     */
+    public static IntValueSelector makeHostSelector(ReconfigurationProblem rp, Parameters ps, Map<IntVar, VM> map, boolean useResources) {
+        if (useResources) {
+            switch (ps.getVMPlacementHeuristic()) {
+                case WORST_FIT:
+                    return new WorstFit(map, rp, ps.getLoadEstimator());
+                case INDEXED_WORST_FIT:
+                    return new IndexedWorstFit(map, rp, ps.getLoadEstimator());
+                case INDEXED_BEST_FIT:
+                    return new IndexedBestFit(map, rp, ps.getLoadEstimator());
+                case INDEXED_FIRST_FIT:
+                    return new IndexedFirstFit(map, rp, ps.getLoadEstimator());
+                default:
+                    break;
+            }
+        }
+        return new RandomVMPlacement(rp, map, true, ps.getRandomSeed());
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.Slice;
+import org.btrplace.scheduler.choco.transition.VMTransition;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
+import org.chocosolver.solver.search.strategy.selectors.variables.VariableSelector;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A placement heuristic to warm-start the search from a known placement.
+ * Each hinted VM is first placed on its hinted node, as long as this node is still
+ * a possible host. Once no hint can be followed anymore, the heuristic hands over to the
+ * next strategies.
+ *
+ * @author Fabien Hermenier
+ */
+public class WarmStartPlacement implements VariableSelector<IntVar>, IntValueSelector {
+
+    private TObjectIntHashMap<IntVar> hints;
+
+    private IntVar[] scope;
+
+    /**
+     * Make a new heuristic.
+     *
+     * @param rp    the problem to rely on
+     * @param place the hinted host of each VM. Unknown VMs or nodes are ignored
+     */
+    public WarmStartPlacement(ReconfigurationProblem rp, Map<VM, Node> place) {
+        hints = new TObjectIntHashMap<>(place.size(), 0.5f, -1);
+        List<IntVar> vars = new ArrayList<>(place.size());
+        for (Map.Entry<VM, Node> e : place.entrySet()) {
+            VMTransition t = rp.getVMAction(e.getKey());
+            int idx = rp.getNode(e.getValue());
+            if (t == null || idx < 0) {
+                continue;
+            }
+            Slice d = t.getDSlice();
+            if (d != null && !d.getHoster().isInstantiated()) {
+                hints.put(d.getHoster(), idx);
+                vars.add(d.getHoster());
+            }
+        }
+        scope = vars.toArray(new IntVar[vars.size()]);
+    }
+
+    /**
+     * Get the variables that are hinted.
+     *
+     * @return an array of hosting variables. May be empty
+     */
+    public IntVar[] getScope() {
+        return scope;
+    }
+
+    @Override
+    public IntVar getVariable(IntVar[] variables) {
+        for (IntVar v : variables) {
+            if (!v.isInstantiated() && v.contains(hints.get(v))) {
+                return v;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int selectValue(IntVar v) {
+        return hints.get(v);
+    }
+}
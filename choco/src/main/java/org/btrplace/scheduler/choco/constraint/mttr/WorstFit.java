@@ -157,7 +157,7 @@ public class WorstFit implements IntValueSelector {
         double[] normalised = new double[capas.length];
         int[] usage = usage(rp.getVM(vm));
         for (int i = 0; i < capas.length; i++) {
-            normalised[i] = (1.0d * loads[i].get() + usage[i]) / capas[i];
+            normalised[i] = (1.0d * loads[i].get() + packing.getLoadOffset(i, nId) + usage[i]) / capas[i];
         }
         return globalLoad.getLoad(normalised);
     }
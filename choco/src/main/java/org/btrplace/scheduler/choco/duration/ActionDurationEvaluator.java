@@ -38,4 +38,14 @@ public interface ActionDurationEvaluator<E extends Element> {
      * @return a positive integer
      */
     int evaluate(Model mo, E e);
+
+    /**
+     * Tell if the evaluated durations only depend on the element and the attributes of the model.
+     * In that case, the durations can be memoised until the attributes change.
+     *
+     * @return {@code true} iff the durations can be memoised. {@code false} by default
+     */
+    default boolean isCacheable() {
+        return false;
+    }
 }
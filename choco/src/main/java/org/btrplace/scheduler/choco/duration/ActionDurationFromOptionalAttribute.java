@@ -55,6 +55,11 @@ public class ActionDurationFromOptionalAttribute<E extends Element> implements A
         return parent.evaluate(mo, e);
     }
 
+    @Override
+    public boolean isCacheable() {
+        return parent.isCacheable();
+    }
+
     /**
      * Get the parent evaluator to use when
      * the attribute is not set.
@@ -45,6 +45,11 @@ public class ConstantActionDuration<E extends Element> implements ActionDuration
         return duration;
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
 
     @Override
     public String toString() {
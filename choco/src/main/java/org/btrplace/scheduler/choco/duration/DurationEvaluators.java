@@ -18,8 +18,11 @@
 
 package org.btrplace.scheduler.choco.duration;
 
+import org.btrplace.model.Attributes;
 import org.btrplace.model.Element;
 import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
 import org.btrplace.plan.event.Action;
 import org.btrplace.plan.event.Allocate;
 import org.btrplace.plan.event.BootNode;
@@ -34,8 +37,16 @@ import org.btrplace.plan.event.SuspendVM;
 import org.btrplace.scheduler.SchedulerException;
 import org.btrplace.scheduler.SchedulerModelingException;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class to store the {@link ActionDurationEvaluator} associated to each of the possible actions.
@@ -43,6 +54,14 @@ import java.util.Map;
  * By default, each action is associated to a {@link ActionDurationFromOptionalAttribute} evaluator.
  * See https://github.com/fhermeni/btrplace-solver/wiki/attributes to get the attribute identifiers.
  * If the attribute is not set, a {@link ConstantActionDuration} is used and evaluate the duration to 1 second.
+ * <p>
+ * The durations computed by the evaluators that are {@link ActionDurationEvaluator#isCacheable()} are memoised
+ * in a table per attributes, per action and per element identifier. The table of some attributes is shared among
+ * the solving processes that rely on these attributes, for example the partitions of a model, while processes that
+ * rely on distinct attributes keep their own table. A table is dropped once its attributes are modified
+ * (see {@link org.btrplace.model.Attributes#getRevision()}) or no longer used, and all the tables are dropped when
+ * the evaluators are registered or un-registered.
+ * An evaluator that is modified after its registration must then be registered again.
  *
  * @author Fabien Hermenier
  */
@@ -50,12 +69,24 @@ public class DurationEvaluators {
 
     private Map<Class<? extends Action>, ActionDurationEvaluator<Element>> durations;
 
+    /**
+     * The memoised durations, indexed by the identity hash code of their attributes.
+     * The attributes are compared by identity, as their equality is costly, and weakly referenced.
+     */
+    private final Map<Integer, List<Memo>> memos;
+
+    /**
+     * The memos whose attributes have been garbage collected.
+     */
+    private final ReferenceQueue<Attributes> released;
 
     /**
      * Make a new mapper.
      */
     public DurationEvaluators() {
         durations = new HashMap<>();
+        memos = new HashMap<>();
+        released = new ReferenceQueue<>();
     }
 
     /**
@@ -66,6 +97,7 @@ public class DurationEvaluators {
      * @return {@code false} if this action delete a previous evaluator for that action
      */
     public boolean register(Class<? extends Action> a, ActionDurationEvaluator e) {
+        clearMemos();
         return durations.put(a, e) == null;
     }
 
@@ -77,6 +109,7 @@ public class DurationEvaluators {
      * @return {@code true} if a {@link ActionDurationEvaluator} was associated to the action.
      */
     public boolean unRegister(Class<? extends Action> a) {
+        clearMemos();
         return durations.remove(a) != null;
     }
 
@@ -113,13 +146,75 @@ public class DurationEvaluators {
         if (ev == null) {
             throw new SchedulerModelingException(null, "Unable to estimate the duration of action '" + a.getSimpleName() + "' related to '" + e + "'");
         }
+        Memo m = ev.isCacheable() ? memo(mo.getAttributes()) : null;
+        if (m != null) {
+            int d = m.get(a, e);
+            if (d > 0) {
+                return d;
+            }
+        }
         int d = ev.evaluate(mo, e);
         if (d <= 0) {
             throw new SchedulerModelingException(null, "The duration for action " + a.getSimpleName() + " over '" + e + "' has been evaluated to a negative value (" + d + "). Unsupported");
         }
+        if (m != null) {
+            m.set(a, e, d);
+        }
         return d;
     }
 
+    /**
+     * Get the memoised durations for given attributes.
+     * The memo of these attributes is replaced if it was for another revision.
+     *
+     * @param attrs the attributes
+     * @return the memo. {@code null} if the attributes do not track their revisions
+     */
+    private Memo memo(Attributes attrs) {
+        long rev = attrs.getRevision();
+        if (rev < 0) {
+            return null;
+        }
+        int h = System.identityHashCode(attrs);
+        synchronized (memos) {
+            purge();
+            List<Memo> bucket = memos.computeIfAbsent(h, k -> new ArrayList<>(1));
+            for (ListIterator<Memo> ite = bucket.listIterator(); ite.hasNext(); ) {
+                Memo m = ite.next();
+                if (m.get() == attrs) {
+                    if (m.revision != rev) {
+                        m = new Memo(attrs, h, rev, released);
+                        ite.set(m);
+                    }
+                    return m;
+                }
+            }
+            Memo m = new Memo(attrs, h, rev, released);
+            bucket.add(m);
+            return m;
+        }
+    }
+
+    /**
+     * Drop the memos of the attributes that have been garbage collected.
+     * The caller must hold the lock on {@link #memos}.
+     */
+    private void purge() {
+        for (Reference<? extends Attributes> r = released.poll(); r != null; r = released.poll()) {
+            Memo m = (Memo) r;
+            List<Memo> bucket = memos.get(m.hash);
+            if (bucket != null && bucket.remove(m) && bucket.isEmpty()) {
+                memos.remove(m.hash);
+            }
+        }
+    }
+
+    private void clearMemos() {
+        synchronized (memos) {
+            memos.clear();
+        }
+    }
+
     /**
      * Make a new {@code DurationEvaluators} and fulfill it
      * using default a default evaluator for each action.
@@ -142,4 +237,65 @@ public class DurationEvaluators {
         dev.register(Allocate.class, new ActionDurationFromOptionalAttribute<>("allocate", new ConstantActionDuration<>(1)));
         return dev;
     }
+
+    /**
+     * The durations computed for a revision of some attributes, that are weakly referenced.
+     * For each action, the durations are stored in an array indexed by the element identifiers,
+     * {@code 0} meaning a duration is not computed yet.
+     * Concurrent accesses may lead to compute a duration several times, but never to a wrong duration.
+     */
+    private static final class Memo extends WeakReference<Attributes> {
+
+        private final int hash;
+
+        private final long revision;
+
+        private final Map<Class<? extends Action>, int[]> vms;
+
+        private final Map<Class<? extends Action>, int[]> nodes;
+
+        Memo(Attributes attrs, int hash, long revision, ReferenceQueue<Attributes> q) {
+            super(attrs, q);
+            this.hash = hash;
+            this.revision = revision;
+            vms = new ConcurrentHashMap<>();
+            nodes = new ConcurrentHashMap<>();
+        }
+
+        private Map<Class<? extends Action>, int[]> table(Element e) {
+            if (e instanceof VM) {
+                return vms;
+            } else if (e instanceof Node) {
+                return nodes;
+            }
+            return null;
+        }
+
+        int get(Class<? extends Action> a, Element e) {
+            Map<Class<? extends Action>, int[]> t = table(e);
+            int[] durations = t == null ? null : t.get(a);
+            if (durations == null || e.id() >= durations.length) {
+                return 0;
+            }
+            return durations[e.id()];
+        }
+
+        void set(Class<? extends Action> a, Element e, int d) {
+            Map<Class<? extends Action>, int[]> t = table(e);
+            if (t == null || e.id() < 0) {
+                return;
+            }
+            int[] durations = t.get(a);
+            if (durations == null || e.id() >= durations.length) {
+                durations = t.compute(a, (k, cur) -> {
+                    if (cur != null && e.id() < cur.length) {
+                        return cur;
+                    }
+                    int size = Math.max(e.id() + 1, cur == null ? 16 : cur.length * 2);
+                    return cur == null ? new int[size] : Arrays.copyOf(cur, size);
+                });
+            }
+            durations[e.id()] = d;
+        }
+    }
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.extensions;
+
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.constraints.PropagatorPriority;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.events.IntEventType;
+import org.chocosolver.util.ESat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A constraint to state that the slices of a set of tasks never overlap on a same host.
+ * Each task may have a c-slice, that leaves its host at a given moment, and a d-slice, that arrives
+ * on its host at a given moment. When the d-slice of a task and the c-slice of another
+ * task are on the same host, the c-slice must end before the d-slice starts.
+ * <p>
+ * This replaces the reified precedences posted for every pair of tasks by a single propagator.
+ * Each propagation computes, for each host, the latest moment a c-slice leaves it
+ * and the earliest deadline of the d-slices that arrive on it. Then the starts, the ends and
+ * the hosts of the d-slices are filtered in {@code O(n log n)} plus the number of removed values.
+ *
+ * @author Fabien Hermenier
+ */
+public class ContinuousSpread extends Constraint {
+
+    /**
+     * Make a new constraint.
+     * The arrays are indexed by task. A task without a c-slice or a d-slice has {@code null} variables.
+     *
+     * @param dHosts  the host of each d-slice
+     * @param dStarts the moment each d-slice starts
+     * @param cHosts  the host of each c-slice
+     * @param cEnds   the moment each c-slice ends
+     */
+    public ContinuousSpread(IntVar[] dHosts, IntVar[] dStarts, IntVar[] cHosts, IntVar[] cEnds) {
+        super("continuousSpread", new ContinuousSpreadPropagator(dHosts, dStarts, cHosts, cEnds));
+    }
+
+    /**
+     * The propagator. The variables are the hosts of the d-slices, their starts,
+     * the hosts of the c-slices, then their ends.
+     */
+    static class ContinuousSpreadPropagator extends Propagator<IntVar> {
+
+        private final int nbD;
+
+        private final int nbC;
+
+        /**
+         * The task owning each d-slice.
+         */
+        private final int[] dOwner;
+
+        /**
+         * The task owning each c-slice.
+         */
+        private final int[] cOwner;
+
+        /**
+         * Per host, the latest lower bound of the c-slices ends, the owning task, and the second latest one.
+         */
+        private final int[] horizon;
+        private final int[] horizonOwner;
+        private final int[] horizon2;
+
+        /**
+         * Per host, the earliest upper bound of the d-slices starts, the owning task, and the second earliest one.
+         */
+        private final int[] deadline;
+        private final int[] deadlineOwner;
+        private final int[] deadline2;
+
+        /**
+         * The hosts having a c-slice, as {@code horizon << 32 | host}.
+         */
+        private final long[] sortedHosts;
+
+        private int nbHorizons;
+
+        /**
+         * The hosts having a d-slice.
+         */
+        private final int[] deadlineHosts;
+
+        private int nbDeadlines;
+
+        ContinuousSpreadPropagator(IntVar[] dHosts, IntVar[] dStarts, IntVar[] cHosts, IntVar[] cEnds) {
+            this(collect(dHosts, dStarts, cHosts, cEnds), owners(dHosts), owners(cHosts));
+        }
+
+        private ContinuousSpreadPropagator(IntVar[] vs, int[] dOwners, int[] cOwners) {
+            super(vs, PropagatorPriority.LINEAR, false);
+            dOwner = dOwners;
+            cOwner = cOwners;
+            nbD = dOwners.length;
+            nbC = cOwners.length;
+            int nbHosts = 0;
+            for (int i = 0; i < nbD; i++) {
+                nbHosts = Math.max(nbHosts, dHost(i).getUB() + 1);
+            }
+            for (int i = 0; i < nbC; i++) {
+                nbHosts = Math.max(nbHosts, cHost(i).getUB() + 1);
+            }
+            horizon = new int[nbHosts];
+            horizonOwner = new int[nbHosts];
+            horizon2 = new int[nbHosts];
+            deadline = new int[nbHosts];
+            deadlineOwner = new int[nbHosts];
+            deadline2 = new int[nbHosts];
+            sortedHosts = new long[nbC];
+            deadlineHosts = new int[nbD];
+            Arrays.fill(horizon, Integer.MIN_VALUE);
+            Arrays.fill(horizon2, Integer.MIN_VALUE);
+            Arrays.fill(horizonOwner, -1);
+            Arrays.fill(deadline, Integer.MAX_VALUE);
+            Arrays.fill(deadline2, Integer.MAX_VALUE);
+            Arrays.fill(deadlineOwner, -1);
+        }
+
+        private static IntVar[] collect(IntVar[] dHosts, IntVar[] dStarts, IntVar[] cHosts, IntVar[] cEnds) {
+            List<IntVar> l = new ArrayList<>();
+            for (IntVar[] a : new IntVar[][]{dHosts, dStarts, cHosts, cEnds}) {
+                for (IntVar v : a) {
+                    if (v != null) {
+                        l.add(v);
+                    }
+                }
+            }
+            return l.toArray(new IntVar[l.size()]);
+        }
+
+        private static int[] owners(IntVar[] hosts) {
+            int nb = 0;
+            for (IntVar h : hosts) {
+                if (h != null) {
+                    nb++;
+                }
+            }
+            int[] owners = new int[nb];
+            int idx = 0;
+            for (int i = 0; i < hosts.length; i++) {
+                if (hosts[i] != null) {
+                    owners[idx++] = i;
+                }
+            }
+            return owners;
+        }
+
+        private IntVar dHost(int i) {
+            return vars[i];
+        }
+
+        private IntVar dStart(int i) {
+            return vars[nbD + i];
+        }
+
+        private IntVar cHost(int i) {
+            return vars[2 * nbD + i];
+        }
+
+        private IntVar cEnd(int i) {
+            return vars[2 * nbD + nbC + i];
+        }
+
+        @Override
+        public int getPropagationConditions(int idx) {
+            if (idx < nbD || (idx >= 2 * nbD && idx < 2 * nbD + nbC)) {
+                //The hosts
+                return IntEventType.instantiation();
+            }
+            return IntEventType.boundAndInst();
+        }
+
+        @Override
+        public void propagate(int evtmask) throws ContradictionException {
+            boolean again;
+            do {
+                int nbHosts = computeHorizons();
+                computeDeadlines();
+                again = filterDSlices(nbHosts);
+                filterCSlices();
+            } while (again);
+        }
+
+        /**
+         * Filter the d-slices.
+         *
+         * @param nbHosts the number of hosts having a c-slice
+         * @return {@code true} iff a d-slice host has been instantiated
+         * @throws ContradictionException if a d-slice cannot start after the c-slices leaving its host
+         */
+        private boolean filterDSlices(int nbHosts) throws ContradictionException {
+            boolean instantiated = false;
+            for (int i = 0; i < nbD; i++) {
+                IntVar h = dHost(i);
+                if (h.isInstantiated()) {
+                    int v = h.getValue();
+                    if (v >= 0 && v < horizon.length) {
+                        dStart(i).updateLowerBound(horizon(v, dOwner[i]), this);
+                    }
+                } else {
+                    //Browse the hosts by decreasing horizon while it exceeds the latest start
+                    int ub = dStart(i).getUB();
+                    for (int k = nbHosts - 1; k >= 0 && (int) (sortedHosts[k] >>> 32) > ub; k--) {
+                        int host = (int) sortedHosts[k];
+                        if (horizon(host, dOwner[i]) > ub) {
+                            h.removeValue(host, this);
+                        }
+                    }
+                    instantiated |= h.isInstantiated();
+                }
+            }
+            return instantiated;
+        }
+
+        private void filterCSlices() throws ContradictionException {
+            for (int j = 0; j < nbC; j++) {
+                IntVar h = cHost(j);
+                if (h.isInstantiated()) {
+                    int v = h.getValue();
+                    if (v >= 0 && v < deadline.length) {
+                        cEnd(j).updateUpperBound(deadline(v, cOwner[j]), this);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compute the horizon of each host, using the c-slices having a known host.
+         * Only the hosts used by the previous computation are reset.
+         *
+         * @return the number of hosts having a c-slice. Their identifiers are in {@link #sortedHosts}
+         */
+        private int computeHorizons() {
+            for (int k = 0; k < nbHorizons; k++) {
+                int v = (int) sortedHosts[k];
+                horizon[v] = Integer.MIN_VALUE;
+                horizon2[v] = Integer.MIN_VALUE;
+                horizonOwner[v] = -1;
+            }
+            int nb = 0;
+            for (int j = 0; j < nbC; j++) {
+                IntVar h = cHost(j);
+                if (!h.isInstantiated()) {
+                    continue;
+                }
+                int v = h.getValue();
+                int lb = cEnd(j).getLB();
+                if (horizonOwner[v] < 0) {
+                    sortedHosts[nb++] = v;
+                }
+                if (horizonOwner[v] < 0 || lb > horizon[v]) {
+                    horizon2[v] = horizon[v];
+                    horizon[v] = lb;
+                    horizonOwner[v] = cOwner[j];
+                } else if (lb > horizon2[v]) {
+                    horizon2[v] = lb;
+                }
+            }
+            for (int k = 0; k < nb; k++) {
+                int v = (int) sortedHosts[k];
+                sortedHosts[k] = ((long) horizon[v] << 32) | v;
+            }
+            Arrays.sort(sortedHosts, 0, nb);
+            nbHorizons = nb;
+            return nb;
+        }
+
+        /**
+         * Compute the deadline of each host, using the d-slices having a known host.
+         * Only the hosts used by the previous computation are reset.
+         */
+        private void computeDeadlines() {
+            for (int k = 0; k < nbDeadlines; k++) {
+                int v = deadlineHosts[k];
+                deadline[v] = Integer.MAX_VALUE;
+                deadline2[v] = Integer.MAX_VALUE;
+                deadlineOwner[v] = -1;
+            }
+            nbDeadlines = 0;
+            for (int i = 0; i < nbD; i++) {
+                IntVar h = dHost(i);
+                if (!h.isInstantiated()) {
+                    continue;
+                }
+                int v = h.getValue();
+                int ub = dStart(i).getUB();
+                if (deadlineOwner[v] < 0) {
+                    deadlineHosts[nbDeadlines++] = v;
+                }
+                if (deadlineOwner[v] < 0 || ub < deadline[v]) {
+                    deadline2[v] = deadline[v];
+                    deadline[v] = ub;
+                    deadlineOwner[v] = dOwner[i];
+                } else if (ub < deadline2[v]) {
+                    deadline2[v] = ub;
+                }
+            }
+        }
+
+        /**
+         * The moment the last c-slice of another task leaves a host.
+         */
+        private int horizon(int h, int owner) {
+            return horizonOwner[h] == owner ? horizon2[h] : horizon[h];
+        }
+
+        /**
+         * The latest moment the first d-slice of another task arrives on a host.
+         */
+        private int deadline(int h, int owner) {
+            return deadlineOwner[h] == owner ? deadline2[h] : deadline[h];
+        }
+
+        @Override
+        public ESat isEntailed() {
+            if (!isCompletelyInstantiated()) {
+                return ESat.UNDEFINED;
+            }
+            computeHorizons();
+            for (int i = 0; i < nbD; i++) {
+                int h = dHost(i).getValue();
+                if (h >= 0 && h < horizon.length && dStart(i).getValue() < horizon(h, dOwner[i])) {
+                    return ESat.FALSE;
+                }
+            }
+            return ESat.TRUE;
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.chocosolver.memory.IStateInt;
 import org.chocosolver.solver.constraints.Constraint;
 import org.chocosolver.solver.variables.IntVar;
 
+import java.util.function.IntConsumer;
+
 /**
  * Lighter but faster version of BinPacking that does not provide the knapsack filtering
  *
@@ -49,6 +51,16 @@ public class VectorPacking extends Constraint {
         return ((VectorPackingPropagator) propagators[0]).assignedLoad();
     }
 
+    /**
+     * Register a listener that is notified with the index of a bin each time its assigned load
+     * is about to change. See {@link VectorPackingPropagator#addAssignedLoadListener(IntConsumer)}.
+     *
+     * @param l the listener to add
+     */
+    public void addAssignedLoadListener(IntConsumer l) {
+        ((VectorPackingPropagator) propagators[0]).addAssignedLoadListener(l);
+    }
+
 
 /*    public ESat isSatisfied(int[] tuple) {
         int[][] l = new int[nbDims][nbBins];
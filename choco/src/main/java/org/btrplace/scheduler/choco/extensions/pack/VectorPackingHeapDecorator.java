@@ -43,10 +43,6 @@ public class VectorPackingHeapDecorator {
      */
     private List<PriorityQueue<Integer>> maxSlackBinHeap;
 
-    private int lastWorld = -1;
-    private long lastNbOfBacktracks = -1;
-    private long lastNbOfRestarts = -1;
-
     public VectorPackingHeapDecorator(VectorPackingPropagator p) {
         this.p = p;
         this.maxSlackBinHeap = new ArrayList<>(p.nbDims);
@@ -66,29 +62,21 @@ public class VectorPackingHeapDecorator {
         return p.loads[dim][bin].getUB() - p.loads[dim][bin].getLB();
     }
 
-    private void reHeap() {
-        for (int d = 0; d < p.nbDims; d++) {
-            maxSlackBinHeap.get(d).clear();
-            for (int b = 0; b < p.nbBins; b++) {
-                if (loadSlack(d, b) > 0) {
-                    maxSlackBinHeap.get(d).offer(b);
-                }
+    /**
+     * rebuild the heap of a dimension with the bins having a load slack greater than a threshold
+     *
+     * @param d         the dimension
+     * @param threshold the minimum load slack (excluded)
+     */
+    private void reHeap(int d, long threshold) {
+        maxSlackBinHeap.get(d).clear();
+        for (int b = 0; b < p.nbBins; b++) {
+            if (loadSlack(d, b) > threshold) {
+                maxSlackBinHeap.get(d).offer(b);
             }
         }
     }
 
-    private void checkReHeap(boolean forceReHeap) {
-        int currentWorld = p.getModel().getEnvironment().getWorldIndex();
-        long currentBt = p.getModel().getSolver().getMeasures().getBackTrackCount();
-        long currentRestart = p.getModel().getSolver().getMeasures().getRestartCount();
-        if (forceReHeap || currentWorld < lastWorld || currentBt != lastNbOfBacktracks || currentRestart > lastNbOfRestarts) {
-            reHeap();
-        }
-        lastWorld = currentWorld;
-        lastNbOfBacktracks = currentBt;
-        lastNbOfRestarts = currentRestart;
-    }
-
 
     /**
      * a comparator of load slacks
@@ -115,23 +103,25 @@ public class VectorPackingHeapDecorator {
      * if loadSlack > sumItemSizes - sumBinLoadInf then update sup(binLoad) = sumItemSizes - (sumBinLoadInf - inf(binLoad))
      * if loadSlack > sumBinLoadSup - sumItemSizes then update inf(binLoad) = sumItemSizes - (sumBinLoadSup - sup(binLoad))
      * check each rule against the bin with the maximum loadSlack and continue until it does not apply
+     * A dimension is skipped when the upper bound of its load slacks is not greater than its global slack,
+     * otherwise its heap is rebuilt with the bins on which a rule may apply.
      *
      * @throws ContradictionException if a contradiction (rules 1) is raised
      */
-    public void fixPoint(boolean loadsHaveChanged) throws ContradictionException {
+    public void fixPoint() throws ContradictionException {
         for (int d = 0; d < p.nbDims; d++) {
             if (p.sumISizes[d] > p.sumLoadSup[d].get() || p.sumISizes[d] < p.sumLoadInf[d].get()) {
                 p.fails();
             }
         }
-        checkReHeap(loadsHaveChanged);
         for (int d = 0; d < p.nbDims; d++) {
-            if (maxSlackBinHeap.get(d).isEmpty()) {
+            long deltaFromInf = p.sumISizes[d] - p.sumLoadInf[d].get();
+            long deltaToSup = p.sumLoadSup[d].get() - p.sumISizes[d];
+            if (p.maxSlack[d].get() <= Math.min(deltaFromInf, deltaToSup)) {
                 continue;
             }
+            reHeap(d, Math.min(deltaFromInf, deltaToSup));
             int nChanges;
-            long deltaFromInf = p.sumISizes[d] - p.sumLoadInf[d].get();
-            long deltaToSup = p.sumLoadSup[d].get() - p.sumISizes[d];
             do {
                 nChanges = 0;
                 if (deltaToSup > deltaFromInf) {
@@ -160,6 +150,8 @@ public class VectorPackingHeapDecorator {
 
                 }
             } while (nChanges > 0);
+            //At the fix point, no bin has a load slack greater than the global slack
+            p.maxSlack[d].set((int) Math.min(deltaFromInf, deltaToSup));
         }
     }
 
@@ -179,7 +171,7 @@ public class VectorPackingHeapDecorator {
     private int filterLoads(int d, int delta, boolean isSup) throws ContradictionException {
         assert maxSlackBinHeap != null;
         int nChanges = 0;
-        if (loadSlack(d, maxSlackBinHeap.get(d).peek()) > delta) {
+        if (!maxSlackBinHeap.get(d).isEmpty() && loadSlack(d, maxSlackBinHeap.get(d).peek()) > delta) {
             do {
                 int b = maxSlackBinHeap.get(d).poll();
                 if (isSup) {
@@ -78,7 +78,7 @@ public class VectorPackingKPSimpleDecorator {
 
     /**
      * remove all candidate items from a bin that is full
-     * then synchronize potentialLoad and sup(binLoad) accordingly
+     * then synchronize potentialLoad and sup(binLoad) accordingly on every dimension
      * if an item becomes instantiated then propagate the newly assigned bin
      *
      * @param bin the full bin
@@ -92,7 +92,10 @@ public class VectorPackingKPSimpleDecorator {
             if (p.bins[i].contains(bin) && p.iSizes[dim][i] > 0) {
                 p.bins[i].removeValue(bin, p);
                 candidate.get(bin).clear(i);
-                p.potentialLoad[dim][bin].add(-p.iSizes[dim][i]);
+                //The removal is not notified to p, so the potential load is updated on every dimension
+                for (int d = 0; d < p.nbDims; d++) {
+                    p.filterLoadSup(d, bin, p.potentialLoad[d][bin].add(-p.iSizes[d][i]));
+                }
                 if (p.bins[i].isInstantiated()) {
                     p.assignItem(i, p.bins[i].getValue());
                 }
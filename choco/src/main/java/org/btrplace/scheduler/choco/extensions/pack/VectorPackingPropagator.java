@@ -19,7 +19,6 @@
 package org.btrplace.scheduler.choco.extensions.pack;
 
 
-import org.chocosolver.memory.IStateBool;
 import org.chocosolver.memory.IStateInt;
 import org.chocosolver.solver.constraints.Propagator;
 import org.chocosolver.solver.constraints.PropagatorPriority;
@@ -33,7 +32,10 @@ import org.chocosolver.util.iterators.DisposableValueIterator;
 import org.chocosolver.util.procedure.UnaryIntProcedure;
 import org.chocosolver.util.tools.ArrayUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * Lighter but faster version of a multi dimension vector packing that does not provide the knapsack filtering
@@ -88,9 +90,22 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      */
     protected IStateInt[] sumLoadSup;
     /**
-     * Must the sumLoads be recompute since the last propagation ?
+     * The lower bound of each bin load, as accounted in {@link #sumLoadInf}. [nbDims][nbBins]
      */
-    private IStateBool loadsHaveChanged;
+    protected IStateInt[][] knownLoadInf;
+    /**
+     * The upper bound of each bin load, as accounted in {@link #sumLoadSup}. [nbDims][nbBins]
+     */
+    protected IStateInt[][] knownLoadSup;
+    /**
+     * An upper bound of the load slack of the bins, per dimension. [nbDims]
+     * The slacks only decrease along a branch so the bound stays valid until the next filtering.
+     */
+    protected IStateInt[] maxSlack;
+    /**
+     * The bins that may be filtered on a dimension, as {@code slack << 32 | bin}. [nbBins]
+     */
+    private final long[] candidates;
     /**
      * Constraint name.
      */
@@ -108,6 +123,10 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      */
     private VectorPackingHeapDecorator decoHeap;
     private VectorPackingKPSimpleDecorator decoKPSimple;
+    /**
+     * The listeners notified when the assigned load of a bin changes.
+     */
+    private final List<IntConsumer> assignedLoadListeners = new ArrayList<>();
 
     /**
      * constructor of the VectorPacking global constraint
@@ -148,18 +167,25 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
         //make backtrackable stuff
         this.potentialLoad = new IStateInt[nbDims][nbBins];
         this.assignedLoad = new IStateInt[nbDims][nbBins];
+        this.knownLoadInf = new IStateInt[nbDims][nbBins];
+        this.knownLoadSup = new IStateInt[nbDims][nbBins];
         for (int x = 0; x < nbBins; x++) {
             for (int d = 0; d < nbDims; d++) {
                 assignedLoad[d][x] = getModel().getEnvironment().makeInt();
                 potentialLoad[d][x] = getModel().getEnvironment().makeInt();
+                knownLoadInf[d][x] = getModel().getEnvironment().makeInt();
+                knownLoadSup[d][x] = getModel().getEnvironment().makeInt();
             }
         }
         sumLoadInf = new IStateInt[nbDims];
         sumLoadSup = new IStateInt[nbDims];
+        maxSlack = new IStateInt[nbDims];
         for (int d = 0; d < nbDims; d++) {
             sumLoadInf[d] = getModel().getEnvironment().makeInt();
             sumLoadSup[d] = getModel().getEnvironment().makeInt();
+            maxSlack[d] = getModel().getEnvironment().makeInt(Integer.MAX_VALUE);
         }
+        candidates = new long[nbBins];
         super.linkVariables();
     }
 
@@ -223,8 +249,8 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
     /**
      * main propagation algorithm:
      * - initialize the data at first call
-     * - recompute the sum of the load variable bounds
      * - propagate until the fix point (with or without considering the heap of bins)
+     * The sums of the load variable bounds are maintained incrementally by the fine grain propagation.
      *
      * @param evtMask type of event
      * @throws ContradictionException if a contradiction is raised
@@ -232,18 +258,11 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
     @Override
     @SuppressWarnings("squid:S3346")
     public void propagate(int evtMask) throws ContradictionException {
-        boolean recomputeLoads;
         if ((evtMask & PropagatorEventType.FULL_PROPAGATION.getMask()) != 0) {
             initialize();
-            recomputeLoads = true;
-        } else {
-            recomputeLoads = loadsHaveChanged.get();
-            if (recomputeLoads) {
-                recomputeLoadSums(); // TODO: update rather than recompute
-            }
         }
         if (decoHeap != null) {
-            decoHeap.fixPoint(recomputeLoads);
+            decoHeap.fixPoint();
         } else {
             fixPoint();
         }
@@ -255,28 +274,61 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      * the fix point procedure without heap, on each dimension:
      * - check rule 1.0: if sumItemSizes < sumBinLoadInf or sumItemSizes > sumBinLoadSups then fail
      * - filter according to rule 1.1, for each bin: sumItemSizes - (sumBinLoadSup - sup(binLoad)) <= binLoad <= sumItemSizes - (sumBinLoadInf - inf(binLoad))
+     * Rule 1.1 only applies on the bins having a load slack greater than the global slack of the dimension,
+     * so a dimension is skipped when its maximum load slack is not greater than its global slack.
      *
      * @throws ContradictionException if a contradiction (rules 1) is raised
      */
-    @SuppressWarnings("squid:S3346")
     private void fixPoint() throws ContradictionException {
+        for (int d = 0; d < nbDims; d++) {
+            if (sumISizes[d] > sumLoadSup[d].get() || sumISizes[d] < sumLoadInf[d].get()) {
+                fails();
+            }
+        }
+        for (int d = 0; d < nbDims; d++) {
+            filterDimension(d);
+        }
+    }
+
+    /**
+     * Apply rule 1.1 on a dimension until the fix point.
+     * The candidate bins are browsed by decreasing load slack and the browsing stops
+     * at the first bin having a load slack not greater than the global slack.
+     *
+     * @param d the dimension
+     * @throws ContradictionException if a contradiction (rules 1) is raised
+     */
+    @SuppressWarnings("squid:S3346")
+    private void filterDimension(int d) throws ContradictionException {
+        long fromInf = sumISizes[d] - sumLoadInf[d].get();
+        long toSup = sumLoadSup[d].get() - sumISizes[d];
+        if (maxSlack[d].get() <= Math.min(fromInf, toSup)) {
+            return;
+        }
+        int nb = 0;
+        long threshold = Math.min(fromInf, toSup);
+        for (int b = 0; b < nbBins; b++) {
+            int slack = loads[d][b].getUB() - loads[d][b].getLB();
+            if (slack > threshold) {
+                candidates[nb++] = ((long) slack << 32) | b;
+            }
+        }
+        Arrays.sort(candidates, 0, nb);
         boolean noFixPoint = true;
         while (noFixPoint) {
-            for (int d = 0; d < nbDims; d++) {
-                if (sumISizes[d] > sumLoadSup[d].get() || sumISizes[d] < sumLoadInf[d].get()) {
-                    fails();
-                }
-            }
             noFixPoint = false;
-
-            for (int d = 0; d < nbDims; d++) {
-                for (int b = 0; b < nbBins; b++) {
-                    assert (loads[d][b].getLB() >= assignedLoad[d][b].get() && loads[d][b].getUB() <= potentialLoad[d][b].get());
-                    noFixPoint |= filterLoadInf(d, b, (int) sumISizes[d] - sumLoadSup[d].get() + loads[d][b].getUB());
-                    noFixPoint |= filterLoadSup(d, b, (int) sumISizes[d] - sumLoadInf[d].get() + loads[d][b].getLB());
-                }
+            //A bin slack never exceeds its slack when the candidates were collected
+            for (int k = nb - 1; k >= 0 && (candidates[k] >>> 32) > Math.min(fromInf, toSup); k--) {
+                int b = (int) candidates[k];
+                assert (loads[d][b].getLB() >= assignedLoad[d][b].get() && loads[d][b].getUB() <= potentialLoad[d][b].get());
+                noFixPoint |= filterLoadInf(d, b, (int) (loads[d][b].getUB() - toSup));
+                fromInf = sumISizes[d] - sumLoadInf[d].get();
+                noFixPoint |= filterLoadSup(d, b, (int) (fromInf + loads[d][b].getLB()));
+                toSup = sumLoadSup[d].get() - sumISizes[d];
             }
         }
+        //At the fix point, no bin has a load slack greater than the global slack
+        maxSlack[d].set((int) Math.min(Integer.MAX_VALUE, Math.min(fromInf, toSup)));
     }
 
     /**
@@ -289,12 +341,14 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      * @throws ContradictionException if the domain of the bin load variable becomes empty
      */
     protected boolean filterLoadInf(int dim, int bin, int newLoadInf) throws ContradictionException {
-        int delta = newLoadInf - loads[dim][bin].getLB();
-        if (delta <= 0)
+        if (newLoadInf <= loads[dim][bin].getLB()) {
             return false;
+        }
         loads[dim][bin].updateLowerBound(newLoadInf, this);
-        if (sumISizes[dim] < sumLoadInf[dim].add(delta))
+        if (sumISizes[dim] < sumLoadInf[dim].add(newLoadInf - knownLoadInf[dim][bin].get())) {
             fails();
+        }
+        knownLoadInf[dim][bin].set(newLoadInf);
         return true;
     }
 
@@ -308,14 +362,14 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      * @throws ContradictionException if the domain of the bin load variable becomes empty
      */
     protected boolean filterLoadSup(int dim, int bin, int newLoadSup) throws ContradictionException {
-        int delta = newLoadSup - loads[dim][bin].getUB();
-        if (delta >= 0) {
+        if (newLoadSup >= loads[dim][bin].getUB()) {
             return false;
         }
         loads[dim][bin].updateUpperBound(newLoadSup, this);
-        if (sumISizes[dim] > sumLoadSup[dim].add(delta)) {
+        if (sumISizes[dim] > sumLoadSup[dim].add(newLoadSup - knownLoadSup[dim][bin].get())) {
             fails();
         }
+        knownLoadSup[dim][bin].set(newLoadSup);
         return true;
     }
 
@@ -345,6 +399,7 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      * @throws ContradictionException if a contradiction (rule 2) is raised
      */
     protected void assignItem(int item, int bin) throws ContradictionException {
+        notifyAssignedLoad(bin);
         for (int d = 0; d < nbDims; d++) {
             filterLoadInf(d, bin, assignedLoad[d][bin].add(iSizes[d][item]));
         }
@@ -357,7 +412,7 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
      * fine grain propagation
      * - if the event concerns a bin variable, then update data and apply rule 2:
      * on the assigned bin: binAssignedLoad <= binLoad <= binPotentialLoad
-     * - otherwise remember to recompute the load sums and do nothing
+     * - otherwise update the load sums with the new bounds of the load variable
      *
      * @param idx  the variable index
      * @param mask the event mask
@@ -373,7 +428,9 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
                 assignItem(idx, vars[idx].getValue());
             }
         } else {
-            loadsHaveChanged.set(true);
+            int d = (idx - bins.length) / nbBins;
+            int b = (idx - bins.length) % nbBins;
+            syncLoadSums(d, b);
         }
         forcePropagate(PropagatorEventType.CUSTOM_PROPAGATION);
     }
@@ -452,6 +509,8 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
 
                 loads[d][b].updateLowerBound(rLoads[d][b], this);
                 loads[d][b].updateUpperBound(rLoads[d][b] + cLoads[d][b], this);
+                knownLoadInf[d][b].set(loads[d][b].getLB());
+                knownLoadSup[d][b].set(loads[d][b].getUB());
                 slb[d] += loads[d][b].getLB();
                 slu[d] += loads[d][b].getUB();
             }
@@ -460,10 +519,12 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
         for (int d = 0; d < nbDims; d++) {
             sumLoadInf[d].set(slb[d]);
             sumLoadSup[d].set(slu[d]);
+            maxSlack[d].set(Integer.MAX_VALUE);
 
         }
-
-        loadsHaveChanged = getModel().getEnvironment().makeBool(false);
+        for (int b = 0; b < nbBins; b++) {
+            notifyAssignedLoad(b);
+        }
 
         if (decoKPSimple != null) {
             decoKPSimple.postInitialize();
@@ -491,20 +552,19 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
     }
 
     /**
-     * recompute the sum of the min/max loads only if at least one variable bound has been updated outside of the constraint
+     * Update the sum of the min/max loads with the current bounds of a load variable
+     * that has been modified outside of the constraint.
+     *
+     * @param d the dimension
+     * @param b the bin
      */
-    private void recomputeLoadSums() {
-        loadsHaveChanged.set(false);
-        for (int d = 0; d < nbDims; d++) {
-            int sli = 0;
-            int sls = 0;
-            for (int b = 0; b < nbBins; b++) {
-                sli += loads[d][b].getLB();
-                sls += loads[d][b].getUB();
-            }
-            this.sumLoadInf[d].set(sli);
-            this.sumLoadSup[d].set(sls);
-        }
+    private void syncLoadSums(int d, int b) {
+        int lb = loads[d][b].getLB();
+        int ub = loads[d][b].getUB();
+        sumLoadInf[d].add(lb - knownLoadInf[d][b].get());
+        knownLoadInf[d][b].set(lb);
+        sumLoadSup[d].add(ub - knownLoadSup[d][b].get());
+        knownLoadSup[d][b].set(ub);
     }
 
 
@@ -593,4 +653,20 @@ public class VectorPackingPropagator extends Propagator<IntVar> {
     public IStateInt[][] assignedLoad() {
         return assignedLoad;
     }
+
+    /**
+     * Register a listener that is notified with the index of a bin each time its assigned load
+     * is about to change. The notifications are not repeated upon backtrack.
+     *
+     * @param l the listener to add
+     */
+    public void addAssignedLoadListener(IntConsumer l) {
+        assignedLoadListeners.add(l);
+    }
+
+    private void notifyAssignedLoad(int bin) {
+        for (IntConsumer l : assignedLoadListeners) {
+            l.accept(bin);
+        }
+    }
 }
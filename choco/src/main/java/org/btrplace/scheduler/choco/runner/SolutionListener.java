@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.scheduler.choco.runner;
+
+import org.btrplace.model.Instance;
+
+/**
+ * A listener notified each time the solver computes a solution.
+ * The listener is called from the solving thread, right after the solution has been computed.
+ * When several workers solve the instance, it might be called concurrently.
+ * <p>
+ * The plan of the solution is only built when {@link SolutionStatistics#getReconfigurationPlan()} is called.
+ *
+ * @author Fabien Hermenier
+ */
+@FunctionalInterface
+public interface SolutionListener {
+
+    /**
+     * Notify a solution has been computed.
+     *
+     * @param i  the solved instance. It may be a sub-instance when the instance is split
+     * @param st the statistics of the solution
+     */
+    void onSolution(Instance i, SolutionStatistics st);
+}
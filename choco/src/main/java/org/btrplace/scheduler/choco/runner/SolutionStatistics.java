@@ -20,8 +20,13 @@ package org.btrplace.scheduler.choco.runner;
 
 import org.btrplace.plan.ReconfigurationPlan;
 
+import java.util.function.Supplier;
+
 /**
  * Store statistics about a solution.
+ * The plan might be built lazily, on the first call to {@link #getReconfigurationPlan()}.
+ * The runners build the plans of the retained solutions once the solving process is over, so
+ * the statistics do not retain the problem.
  *
  * @author Fabien Hermenier
  */
@@ -30,6 +35,8 @@ public class SolutionStatistics {
 
     private ReconfigurationPlan solution = null;
 
+    private Supplier<ReconfigurationPlan> builder;
+
     private Metrics measures;
 
     private boolean hasObjective;
@@ -47,11 +54,28 @@ public class SolutionStatistics {
         solution = plan;
     }
 
+    /**
+     * Make a new statistics where the plan is built on demand.
+     *
+     * @param m the solver metrics at the moment of the solution
+     * @param b the builder of the resulting plan. Called at most once
+     */
+    public SolutionStatistics(Metrics m, Supplier<ReconfigurationPlan> b) {
+        measures = m;
+        builder = b;
+    }
+
     /**
      * Return the computed solution.
+     * The plan is built on the first call if needed.
      * @return a plan that might be null
      */
-    public ReconfigurationPlan getReconfigurationPlan() {
+    public synchronized ReconfigurationPlan getReconfigurationPlan() {
+        if (builder != null) {
+            solution = builder.get();
+            //The builder is no longer needed
+            builder = null;
+        }
         return solution;
     }
 
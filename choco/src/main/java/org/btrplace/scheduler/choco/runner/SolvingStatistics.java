@@ -72,6 +72,16 @@ public interface SolvingStatistics {
      */
     int getNbManagedVMs();
 
+    /**
+     * Get the number of cumulative constraints posted to model the network links.
+     * Each direction of a link counts for one constraint.
+     *
+     * @return a positive number.  -1 if not available
+     */
+    default int getNbLinkConstraints() {
+        return -1;
+    }
+
     /**
      * Get the parameters of the scheduler.
      *
@@ -100,6 +110,29 @@ public interface SolvingStatistics {
      */
     ReconfigurationPlan lastSolution();
 
+    /**
+     * Get the plan computed for a part of the instance when there is no complete solution.
+     * This happens with the solvers that decompose the instance, when some of the sub-instances
+     * were not solved, for example once the time limit is reached.
+     * The plan does not necessarily satisfy the constraints of the whole instance.
+     *
+     * @return a plan. {@code null} if there is no partial solution or if {@link #lastSolution()} is available
+     */
+    default ReconfigurationPlan partialSolution() {
+        return null;
+    }
+
+    /**
+     * Get the statistics of the last computed solution.
+     * The solution might be available even if it is not retained in {@link #getSolutions()}.
+     *
+     * @return the statistics. {@code null} if there was no solution
+     */
+    default SolutionStatistics getLastSolution() {
+        List<SolutionStatistics> sols = getSolutions();
+        return sols.isEmpty() ? null : sols.get(sols.size() - 1);
+    }
+
     /**
      * Summarizes as a CSV data.
      * Print the statistics as a CSV line.
@@ -125,6 +125,11 @@ public class StagedSolvingStatistics implements SolvingStatistics {
         return last().getNbManagedVMs();
     }
 
+    @Override
+    public int getNbLinkConstraints() {
+        return last().getNbLinkConstraints();
+    }
+
     @Override
     public Parameters getParameters() {
         return first().getParameters();
@@ -172,6 +177,11 @@ public class StagedSolvingStatistics implements SolvingStatistics {
         return last().lastSolution();
     }
 
+    @Override
+    public SolutionStatistics getLastSolution() {
+        return last().getLastSolution();
+    }
+
     /**
      * Print the statistics as a CSV line.
      * Statistics are computed wrt. the different stages:
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.runner.portfolio;
+
+import org.btrplace.model.Instance;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.constraint.mttr.VMPlacementHeuristic;
+import org.btrplace.scheduler.choco.constraint.mttr.load.BiggestDimension;
+import org.btrplace.scheduler.choco.constraint.mttr.load.GlobalLoadEstimator;
+import org.btrplace.scheduler.choco.constraint.mttr.load.Mean;
+import org.btrplace.scheduler.choco.runner.InstanceSolver;
+import org.btrplace.scheduler.choco.runner.SolutionStatistics;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.btrplace.scheduler.choco.runner.single.InstanceSolverRunner;
+import org.btrplace.scheduler.choco.runner.single.SingleRunnerStatistics;
+import org.chocosolver.solver.ResolutionPolicy;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.loop.monitors.IMonitorDownBranch;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A solver that races several configurations of the solver on a same instance.
+ * <p>
+ * Each worker builds its own {@link ReconfigurationProblem} using the parameters
+ * returned by {@link #configure(Parameters, int)}. By default, the workers differ by their random seed,
+ * their VM placement heuristic and their load estimator. The workers run in parallel
+ * and share the value of the best solution computed so far so that each worker only
+ * looks for better solutions.
+ * <p>
+ * The solving process stops once a worker proved the optimality of the best solution. When the optimisation
+ * is disabled, it stops once a worker computed a solution.
+ * The resulting plan is the best one computed by the workers.
+ * <p>
+ * The number of workers equals the number of available cores by default.
+ * The workers run on the pool stated by {@link Parameters#getExecutor()}, if any.
+ * Otherwise, the portfolio creates a pool for the solving process and shuts it down once done.
+ *
+ * @author Fabien Hermenier
+ */
+public class PortfolioRunner implements InstanceSolver {
+
+    private int workersCount;
+
+    private SingleRunnerStatistics stats;
+
+    /**
+     * Make a new portfolio.
+     * The number of workers is set to the number of available cores.
+     */
+    public PortfolioRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Make a new portfolio.
+     *
+     * @param nb the number of workers. A number >= 1
+     */
+    public PortfolioRunner(int nb) {
+        setWorkersCount(nb);
+    }
+
+    /**
+     * Get the number of workers that are racing.
+     *
+     * @return a number >= 1
+     */
+    public int getWorkersCount() {
+        return workersCount;
+    }
+
+    /**
+     * Set the number of workers that are racing.
+     *
+     * @param nb a number >= 1
+     */
+    public void setWorkersCount(int nb) {
+        if (nb < 1) {
+            throw new IllegalArgumentException("The number of workers must be >= 1");
+        }
+        this.workersCount = nb;
+    }
+
+    /**
+     * Make the parameters of a worker.
+     * The first worker uses the given parameters as is. The others
+     * use a different random seed and alternate the VM placement heuristics and
+     * the load estimators.
+     *
+     * @param ps     the parameters given to the portfolio
+     * @param worker the worker identifier, between 0 and {@link #getWorkersCount()} excluded
+     * @return the parameters for the worker
+     */
+    protected Parameters configure(Parameters ps, int worker) {
+        if (worker == 0) {
+            return ps;
+        }
+        Parameters p = new DefaultParameters(ps).setRandomSeed(ps.getRandomSeed() + worker);
+        if (worker % 2 == 1) {
+            p.setVMPlacementHeuristic(ps.getVMPlacementHeuristic() == VMPlacementHeuristic.WORST_FIT ?
+                    VMPlacementHeuristic.RANDOM : VMPlacementHeuristic.WORST_FIT);
+        }
+        if ((worker / 2) % 2 == 1) {
+            GlobalLoadEstimator e = ps.getLoadEstimator();
+            p.setLoadEstimator(e instanceof BiggestDimension ? new Mean() : new BiggestDimension());
+        }
+        return p;
+    }
+
+    @Override
+    public ReconfigurationPlan solve(Parameters ps, Instance i) throws SchedulerException {
+        stats = null;
+        long start = System.currentTimeMillis();
+        AtomicBoolean stop = new AtomicBoolean(false);
+        SharedBound bound = new SharedBound();
+
+        ForkJoinPool exe = ps.getExecutor() != null ? ps.getExecutor() : new ForkJoinPool(workersCount);
+        CompletionService<SolvingStatistics> completionService = new ExecutorCompletionService<>(exe);
+        List<Future<SolvingStatistics>> workers = new ArrayList<>(workersCount);
+        for (int w = 0; w < workersCount; w++) {
+            InstanceSolverRunner r = new InstanceSolverRunner(configure(ps, w), i)
+                    .setBeforeSolve(rp -> race(rp, ps.doOptimize(), bound, stop));
+            workers.add(completionService.submit(r));
+        }
+
+        List<SolvingStatistics> results = new ArrayList<>(workersCount);
+        Throwable error = null;
+        try {
+            for (int w = 0; w < workersCount; w++) {
+                try {
+                    SolvingStatistics st = completionService.take().get();
+                    if (st.completed()) {
+                        //The search space has been fully explored
+                        stop.set(true);
+                    }
+                    results.add(st);
+                } catch (ExecutionException ex) {
+                    //Most likely a worker stopped without any solution
+                    if (error == null) {
+                        error = ex.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SchedulerException(i.getModel(), e.getMessage(), e);
+        } finally {
+            stop.set(true);
+            workers.forEach(f -> f.cancel(false));
+            if (exe != ps.getExecutor()) {
+                exe.shutdownNow();
+            }
+        }
+
+        if (results.isEmpty()) {
+            if (error instanceof SchedulerException) {
+                throw (SchedulerException) error;
+            }
+            throw new SchedulerException(i.getModel(), "No worker succeeded", error);
+        }
+        stats = merge(ps, i, start, results, bound);
+        return stats.lastSolution();
+    }
+
+    /**
+     * Plug the sharing of the best bound and the stop criterion.
+     */
+    private static void race(ReconfigurationProblem rp, boolean optimize, SharedBound bound, AtomicBoolean stop) {
+        Solver s = rp.getSolver();
+        s.addStopCriterion(stop::get);
+        IntVar o = rp.getObjective();
+        if (!optimize || o == null) {
+            //Any solution is fine
+            s.plugMonitor((IMonitorSolution) () -> stop.set(true));
+            return;
+        }
+        boolean minimize = rp.getResolutionPolicy() == ResolutionPolicy.MINIMIZE;
+        bound.init(minimize);
+        s.plugMonitor((IMonitorSolution) () -> bound.offer(o.getValue()));
+        s.plugMonitor(new IMonitorDownBranch() {
+
+            private int last = bound.get();
+
+            @Override
+            public void beforeDownBranch(boolean left) {
+                int b = bound.get();
+                if (b != last) {
+                    //A better solution has been computed by another worker
+                    last = b;
+                    s.getObjectiveManager().updateBestSolution(b);
+                }
+            }
+        });
+    }
+
+    /**
+     * Summarize the workers statistics.
+     * The statistics are the one of the worker that computed the best solution.
+     * The solving process is completed if one worker completed.
+     */
+    private static SingleRunnerStatistics merge(Parameters ps, Instance i, long start, List<SolvingStatistics> results, SharedBound bound) {
+        SolvingStatistics best = null;
+        boolean completed = false;
+        for (SolvingStatistics st : results) {
+            completed |= st.completed();
+            if (best == null || better(st, best, bound)) {
+                best = st;
+            }
+        }
+        SingleRunnerStatistics merged = new SingleRunnerStatistics(ps, i, start);
+        merged.setCoreBuildDuration(best.getCoreBuildDuration());
+        merged.setSpecialisationDuration(best.getSpecializationDuration());
+        merged.setNbManagedVMs(best.getNbManagedVMs());
+        merged.setNbLinkConstraints(best.getNbLinkConstraints());
+        merged.setMetrics(best.getMetrics());
+        best.getSolutions().forEach(merged::addSolution);
+        if (best.getLastSolution() != merged.getLastSolution()) {
+            //The last solution was not retained
+            merged.addSolution(best.getLastSolution());
+        }
+        merged.setCompleted(completed);
+        return merged;
+    }
+
+    private static boolean better(SolvingStatistics st, SolvingStatistics best, SharedBound bound) {
+        SolutionStatistics a = st.getLastSolution();
+        SolutionStatistics b = best.getLastSolution();
+        if (a == null) {
+            return false;
+        }
+        if (b == null) {
+            return true;
+        }
+        if (!a.hasObjective() || !b.hasObjective()) {
+            return false;
+        }
+        return bound.isBetter(a.objective(), b.objective());
+    }
+
+    @Override
+    public SolvingStatistics getStatistics() {
+        return stats;
+    }
+
+    /**
+     * The best objective value computed by the workers.
+     */
+    private static final class SharedBound {
+
+        private volatile int value;
+
+        private boolean minimize;
+
+        private boolean initialized;
+
+        synchronized void init(boolean min) {
+            if (!initialized) {
+                initialized = true;
+                minimize = min;
+                value = min ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            }
+        }
+
+        int get() {
+            return value;
+        }
+
+        synchronized void offer(int v) {
+            if (isBetter(v, value)) {
+                value = v;
+            }
+        }
+
+        synchronized boolean isBetter(int a, int b) {
+            return minimize ? a < b : a > b;
+        }
+    }
+}
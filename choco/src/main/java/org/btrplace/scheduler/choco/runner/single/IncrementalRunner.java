@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.runner.single;
+
+import org.btrplace.model.Instance;
+import org.btrplace.model.Mapping;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.OptConstraint;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ModelView;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.Action;
+import org.btrplace.plan.event.RunningVMPlacement;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.runner.InstanceSolver;
+import org.btrplace.scheduler.choco.runner.Metrics;
+import org.btrplace.scheduler.choco.runner.SolutionStatistics;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A runner that re-uses the outcome of its previous solving process.
+ * <p>
+ * The first instance is solved from scratch. For the next instances, the runner computes
+ * the VMs that changed since the previous call, either with regards to the previous
+ * source model, or to the resulting model of the previous plan once the caller stated
+ * using {@link #planApplied()} that this plan was applied.
+ * <ul>
+ * <li>If nothing changed, the previous outcome is returned without any solving process.</li>
+ * <li>Otherwise, the instance is solved in repair mode where only the changed VMs, the VMs
+ * involved in the new constraints and the mis-placed VMs are manageable. When the plan was
+ * not applied, the search is warm-started from the previous placement.</li>
+ * </ul>
+ * If the restricted problem has no solution, the instance is solved again from scratch.
+ * <p>
+ * Only the search is incremental. The {@link org.btrplace.scheduler.choco.ReconfigurationProblem},
+ * its transitions and its resource constraints are rebuilt at each call so the core build
+ * duration still scales with the size of the datacenter. The search space, and so the
+ * specialisation and the solving durations, scale with the size of the change.
+ * <p>
+ * Use {@link #reset()} to forget about the previous solving process.
+ *
+ * @author Fabien Hermenier
+ */
+public class IncrementalRunner implements InstanceSolver {
+
+    private Model lastOrigin;
+
+    private Model lastResult;
+
+    private Collection<SatConstraint> lastCstrs;
+
+    private OptConstraint lastObj;
+
+    private ReconfigurationPlan lastPlan;
+
+    private SolvingStatistics stats;
+
+    private boolean applied;
+
+    @Override
+    public ReconfigurationPlan solve(Parameters ps, Instance i) throws SchedulerException {
+        Model mo = i.getModel();
+        if (lastPlan == null || !i.getOptConstraint().equals(lastObj) || !sameViews(lastOrigin, mo)) {
+            return remember(i, solveFromScratch(ps, i));
+        }
+
+        Model ref = applied ? lastResult : lastOrigin;
+        Set<VM> delta = changes(ref, mo);
+        boolean sameElements = sameElements(ref, mo);
+
+        //The VMs involved in the new constraints
+        Set<SatConstraint> known = new HashSet<>(lastCstrs);
+        boolean sameCstrs = i.getSatConstraints().size() == lastCstrs.size();
+        for (SatConstraint c : i.getSatConstraints()) {
+            if (!known.contains(c)) {
+                sameCstrs = false;
+                delta.addAll(c.getInvolvedVMs());
+            }
+        }
+        delta.retainAll(mo.getMapping().getAllVMs());
+
+        if (delta.isEmpty() && sameElements && sameCstrs) {
+            ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+            if (!applied) {
+                //Nothing happened since the last call, same plan
+                lastPlan.getActions().forEach(p::add);
+                return remember(i, reuse(ps, i, p));
+            }
+            //The previous plan was applied. If the model is still viable, nothing to do
+            if (i.getSatConstraints().stream().allMatch(c -> c.isSatisfied(mo))) {
+                return remember(i, reuse(ps, i, p));
+            }
+        }
+
+        Parameters rps = new DefaultParameters(ps).doRepair(true);
+        InstanceSolverRunner r = new InstanceSolverRunner(rps, i).setManageableVMs(delta);
+        if (!applied) {
+            r.setPlacementHints(destinations(lastPlan, delta));
+        }
+        stats = r.call();
+        ReconfigurationPlan p = stats.lastSolution();
+        if (p == null && stats.completed()) {
+            //The restriction was too aggressive
+            p = solveFromScratch(ps, i);
+        }
+        return remember(i, p);
+    }
+
+    /**
+     * State that the last computed plan has been applied.
+     * The next instance will be compared to the resulting model of this plan
+     * instead of the model it was computed from.
+     */
+    public void planApplied() {
+        applied = lastPlan != null;
+    }
+
+    /**
+     * Forget about the previous solving process.
+     * The next instance will be solved from scratch.
+     */
+    public void reset() {
+        applied = false;
+        lastPlan = null;
+        lastOrigin = null;
+        lastResult = null;
+        lastCstrs = null;
+        lastObj = null;
+    }
+
+    @Override
+    public SolvingStatistics getStatistics() throws SchedulerException {
+        return stats;
+    }
+
+    private ReconfigurationPlan solveFromScratch(Parameters ps, Instance i) throws SchedulerException {
+        stats = new InstanceSolverRunner(ps, i).call();
+        return stats.lastSolution();
+    }
+
+    private ReconfigurationPlan reuse(Parameters ps, Instance i, ReconfigurationPlan p) {
+        SingleRunnerStatistics st = new SingleRunnerStatistics(ps, i, System.currentTimeMillis());
+        st.setCoreBuildDuration(0);
+        st.setSpecialisationDuration(0);
+        st.setNbManagedVMs(0);
+        st.setMetrics(new Metrics());
+        st.addSolution(new SolutionStatistics(new Metrics(), p));
+        st.setCompleted(true);
+        stats = st;
+        return p;
+    }
+
+    private ReconfigurationPlan remember(Instance i, ReconfigurationPlan p) {
+        if (p == null) {
+            reset();
+            return null;
+        }
+        applied = false;
+        lastPlan = p;
+        lastOrigin = i.getModel().copy();
+        lastResult = p.getResult();
+        lastCstrs = new ArrayList<>(i.getSatConstraints());
+        lastObj = i.getOptConstraint();
+        return p;
+    }
+
+    /**
+     * Get the destination of the VMs that were placed by a plan.
+     *
+     * @param p       the plan
+     * @param exclude the VMs to ignore
+     * @return the destination node of each VM
+     */
+    private static Map<VM, Node> destinations(ReconfigurationPlan p, Set<VM> exclude) {
+        Map<VM, Node> dst = new HashMap<>();
+        for (Action a : p.getActions()) {
+            if (a instanceof RunningVMPlacement) {
+                RunningVMPlacement r = (RunningVMPlacement) a;
+                if (!exclude.contains(r.getVM())) {
+                    dst.put(r.getVM(), r.getDestinationNode());
+                }
+            }
+        }
+        return dst;
+    }
+
+    private static boolean sameViews(Model ref, Model mo) {
+        Set<String> ids = ref.getViews().stream().map(ModelView::getIdentifier).collect(Collectors.toSet());
+        return ids.size() == mo.getViews().size()
+                && mo.getViews().stream().allMatch(v -> ids.contains(v.getIdentifier()));
+    }
+
+    private static boolean sameElements(Model ref, Model mo) {
+        Mapping src = ref.getMapping();
+        Mapping dst = mo.getMapping();
+        return src.getNbVMs() == dst.getNbVMs()
+                && src.getOnlineNodes().equals(dst.getOnlineNodes())
+                && src.getOfflineNodes().equals(dst.getOfflineNodes());
+    }
+
+    /**
+     * Get the VMs of a model that changed with regards to a reference model.
+     * A VM changed if its state, its location, or its resource consumption changed, or
+     * if its host changed its state or its capacity.
+     *
+     * @param ref the reference model
+     * @param mo  the model to inspect
+     * @return the VMs in {@code mo} that changed
+     */
+    private static Set<VM> changes(Model ref, Model mo) {
+        Set<VM> delta = new HashSet<>();
+        Mapping src = ref.getMapping();
+        Mapping dst = mo.getMapping();
+        //The resources, and their previous version
+        List<ShareableResource> rcs = new ArrayList<>();
+        List<ShareableResource> prevs = new ArrayList<>();
+        for (ModelView v : mo.getViews()) {
+            if (v instanceof ShareableResource) {
+                rcs.add((ShareableResource) v);
+                prevs.add((ShareableResource) ref.getView(v.getIdentifier()));
+            }
+        }
+        for (Node n : dst.getOnlineNodes()) {
+            boolean nodeChanged = !src.isOnline(n);
+            for (int i = 0; !nodeChanged && i < rcs.size(); i++) {
+                nodeChanged = prevs.get(i).getCapacity(n) != rcs.get(i).getCapacity(n);
+            }
+            for (VM v : dst.getRunningVMs(n)) {
+                if (nodeChanged || !src.isRunning(v) || !n.equals(src.getVMLocation(v))) {
+                    delta.add(v);
+                    continue;
+                }
+                for (int i = 0; i < rcs.size(); i++) {
+                    if (prevs.get(i).getConsumption(v) != rcs.get(i).getConsumption(v)) {
+                        delta.add(v);
+                        break;
+                    }
+                }
+            }
+            for (VM v : dst.getSleepingVMs(n)) {
+                if (nodeChanged || !src.isSleeping(v) || !n.equals(src.getVMLocation(v))) {
+                    delta.add(v);
+                }
+            }
+        }
+        for (VM v : dst.getReadyVMs()) {
+            if (!src.isReady(v)) {
+                delta.add(v);
+            }
+        }
+        return delta;
+    }
+}
@@ -39,9 +39,12 @@ import org.btrplace.scheduler.choco.ReconfigurationProblem;
 import org.btrplace.scheduler.choco.constraint.CObjective;
 import org.btrplace.scheduler.choco.constraint.ChocoConstraint;
 import org.btrplace.scheduler.choco.constraint.ChocoMapper;
+import org.btrplace.scheduler.choco.constraint.mttr.WarmStartPlacement;
 import org.btrplace.scheduler.choco.runner.Metrics;
+import org.btrplace.scheduler.choco.runner.SolutionListener;
 import org.btrplace.scheduler.choco.runner.SolutionStatistics;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.btrplace.scheduler.choco.view.CNetwork;
 import org.btrplace.scheduler.choco.view.ChocoView;
 import org.btrplace.scheduler.choco.view.ChocoViews;
 import org.chocosolver.solver.Cause;
@@ -51,15 +54,25 @@ import org.chocosolver.solver.search.SearchState;
 import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
 import org.chocosolver.solver.search.measure.Measures;
 import org.chocosolver.solver.search.measure.MeasuresRecorder;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.search.strategy.strategy.IntStrategy;
+import org.chocosolver.solver.search.strategy.strategy.StrategiesSequencer;
 import org.chocosolver.solver.variables.IntVar;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A basic solver that solve a whole instance.
@@ -90,6 +103,21 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
 
     private List<ChocoView> views;
 
+    /**
+     * VMs to manage in addition to the mis-placed ones in repair mode.
+     */
+    private Set<VM> extraManageable = Collections.emptySet();
+
+    /**
+     * Placement hints to warm-start the search.
+     */
+    private Map<VM, Node> hints = Collections.emptyMap();
+
+    /**
+     * Customisation of the problem right before the solving process.
+     */
+    private Consumer<ReconfigurationProblem> onSolve = p -> { };
+
     /**
      * Make a new runner.
      *
@@ -134,36 +162,113 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
         }
         d += System.currentTimeMillis();
         stats.setSpecialisationDuration(d);
+        ChocoView net = rp.getView(CNetwork.VIEW_ID);
+        if (net instanceof CNetwork) {
+            stats.setNbLinkConstraints(((CNetwork) net).getNbLinkConstraints());
+        }
 
         //statistics
         stats.setMetrics(new Metrics(rp.getSolver().getMeasures()));
         rp.getLogger().debug(stats.toString());
 
         //The solution monitor to store the measures at each solution
+        //and notify the listeners. The plans are built on demand
         rp.getSolver().plugMonitor((IMonitorSolution) () -> {
             Solution solution = new Solution(rp.getModel());
             solution.record();
 
-            ReconfigurationPlan plan = rp.buildReconfigurationPlan(solution, origin);
-            views.forEach(v -> v.insertActions(rp, solution, plan));
-
             MeasuresRecorder m = rp.getSolver().getMeasures();
-            SolutionStatistics st = new SolutionStatistics(new Metrics(m), plan);
+            SolutionStatistics st = new SolutionStatistics(new Metrics(m), () -> buildPlan(solution));
             IntVar o = rp.getObjective();
             if (o != null) {
                 st.setObjective(solution.getIntVal(o));
             }
             stats.addSolution(st);
+            for (SolutionListener l : params.getSolutionListeners()) {
+                l.onSolution(instance, st);
+            }
         });
 
         setVerbosity();
 
+        params.getStopCriteria().forEach(c -> rp.getSolver().addStopCriterion(c));
+
+        warmStart();
+
+        onSolve.accept(rp);
+
         //The actual solving process
-        rp.solve(params.getTimeLimit(), params.doOptimize());
+        try {
+            rp.solve(params.getTimeLimit(), params.doOptimize());
+        } finally {
+            //The retained plans are built now so the statistics no longer refer to the problem
+            stats.getSolutions().forEach(SolutionStatistics::getReconfigurationPlan);
+            if (stats.getLastSolution() != null) {
+                stats.getLastSolution().getReconfigurationPlan();
+            }
+        }
         return getStatistics();
     }
 
 
+    /**
+     * Declare VMs that must be manageable in addition to the VMs
+     * the constraints state as mis-placed. This only matters in repair mode.
+     *
+     * @param vms the VMs to manage
+     * @return {@code this}
+     */
+    public InstanceSolverRunner setManageableVMs(Set<VM> vms) {
+        extraManageable = vms;
+        return this;
+    }
+
+    /**
+     * Declare placement hints to warm-start the search.
+     * The solver will first try to place each VM on its hinted node.
+     *
+     * @param h the hinted host of each VM
+     * @return {@code this}
+     */
+    public InstanceSolverRunner setPlacementHints(Map<VM, Node> h) {
+        hints = h;
+        return this;
+    }
+
+    /**
+     * Declare an action to perform on the problem right before the solving process.
+     * This allows to plug additional search monitors or stop criteria.
+     *
+     * @param c the action to perform
+     * @return {@code this}
+     */
+    public InstanceSolverRunner setBeforeSolve(Consumer<ReconfigurationProblem> c) {
+        onSolve = c;
+        return this;
+    }
+
+    /**
+     * Build the plan of a solution, including the actions inserted by the views.
+     */
+    private ReconfigurationPlan buildPlan(Solution solution) {
+        ReconfigurationPlan plan = rp.buildReconfigurationPlan(solution, origin);
+        views.forEach(v -> v.insertActions(rp, solution, plan));
+        return plan;
+    }
+
+    private void warmStart() {
+        AbstractStrategy<?> current = rp.getSolver().getSearch();
+        if (hints.isEmpty() || current == null) {
+            //Without a search strategy, the problem will fallback to a default heuristic
+            return;
+        }
+        WarmStartPlacement h = new WarmStartPlacement(rp, hints);
+        if (h.getScope().length > 0) {
+            rp.getSolver().setSearch(new StrategiesSequencer(rp.getSolver().getEnvironment(),
+                    new IntStrategy(h.getScope(), h, h), current));
+        }
+    }
+
     private void setVerbosity() {
         if (params.getVerbosity() >= 2) {
             //every second
@@ -192,6 +297,21 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
     }
 
     private ReconfigurationProblem buildRP() throws SchedulerException {
+        if (params.getBuildParallelism() <= 1) {
+            return buildRP(null);
+        }
+        //The pool stated by the parameters, otherwise one for this build only
+        ForkJoinPool pool = params.getExecutor() != null ? params.getExecutor() : new ForkJoinPool(params.getBuildParallelism());
+        try {
+            return buildRP(pool);
+        } finally {
+            if (pool != params.getExecutor()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private ReconfigurationProblem buildRP(ForkJoinPool pool) throws SchedulerException {
         //Build the RP. As VM state management is not possible
         //We extract VM-state related constraints first.
         //For other constraint, we just create the right choco constraint
@@ -200,9 +320,8 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
         Set<VM> toKill = new HashSet<>();
         Set<VM> toSleep = new HashSet<>();
 
-        cConstraints = new ArrayList<>();
-
-        for (SatConstraint cstr : cstrs) {
+        //The checks and the instantiation of the solver-side constraints are independent
+        cConstraints = map(pool, cstrs, cstr -> {
             checkNodesExistence(origin, cstr.getInvolvedNodes());
 
             //We cannot check for VMs that are going to the ready state
@@ -211,20 +330,19 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
             if (!(cstrs instanceof Ready)) {
                 checkUnknownVMsInMapping(origin, cstr.getInvolvedVMs());
             }
+            return build(cstr);
+        });
 
+        for (SatConstraint cstr : cstrs) {
             if (cstr instanceof Running) {
                 toRun.addAll(cstr.getInvolvedVMs());
             } else if (cstr instanceof Sleeping) {
                 toSleep.addAll(cstr.getInvolvedVMs());
             } else if (cstr instanceof Ready) {
-                checkUnknownVMsInMapping(origin, cstr.getInvolvedVMs());
                 toForge.addAll(cstr.getInvolvedVMs());
             } else if (cstr instanceof Killed) {
-                checkUnknownVMsInMapping(origin, cstr.getInvolvedVMs());
                 toKill.addAll(cstr.getInvolvedVMs());
             }
-
-            cConstraints.add(build(cstr));
         }
         cConstraints.add(build(obj));
 
@@ -236,8 +354,9 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
 
         if (params.doRepair()) {
             Set<VM> toManage = new HashSet<>();
-            cConstraints.forEach(c -> toManage.addAll(c.getMisPlacedVMs(instance)));
+            map(pool, cConstraints, c -> c.getMisPlacedVMs(instance)).forEach(toManage::addAll);
             views.forEach(v -> toManage.addAll(v.getMisPlacedVMs(instance)));
+            toManage.addAll(extraManageable);
             rpb.setManageableVMs(toManage);
         }
 
@@ -253,6 +372,74 @@ public class InstanceSolverRunner implements Callable<SolvingStatistics> {
         return p;
     }
 
+    /**
+     * Apply a function over each element of a collection.
+     * The elements are processed by chunks in parallel if a pool is given.
+     * The reported error is then the one of the first element that cannot be
+     * processed, as with the sequential processing.
+     *
+     * @param pool the pool to use. {@code null} for a sequential processing
+     * @param in   the elements to process
+     * @param f    the function to apply
+     * @return the results, in the iteration order of the elements
+     * @throws SchedulerException if the processing failed
+     */
+    private <T, R> List<R> map(ForkJoinPool pool, Collection<T> in, Function<T, R> f) throws SchedulerException {
+        List<T> elems = new ArrayList<>(in);
+        Object[] res = new Object[elems.size()];
+        if (pool == null) {
+            apply(elems, f, res, 0, res.length);
+            return results(res);
+        }
+        //A few chunks per build thread to balance the load. The pool may be larger when shared
+        int chunkSize = Math.max(1, res.length / (4 * params.getBuildParallelism()));
+        try {
+            List<Future<RuntimeException>> chunks = new ArrayList<>();
+            for (int from = 0; from < res.length; from += chunkSize) {
+                int st = from;
+                int to = Math.min(res.length, from + chunkSize);
+                chunks.add(pool.submit(() -> {
+                    try {
+                        apply(elems, f, res, st, to);
+                    } catch (RuntimeException ex) {
+                        return ex;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<RuntimeException> c : chunks) {
+                RuntimeException ex = c.get();
+                if (ex != null) {
+                    throw ex;
+                }
+            }
+            return results(res);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SchedulerException(origin, "Interrupted while building the problem", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SchedulerException(origin, "Unable to build the problem", ex.getCause());
+        }
+    }
+
+    private static <T, R> void apply(List<T> in, Function<T, R> f, Object[] res, int from, int to) {
+        for (int i = from; i < to; i++) {
+            res[i] = f.apply(in.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> results(Object[] res) {
+        List<R> l = new ArrayList<>(res.length);
+        for (Object o : res) {
+            l.add((R) o);
+        }
+        return l;
+    }
+
     private List<ChocoView> makeViews() throws SchedulerException {
         List<ChocoView> l = new ArrayList<>();
         ChocoMapper mapper = params.getMapper();
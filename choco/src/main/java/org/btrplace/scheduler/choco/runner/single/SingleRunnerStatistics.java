@@ -25,7 +25,9 @@ import org.btrplace.scheduler.choco.runner.Metrics;
 import org.btrplace.scheduler.choco.runner.SolutionStatistics;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -52,7 +54,22 @@ public class SingleRunnerStatistics implements SolvingStatistics {
      */
     private int nbManagedVMs;
 
-    private List<SolutionStatistics> solutions;
+    /**
+     * The number of cumulative constraints posted for the network links.
+     */
+    private int nbLinkConstraints;
+
+    private Deque<SolutionStatistics> solutions;
+
+    /**
+     * The last computed solution, even if it is not retained.
+     */
+    private SolutionStatistics last;
+
+    /**
+     * The number of computed solutions, retained or not.
+     */
+    private int nbSolutions;
 
     private Metrics metrics;
 
@@ -66,8 +83,9 @@ public class SingleRunnerStatistics implements SolvingStatistics {
     public SingleRunnerStatistics(Parameters ps, Instance i, long st) {
         this.params = ps;
         this.start = st;
-        solutions = new ArrayList<>();
+        solutions = new ArrayDeque<>();
         this.nbManagedVMs = -1;
+        this.nbLinkConstraints = -1;
         this.coreRPBuildDuration = -1;
         this.speRPDuration = -1;
         this.instance = i;
@@ -105,11 +123,35 @@ public class SingleRunnerStatistics implements SolvingStatistics {
 
     /**
      * Add a solution to the statistics.
+     * The oldest solutions are discarded according to {@link Parameters#getMaxRetainedSolutions()}.
      *
      * @param so the solution to add
      */
     public void addSolution(SolutionStatistics so) {
+        last = so;
+        nbSolutions++;
+        int max = params.getMaxRetainedSolutions();
+        if (max == 0) {
+            return;
+        }
         this.solutions.add(so);
+        if (max > 0 && solutions.size() > max) {
+            solutions.removeFirst();
+        }
+    }
+
+    @Override
+    public SolutionStatistics getLastSolution() {
+        return last;
+    }
+
+    /**
+     * Get the number of computed solutions, including the ones that are not retained.
+     *
+     * @return a positive number
+     */
+    public int getNbSolutions() {
+        return nbSolutions;
     }
 
     @Override
@@ -128,7 +170,7 @@ public class SingleRunnerStatistics implements SolvingStatistics {
 
     @Override
     public List<SolutionStatistics> getSolutions() {
-        return solutions;
+        return new ArrayList<>(solutions);
     }
 
     @Override
@@ -145,6 +187,20 @@ public class SingleRunnerStatistics implements SolvingStatistics {
         nbManagedVMs = nb;
     }
 
+    @Override
+    public int getNbLinkConstraints() {
+        return nbLinkConstraints;
+    }
+
+    /**
+     * Set the number of cumulative constraints posted to model the network links.
+     *
+     * @param nb a positive amount
+     */
+    public void setNbLinkConstraints(int nb) {
+        nbLinkConstraints = nb;
+    }
+
     @Override
     public long getStart() {
         return start;
@@ -167,6 +223,9 @@ public class SingleRunnerStatistics implements SolvingStatistics {
             b.append(" (").append(nbManagedVMs).append(" managed)");
         }
         b.append("; ").append(nbConstraints).append(" constraint(s)");
+        if (nbLinkConstraints >= 0) {
+            b.append("; ").append(nbLinkConstraints).append(" link constraint(s)");
+        }
 
         if (params.doOptimize()) {
             b.append("; optimize");
@@ -186,7 +245,10 @@ public class SingleRunnerStatistics implements SolvingStatistics {
         b.append(": ")
                 .append(metrics.toString())
                 .append(", ")
-                .append(solutions.size()).append(" solution(s)");
+                .append(nbSolutions).append(" solution(s)");
+        if (nbSolutions > solutions.size()) {
+            b.append(" (").append(solutions.size()).append(" retained)");
+        }
         if (!solutions.isEmpty()) {
             b.append(":\n");
         } else {
@@ -202,10 +264,10 @@ public class SingleRunnerStatistics implements SolvingStatistics {
 
     @Override
     public ReconfigurationPlan lastSolution() {
-        if (solutions.isEmpty()) {
+        if (last == null) {
             return null;
         }
-        return solutions.get(solutions.size() - 1).getReconfigurationPlan();
+        return last.getReconfigurationPlan();
     }
 
     @Override
@@ -234,7 +296,7 @@ public class SingleRunnerStatistics implements SolvingStatistics {
                 coreRPBuildDuration,
                 speRPDuration,
                 getMetrics().timeCount(),
-                solutions.size(),
+                nbSolutions,
                 completed ? 1 : 0);
     }
 }
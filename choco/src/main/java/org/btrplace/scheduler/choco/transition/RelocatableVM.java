@@ -113,6 +113,20 @@ public class RelocatableVM implements KeepRunningVM {
             manageable = false;
             
             IntVar host = rp.makeCurrentHost(vm, PREFIX_STAY, vm, ").host");
+            if (rp.isCompactMode()) {
+                //Constant slices: the VM is released at the beginning
+                //and re-allocated immediately, until the end of the reconfiguration
+                cSlice = new SliceBuilder(rp, vm, PREFIX_STAY, vm.toString(), ").cSlice")
+                        .setHoster(host)
+                        .setEnd(rp.getStart())
+                        .setDuration(rp.fixed(0, PREFIX_STAY, vm, ").cSlice_duration"))
+                        .build();
+                dSlice = new SliceBuilder(rp, vm, PREFIX_STAY, vm, ").dSlice")
+                        .setHoster(host)
+                        .setStart(rp.getStart())
+                        .build();
+                return;
+            }
             cSlice = new SliceBuilder(rp, vm, PREFIX_STAY, vm.toString(), ").cSlice")
                     .setHoster(host)
                     .setEnd(rp.makeUnboundedDuration(PREFIX_STAY, vm, ").cSlice_end"))
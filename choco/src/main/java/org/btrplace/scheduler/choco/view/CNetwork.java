@@ -38,8 +38,12 @@ import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.Task;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * The solver part of the network view.
@@ -58,7 +62,7 @@ public class CNetwork implements ChocoView {
     public static final String VIEW_ID = "NetworkView";
     private Network net;
     private org.chocosolver.solver.Model csp;
-    private Model source;
+    private int nbLinkConstraints;
 
     /**
      * Make a new network view.
@@ -72,7 +76,6 @@ public class CNetwork implements ChocoView {
     @Override
     public boolean inject(Parameters ps, ReconfigurationProblem rp) throws SchedulerException {
         csp = rp.getModel();
-        source = rp.getSourceModel();
 
         return true;
     }
@@ -87,6 +90,7 @@ public class CNetwork implements ChocoView {
 
         Model mo = rp.getSourceModel();
         Attributes attrs = mo.getAttributes();
+        List<Migration> migrations = new ArrayList<>();
 
         // Pre-compute duration and bandwidth for each VM migration
         for (VMTransition migration : rp.getVMActions()) {
@@ -134,6 +138,7 @@ public class CNetwork implements ChocoView {
 
             // Get the maximal bandwidth available on the migration path
             int maxBW = net.getRouting().getMaxBW(src, dst);
+            migrations.add(new Migration((RelocatableVM) migration, src, dst, net.getRouting().getPath(src, dst)));
 
             // Compute the duration related to each enumerated bandwidth
             double durationMin;
@@ -172,8 +177,8 @@ public class CNetwork implements ChocoView {
         }
 
         // Add links and switches constraints
-        addLinkConstraints(rp);        
-        addSwitchConstraints(rp);
+        addLinkConstraints(migrations);
+        addSwitchConstraints(migrations);
 
         return true;
     }
@@ -183,125 +188,123 @@ public class CNetwork implements ChocoView {
      *
      * Full-duplex links are considered, two cumulative constraints are defined per link by looking at
      * the migration direction for each link on the migration path.
+     * Only the migration paths are browsed and a constraint is posted only when the migrations crossing
+     * the link in a given direction may exceed its capacity.
      *
-     * @param rp the reconfiguration problem
+     * @param migrations the migrations to consider
      */
-    private void addLinkConstraints(ReconfigurationProblem rp) {
-
-        // Links limitation
-        List<Task> tasksListUp = new ArrayList<>();
-        List<Task> tasksListDown = new ArrayList<>();
-        List<IntVar> heightsListUp = new ArrayList<>();
-        List<IntVar> heightsListDown = new ArrayList<>();
+    private void addLinkConstraints(List<Migration> migrations) {
+
+        Map<Link, List<RelocatableVM>> ups = new HashMap<>();
+        Map<Link, List<RelocatableVM>> downs = new HashMap<>();
+        for (Migration m : migrations) {
+            for (Link l : m.path) {
+                LinkDirection linkDirection = net.getRouting().getLinkDirection(m.src, m.dst, l);
+                Map<Link, List<RelocatableVM>> crossing = linkDirection == LinkDirection.UPLINK ? ups : downs;
+                crossing.computeIfAbsent(l, k -> new ArrayList<>()).add(m.action);
+            }
+        }
 
+        nbLinkConstraints = 0;
         for (Link l : net.getLinks()) {
-
-            for (VM vm : rp.getVMs()) {
-                VMTransition a = rp.getVMAction(vm);
-
-                if (a instanceof RelocatableVM
-                        && !a.getDSlice().getHoster().isInstantiatedTo(a.getCSlice().getHoster().getValue())) {
-
-                    Node src = source.getMapping().getVMLocation(vm);
-                    Node dst = rp.getNode(a.getDSlice().getHoster().getValue());
-                    List<Link> path = net.getRouting().getPath(src, dst);
-
-                    // Check first if the link is on migration path
-                    if (path.contains(l)) {
-                        // Get link direction
-                        LinkDirection linkDirection = net.getRouting().getLinkDirection(src, dst, l);
-                        // UpLink
-                        if (linkDirection == LinkDirection.UPLINK) {
-                            tasksListUp.add(((RelocatableVM) a).getMigrationTask());
-                            heightsListUp.add(((RelocatableVM) a).getBandwidth());
-                        }
-                        // DownLink
-                        else {
-                            tasksListDown.add(((RelocatableVM) a).getMigrationTask());
-                            heightsListDown.add(((RelocatableVM) a).getBandwidth());
-                        }
-                    }
-                }
-            }
-            if (!tasksListUp.isEmpty()) {
-
-                // Post the cumulative constraint for the current UpLink
-                csp.post(csp.cumulative(
-                        tasksListUp.toArray(new Task[tasksListUp.size()]),
-                        heightsListUp.toArray(new IntVar[heightsListUp.size()]),
-                        csp.intVar(l.getCapacity()),
-                        true
-                ));
-
-                tasksListUp.clear();
-                heightsListUp.clear();
+            // UpLink then DownLink
+            if (postCumulative(ups.get(l), l.getCapacity(), RelocatableVM::getMigrationTask)) {
+                nbLinkConstraints++;
             }
-            if (!tasksListDown.isEmpty()) {
-
-                // Post the cumulative constraint for the current DownLink
-                csp.post(csp.cumulative(
-                        tasksListDown.toArray(new Task[tasksListDown.size()]),
-                        heightsListDown.toArray(new IntVar[heightsListDown.size()]),
-                        csp.intVar(l.getCapacity()),
-                        true
-                ));
-
-                tasksListDown.clear();
-                heightsListDown.clear();
+            if (postCumulative(downs.get(l), l.getCapacity(), RelocatableVM::getMigrationTask)) {
+                nbLinkConstraints++;
             }
         }
     }
+
     /**
      * Add the cumulative constraints for each blocking switch (having limited capacity)
      *
-     * @param rp the reconfiguration problem
+     * @param migrations the migrations to consider
      */
-    private void addSwitchConstraints(ReconfigurationProblem rp) {
-        
-        // Switches capacity limitation
-        List<Task> tasksList = new ArrayList<>();
-        List<IntVar> heightsList = new ArrayList<>();
-        
-        for(Switch sw : net.getSwitches()) {
+    private void addSwitchConstraints(List<Migration> migrations) {
+
+        Map<Switch, List<RelocatableVM>> crossing = new HashMap<>();
+        for (Migration m : migrations) {
+            // The switches at the ends of the links on the path. Only once per migration
+            Set<Switch> switches = new HashSet<>();
+            for (Link l : m.path) {
+                switches.add(l.getSwitch());
+                if (l.getElement() instanceof Switch) {
+                    switches.add((Switch) l.getElement());
+                }
+            }
+            for (Switch sw : switches) {
+                // Only if the capacity is limited
+                if (sw.getCapacity() != Integer.MAX_VALUE) {
+                    crossing.computeIfAbsent(sw, k -> new ArrayList<>()).add(m.action);
+                }
+            }
+        }
 
+        for (Switch sw : net.getSwitches()) {
+            postCumulative(crossing.get(sw), sw.getCapacity(), a -> new Task(a.getStart(), a.getDuration(), a.getEnd()));
+        }
+    }
 
-            // Only if the capacity is limited
-            if (sw.getCapacity() != Integer.MAX_VALUE) {
+    /**
+     * Post a cumulative constraint over the migrations crossing a network element.
+     * The constraint is not posted when the migrations cannot exceed the capacity of the element.
+     *
+     * @param migs     the migrations crossing the element. May be {@code null}
+     * @param capacity the element capacity
+     * @param toTask   to get the task of a migration
+     * @return {@code true} iff the constraint has been posted
+     */
+    private boolean postCumulative(List<RelocatableVM> migs, int capacity, Function<RelocatableVM, Task> toTask) {
+        if (migs == null) {
+            return false;
+        }
+        long maxLoad = 0;
+        for (RelocatableVM a : migs) {
+            maxLoad += a.getBandwidth().getUB();
+        }
+        if (maxLoad <= capacity) {
+            return false;
+        }
+        Task[] tasks = new Task[migs.size()];
+        IntVar[] heights = new IntVar[migs.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = toTask.apply(migs.get(i));
+            heights[i] = migs.get(i).getBandwidth();
+        }
+        csp.post(csp.cumulative(tasks, heights, csp.intVar(capacity), true));
+        return true;
+    }
 
-                for (VM vm : rp.getVMs()) {
-                    VMTransition a = rp.getVMAction(vm);
+    /**
+     * Get the number of cumulative constraints posted for the links.
+     * Each direction of a link counts for one constraint.
+     *
+     * @return a positive number. {@code 0} before {@link #beforeSolve(ReconfigurationProblem)}
+     */
+    public int getNbLinkConstraints() {
+        return nbLinkConstraints;
+    }
 
-                    if (a != null && a instanceof RelocatableVM) {
+    /**
+     * A migration between two distinct nodes, with its path.
+     */
+    private static class Migration {
 
-                        if (a.getDSlice().getHoster().isInstantiated()) {
+        private final RelocatableVM action;
 
-                            if (a.getCSlice().getHoster().getValue() != a.getDSlice().getHoster().getValue()) {
+        private final Node src;
 
-                                Node src = source.getMapping().getVMLocation(vm);
-                                Node dst = rp.getNode(a.getDSlice().getHoster().getValue());
+        private final Node dst;
 
-                                if (!Collections.disjoint(net.getConnectedLinks(sw), net.getRouting().getPath(src, dst))) {
-                                    tasksList.add(new Task(a.getStart(), a.getDuration(), a.getEnd()));
-                                    heightsList.add(((RelocatableVM) a).getBandwidth());
-                                }
-                            }
-                        }
-                    }
-                }
+        private final List<Link> path;
 
-                if (!tasksList.isEmpty()) {
-                    // Post the cumulative constraint for the current switch
-                    csp.post(csp.cumulative(
-                            tasksList.toArray(new Task[tasksList.size()]),
-                            heightsList.toArray(new IntVar[heightsList.size()]),
-                            csp.intVar(sw.getCapacity()),
-                            true
-                    ));
-
-                    tasksList.clear();
-                    heightsList.clear();
-                }
-            }
+        Migration(RelocatableVM action, Node src, Node dst, List<Link> path) {
+            this.action = action;
+            this.src = src;
+            this.dst = dst;
+            this.path = path;
         }
     }
 }
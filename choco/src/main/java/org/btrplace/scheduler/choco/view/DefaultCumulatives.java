@@ -18,12 +18,14 @@
 
 package org.btrplace.scheduler.choco.view;
 
+import gnu.trove.list.array.TIntArrayList;
 import org.btrplace.model.VM;
 import org.btrplace.scheduler.SchedulerException;
 import org.btrplace.scheduler.choco.Parameters;
 import org.btrplace.scheduler.choco.ReconfigurationProblem;
 import org.btrplace.scheduler.choco.Slice;
 import org.btrplace.scheduler.choco.extensions.FastImpliesEq;
+import org.btrplace.scheduler.choco.extensions.LocalTaskScheduler;
 import org.btrplace.scheduler.choco.extensions.TaskScheduler;
 import org.btrplace.scheduler.choco.transition.KeepRunningVM;
 import org.btrplace.scheduler.choco.transition.NodeTransition;
@@ -46,9 +48,12 @@ public class DefaultCumulatives extends AbstractCumulatives implements Cumulativ
 
     private List<List<IntVar>> capacities;
 
+    private boolean compact;
+
     @Override
     public boolean inject(Parameters ps, ReconfigurationProblem rp) throws SchedulerException {
         super.inject(ps, rp);
+        compact = ps.isCompactMode();
         capacities = new ArrayList<>();
         return true;
     }
@@ -124,6 +129,10 @@ public class DefaultCumulatives extends AbstractCumulatives implements Cumulativ
         symmetryBreakingForStayingVMs(rp);
         IntVar[] earlyStarts = rp.getNodeActions().stream().map(NodeTransition::getHostingStart).toArray(IntVar[]::new);
         IntVar[] lastEnd = rp.getNodeActions().stream().map(NodeTransition::getHostingEnd).toArray(IntVar[]::new);
+        if (compact) {
+            postCompact(rp, earlyStarts, lastEnd, capas, cUses, dUses);
+            return true;
+        }
         rp.getModel().post(
                 new TaskScheduler(earlyStarts,
                         lastEnd,
@@ -135,6 +144,83 @@ public class DefaultCumulatives extends AbstractCumulatives implements Cumulativ
         return true;
     }
 
+    /**
+     * Tell if a dSlice and its possible associated cSlice are fixed on their node for the
+     * whole reconfiguration process.
+     *
+     * @param dIdx the dSlice index
+     * @return {@code true} iff the slices can be turned into a constant load
+     */
+    private boolean isFrozen(int dIdx) {
+        if (!dStarts[dIdx].isInstantiatedTo(0) || !dHosts[dIdx].isInstantiated()) {
+            return false;
+        }
+        int cIdx = associations[dIdx];
+        return cIdx == LocalTaskScheduler.NO_ASSOCIATIONS || cEnds[cIdx].isInstantiatedTo(0);
+    }
+
+    /**
+     * Post the scheduling constraint without the slices that are fixed on their node for the
+     * whole reconfiguration process. Their usage is subtracted from the capacity of their node.
+     */
+    @SuppressWarnings("squid:S3346")
+    private void postCompact(ReconfigurationProblem rp, IntVar[] earlyStarts, IntVar[] lastEnd, int[][] capas, int[][] cUses, int[][] dUses) {
+        int nbDims = capacities.size();
+        boolean[] frozenC = new boolean[cHosts.length];
+        TIntArrayList keptD = new TIntArrayList(dHosts.length);
+        for (int j = 0; j < dHosts.length; j++) {
+            if (!isFrozen(j)) {
+                keptD.add(j);
+                continue;
+            }
+            //The associated cSlice ends at 0 so only the dSlice usage lasts
+            int[] capa = capas[dHosts[j].getValue()];
+            int cIdx = associations[j];
+            if (cIdx != LocalTaskScheduler.NO_ASSOCIATIONS) {
+                frozenC[cIdx] = true;
+            }
+            for (int d = 0; d < nbDims; d++) {
+                capa[d] -= dUses[j][d];
+                if (capa[d] < 0) {
+                    rp.getLogger().debug("Node '{}' cannot host its non-manageable VMs", rp.getNode(dHosts[j].getValue()));
+                    rp.getModel().post(rp.getModel().falseConstraint());
+                    return;
+                }
+            }
+        }
+
+        //The remaining cSlices, and their new index
+        int[] newC = new int[cHosts.length];
+        TIntArrayList keptC = new TIntArrayList(cHosts.length);
+        for (int i = 0; i < cHosts.length; i++) {
+            if (!frozenC[i]) {
+                newC[i] = keptC.size();
+                keptC.add(i);
+            }
+        }
+        IntVar[] ch = new IntVar[keptC.size()];
+        IntVar[] ce = new IntVar[keptC.size()];
+        int[][] cu = new int[keptC.size()][];
+        for (int i = 0; i < ch.length; i++) {
+            int x = keptC.get(i);
+            ch[i] = cHosts[x];
+            ce[i] = cEnds[x];
+            cu[i] = cUses[x];
+        }
+        IntVar[] dh = new IntVar[keptD.size()];
+        IntVar[] ds = new IntVar[keptD.size()];
+        int[][] du = new int[keptD.size()][];
+        int[] assocs = new int[keptD.size()];
+        for (int j = 0; j < dh.length; j++) {
+            int x = keptD.get(j);
+            dh[j] = dHosts[x];
+            ds[j] = dStarts[x];
+            du[j] = dUses[x];
+            assocs[j] = associations[x] == LocalTaskScheduler.NO_ASSOCIATIONS ? LocalTaskScheduler.NO_ASSOCIATIONS : newC[associations[x]];
+        }
+        rp.getModel().post(new TaskScheduler(earlyStarts, lastEnd, capas, ch, cu, ce, dh, du, ds, assocs));
+    }
+
     private Boolean strictlyDecreasingOrUnchanged(VM vm) {
         //If it has non-overlapping slices
         int[] slicesIndexes = non.get(vm);
@@ -173,6 +259,10 @@ public class DefaultCumulatives extends AbstractCumulatives implements Cumulativ
             Slice dSlice = a.getDSlice();
             Slice cSlice = a.getCSlice();
             if (dSlice != null && cSlice != null) {
+                if (compact && dSlice.getStart().isInstantiatedTo(0) && cSlice.getEnd().isInstantiatedTo(0)) {
+                    //Nothing to break, the slices are already fixed
+                    continue;
+                }
                 BoolVar stay = ((KeepRunningVM) a).isStaying();
 
                 Boolean ret = strictlyDecreasingOrUnchanged(vm);
@@ -18,6 +18,7 @@
 
 package org.btrplace.scheduler.choco.view;
 
+import gnu.trove.list.array.TIntArrayList;
 import org.btrplace.scheduler.SchedulerException;
 import org.btrplace.scheduler.choco.Parameters;
 import org.btrplace.scheduler.choco.ReconfigurationProblem;
@@ -26,6 +27,7 @@ import org.chocosolver.solver.variables.IntVar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 
 /*
@@ -45,14 +47,26 @@ public class VectorPacking extends Packing {
 
     private IStateInt[][] assignedLoad;
 
+    private org.btrplace.scheduler.choco.extensions.pack.VectorPacking cstr;
+
     private int dim;
 
+    private boolean compact;
+
+    /**
+     * The constant load of each bin for each dimension, coming from the items
+     * that are already assigned. Only used in compact mode.
+     */
+    private int[][] offsets;
+
     @Override
     public boolean inject(Parameters ps, ReconfigurationProblem rp) throws SchedulerException {
+        compact = ps.isCompactMode();
         loads = new ArrayList<>();
         bins = new ArrayList<>();
         sizes = new ArrayList<>();
         names = new ArrayList<>();
+        cstr = null;
         dim = 0;
         return true;
     }
@@ -80,16 +94,98 @@ public class VectorPacking extends Packing {
             int[] s = sizes.get(d);
             aSizes[d] = s;
         }
+        IntVar[] aBins = bins.get(0);
+        offsets = new int[dim][aLoads.length == 0 ? 0 : aLoads[0].length];
+        if (compact) {
+            aBins = compact(aLoads, aSizes, aBins, p.getModel());
+        }
         if (!p.getFutureRunningVMs().isEmpty()) {
-            org.btrplace.scheduler.choco.extensions.pack.VectorPacking c = new org.btrplace.scheduler.choco.extensions.pack.VectorPacking(aNames, aLoads, aSizes, bins.get(0), true, true);
-            p.getModel().post(c);
-            assignedLoad = c.assignedLoad();
+            cstr = new org.btrplace.scheduler.choco.extensions.pack.VectorPacking(aNames, aLoads, aSizes, aBins, true, true);
+            p.getModel().post(cstr);
+            assignedLoad = cstr.assignedLoad();
 
         }
         return true;
     }
 
+    /**
+     * Remove the items that are already assigned.
+     * Their sizes become constant offsets for the load of their bin.
+     *
+     * @param aLoads the load of each bin for each dimension. Replaced by offset views when needed
+     * @param aSizes the size of each item for each dimension. Reduced to the remaining items
+     * @param aBins  the bin of each item
+     * @param csp    the model
+     * @return the bins of the remaining items
+     */
+    private IntVar[] compact(IntVar[][] aLoads, int[][] aSizes, IntVar[] aBins, org.chocosolver.solver.Model csp) {
+        TIntArrayList kept = new TIntArrayList(aBins.length);
+        for (int i = 0; i < aBins.length; i++) {
+            if (aBins[i].isInstantiated()) {
+                int b = aBins[i].getValue();
+                for (int d = 0; d < dim; d++) {
+                    offsets[d][b] += aSizes[d][i];
+                }
+            } else {
+                kept.add(i);
+            }
+        }
+        if (kept.size() == aBins.length) {
+            return aBins;
+        }
+        IntVar[] res = new IntVar[kept.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = aBins[kept.get(i)];
+        }
+        for (int d = 0; d < dim; d++) {
+            int[] s = new int[kept.size()];
+            for (int i = 0; i < s.length; i++) {
+                s[i] = aSizes[d][kept.get(i)];
+            }
+            aSizes[d] = s;
+            for (int b = 0; b < aLoads[d].length; b++) {
+                if (offsets[d][b] != 0) {
+                    aLoads[d][b] = csp.intOffsetView(aLoads[d][b], -offsets[d][b]);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Get the load of the bins that comes from the items the packing constraint manages.
+     * In compact mode, the load of the items that were assigned before the solving process
+     * is not included. See {@link #getLoadOffset(int, int)}.
+     *
+     * @return the load of each bin for each dimension
+     */
     public IStateInt[][] assignedLoad() {
         return assignedLoad;
     }
+
+    /**
+     * Get the constant load of a bin that comes from the items that were assigned before
+     * the solving process, when the compact mode is used.
+     *
+     * @param d the dimension
+     * @param b the bin index
+     * @return a positive load. {@code 0} when the compact mode is not used
+     */
+    public int getLoadOffset(int d, int b) {
+        return offsets[d][b];
+    }
+
+    /**
+     * Register a listener that is notified with the index of a bin each time
+     * the value returned by {@link #assignedLoad()} for this bin is about to change.
+     * The notifications are not repeated upon backtrack.
+     * Nothing is registered when there is no VM to pack.
+     *
+     * @param l the listener to add
+     */
+    public void addAssignedLoadListener(IntConsumer l) {
+        if (cstr != null) {
+            cstr.addAssignedLoadListener(l);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.scheduler.choco;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.Ban;
+import org.btrplace.model.constraint.MinMTTR;
+import org.btrplace.model.constraint.Running;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.model.view.network.Network;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.runner.InstanceSolver;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link AsyncSolving}.
+ *
+ * @author Fabien Hermenier
+ */
+public class AsyncSolvingTest {
+
+    private static Instance makeInstance() {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 1);
+        mo.attach(cpu);
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 3; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, j + 1);
+            }
+        }
+        //Evacuate the first node
+        List<SatConstraint> cstrs = new ArrayList<>(Ban.newBan(mo.getMapping().getRunningVMs(ns.get(0)), ns.subList(0, 1)));
+        return new Instance(mo, cstrs, new MinMTTR());
+    }
+
+    @Test
+    public void testSolve() throws Exception {
+        ChocoScheduler s = new DefaultChocoScheduler();
+        s.doOptimize(true);
+        AsyncSolving h = s.solveAsync(makeInstance());
+        ReconfigurationPlan first = h.getFirstPlan().get();
+        Assert.assertNotNull(first);
+        List<ReconfigurationPlan> plans = h.plans().collect(Collectors.toList());
+        Assert.assertTrue(plans.size() > 1);
+        Assert.assertSame(plans.get(0), first);
+
+        ReconfigurationPlan last = h.getFinalPlan().get();
+        Assert.assertSame(plans.get(plans.size() - 1), last);
+        Assert.assertSame(h.getBestPlan(), last);
+        SolvingStatistics st = h.getStatistics().get();
+        Assert.assertTrue(st.completed());
+        Assert.assertEquals(st.getSolutions().size(), plans.size());
+        Assert.assertTrue(h.isDone());
+        Assert.assertFalse(h.cancel());
+        Assert.assertFalse(h.isCancelled());
+        //The stream can be replayed
+        Assert.assertEquals(h.plans().count(), plans.size());
+    }
+
+    @Test
+    public void testRetainedPlans() throws Exception {
+        ChocoScheduler s = new DefaultChocoScheduler();
+        s.doOptimize(true);
+        s.setMaxRetainedSolutions(1);
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncSolving h = s.solveAsync(makeInstance(), tasks::add);
+        tasks.get(0).run();
+        ReconfigurationPlan last = h.getFinalPlan().get();
+        Assert.assertNotNull(last);
+        Assert.assertSame(h.getBestPlan(), last);
+        //Only the best plan is retained
+        List<ReconfigurationPlan> plans = h.plans().collect(Collectors.toList());
+        Assert.assertEquals(plans, Collections.singletonList(last));
+        Assert.assertEquals(h.getStatistics().get().getSolutions().size(), 1);
+    }
+
+    @Test
+    public void testCustomInstanceSolver() throws Exception {
+        ChocoScheduler s = new DefaultChocoScheduler();
+        AtomicInteger calls = new AtomicInteger();
+        InstanceSolver solver = s.getInstanceSolver();
+        s.setInstanceSolver(new InstanceSolver() {
+            @Override
+            public ReconfigurationPlan solve(Parameters ps, Instance i) throws SchedulerException {
+                calls.incrementAndGet();
+                return solver.solve(ps, i);
+            }
+
+            @Override
+            public SolvingStatistics getStatistics() throws SchedulerException {
+                return solver.getStatistics();
+            }
+        });
+        AsyncSolving h = s.solveAsync(makeInstance());
+        Assert.assertNotNull(h.getFinalPlan().get());
+        Assert.assertEquals(calls.get(), 1);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ChocoScheduler s = new DefaultChocoScheduler();
+        s.doOptimize(true);
+        AtomicReference<AsyncSolving> ref = new AtomicReference<>();
+        //Cancel the solving process once the first plan is computed
+        s.addSolutionListener((i, st) -> Assert.assertTrue(ref.get().cancel()));
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncSolving h = s.solveAsync(makeInstance(), tasks::add);
+        ref.set(h);
+        Assert.assertEquals(tasks.size(), 1);
+        Assert.assertFalse(h.isDone());
+        Assert.assertNull(h.getBestPlan());
+        tasks.get(0).run();
+
+        Assert.assertTrue(h.isDone());
+        Assert.assertTrue(h.isCancelled());
+        ReconfigurationPlan p = h.getFinalPlan().get();
+        Assert.assertNotNull(p);
+        Assert.assertSame(h.getFirstPlan().get(), p);
+        Assert.assertFalse(h.getStatistics().get().completed());
+        Assert.assertEquals(h.plans().count(), 1);
+    }
+
+    @Test
+    public void testCancelBeforeFirstPlan() throws Exception {
+        ChocoScheduler s = new DefaultChocoScheduler();
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncSolving h = s.solveAsync(makeInstance(), tasks::add);
+        Assert.assertTrue(h.cancel());
+        Assert.assertFalse(h.cancel());
+        tasks.get(0).run();
+
+        Assert.assertTrue(h.isDone());
+        Assert.assertTrue(h.isCancelled());
+        Assert.assertNull(h.getBestPlan());
+        Assert.assertEquals(h.plans().count(), 0);
+        Assert.assertTrue(h.getFirstPlan().isCompletedExceptionally());
+        Assert.assertTrue(h.getFinalPlan().isCompletedExceptionally());
+        try {
+            h.getFinalPlan().get();
+            Assert.fail("The final plan should not be available");
+        } catch (CancellationException e) {
+            //Expected
+        }
+        Assert.assertTrue(h.getStatistics().isCompletedExceptionally());
+    }
+
+    @Test
+    public void testSolveWithNetwork() throws Exception {
+        Instance i = makeInstance();
+        Model mo = i.getModel();
+        Network net = Network.createDefaultNetwork(mo);
+        for (VM v : mo.getMapping().getAllVMs()) {
+            mo.getAttributes().put(v, "memUsed", 1000);
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncSolving h = new DefaultChocoScheduler().solveAsync(i, tasks::add);
+        tasks.get(0).run();
+        ReconfigurationPlan p = h.getFinalPlan().get();
+        Assert.assertNotNull(p);
+        Assert.assertSame(h.getFirstPlan().get(), p);
+        Assert.assertSame(p.getOrigin(), mo);
+        //The placement stage did not touch the model of the caller
+        Assert.assertSame(Network.get(mo), net);
+        Assert.assertEquals(mo.getViews().size(), 2);
+    }
+
+    @Test
+    public void testNoSolution() throws Exception {
+        Model mo = new DefaultModel();
+        Node n = mo.newNode();
+        VM v = mo.newVM();
+        mo.getMapping().addOnlineNode(n);
+        mo.getMapping().addReadyVM(v);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Running(v));
+        cstrs.add(new Ban(v, Collections.singleton(n)));
+        Instance i = new Instance(mo, cstrs, new MinMTTR());
+        AsyncSolving h = new DefaultChocoScheduler().solveAsync(i);
+        Assert.assertNull(h.getFirstPlan().get());
+        Assert.assertNull(h.getFinalPlan().get());
+        Assert.assertEquals(h.plans().count(), 0);
+        Assert.assertTrue(h.isDone());
+    }
+}
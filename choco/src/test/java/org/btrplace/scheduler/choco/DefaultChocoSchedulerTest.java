@@ -23,14 +23,21 @@ import org.btrplace.model.constraint.*;
 import org.btrplace.model.view.ShareableResource;
 import org.btrplace.plan.ReconfigurationPlan;
 import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.SchedulerModelingException;
+import org.btrplace.scheduler.choco.runner.SolutionListener;
+import org.btrplace.scheduler.choco.runner.SolutionStatistics;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
 import org.btrplace.scheduler.choco.transition.TransitionFactory;
 import org.btrplace.scheduler.choco.transition.VMTransitionBuilder;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -298,4 +305,199 @@ public class DefaultChocoSchedulerTest {
         mo.getMapping().addReadyVM(v);
         Assert.assertNull(cra.solve(mo, Collections.singletonList(new Running(v))));
     }
+
+    @Test
+    public void testSolutionListeners() throws SchedulerException {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 1);
+        mo.attach(cpu);
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 3; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, j + 1);
+            }
+        }
+        List<SatConstraint> cstrs = new ArrayList<>(Ban.newBan(mo.getMapping().getRunningVMs(ns.get(0)), ns.subList(0, 1)));
+
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        cra.doOptimize(true);
+        List<SolutionStatistics> listened = new ArrayList<>();
+        SolutionListener l = (i, st) -> listened.add(st);
+        Assert.assertTrue(cra.addSolutionListener(l));
+        Assert.assertEquals(cra.getSolutionListeners(), Collections.singletonList(l));
+        cra.setMaxRetainedSolutions(1);
+        Assert.assertEquals(cra.getMaxRetainedSolutions(), 1);
+
+        ReconfigurationPlan p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertTrue(listened.size() > 1);
+        SolvingStatistics stats = cra.getStatistics();
+        //Only the best solution is retained, the others are streamed
+        Assert.assertEquals(stats.getSolutions().size(), 1);
+        Assert.assertSame(stats.getSolutions().get(0), listened.get(listened.size() - 1));
+        Assert.assertSame(stats.getLastSolution().getReconfigurationPlan(), p);
+        //The intermediary plans are still available on demand
+        for (SolutionStatistics st : listened) {
+            Assert.assertNotNull(st.getReconfigurationPlan());
+        }
+
+        Assert.assertTrue(cra.removeSolutionListener(l));
+        cra.setMaxRetainedSolutions(0);
+        listened.clear();
+        p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertTrue(listened.isEmpty());
+        Assert.assertTrue(cra.getStatistics().getSolutions().isEmpty());
+        Assert.assertSame(cra.getStatistics().lastSolution(), p);
+    }
+
+    @Test
+    public void testBuildParallelism() throws SchedulerException {
+        Model mo = new DefaultModel();
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 5; j++) {
+                mo.getMapping().addRunningVM(mo.newVM(), n);
+            }
+        }
+        List<SatConstraint> cstrs = new ArrayList<>();
+        List<VM> vms = new ArrayList<>(mo.getMapping().getAllVMs());
+        for (int i = 0; i < vms.size() - 1; i += 2) {
+            cstrs.add(new Spread(new HashSet<>(vms.subList(i, i + 2))));
+        }
+        cstrs.addAll(Ban.newBan(mo.getMapping().getRunningVMs(ns.get(0)), ns.subList(0, 1)));
+
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        Assert.assertEquals(cra.getBuildParallelism(), 1);
+        cra.doRepair(true);
+        ReconfigurationPlan seq = cra.solve(mo, cstrs);
+        Assert.assertNotNull(seq);
+        int nbManaged = cra.getStatistics().getNbManagedVMs();
+
+        cra.setBuildParallelism(4);
+        Assert.assertEquals(cra.getBuildParallelism(), 4);
+        ReconfigurationPlan par = cra.solve(mo, cstrs);
+        Assert.assertNotNull(par);
+        Assert.assertEquals(cra.getStatistics().getNbManagedVMs(), nbManaged);
+        Assert.assertEquals(par.getSize(), seq.getSize());
+
+        //The build relies on the shared pool, which stays alive
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            cra.getParameters().setExecutor(pool);
+            ReconfigurationPlan shared = cra.solve(mo, cstrs);
+            Assert.assertNotNull(shared);
+            Assert.assertEquals(shared.getSize(), seq.getSize());
+            Assert.assertFalse(pool.isShutdown());
+        } finally {
+            cra.getParameters().setExecutor(null);
+            pool.shutdown();
+        }
+
+        //Errors are reported as with a sequential build: the first failing constraint wins
+        cstrs.add(0, new Fence(vms.get(0), Collections.singleton(new Node(1000))));
+        cstrs.add(new Fence(vms.get(1), Collections.singleton(new Node(2000))));
+        for (int i = 0; i < 10; i++) {
+            try {
+                cra.solve(mo, cstrs);
+                Assert.fail();
+            } catch (SchedulerModelingException ex) {
+                Assert.assertTrue(ex.getMessage().contains("node#1000"), ex.getMessage());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testBadBuildParallelism() {
+        new DefaultChocoScheduler().setBuildParallelism(0);
+    }
+
+    @Test
+    public void testCompactMode() throws SchedulerException {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 16, 1);
+        mo.attach(cpu);
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 4; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, 2);
+            }
+        }
+        List<VM> vms = new ArrayList<>(mo.getMapping().getRunningVMs(ns.get(1)));
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Spread(new HashSet<>(vms.subList(0, 2)), false));
+        cstrs.add(new Fence(vms.get(0), ns.subList(1, 3)));
+        cstrs.add(new Offline(ns.get(4)));
+        List<VM> onFirst = new ArrayList<>(mo.getMapping().getRunningVMs(ns.get(0)));
+        cstrs.addAll(Ban.newBan(onFirst.subList(0, 2), ns.subList(0, 1)));
+
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        Assert.assertFalse(cra.isCompactMode());
+        cra.doRepair(true);
+        ReconfigurationPlan ref = cra.solve(mo, cstrs);
+        Assert.assertNotNull(ref);
+        int nbManaged = cra.getStatistics().getNbManagedVMs();
+
+        Assert.assertTrue(cra.setCompactMode(true).isCompactMode());
+        ReconfigurationPlan p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(cra.getStatistics().getNbManagedVMs(), nbManaged);
+        Assert.assertTrue(nbManaged < mo.getMapping().getNbVMs());
+        for (SatConstraint c : cstrs) {
+            Assert.assertTrue(c.isSatisfied(p), c.toString());
+        }
+        Model res = p.getResult();
+        for (Node n : ns) {
+            Assert.assertTrue(cpu.sumConsumptions(res.getMapping().getRunningVMs(n), true) <= 16, n.toString());
+        }
+        Assert.assertEquals(p.getDuration(), ref.getDuration());
+    }
+
+    /**
+     * A non-manageable VM whose consumption decreases only reserves its future consumption.
+     */
+    @Test
+    public void testCompactModeWithDecreasingUsage() throws SchedulerException {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 1);
+        mo.attach(cpu);
+        Node n = mo.newNode();
+        mo.getMapping().addOnlineNode(n);
+        VM shrink = mo.newVM();
+        VM stay = mo.newVM();
+        VM boot = mo.newVM();
+        mo.getMapping().addRunningVM(shrink, n);
+        mo.getMapping().addRunningVM(stay, n);
+        mo.getMapping().addReadyVM(boot);
+        cpu.setConsumption(shrink, 6);
+        cpu.setConsumption(stay, 4);
+        cpu.setConsumption(boot, 4);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Preserve(shrink, "cpu", 2));
+        cstrs.add(new Running(boot));
+
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        cra.doRepair(true);
+        ReconfigurationPlan ref = cra.solve(mo, cstrs);
+        Assert.assertNotNull(ref);
+        cra.setCompactMode(true);
+        ReconfigurationPlan p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertTrue(cra.getStatistics().getNbManagedVMs() < 3);
+        Assert.assertEquals(p.getSize(), ref.getSize());
+        Assert.assertEquals(p.getResult().getMapping().getVMLocation(boot), n);
+    }
 }
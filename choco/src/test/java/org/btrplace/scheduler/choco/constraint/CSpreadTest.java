@@ -89,6 +89,39 @@ public class CSpreadTest {
         Assert.assertNotSame(res.getVMLocation(vm1), res.getVMLocation(vm2));
     }
 
+    /**
+     * A large group with a rotation of the VMs over the nodes.
+     * The continuous restriction makes every VM wait for the VM it replaces.
+     */
+    @Test
+    public void testLargeContinuous() throws SchedulerException {
+        Model mo = new DefaultModel();
+        List<Node> ns = new ArrayList<>();
+        List<VM> vms = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            VM v = mo.newVM();
+            vms.add(v);
+            mo.getMapping().addOnlineNode(n);
+            mo.getMapping().addRunningVM(v, n);
+        }
+        Node spare = mo.newNode();
+        mo.getMapping().addOnlineNode(spare);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Spread(new HashSet<>(vms), true));
+        //vm#0 leaves its node, every other VM moves to the node of the previous VM
+        cstrs.add(new Fence(vms.get(0), Collections.singleton(spare)));
+        for (int i = 1; i < vms.size(); i++) {
+            cstrs.add(new Fence(vms.get(i), Collections.singleton(ns.get(i - 1))));
+        }
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        ReconfigurationPlan p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(p.getSize(), vms.size());
+        Assert.assertTrue(cstrs.get(0).isSatisfied(p));
+    }
+
     @Test
     public void testGetMisplaced() {
 
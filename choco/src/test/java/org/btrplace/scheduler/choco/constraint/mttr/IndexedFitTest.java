@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.Offline;
+import org.btrplace.model.constraint.Running;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.ChocoScheduler;
+import org.btrplace.scheduler.choco.DefaultChocoScheduler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link IndexedFit} and its implementations.
+ *
+ * @author Fabien Hermenier
+ */
+public class IndexedFitTest {
+
+    /**
+     * Place a single VM on nodes that are loaded at 9, 4, 7 and 2 over 10.
+     */
+    private static Node placeOne(VMPlacementHeuristic h) throws SchedulerException {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 0);
+        mo.attach(cpu);
+        int[] loads = {9, 4, 7, 2};
+        for (int load : loads) {
+            Node n = mo.newNode();
+            mo.getMapping().addOnlineNode(n);
+            VM v = mo.newVM();
+            mo.getMapping().addRunningVM(v, n);
+            cpu.setConsumption(v, load);
+        }
+        VM v = mo.newVM();
+        mo.getMapping().addReadyVM(v);
+        cpu.setConsumption(v, 3);
+
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        cra.doOptimize(false);
+        cra.setVMPlacementHeuristic(h);
+        ReconfigurationPlan p = cra.solve(mo, Collections.singletonList(new Running(v)));
+        Assert.assertNotNull(p);
+        return p.getResult().getMapping().getVMLocation(v);
+    }
+
+    @Test
+    public void testSelection() throws SchedulerException {
+        Assert.assertEquals(placeOne(VMPlacementHeuristic.INDEXED_WORST_FIT).id(), 3);
+        Assert.assertEquals(placeOne(VMPlacementHeuristic.INDEXED_BEST_FIT).id(), 2);
+        Assert.assertEquals(placeOne(VMPlacementHeuristic.INDEXED_FIRST_FIT).id(), 1);
+    }
+
+    /**
+     * Relocate the VMs of several nodes on a tightly loaded cluster
+     * so the index is kept up to date while the solver assigns and backtracks.
+     */
+    @Test
+    public void testRelocations() throws SchedulerException {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 0);
+        ShareableResource mem = new ShareableResource("mem", 12, 0);
+        mo.attach(cpu);
+        mo.attach(mem);
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 3; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, 1 + (i + j) % 3);
+                mem.setConsumption(v, 1 + (i * j) % 4);
+            }
+        }
+        List<SatConstraint> cstrs = new ArrayList<>(Offline.newOffline(ns.subList(0, 6)));
+        for (VMPlacementHeuristic h : new VMPlacementHeuristic[]{VMPlacementHeuristic.INDEXED_WORST_FIT,
+                VMPlacementHeuristic.INDEXED_BEST_FIT, VMPlacementHeuristic.INDEXED_FIRST_FIT}) {
+            for (boolean compact : new boolean[]{false, true}) {
+                ChocoScheduler cra = new DefaultChocoScheduler();
+                cra.setVMPlacementHeuristic(h);
+                cra.setCompactMode(compact);
+                cra.doRepair(compact);
+                ReconfigurationPlan p = cra.solve(mo, cstrs);
+                Assert.assertNotNull(p, h + " " + compact);
+                Model res = p.getResult();
+                for (Node n : ns) {
+                    Assert.assertTrue(cpu.sumConsumptions(res.getMapping().getRunningVMs(n), true) <= 10);
+                    Assert.assertTrue(mem.sumConsumptions(res.getMapping().getRunningVMs(n), true) <= 12);
+                }
+                for (SatConstraint c : cstrs) {
+                    Assert.assertTrue(c.isSatisfied(p));
+                }
+            }
+        }
+    }
+}
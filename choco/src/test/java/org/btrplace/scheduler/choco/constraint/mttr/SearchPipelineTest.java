@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.btrplace.scheduler.choco.constraint.mttr;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.MinMTTR;
+import org.btrplace.model.constraint.MinMigrations;
+import org.btrplace.model.constraint.Offline;
+import org.btrplace.model.constraint.OptConstraint;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.ChocoScheduler;
+import org.btrplace.scheduler.choco.DefaultChocoScheduler;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.chocosolver.solver.search.loop.lns.INeighborFactory;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link SearchPipeline}.
+ *
+ * @author Fabien Hermenier
+ */
+public class SearchPipelineTest {
+
+    private static Model makeModel() {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 8, 0);
+        mo.attach(cpu);
+        for (int i = 0; i < 6; i++) {
+            Node n = mo.newNode();
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 3; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, 1 + (i + j) % 3);
+            }
+        }
+        return mo;
+    }
+
+    @Test
+    public void testDefaultPipelines() {
+        SearchPipeline mttr = SearchPipeline.newMinMTTR();
+        Assert.assertEquals(mttr.getStages(), Arrays.asList(DefaultSearchStage.EXCLUDED_VMS_PLACEMENT,
+                DefaultSearchStage.BAD_VMS_PLACEMENT,
+                DefaultSearchStage.GOOD_VMS_PLACEMENT,
+                DefaultSearchStage.RELOCATION_METHODS,
+                DefaultSearchStage.NODE_STARTS,
+                DefaultSearchStage.VM_STARTS,
+                DefaultSearchStage.STABLE_NODES_FIRST,
+                DefaultSearchStage.VM_ENDS));
+        List<SearchStage> migs = SearchPipeline.newMinMigrations().getStages();
+        Assert.assertEquals(migs.size(), mttr.getStages().size() + 1);
+        Assert.assertEquals(migs.indexOf(DefaultSearchStage.NODE_DURATIONS), migs.indexOf(DefaultSearchStage.NODE_STARTS) + 1);
+        Assert.assertEquals(mttr.getLastConflict(), 0);
+        Assert.assertEquals(mttr.getLubyRestarts(), 0);
+        Assert.assertNull(new DefaultParameters().getSearchPipeline());
+    }
+
+    @Test
+    public void testEdition() {
+        SearchPipeline p = new SearchPipeline(DefaultSearchStage.VM_STARTS);
+        SearchStage s = (ctx, l) -> l.add(Search.domOverWDegSearch(ctx.getHostingVariables()));
+        Assert.assertSame(p.add(DefaultSearchStage.VM_ENDS).add(0, s), p);
+        Assert.assertEquals(p.getStages(), Arrays.asList(s, DefaultSearchStage.VM_STARTS, DefaultSearchStage.VM_ENDS));
+        Assert.assertTrue(p.replace(DefaultSearchStage.VM_STARTS, DefaultSearchStage.STABLE_NODES_FIRST));
+        Assert.assertFalse(p.replace(DefaultSearchStage.VM_STARTS, DefaultSearchStage.STABLE_NODES_FIRST));
+        Assert.assertTrue(p.remove(s));
+        Assert.assertFalse(p.remove(s));
+        Assert.assertEquals(p.getStages(), Arrays.asList(DefaultSearchStage.STABLE_NODES_FIRST, DefaultSearchStage.VM_ENDS));
+        Assert.assertEquals(p.setLastConflict(2).setLubyRestarts(10).getLastConflict(), 2);
+        Assert.assertEquals(p.getLubyRestarts(), 10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadLastConflict() {
+        new SearchPipeline().setLastConflict(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadLubyRestarts() {
+        new SearchPipeline().setLubyRestarts(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadLNS() {
+        new SearchPipeline().setLNS(ctx -> INeighborFactory.random(ctx.getHostingVariables()), 0);
+    }
+
+    /**
+     * Replace the placement of the manageable VMs by a custom stage, with the
+     * last-conflict heuristic and restarts.
+     */
+    @Test
+    public void testCustomPipeline() throws SchedulerException {
+        Model mo = makeModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getOnlineNodes());
+        List<SatConstraint> cstrs = new ArrayList<>(Offline.newOffline(ns.subList(0, 1)));
+        for (OptConstraint o : new OptConstraint[]{new MinMTTR(), new MinMigrations()}) {
+            AtomicInteger calls = new AtomicInteger();
+            SearchPipeline p = o instanceof MinMTTR ? SearchPipeline.newMinMTTR() : SearchPipeline.newMinMigrations();
+            Assert.assertTrue(p.replace(DefaultSearchStage.BAD_VMS_PLACEMENT, (ctx, l) -> {
+                calls.incrementAndGet();
+                l.add(Search.domOverWDegSearch(ctx.getHostingVariables()));
+            }));
+            p.setLastConflict(1).setLubyRestarts(50);
+
+            ChocoScheduler cra = new DefaultChocoScheduler();
+            cra.doOptimize(true);
+            Assert.assertSame(cra.setSearchPipeline(p).getSearchPipeline(), p);
+            Assert.assertSame(new DefaultParameters(cra).getSearchPipeline(), p);
+            ReconfigurationPlan plan = cra.solve(mo, cstrs, o);
+            Assert.assertNotNull(plan, o.toString());
+            Assert.assertEquals(calls.get(), 1);
+            for (SatConstraint c : cstrs) {
+                Assert.assertTrue(c.isSatisfied(plan));
+            }
+        }
+    }
+
+    @Test
+    public void testSharedHostSelectors() throws SchedulerException {
+        Model mo = makeModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getOnlineNodes());
+        List<SatConstraint> cstrs = new ArrayList<>(Offline.newOffline(ns.subList(0, 1)));
+        AtomicReference<SearchContext> ref = new AtomicReference<>();
+        SearchPipeline p = SearchPipeline.newMinMTTR();
+        p.replace(DefaultSearchStage.BAD_VMS_PLACEMENT, (ctx, l) -> {
+            ref.set(ctx);
+            DefaultSearchStage.BAD_VMS_PLACEMENT.build(ctx, l);
+        });
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        cra.setVMPlacementHeuristic(VMPlacementHeuristic.INDEXED_WORST_FIT);
+        cra.setSearchPipeline(p);
+        Assert.assertNotNull(cra.solve(mo, cstrs));
+
+        //The placement stages share one selector per kind
+        SearchContext ctx = ref.get();
+        IntValueSelector sel = ctx.getHostSelector(true);
+        Assert.assertTrue(sel instanceof IndexedWorstFit);
+        Assert.assertSame(ctx.getHostSelector(true), sel);
+        IntValueSelector rnd = ctx.getHostSelector(false);
+        Assert.assertTrue(rnd instanceof RandomVMPlacement);
+        Assert.assertSame(ctx.getHostSelector(false), rnd);
+    }
+
+    @Test
+    public void testLNS() throws SchedulerException {
+        Model mo = makeModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getOnlineNodes());
+        List<SatConstraint> cstrs = new ArrayList<>(Offline.newOffline(ns.subList(0, 1)));
+        ChocoScheduler cra = new DefaultChocoScheduler();
+        cra.doOptimize(true);
+        cra.setTimeLimit(2);
+        cra.setSearchPipeline(SearchPipeline.newMinMTTR()
+                .setLNS(ctx -> INeighborFactory.propagationGuided(ctx.getHostingVariables()), 50));
+        ReconfigurationPlan plan = cra.solve(mo, cstrs);
+        Assert.assertNotNull(plan);
+        for (SatConstraint c : cstrs) {
+            Assert.assertTrue(c.isSatisfied(plan));
+        }
+    }
+}
@@ -107,4 +107,82 @@ public class DurationEvaluatorsTest {
         d.register(org.btrplace.plan.event.MigrateVM.class, new ConstantActionDuration<>(-5));
         d.evaluate(mo, org.btrplace.plan.event.MigrateVM.class, vm1);
     }
+
+    /**
+     * A constant evaluator that counts its evaluations.
+     */
+    private static class CountingDuration extends ConstantActionDuration<Element> {
+
+        private int nb;
+
+        private final boolean cacheable;
+
+        CountingDuration(boolean cacheable) {
+            super(5);
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public int evaluate(Model m, Element e) {
+            nb++;
+            return super.evaluate(m, e);
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return cacheable;
+        }
+    }
+
+    @Test
+    public void testMemoisation() throws SchedulerException {
+        Model m = new DefaultModel();
+        VM v = m.newVM();
+        Node n = m.newNode();
+        DurationEvaluators d = new DurationEvaluators();
+        CountingDuration cached = new CountingDuration(true);
+        d.register(MigrateVM.class, new ActionDurationFromOptionalAttribute<>("migrate", cached));
+        d.register(BootNode.class, cached);
+        Assert.assertEquals(d.evaluate(m, MigrateVM.class, v), 5);
+        Assert.assertEquals(d.evaluate(m, MigrateVM.class, v), 5);
+        Assert.assertEquals(d.evaluate(m, BootNode.class, n), 5);
+        Assert.assertEquals(d.evaluate(m, BootNode.class, n), 5);
+        Assert.assertEquals(cached.nb, 2);
+
+        //Invalidated once the attributes change
+        m.getAttributes().put(v, "migrate", 3);
+        Assert.assertEquals(d.evaluate(m, MigrateVM.class, v), 3);
+        Assert.assertEquals(d.evaluate(m, BootNode.class, n), 5);
+        Assert.assertEquals(cached.nb, 3);
+
+        //Not shared with other attributes
+        Model m2 = m.copy();
+        Assert.assertEquals(d.evaluate(m2, MigrateVM.class, v), 3);
+        Assert.assertEquals(d.evaluate(m2, BootNode.class, n), 5);
+        Assert.assertEquals(cached.nb, 4);
+
+        //Invalidated on registration
+        CountingDuration notCached = new CountingDuration(false);
+        d.register(BootNode.class, notCached);
+        Assert.assertEquals(d.evaluate(m2, BootNode.class, n), 5);
+        Assert.assertEquals(d.evaluate(m2, BootNode.class, n), 5);
+        Assert.assertEquals(notCached.nb, 2);
+    }
+
+    @Test
+    public void testMemoPerAttributes() throws SchedulerException {
+        Model m1 = new DefaultModel();
+        VM v = m1.newVM();
+        Model m2 = m1.copy();
+        m2.getAttributes().put(v, "migrate", 3);
+        DurationEvaluators d = new DurationEvaluators();
+        CountingDuration cached = new CountingDuration(true);
+        d.register(MigrateVM.class, new ActionDurationFromOptionalAttribute<>("migrate", cached));
+        //Interleaved evaluations over distinct attributes do not evict each other
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(d.evaluate(m1, MigrateVM.class, v), 5);
+            Assert.assertEquals(d.evaluate(m2, MigrateVM.class, v), 3);
+        }
+        Assert.assertEquals(cached.nb, 1);
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.extensions;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.constraints.Arithmetic;
+import org.chocosolver.solver.constraints.Operator;
+import org.chocosolver.solver.variables.BoolVar;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link ContinuousSpread}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ContinuousSpreadTest {
+
+    /**
+     * A d-slice must wait for the c-slice of another task on the same host.
+     */
+    @Test
+    public void testSimple() {
+        Model s = new Model();
+        IntVar[] cHosts = {s.intVar(0), null};
+        IntVar[] cEnds = {s.intVar("cEnd", 0, 3, true), null};
+        IntVar[] dHosts = {null, s.intVar("dHost", 0, 1, false)};
+        IntVar[] dStarts = {null, s.intVar("dStart", 0, 3, true)};
+        s.post(new ContinuousSpread(dHosts, dStarts, cHosts, cEnds));
+        //host 1: 4 * 4. host 0: cEnd <= dStart -> 10
+        Assert.assertEquals(s.getSolver().findAllSolutions().size(), 26);
+    }
+
+    /**
+     * The slices of a same task never conflict.
+     */
+    @Test
+    public void testSameTask() {
+        Model s = new Model();
+        IntVar[] cHosts = {s.intVar(0)};
+        IntVar[] cEnds = {s.intVar(5)};
+        IntVar[] dHosts = {s.intVar(0)};
+        IntVar[] dStarts = {s.intVar(0)};
+        s.post(new ContinuousSpread(dHosts, dStarts, cHosts, cEnds));
+        Assert.assertTrue(s.getSolver().solve());
+    }
+
+    @Test
+    public void testFailure() {
+        Model s = new Model();
+        IntVar[] cHosts = {s.intVar(0), s.intVar(1)};
+        IntVar[] cEnds = {s.intVar(4), s.intVar(4)};
+        IntVar[] dHosts = {s.intVar("d0", 0, 1, false), s.intVar("d1", 0, 1, false)};
+        IntVar[] dStarts = {s.intVar("s0", 0, 2, true), s.intVar("s1", 0, 2, true)};
+        s.post(new ContinuousSpread(dHosts, dStarts, cHosts, cEnds));
+        //Each task can only stay on its host
+        Assert.assertEquals(s.getSolver().findAllSolutions().size(), 9);
+        s.getSolver().reset();
+        s.arithm(dHosts[0], "=", 1).post();
+        Assert.assertFalse(s.getSolver().solve());
+    }
+
+    /**
+     * Compare with the pairwise decomposition using reified precedences.
+     */
+    @Test
+    public void testAgainstDecomposition() {
+        Random rnd = new Random(12);
+        for (int x = 0; x < 30; x++) {
+            long seed = rnd.nextLong();
+            Assert.assertEquals(count(seed, true), count(seed, false), "seed " + seed);
+        }
+    }
+
+    private static int count(long seed, boolean global) {
+        Random rnd = new Random(seed);
+        Model s = new Model();
+        int nb = 3;
+        IntVar[] dHosts = new IntVar[nb];
+        IntVar[] dStarts = new IntVar[nb];
+        IntVar[] cHosts = new IntVar[nb];
+        IntVar[] cEnds = new IntVar[nb];
+        for (int i = 0; i < nb; i++) {
+            if (rnd.nextInt(4) > 0) {
+                cHosts[i] = s.intVar(rnd.nextInt(3));
+                cEnds[i] = s.intVar("cEnd" + i, 0, rnd.nextInt(3) + 1, true);
+            }
+            if (i == 0 || rnd.nextInt(4) > 0) {
+                dHosts[i] = s.intVar("dHost" + i, 0, 2, false);
+                dStarts[i] = s.intVar("dStart" + i, rnd.nextInt(2), 3, true);
+            }
+        }
+        if (global) {
+            s.post(new ContinuousSpread(dHosts, dStarts, cHosts, cEnds));
+        } else {
+            for (int i = 0; i < nb; i++) {
+                for (int j = 0; j < nb; j++) {
+                    if (i != j && dHosts[i] != null && cHosts[j] != null) {
+                        BoolVar eq = s.boolVar();
+                        new Arithmetic(dHosts[i], Operator.EQ, cHosts[j]).reifyWith(eq);
+                        s.ifThen(eq, s.arithm(cEnds[j], "<=", dStarts[i]));
+                    }
+                }
+            }
+        }
+        int nbSolutions = 0;
+        while (s.getSolver().solve()) {
+            nbSolutions++;
+        }
+        return nbSolutions;
+    }
+}
@@ -20,9 +20,11 @@ package org.btrplace.scheduler.choco.extensions;
 
 
 import org.btrplace.scheduler.choco.extensions.pack.VectorPacking;
+import org.chocosolver.solver.Cause;
 import org.chocosolver.solver.Model;
 import org.chocosolver.solver.Solution;
 import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.exception.ContradictionException;
 import org.chocosolver.solver.search.strategy.Search;
 import org.chocosolver.solver.search.strategy.selectors.values.IntDomainMin;
 import org.chocosolver.solver.search.strategy.selectors.variables.InputOrder;
@@ -173,5 +175,19 @@ public class VectorPackingTest {
         testPack(true, "failed with " + Arrays.toString(height));
     }
 
-
+    /**
+     * When a bin is full on one dimension, the removal of its remaining candidates must
+     * also shrink its potential load on the other dimensions.
+     */
+    @Test
+    public void testFullBinOnOneDimension() throws ContradictionException {
+        modelPack(new int[][]{{2, 10, 10}, {10, 10, 10}}, new int[][]{{2, 1, 0}, {1, 3, 5}});
+        s.getSolver().propagate();
+        bins[0].instantiateTo(0, Cause.Null);
+        s.getSolver().propagate();
+        //The second item no longer fits, the third one has no size on the full dimension
+        Assert.assertFalse(bins[1].contains(0));
+        Assert.assertTrue(bins[2].contains(0));
+        Assert.assertEquals(loads[1][0].getUB(), 6);
+    }
 }
@@ -24,6 +24,8 @@ import org.btrplace.plan.ReconfigurationPlan;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Simple unit tests for {@link org.btrplace.scheduler.choco.runner.SolutionStatistics}.
  *
@@ -44,4 +46,19 @@ public class SolutionStatisticsTest {
         Assert.assertEquals(st.objective(), 12);
         System.out.println(st);
     }
+
+    @Test
+    public void testLazyPlan() {
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel());
+        AtomicInteger nb = new AtomicInteger();
+        SolutionStatistics st = new SolutionStatistics(new Metrics(), () -> {
+            nb.incrementAndGet();
+            return p;
+        });
+        Assert.assertEquals(nb.get(), 0);
+        Assert.assertEquals(st.getReconfigurationPlan(), p);
+        Assert.assertEquals(st.getReconfigurationPlan(), p);
+        //The plan is built once
+        Assert.assertEquals(nb.get(), 1);
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.runner.portfolio;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.Ban;
+import org.btrplace.model.constraint.MinMTTR;
+import org.btrplace.model.constraint.Running;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.constraint.mttr.VMPlacementHeuristic;
+import org.btrplace.scheduler.choco.constraint.mttr.load.BiggestDimension;
+import org.btrplace.scheduler.choco.constraint.mttr.load.Mean;
+import org.btrplace.scheduler.choco.runner.SolutionStatistics;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.btrplace.scheduler.choco.runner.single.SingleRunner;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for {@link PortfolioRunner}.
+ *
+ * @author Fabien Hermenier
+ */
+public class PortfolioRunnerTest {
+
+    private static Instance makeInstance() {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 10, 1);
+        mo.attach(cpu);
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 3; j++) {
+                VM v = mo.newVM();
+                mo.getMapping().addRunningVM(v, n);
+                cpu.setConsumption(v, j + 1);
+            }
+        }
+        List<SatConstraint> cstrs = new ArrayList<>();
+        //Evacuate the first node
+        cstrs.addAll(Ban.newBan(mo.getMapping().getRunningVMs(ns.get(0)), ns.subList(0, 1)));
+        VM forge = mo.newVM();
+        mo.getMapping().addReadyVM(forge);
+        cstrs.add(new Running(forge));
+        return new Instance(mo, cstrs, new MinMTTR());
+    }
+
+    @Test
+    public void testConfigure() {
+        PortfolioRunner r = new PortfolioRunner(4);
+        Assert.assertEquals(r.getWorkersCount(), 4);
+        Parameters ps = new DefaultParameters().setRandomSeed(10);
+        Assert.assertSame(r.configure(ps, 0), ps);
+
+        Parameters p1 = r.configure(ps, 1);
+        Assert.assertEquals(p1.getRandomSeed(), 11);
+        Assert.assertEquals(p1.getVMPlacementHeuristic(), VMPlacementHeuristic.RANDOM);
+        Assert.assertTrue(p1.getLoadEstimator() instanceof BiggestDimension);
+
+        Parameters p2 = r.configure(ps, 2);
+        Assert.assertEquals(p2.getVMPlacementHeuristic(), VMPlacementHeuristic.WORST_FIT);
+        Assert.assertTrue(p2.getLoadEstimator() instanceof Mean);
+
+        //The base parameters are left unchanged
+        Assert.assertEquals(ps.getVMPlacementHeuristic(), VMPlacementHeuristic.WORST_FIT);
+        Assert.assertEquals(ps.getRandomSeed(), 10);
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testBadWorkersCount() {
+        new PortfolioRunner(0);
+    }
+
+    @Test
+    public void testOptimize() throws SchedulerException {
+        Parameters ps = new DefaultParameters().doOptimize(true);
+
+        SingleRunner single = new SingleRunner();
+        ReconfigurationPlan ref = single.solve(ps, makeInstance());
+        Assert.assertNotNull(ref);
+        List<SolutionStatistics> refSols = single.getStatistics().getSolutions();
+        int optimum = refSols.get(refSols.size() - 1).objective();
+
+        PortfolioRunner r = new PortfolioRunner(4);
+        ReconfigurationPlan p = r.solve(ps, makeInstance());
+        Assert.assertNotNull(p);
+        SolvingStatistics st = r.getStatistics();
+        Assert.assertTrue(st.completed());
+        Assert.assertEquals(st.lastSolution(), p);
+        List<SolutionStatistics> sols = st.getSolutions();
+        Assert.assertEquals(sols.get(sols.size() - 1).objective(), optimum);
+    }
+
+    @Test
+    public void testFirstSolution() throws SchedulerException {
+        Parameters ps = new DefaultParameters();
+        PortfolioRunner r = new PortfolioRunner(3);
+        ReconfigurationPlan p = r.solve(ps, makeInstance());
+        Assert.assertNotNull(p);
+        Assert.assertEquals(r.getStatistics().getSolutions().size(), 1);
+    }
+
+    @Test
+    public void testSharedExecutor() throws SchedulerException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Parameters ps = new DefaultParameters().doOptimize(true).setBuildParallelism(2).setExecutor(pool);
+            PortfolioRunner r = new PortfolioRunner(3);
+            for (int x = 0; x < 2; x++) {
+                Assert.assertNotNull(r.solve(ps, makeInstance()));
+                Assert.assertTrue(r.getStatistics().completed());
+            }
+            //The pool belongs to the caller
+            Assert.assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNoSolution() throws SchedulerException {
+        Instance i = makeInstance();
+        Model mo = i.getModel();
+        //The new VM cannot be hosted anywhere
+        VM v = mo.getMapping().getReadyVMs().iterator().next();
+        i.getSatConstraints().add(new Ban(v, mo.getMapping().getOnlineNodes()));
+        PortfolioRunner r = new PortfolioRunner(2);
+        Assert.assertNull(r.solve(new DefaultParameters().doOptimize(true), i));
+        Assert.assertNotNull(r.getStatistics());
+    }
+}
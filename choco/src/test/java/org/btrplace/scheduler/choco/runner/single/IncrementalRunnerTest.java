@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.choco.runner.single;
+
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.Ban;
+import org.btrplace.model.constraint.MinMTTR;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link IncrementalRunner}.
+ *
+ * @author Fabien Hermenier
+ */
+public class IncrementalRunnerTest {
+
+    private static Model makeModel() {
+        Model mo = new DefaultModel();
+        ShareableResource cpu = new ShareableResource("cpu", 4, 1);
+        mo.attach(cpu);
+        for (int i = 0; i < 5; i++) {
+            Node n = mo.newNode();
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 2; j++) {
+                mo.getMapping().addRunningVM(mo.newVM(), n);
+            }
+        }
+        return mo;
+    }
+
+    @Test
+    public void testReuseUnchangedInstance() throws SchedulerException {
+        Model mo = makeModel();
+        VM v0 = new VM(0);
+        Node n0 = new Node(0);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Ban(v0, Collections.singleton(n0)));
+        Parameters ps = new DefaultParameters();
+        IncrementalRunner r = new IncrementalRunner();
+
+        ReconfigurationPlan p = r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        Assert.assertNotNull(p);
+        Assert.assertEquals(p.getSize(), 1);
+        Assert.assertTrue(r.getStatistics().getCoreBuildDuration() >= 0);
+
+        //Same instance, no solving
+        ReconfigurationPlan p2 = r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        Assert.assertEquals(p2.getActions(), p.getActions());
+        SolvingStatistics st = r.getStatistics();
+        Assert.assertEquals(st.getNbManagedVMs(), 0);
+        Assert.assertEquals(st.getCoreBuildDuration(), 0);
+        Assert.assertTrue(st.completed());
+
+        //The plan has been applied. Nothing to do
+        r.planApplied();
+        Model res = p.getResult();
+        ReconfigurationPlan p3 = r.solve(ps, new Instance(res, cstrs, new MinMTTR()));
+        Assert.assertEquals(p3.getSize(), 0);
+        Assert.assertEquals(r.getStatistics().getNbManagedVMs(), 0);
+    }
+
+    @Test
+    public void testSolveTheDelta() throws SchedulerException {
+        Model mo = makeModel();
+        VM v0 = new VM(0);
+        VM v5 = new VM(5);
+        Node n0 = new Node(0);
+        Node n2 = new Node(2);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Ban(v0, Collections.singleton(n0)));
+        Parameters ps = new DefaultParameters();
+        IncrementalRunner r = new IncrementalRunner();
+        ReconfigurationPlan p = r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        Assert.assertNotNull(p);
+
+        //Apply the plan, then ask for a new change
+        r.planApplied();
+        Model res = p.getResult();
+        cstrs.add(new Ban(v5, Collections.singleton(n2)));
+        ReconfigurationPlan p2 = r.solve(ps, new Instance(res, cstrs, new MinMTTR()));
+        Assert.assertNotNull(p2);
+        Assert.assertEquals(p2.getSize(), 1);
+        Assert.assertEquals(p2.getActions().iterator().next().toString().contains("vm#5"), true);
+        Assert.assertTrue(r.getStatistics().getNbManagedVMs() <= 1);
+        Assert.assertTrue(p2.getResult().getMapping().isRunning(v0));
+        Assert.assertNotEquals(p2.getResult().getMapping().getVMLocation(v5), n2);
+
+        //A resource change makes the VM manageable
+        r.planApplied();
+        Model res2 = p2.getResult();
+        ShareableResource.get(res2, "cpu").setConsumption(new VM(3), 2);
+        ReconfigurationPlan p3 = r.solve(ps, new Instance(res2, cstrs, new MinMTTR()));
+        Assert.assertNotNull(p3);
+        Assert.assertEquals(p3.getSize(), 0);
+        Assert.assertEquals(r.getStatistics().getNbManagedVMs(), 1);
+    }
+
+    @Test
+    public void testWarmStart() throws SchedulerException {
+        Model mo = makeModel();
+        VM v0 = new VM(0);
+        VM v5 = new VM(5);
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Ban(v0, Collections.singleton(new Node(0))));
+        Parameters ps = new DefaultParameters();
+        IncrementalRunner r = new IncrementalRunner();
+        ReconfigurationPlan p = r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        Node dst = p.getResult().getMapping().getVMLocation(v0);
+
+        //The plan was not applied, a new constraint came
+        cstrs.add(new Ban(v5, Collections.singleton(new Node(2))));
+        ReconfigurationPlan p2 = r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        Assert.assertNotNull(p2);
+        Assert.assertEquals(p2.getSize(), 2);
+        Assert.assertEquals(p2.getResult().getMapping().getVMLocation(v0), dst);
+    }
+
+    @Test
+    public void testReset() throws SchedulerException {
+        Model mo = makeModel();
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Ban(new VM(0), Collections.singleton(new Node(0))));
+        Parameters ps = new DefaultParameters();
+        IncrementalRunner r = new IncrementalRunner();
+        Assert.assertNull(r.getStatistics());
+        r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        r.reset();
+        r.solve(ps, new Instance(mo, cstrs, new MinMTTR()));
+        //A fresh solving process
+        Assert.assertEquals(r.getStatistics().getNbManagedVMs(), 10);
+    }
+}
@@ -76,4 +76,33 @@ public class SingleRunnerStatisticsTest {
         Assert.assertEquals(stats.getSolutions().size(), 1);
         Assert.assertEquals(stats.getSolutions().get(0), sol);
     }
+
+    @Test
+    public void testRetainedSolutions() {
+        Model mo = new DefaultModel();
+        Instance i = new Instance(mo, new ArrayList<>(), new MinMTTR());
+        Parameters ps = new DefaultParameters();
+        //A bounded number of solutions by default
+        Assert.assertEquals(ps.getMaxRetainedSolutions(), 10);
+        ps.setMaxRetainedSolutions(2);
+        SingleRunnerStatistics stats = new SingleRunnerStatistics(ps, i, 0);
+        Assert.assertNull(stats.getLastSolution());
+        Assert.assertNull(stats.lastSolution());
+        List<SolutionStatistics> sols = new ArrayList<>();
+        for (int x = 0; x < 5; x++) {
+            SolutionStatistics sol = new SolutionStatistics(new Metrics(), new DefaultReconfigurationPlan(mo));
+            sols.add(sol);
+            stats.addSolution(sol);
+        }
+        Assert.assertEquals(stats.getNbSolutions(), 5);
+        Assert.assertEquals(stats.getSolutions(), sols.subList(3, 5));
+        Assert.assertSame(stats.getLastSolution(), sols.get(4));
+
+        ps.setMaxRetainedSolutions(0);
+        stats = new SingleRunnerStatistics(ps, i, 0);
+        stats.addSolution(sols.get(0));
+        Assert.assertTrue(stats.getSolutions().isEmpty());
+        Assert.assertSame(stats.getLastSolution(), sols.get(0));
+        Assert.assertSame(stats.lastSolution(), sols.get(0).getReconfigurationPlan());
+    }
 }
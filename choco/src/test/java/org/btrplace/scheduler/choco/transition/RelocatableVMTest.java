@@ -484,4 +484,35 @@ public class RelocatableVMTest {
         Assert.assertNotNull(p);
         Assert.assertEquals(p.getSize(), 0);
     }
+
+    @Test
+    public void testStayRunningCompact() throws SchedulerException {
+        Model mo = new DefaultModel();
+        Mapping map = mo.getMapping();
+        final VM vm1 = mo.newVM();
+        Node n1 = mo.newNode();
+
+        map.addOnlineNode(n1);
+        map.addRunningVM(vm1, n1);
+
+        ReconfigurationProblem rp = new DefaultReconfigurationProblemBuilder(mo)
+                .setParams(new DefaultParameters().setCompactMode(true))
+                .setManageableVMs(Collections.emptySet())
+                .build();
+        Assert.assertTrue(rp.isCompactMode());
+        RelocatableVM m1 = (RelocatableVM) rp.getVMAction(vm1);
+        Assert.assertFalse(m1.isManaged());
+        Assert.assertTrue(m1.isStaying().isInstantiatedTo(1));
+        //Constant slices
+        Assert.assertTrue(m1.getCSlice().getHoster().isInstantiatedTo(rp.getNode(n1)));
+        Assert.assertTrue(m1.getCSlice().getEnd().isInstantiatedTo(0));
+        Assert.assertTrue(m1.getCSlice().getDuration().isInstantiatedTo(0));
+        Assert.assertTrue(m1.getDSlice().getHoster().isInstantiatedTo(rp.getNode(n1)));
+        Assert.assertTrue(m1.getDSlice().getStart().isInstantiatedTo(0));
+        Assert.assertEquals(m1.getDSlice().getEnd(), rp.getEnd());
+
+        ReconfigurationPlan p = rp.solve(0, false);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(p.getSize(), 0);
+    }
 }
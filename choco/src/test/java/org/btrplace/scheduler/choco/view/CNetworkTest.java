@@ -134,4 +134,46 @@ public class CNetworkTest {
         Assert.assertNotNull(p);
 
     }
+
+    /**
+     * Only the link directions shared by several migrations must be constrained.
+     */
+    @Test
+    public void testSharedLinksOnly() {
+        Model mo = new DefaultModel();
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        Node n3 = mo.newNode();
+        Node n4 = mo.newNode();
+        VM v1 = mo.newVM();
+        VM v2 = mo.newVM();
+        VM v3 = mo.newVM();
+        mo.getMapping().on(n1, n2, n3, n4).run(n1, v1, v2).run(n3, v3);
+
+        Network net = new Network();
+        mo.attach(net);
+        Switch sw = net.newSwitch();
+        net.connect(1000, sw, n1, n2, n3, n4);
+        for (VM v : mo.getMapping().getAllVMs()) {
+            mo.getAttributes().put(v, "memUsed", 1000);
+        }
+
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.add(new Fence(v1, n2));
+        cstrs.add(new Fence(v2, n2));
+        cstrs.add(new Fence(v3, n4));
+        ChocoScheduler s = new DefaultChocoScheduler();
+        ReconfigurationPlan p = s.solve(mo, cstrs, new MinMTTRMig());
+        Assert.assertNotNull(p);
+        //n1 uplink and n2 downlink
+        Assert.assertEquals(s.getStatistics().getNbLinkConstraints(), 2);
+
+        //The two migrations from n1 to n2 use the full bandwidth so they are sequential
+        List<MigrateVM> migs = new ArrayList<>();
+        p.getActions().stream().filter(a -> a instanceof MigrateVM).forEach(a -> migs.add((MigrateVM) a));
+        Assert.assertEquals(migs.size(), 3);
+        MigrateVM m1 = migs.stream().filter(m -> m.getVM().equals(v1)).findFirst().get();
+        MigrateVM m2 = migs.stream().filter(m -> m.getVM().equals(v2)).findFirst().get();
+        Assert.assertTrue(m1.getEnd() <= m2.getStart() || m2.getEnd() <= m1.getStart());
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Launch the benchmarks.
+ * The arguments are the standard JMH arguments. Unless stated otherwise,
+ * the results are written in JSON into {@link #DEFAULT_RESULT_FILE}.
+ *
+ * @author Fabien Hermenier
+ */
+public final class Launcher {
+
+    /**
+     * The default file for the results.
+     */
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private Launcher() {
+    }
+
+    /**
+     * Launch the benchmarks.
+     *
+     * @param args the JMH arguments
+     * @throws Exception if an error occurred while parsing the arguments or running the benchmarks
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams()
+                || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder b = new OptionsBuilder().parent(cli);
+        if (!cli.getResultFormat().hasValue()) {
+            b.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            b.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(b.build()).run();
+    }
+}
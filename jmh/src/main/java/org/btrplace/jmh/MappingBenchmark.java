@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.model.Mapping;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link Mapping} operations and compares
+ * {@link org.btrplace.model.DefaultMapping} with {@link org.btrplace.model.DenseMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    /**
+     * The number of VMs.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int nbVMs;
+
+    /**
+     * The mapping implementation. Either {@code default} or {@code dense}.
+     */
+    @Param({"default", "dense"})
+    public String mapping;
+
+    private Mapping map;
+
+    private List<VM> vms;
+
+    private List<Node> nodes;
+
+    /**
+     * Generate the mapping.
+     */
+    @Setup
+    public void setUp() {
+        Model mo = Workloads.newModel(nbVMs, Workloads.VMS_PER_NODE, "dense".equals(mapping));
+        map = mo.getMapping();
+        vms = new ArrayList<>(map.getAllVMs());
+        nodes = new ArrayList<>(map.getAllNodes());
+    }
+
+    /**
+     * Fill an empty mapping with all the nodes and the VMs.
+     *
+     * @return the mapping
+     */
+    @Benchmark
+    public Mapping fill() {
+        Mapping m = Workloads.newMapping("dense".equals(mapping));
+        for (Node n : nodes) {
+            m.addOnlineNode(n);
+        }
+        for (VM v : vms) {
+            m.addRunningVM(v, map.getVMLocation(v));
+        }
+        return m;
+    }
+
+    /**
+     * Get the location of every VM.
+     *
+     * @param bh the blackhole consuming the locations
+     */
+    @Benchmark
+    public void locate(Blackhole bh) {
+        for (VM v : vms) {
+            bh.consume(map.getVMLocation(v));
+        }
+    }
+
+    /**
+     * Get the VMs running on every node.
+     *
+     * @param bh the blackhole consuming the VMs
+     */
+    @Benchmark
+    public void runningVMs(Blackhole bh) {
+        for (Node n : nodes) {
+            bh.consume(map.getRunningVMs(n));
+        }
+    }
+
+    /**
+     * Relocate one VM out of ten on another node, then put it back.
+     *
+     * @return the mapping
+     */
+    @Benchmark
+    public Mapping relocate() {
+        Node dst = nodes.get(0);
+        for (int i = 0; i < vms.size(); i += 10) {
+            VM v = vms.get(i);
+            Node src = map.getVMLocation(v);
+            map.addRunningVM(v, dst);
+            map.addRunningVM(v, src);
+        }
+        return map;
+    }
+
+    /**
+     * Copy the mapping.
+     *
+     * @return the copy
+     */
+    @Benchmark
+    public Mapping copy() {
+        return map.copy();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.json.JSON;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the copy of a model and the JSON conversion of an instance.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+    /**
+     * The number of VMs.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int nbVMs;
+
+    private Instance instance;
+
+    private String json;
+
+    /**
+     * Generate the instance and its JSON representation.
+     */
+    @Setup
+    public void setUp() {
+        instance = Workloads.newInstance(Workloads.newModel(nbVMs, Workloads.VMS_PER_NODE));
+        json = JSON.toString(instance);
+    }
+
+    /**
+     * Copy the model.
+     *
+     * @return the copy
+     */
+    @Benchmark
+    public Model copy() {
+        return instance.getModel().copy();
+    }
+
+    /**
+     * Read the instance from JSON.
+     *
+     * @return the instance
+     */
+    @Benchmark
+    public Instance readInstance() {
+        return JSON.readInstance(new StringReader(json));
+    }
+
+    /**
+     * Write the instance to JSON.
+     *
+     * @return the JSON text
+     */
+    @Benchmark
+    public String writeInstance() {
+        return JSON.toString(instance);
+    }
+}
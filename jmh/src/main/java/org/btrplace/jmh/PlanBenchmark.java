@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlanChecker;
+import org.btrplace.plan.SatConstraintViolationException;
+import org.btrplace.plan.TimeBasedPlanApplier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the checking and the application of a reconfiguration plan.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanBenchmark {
+
+    /**
+     * The number of VMs.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int nbVMs;
+
+    private Instance instance;
+
+    private ReconfigurationPlan plan;
+
+    private TimeBasedPlanApplier applier;
+
+    /**
+     * Generate the instance and the plan.
+     */
+    @Setup
+    public void setUp() {
+        instance = Workloads.newInstance(Workloads.newModel(nbVMs, Workloads.VMS_PER_NODE));
+        plan = Workloads.newPlan(instance.getModel());
+        applier = new TimeBasedPlanApplier();
+    }
+
+    /**
+     * Check the plan against the constraints of the instance.
+     *
+     * @return the checker
+     * @throws SatConstraintViolationException if the plan is not viable. This denotes a bug in the workload
+     */
+    @Benchmark
+    public ReconfigurationPlanChecker check() throws SatConstraintViolationException {
+        ReconfigurationPlanChecker chk = new ReconfigurationPlanChecker();
+        for (SatConstraint c : instance.getSatConstraints()) {
+            chk.addChecker(c.getChecker());
+        }
+        chk.check(plan);
+        return chk;
+    }
+
+    /**
+     * Apply the plan.
+     *
+     * @return the resulting model
+     */
+    @Benchmark
+    public Model apply() {
+        return applier.apply(plan);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.btrpsl.Script;
+import org.btrplace.btrpsl.ScriptBuilder;
+import org.btrplace.btrpsl.ScriptBuilderException;
+import org.btrplace.model.DefaultModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing of btrpsl scripts by {@link ScriptBuilder}.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptBenchmark {
+
+    /**
+     * The number of VMs.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int nbVMs;
+
+    private String script;
+
+    /**
+     * Generate the script.
+     */
+    @Setup
+    public void setUp() {
+        script = Workloads.newScript(nbVMs, Workloads.VMS_PER_NODE);
+    }
+
+    /**
+     * Build the script against an empty model.
+     *
+     * @return the script
+     * @throws ScriptBuilderException if the script is not valid
+     */
+    @Benchmark
+    public Script build() throws ScriptBuilderException {
+        return new ScriptBuilder(new DefaultModel()).build(script);
+    }
+}
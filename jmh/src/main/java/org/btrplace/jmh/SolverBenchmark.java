@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.model.Instance;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.DefaultReconfigurationProblemBuilder;
+import org.btrplace.scheduler.choco.Parameters;
+import org.btrplace.scheduler.choco.ReconfigurationProblem;
+import org.btrplace.scheduler.choco.runner.SolvingStatistics;
+import org.btrplace.scheduler.choco.runner.single.InstanceSolverRunner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the construction of the CSP by {@link InstanceSolverRunner}.
+ * The solving process is stopped as soon as it starts, so only the core-build
+ * and the specialisation phases are measured.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+
+    /**
+     * The number of VMs.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int nbVMs;
+
+    private Instance instance;
+
+    private Parameters params;
+
+    /**
+     * Generate the instance.
+     */
+    @Setup
+    public void setUp() {
+        instance = Workloads.newInstance(Workloads.newModel(nbVMs, Workloads.VMS_PER_NODE));
+        params = new DefaultParameters();
+    }
+
+    /**
+     * Build the core problem only.
+     *
+     * @return the problem
+     * @throws SchedulerException if the problem cannot be built
+     */
+    @Benchmark
+    public ReconfigurationProblem coreBuild() throws SchedulerException {
+        return new DefaultReconfigurationProblemBuilder(instance.getModel()).setParams(params).build();
+    }
+
+    /**
+     * Build the core problem then inject the views and the constraints.
+     * The solver is stopped before exploring the search space.
+     *
+     * @return the statistics that report the duration of each phase
+     * @throws SchedulerException if the problem cannot be built
+     */
+    @Benchmark
+    public SolvingStatistics buildAndSpecialise() throws SchedulerException {
+        InstanceSolverRunner r = new InstanceSolverRunner(params, instance);
+        r.setBeforeSolve(rp -> rp.getSolver().addStopCriterion(() -> true));
+        return r.call();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.btrplace.jmh;
+
+import org.btrplace.scheduler.choco.extensions.pack.VectorPacking;
+import org.chocosolver.solver.Cause;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the propagation of {@link VectorPacking} on synthetic packing instances.
+ * Every bin hosts {@link #ITEMS_PER_BIN} items that may also go on the next
+ * {@link #CANDIDATES} - 1 bins. The home bins are a solution so the propagation never fails.
+ *
+ * @author Fabien Hermenier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VectorPackingBenchmark {
+
+    /**
+     * The number of items having a bin as home.
+     */
+    public static final int ITEMS_PER_BIN = 4;
+
+    /**
+     * The number of candidate bins per item.
+     */
+    public static final int CANDIDATES = 8;
+
+    /**
+     * The maximum item size on a dimension.
+     */
+    public static final int MAX_SIZE = 10;
+
+    /**
+     * The number of bins.
+     */
+    @Param({"1000", "10000"})
+    public int nbBins;
+
+    /**
+     * The number of dimensions.
+     */
+    @Param({"4"})
+    public int nbDims;
+
+    /**
+     * Use the heap of bins.
+     */
+    @Param({"false", "true"})
+    public boolean heap;
+
+    private Model csp;
+
+    private IntVar[] bins;
+
+    /**
+     * Make a packing problem.
+     *
+     * @return the CSP
+     */
+    private Model newProblem() {
+        Random rnd = new Random(nbBins);
+        Model m = new Model();
+        int nbItems = nbBins * ITEMS_PER_BIN;
+        String[] labels = new String[nbDims];
+        IntVar[][] loads = new IntVar[nbDims][nbBins];
+        int[][] sizes = new int[nbDims][nbItems];
+        for (int d = 0; d < nbDims; d++) {
+            labels[d] = "d" + d;
+            for (int b = 0; b < nbBins; b++) {
+                loads[d][b] = m.intVar("l" + d + "." + b, 0, ITEMS_PER_BIN * MAX_SIZE, true);
+            }
+            for (int i = 0; i < nbItems; i++) {
+                sizes[d][i] = 1 + rnd.nextInt(MAX_SIZE);
+            }
+        }
+        bins = new IntVar[nbItems];
+        for (int i = 0; i < nbItems; i++) {
+            int[] candidates = new int[CANDIDATES];
+            for (int k = 0; k < CANDIDATES; k++) {
+                candidates[k] = (i / ITEMS_PER_BIN + k) % nbBins;
+            }
+            bins[i] = m.intVar("b" + i, candidates);
+        }
+        m.post(new VectorPacking(labels, loads, sizes, bins, heap, true));
+        return m;
+    }
+
+    /**
+     * Generate the problem and run the initial propagation.
+     *
+     * @throws ContradictionException if the problem is inconsistent
+     */
+    @Setup
+    public void setUp() throws ContradictionException {
+        csp = newProblem();
+        csp.getSolver().propagate();
+    }
+
+    /**
+     * Build the problem and run the initial propagation.
+     *
+     * @return the CSP
+     * @throws ContradictionException if the problem is inconsistent
+     */
+    @Benchmark
+    public Model initialPropagation() throws ContradictionException {
+        Model m = newProblem();
+        m.getSolver().propagate();
+        return m;
+    }
+
+    /**
+     * Assign one item out of ten to its home bin, with a propagation
+     * after each assignment. The state is restored afterwards.
+     *
+     * @return the CSP
+     * @throws ContradictionException if the problem is inconsistent
+     */
+    @Benchmark
+    public Model assign() throws ContradictionException {
+        csp.getEnvironment().worldPush();
+        for (int i = 0; i < bins.length; i += 10) {
+            bins[i].instantiateTo(i / ITEMS_PER_BIN, Cause.Null);
+            csp.getSolver().propagate();
+        }
+        csp.getEnvironment().worldPop();
+        return csp;
+    }
+
+    /**
+     * Remove the home bin of one item out of ten, with a propagation
+     * after each removal. The state is restored afterwards.
+     *
+     * @return the CSP
+     * @throws ContradictionException if the problem is inconsistent
+     */
+    @Benchmark
+    public Model remove() throws ContradictionException {
+        csp.getEnvironment().worldPush();
+        for (int i = 0; i < bins.length; i += 10) {
+            bins[i].removeValue(i / ITEMS_PER_BIN, Cause.Null);
+            csp.getSolver().propagate();
+        }
+        csp.getEnvironment().worldPop();
+        return csp;
+    }
+}
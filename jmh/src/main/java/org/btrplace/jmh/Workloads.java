@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.MinMTTR;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.constraint.Spread;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.MigrateVM;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Generators of synthetic workloads for the benchmarks.
+ * <p>
+ * A cluster has online nodes hosting the same number of running VMs.
+ * The VMs are placed in a round-robin manner so consecutive VMs are on distinct nodes.
+ * The instances group consecutive VMs inside {@link Spread} constraints and the
+ * plans migrate one VM out of ten on a node that is far from the spread group.
+ *
+ * @author Fabien Hermenier
+ */
+public final class Workloads {
+
+    /**
+     * The number of VMs per spread constraint.
+     */
+    public static final int SPREAD_SIZE = 5;
+
+    /**
+     * The number of VMs per node used by the benchmarks.
+     */
+    public static final int VMS_PER_NODE = 20;
+
+    /**
+     * The duration of a migration in the generated plans.
+     */
+    public static final int MIGRATION_DURATION = 5;
+
+    private Workloads() {
+    }
+
+    /**
+     * Make a new mapping.
+     *
+     * @param dense {@code true} for a {@link DenseMapping}, {@code false} for a {@link DefaultMapping}
+     * @return an empty mapping
+     */
+    public static Mapping newMapping(boolean dense) {
+        return dense ? new DenseMapping() : new DefaultMapping();
+    }
+
+    /**
+     * Make a new model relying on a {@link DefaultMapping}.
+     *
+     * @param nbVMs      the number of VMs
+     * @param vmsPerNode the number of VMs per node
+     * @return the resulting model
+     */
+    public static Model newModel(int nbVMs, int vmsPerNode) {
+        return newModel(nbVMs, vmsPerNode, false);
+    }
+
+    /**
+     * Make a new model.
+     * The model has a {@code cpu} and a {@code mem} resource, each node having enough
+     * capacity to host its VMs and the VMs migrated by {@link #newPlan(Model)}.
+     *
+     * @param nbVMs      the number of VMs
+     * @param vmsPerNode the number of VMs per node
+     * @param dense      {@code true} to rely on a {@link DenseMapping}
+     * @return the resulting model
+     */
+    public static Model newModel(int nbVMs, int vmsPerNode, boolean dense) {
+        Model mo = new DefaultModel(new DefaultElementBuilder(), newMapping(dense));
+        int nbNodes = nbNodes(nbVMs, vmsPerNode);
+        ShareableResource cpu = new ShareableResource("cpu", 3 * vmsPerNode, 1);
+        ShareableResource mem = new ShareableResource("mem", 8 * vmsPerNode, 4);
+        Mapping map = mo.getMapping();
+        List<Node> nodes = new ArrayList<>(nbNodes);
+        for (int i = 0; i < nbNodes; i++) {
+            Node n = mo.newNode();
+            map.addOnlineNode(n);
+            nodes.add(n);
+        }
+        for (int i = 0; i < nbVMs; i++) {
+            VM v = mo.newVM();
+            map.addRunningVM(v, nodes.get(i % nbNodes));
+            if (i % 2 == 0) {
+                cpu.setConsumption(v, 2);
+            }
+        }
+        mo.attach(cpu);
+        mo.attach(mem);
+        return mo;
+    }
+
+    /**
+     * Get the number of nodes in a generated model.
+     *
+     * @param nbVMs      the number of VMs
+     * @param vmsPerNode the number of VMs per node
+     * @return the number of nodes. At least twice {@link #SPREAD_SIZE} nodes so the migrations never
+     * go to a node hosting a VM of the same spread group
+     */
+    public static int nbNodes(int nbVMs, int vmsPerNode) {
+        return Math.max(2 * SPREAD_SIZE, (nbVMs + vmsPerNode - 1) / vmsPerNode);
+    }
+
+    /**
+     * Make a new instance from a generated model.
+     * Consecutive VMs are grouped inside continuous {@link Spread} constraints.
+     * The optimisation constraint is {@link MinMTTR}.
+     *
+     * @param mo the model generated by {@link #newModel(int, int, boolean)}
+     * @return the resulting instance
+     */
+    public static Instance newInstance(Model mo) {
+        List<VM> vms = sortedVMs(mo);
+        List<SatConstraint> cstrs = new ArrayList<>(vms.size() / SPREAD_SIZE);
+        for (int i = 0; i + SPREAD_SIZE <= vms.size(); i += SPREAD_SIZE) {
+            cstrs.add(new Spread(new HashSet<>(vms.subList(i, i + SPREAD_SIZE)), true));
+        }
+        return new Instance(mo, cstrs, new MinMTTR());
+    }
+
+    /**
+     * Make a new plan from a generated model.
+     * One VM out of ten is migrated to the node that is the farthest from its current host.
+     * All the migrations are performed simultaneously so the plan satisfies the
+     * constraints of {@link #newInstance(Model)}.
+     *
+     * @param mo the model generated by {@link #newModel(int, int, boolean)}
+     * @return the resulting plan
+     */
+    public static ReconfigurationPlan newPlan(Model mo) {
+        Mapping map = mo.getMapping();
+        List<Node> nodes = new ArrayList<>(map.getOnlineNodes());
+        nodes.sort((a, b) -> a.id() - b.id());
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+        int half = nodes.size() / 2;
+        for (VM v : sortedVMs(mo)) {
+            if (v.id() % 10 == 0) {
+                Node src = map.getVMLocation(v);
+                Node dst = nodes.get((nodes.indexOf(src) + half) % nodes.size());
+                p.add(new MigrateVM(v, src, dst, 0, MIGRATION_DURATION));
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Make a btrpsl script equivalent to a generated instance.
+     * The script declares the VMs and the nodes, then groups consecutive VMs inside
+     * spread constraints.
+     *
+     * @param nbVMs      the number of VMs
+     * @param vmsPerNode the number of VMs per node
+     * @return the script
+     */
+    public static String newScript(int nbVMs, int vmsPerNode) {
+        StringBuilder b = new StringBuilder("namespace bench;\n");
+        b.append("VM[1..").append(nbVMs).append("] : tiny;\n");
+        b.append("@N[1..").append(nbNodes(nbVMs, vmsPerNode)).append("] : defaultNode;\n");
+        for (int i = 1; i + SPREAD_SIZE - 1 <= nbVMs; i += SPREAD_SIZE) {
+            b.append("spread(VM[").append(i).append("..").append(i + SPREAD_SIZE - 1).append("]);\n");
+        }
+        return b.toString();
+    }
+
+    private static List<VM> sortedVMs(Model mo) {
+        List<VM> vms = new ArrayList<>(mo.getMapping().getAllVMs());
+        vms.sort((a, b) -> a.id() - b.id());
+        return vms;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * JMH micro-benchmarks for the hot paths of the scheduler.
+ * The benchmarks are parameterised by the cluster size and run over synthetic
+ * workloads generated by {@link org.btrplace.jmh.Workloads}.
+ * {@link org.btrplace.jmh.Launcher} runs them and reports the results in JSON.
+ */
+package org.btrplace.jmh;
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.jmh;
+
+import org.btrplace.model.DenseMapping;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Model;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlanChecker;
+import org.btrplace.plan.SatConstraintViolationException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link Workloads}.
+ *
+ * @author Fabien Hermenier
+ */
+public class WorkloadsTest {
+
+    @Test
+    public void testModel() {
+        Model mo = Workloads.newModel(1000, 20, true);
+        Assert.assertTrue(mo.getMapping() instanceof DenseMapping);
+        Assert.assertEquals(mo.getMapping().getNbVMs(), 1000);
+        Assert.assertEquals(mo.getMapping().getNbNodes(), 50);
+        Assert.assertEquals(mo.getMapping().getOnlineNodes().size(), 50);
+        Assert.assertNotNull(ShareableResource.get(mo, "cpu"));
+        Assert.assertNotNull(ShareableResource.get(mo, "mem"));
+        Assert.assertEquals(Workloads.nbNodes(20, 20), 2 * Workloads.SPREAD_SIZE);
+    }
+
+    @Test
+    public void testViablePlan() throws SatConstraintViolationException {
+        for (int nb : new int[]{50, 1000}) {
+            Instance i = Workloads.newInstance(Workloads.newModel(nb, 20));
+            Assert.assertEquals(i.getSatConstraints().size(), nb / Workloads.SPREAD_SIZE);
+            ReconfigurationPlan p = Workloads.newPlan(i.getModel());
+            Assert.assertEquals(p.getSize(), nb / 10);
+            ReconfigurationPlanChecker chk = new ReconfigurationPlanChecker();
+            for (SatConstraint c : i.getSatConstraints()) {
+                chk.addChecker(c.getChecker());
+            }
+            chk.check(p);
+            Model res = p.getResult();
+            Assert.assertNotNull(res);
+            for (SatConstraint c : i.getSatConstraints()) {
+                Assert.assertTrue(c.isSatisfied(res));
+            }
+        }
+    }
+
+    @Test
+    public void testScript() {
+        String s = Workloads.newScript(100, 20);
+        Assert.assertTrue(s.startsWith("namespace bench;"));
+        Assert.assertTrue(s.contains("VM[1..100] : tiny;"));
+        Assert.assertTrue(s.contains("@N[1..10] : defaultNode;"));
+        Assert.assertTrue(s.contains("spread(VM[96..100]);"));
+    }
+}
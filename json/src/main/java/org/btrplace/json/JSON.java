@@ -19,7 +19,7 @@
 package org.btrplace.json;
 
 import org.btrplace.json.model.InstanceConverter;
-import org.btrplace.json.plan.ReconfigurationPlanConverter;
+import org.btrplace.json.stream.StreamingConverter;
 import org.btrplace.model.Instance;
 import org.btrplace.plan.ReconfigurationPlan;
 
@@ -31,6 +31,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Utility class to ease the serialisation and the deserialisation of the main btrplace entities.
+ * The documents are processed in a streaming manner using a {@link StreamingConverter}.
  *
  * @author Fabien Hermenier
  */
@@ -77,9 +78,20 @@ public class JSON {
      * @throws IllegalArgumentException if an error occurred while reading the json
      */
     public static Instance readInstance(Reader r) {
+        return readInstance(r, new InstanceConverter());
+    }
+
+    /**
+     * Read an instance using the converters of a given instance converter.
+     *
+     * @param r  the stream to read
+     * @param ic the converter to rely on
+     * @return the resulting instance
+     * @throws IllegalArgumentException if an error occurred while reading the json
+     */
+    public static Instance readInstance(Reader r, InstanceConverter ic) {
         try {
-            InstanceConverter c = new InstanceConverter();
-            return c.fromJSON(r);
+            return new StreamingConverter(ic).readInstance(r);
         } catch (JSONConverterException e) {
             throw new IllegalArgumentException(e);
         }
@@ -109,8 +121,7 @@ public class JSON {
      */
     public static void write(Instance instance, Appendable a) {
         try {
-            InstanceConverter c = new InstanceConverter();
-            c.toJSON(instance).writeJSONString(a);
+            new StreamingConverter().write(instance, a);
         } catch (IOException | JSONConverterException e) {
             throw new IllegalArgumentException(e);
         }
@@ -123,12 +134,9 @@ public class JSON {
      * @throws IllegalArgumentException if an error occurred while writing the json
      */
     public static String toString(Instance instance) {
-        try {
-            InstanceConverter c = new InstanceConverter();
-            return c.toJSON(instance).toJSONString();
-        } catch (JSONConverterException e) {
-            throw new IllegalArgumentException(e);
-        }
+        StringBuilder b = new StringBuilder();
+        write(instance, b);
+        return b.toString();
     }
 
 
@@ -157,8 +165,7 @@ public class JSON {
      */
     public static ReconfigurationPlan readReconfigurationPlan(Reader r) {
         try {
-            ReconfigurationPlanConverter c = new ReconfigurationPlanConverter();
-            return c.fromJSON(r);
+            return new StreamingConverter().readReconfigurationPlan(r);
         } catch (JSONConverterException e) {
             throw new IllegalArgumentException(e);
         }
@@ -188,8 +195,7 @@ public class JSON {
      */
     public static void write(ReconfigurationPlan plan, Appendable a) {
         try {
-            ReconfigurationPlanConverter c = new ReconfigurationPlanConverter();
-            c.toJSON(plan).writeJSONString(a);
+            new StreamingConverter().write(plan, a);
         } catch (IOException | JSONConverterException e) {
             throw new IllegalArgumentException(e);
         }
@@ -202,11 +208,8 @@ public class JSON {
      * @throws IllegalArgumentException if an error occurred while writing the json
      */
     public static String toString(ReconfigurationPlan plan) {
-        try {
-            ReconfigurationPlanConverter c = new ReconfigurationPlanConverter();
-            return c.toJSON(plan).toJSONString();
-        } catch (JSONConverterException e) {
-            throw new IllegalArgumentException(e);
-        }
+        StringBuilder b = new StringBuilder();
+        write(plan, b);
+        return b.toString();
     }
 }
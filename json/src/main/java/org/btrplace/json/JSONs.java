@@ -25,7 +25,11 @@ import org.btrplace.model.Model;
 import org.btrplace.model.Node;
 import org.btrplace.model.VM;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A helper class to ease JSON conversion.
@@ -35,23 +39,19 @@ import java.util.*;
 public class JSONs {
 
     /**
-     * The default cache for set of VMs and nodes.
+     * The default cache size for the lists of VMs and nodes.
      */
     private static final int DEFAULT_CACHE_SIZE = 1024;
 
-    private static Map<String, List<VM>> vmsCache = new LinkedHashMap<String, List<VM>>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, List<VM>> foo) {
-            return size() == DEFAULT_CACHE_SIZE;
-        }
-    };
+    private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
 
-    private static Map<String, List<Node>> nodesCache = new LinkedHashMap<String, List<Node>>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, List<Node>> foo) {
-            return size() == DEFAULT_CACHE_SIZE;
-        }
-    };
+    /**
+     * The cache of element lists of each model.
+     * Models are weakly referenced so a session ends once its model is no longer used.
+     */
+    private static final Map<ModelRef, Session> sessions = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<Model> staleModels = new ReferenceQueue<>();
 
     /**
      * Utility class.
@@ -63,22 +63,11 @@ public class JSONs {
     /**
      * Reset the cache of element sets.
      *
-     * @param size the new cache size
+     * @param size the new cache size for each model
      */
     public static void resetCaches(int size) {
-        nodesCache = new LinkedHashMap<String, List<Node>>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, List<Node>> foo) {
-                return size() == size;
-            }
-        };
-
-        vmsCache = new LinkedHashMap<String, List<VM>>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, List<VM>> foo) {
-                return size() == size;
-            }
-        };
+        cacheSize = size;
+        sessions.clear();
     }
 
     /**
@@ -183,46 +172,65 @@ public class JSONs {
 
     /**
      * Convert an array of VM identifiers to a set of VMs.
-     * This operation uses a cache of previously converted set of VMs.
+     * This operation uses a cache of previously converted set of VMs for the given model.
+     * It is thread-safe.
      * @param mo the associated model to browse
      * @param a the json array
      * @return the set of VMs
      */
     public static List<VM> vmsFromJSON(Model mo, JSONArray a) throws JSONConverterException {
-        String json = a.toJSONString();
-        List<VM> s = vmsCache.get(json);
-        if (s != null) {
-            return s;
-        }
-        s = new ArrayList<>(a.size());
-        for (Object o : a) {
-            s.add(getVM(mo, (int) o));
-        }
-        vmsCache.put(json, s);
-        return s;
+        return fromJSON(mo, a, session(mo).vms, JSONs::getVM);
     }
 
     /**
      * Convert an array of VM identifiers to a set of VMs.
-     * This operation uses a cache of previously converted set of nodes.
+     * This operation uses a cache of previously converted set of nodes for the given model.
+     * It is thread-safe.
      * @param mo the associated model to browse
      * @param a the json array
      * @return the set of nodes
      */
     public static List<Node> nodesFromJSON(Model mo, JSONArray a) throws JSONConverterException {
-        String json = a.toJSONString();
-        List<Node> s = nodesCache.get(json);
+        return fromJSON(mo, a, session(mo).nodes, JSONs::getNode);
+    }
+
+    private static <E extends Element> List<E> fromJSON(Model mo, JSONArray a, Map<Ids, List<E>> cache, ElementGetter<E> getter) throws JSONConverterException {
+        Ids k = new Ids(a);
+        List<E> s = cache.get(k);
         if (s != null) {
             return s;
         }
-        s = new ArrayList<>(a.size());
-        for (Object o : a) {
-            s.add(getNode(mo, (int) o));
+        s = new ArrayList<>(k.ids.length);
+        for (int id : k.ids) {
+            s.add(getter.get(mo, id));
         }
-        nodesCache.put(json, s);
+        if (cache.size() >= cacheSize) {
+            //Bounded. No need for a strict eviction policy
+            Iterator<Ids> it = cache.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(k, s);
         return s;
     }
 
+    /**
+     * Get the session of a model, and forget about the sessions of the models that are no longer used.
+     *
+     * @param mo the model
+     * @return the session
+     */
+    private static Session session(Model mo) {
+        Reference<? extends Model> r = staleModels.poll();
+        while (r != null) {
+            sessions.remove(r);
+            r = staleModels.poll();
+        }
+        return sessions.computeIfAbsent(new ModelRef(mo, staleModels), k -> new Session());
+    }
+
     /**
      * Convert a collection of VMs to an array of VM identifiers.
      *
@@ -368,6 +376,8 @@ public class JSONs {
     /**
      * Get a VM from its identifier.
      * The VM is already a part of the model.
+     * This operation is thread-safe as long as the elements of the model are not
+     * created concurrently, or are created through a {@link org.btrplace.model.SynchronizedElementBuilder}.
      *
      * @param mo the associated model to browse
      * @param vmID the node identifier
@@ -384,7 +394,9 @@ public class JSONs {
 
     /**
      * Get a node from its identifier.
-     * The node is already a part of the model
+     * The node is already a part of the model.
+     * This operation is thread-safe as long as the elements of the model are not
+     * created concurrently, or are created through a {@link org.btrplace.model.SynchronizedElementBuilder}.
      *
      * @param mo the associated model to browse
      * @param nodeID the node identifier
@@ -408,4 +420,93 @@ public class JSONs {
     public static Integer elementToJSON(Element e) {
         return e.id();
     }
+
+    /**
+     * Get an element from its identifier.
+     */
+    @FunctionalInterface
+    private interface ElementGetter<E> {
+        E get(Model mo, int id) throws JSONConverterException;
+    }
+
+    /**
+     * The element lists decoded for a model.
+     */
+    private static class Session {
+
+        private final Map<Ids, List<VM>> vms = new ConcurrentHashMap<>();
+
+        private final Map<Ids, List<Node>> nodes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A weak reference to a model, compared by identity.
+     */
+    private static class ModelRef extends WeakReference<Model> {
+
+        private final int hash;
+
+        ModelRef(Model mo, ReferenceQueue<Model> q) {
+            super(mo, q);
+            hash = System.identityHashCode(mo);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ModelRef)) {
+                return false;
+            }
+            Model mo = get();
+            return mo != null && mo == ((ModelRef) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The identifiers of a JSON array of elements.
+     */
+    private static class Ids {
+
+        private final int[] ids;
+
+        private final int hash;
+
+        Ids(JSONArray a) throws JSONConverterException {
+            ids = new int[a.size()];
+            int h = 1;
+            for (int i = 0; i < ids.length; i++) {
+                Object o = a.get(i);
+                if (!(o instanceof Integer)) {
+                    throw new JSONConverterException("Element identifier expected but was '" + o + "'");
+                }
+                ids[i] = (Integer) o;
+                h = 31 * h + ids[i];
+            }
+            hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Ids)) {
+                return false;
+            }
+            Ids that = (Ids) o;
+            return hash == that.hash && Arrays.equals(ids, that.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
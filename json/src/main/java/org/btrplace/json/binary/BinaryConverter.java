@@ -0,0 +1,713 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.binary;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.json.model.InstanceConverter;
+import org.btrplace.json.model.ModelConverter;
+import org.btrplace.json.model.constraint.ConstraintsConverter;
+import org.btrplace.json.model.view.ModelViewsConverter;
+import org.btrplace.json.model.view.ShareableResourceConverter;
+import org.btrplace.json.plan.ActionConverter;
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.OptConstraint;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ModelView;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.Action;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.btrplace.json.JSONs.getNode;
+import static org.btrplace.json.JSONs.getVM;
+
+/**
+ * A converter for a compact binary representation of instances, models, model deltas and reconfiguration plans.
+ * <p>
+ * The elements identifiers are written as variable-length integers and the lists of elements
+ * are sorted then delta-encoded. The {@link ShareableResource}s are written as columns
+ * of identifiers and values. All the strings (attribute keys, string values, resource identifiers, ...)
+ * are interned so each distinct string is written only once. The keys of the JSON objects
+ * are interned as a whole, so the objects sharing the same keys only differ by their values.
+ * <p>
+ * The constraints, the actions and the views other than {@link ShareableResource} are
+ * converted using the JSON converters, then written using a binary encoding of the resulting JSON values.
+ * Any constraint, view or action that can be converted to JSON can then be converted to binary.
+ * <p>
+ * The documents are read and written through NIO channels. The documents stored in
+ * files are read using a memory-mapped buffer.
+ *
+ * @author Fabien Hermenier
+ */
+public class BinaryConverter {
+
+    /**
+     * The leading bytes of a document: "BTRB".
+     */
+    private static final int MAGIC = 0x42545242;
+
+    private static final int VERSION = 1;
+
+    private static final int INSTANCE = 1;
+
+    private static final int PLAN = 2;
+
+    private static final int MODEL = 3;
+
+    private static final int DELTA = 4;
+
+    private static final int VIEW_JSON = 0;
+
+    private static final int VIEW_RESOURCE = 1;
+
+    private static final int NULL = 0;
+
+    private static final int FALSE = 1;
+
+    private static final int TRUE = 2;
+
+    private static final int INT = 3;
+
+    private static final int LONG = 4;
+
+    private static final int DOUBLE = 5;
+
+    private static final int STRING = 6;
+
+    private static final int OBJECT = 7;
+
+    private static final int ARRAY = 8;
+
+    private static final int BIG_INTEGER = 9;
+
+    private static final int NEGATIVE_INT = 10;
+
+    private static final int INT_ARRAY = 11;
+
+    private ModelConverter mc;
+
+    private ModelViewsConverter vc;
+
+    private ConstraintsConverter cc;
+
+    /**
+     * Make a new converter that relies on the default converters.
+     */
+    public BinaryConverter() {
+        this(new InstanceConverter());
+    }
+
+    /**
+     * Make a new converter that relies on the model and the constraint converters of an instance converter.
+     * The decoded models then rely on the views converter and the attributes factory of the model converter.
+     *
+     * @param ic the converter to rely on
+     */
+    public BinaryConverter(InstanceConverter ic) {
+        mc = ic.getModelConverter();
+        vc = mc.getViewsConverter();
+        cc = ic.getConstraintsConverter();
+    }
+
+    /**
+     * Write an instance.
+     *
+     * @param i  the instance to write
+     * @param ch the channel to write on. It is not closed
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the instance cannot be converted
+     */
+    public void write(Instance i, WritableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryOutput out = header(ch, INSTANCE);
+        model(out, i.getModel());
+        out.writeVarInt(i.getSatConstraints().size());
+        for (SatConstraint c : i.getSatConstraints()) {
+            value(out, cc.toJSON(c));
+        }
+        value(out, cc.toJSON(i.getOptConstraint()));
+        out.flush();
+    }
+
+    /**
+     * Write a model.
+     *
+     * @param mo the model to write
+     * @param ch the channel to write on. It is not closed
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the model cannot be converted
+     */
+    public void write(Model mo, WritableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryOutput out = header(ch, MODEL);
+        model(out, mo);
+        out.flush();
+    }
+
+    /**
+     * Write a reconfiguration plan.
+     *
+     * @param plan the plan to write
+     * @param ch   the channel to write on. It is not closed
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the plan cannot be converted
+     */
+    public void write(ReconfigurationPlan plan, WritableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryOutput out = header(ch, PLAN);
+        model(out, plan.getOrigin());
+        ActionConverter ac = new ActionConverter(plan.getOrigin());
+        out.writeVarInt(plan.getSize());
+        for (Action a : plan.getActions()) {
+            value(out, ac.toJSON(a));
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a model delta.
+     * Each change is written as its operation, the element identifier then, depending on the operation,
+     * the host identifier, the interned key and the value.
+     *
+     * @param d  the delta to write
+     * @param ch the channel to write on. It is not closed
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if a value cannot be converted
+     */
+    public void write(ModelDelta d, WritableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryOutput out = header(ch, DELTA);
+        out.writeVarInt(d.size());
+        for (ModelDelta.Change c : d) {
+            out.writeVarInt(c.getOperation().ordinal() << 1 | (c.getElement() instanceof VM ? 1 : 0));
+            out.writeVarInt(c.getElement().id());
+            if (c.getHost() != null) {
+                out.writeVarInt(c.getHost().id());
+            }
+            if (c.getKey() != null) {
+                out.writeString(c.getKey());
+                value(out, c.getValue());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Write an instance into a file.
+     *
+     * @param i the instance to write
+     * @param f the file to write. It is overwritten if it exists
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the instance cannot be converted
+     */
+    public void write(Instance i, Path f) throws IOException, JSONConverterException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(i, ch);
+        }
+    }
+
+    /**
+     * Write a reconfiguration plan into a file.
+     *
+     * @param plan the plan to write
+     * @param f    the file to write. It is overwritten if it exists
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the plan cannot be converted
+     */
+    public void write(ReconfigurationPlan plan, Path f) throws IOException, JSONConverterException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(plan, ch);
+        }
+    }
+
+    /**
+     * Read an instance.
+     *
+     * @param ch the channel to read. It is not closed
+     * @return the resulting instance
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid instance
+     */
+    public Instance readInstance(ReadableByteChannel ch) throws IOException, JSONConverterException {
+        return instance(new BinaryInput(ch));
+    }
+
+    /**
+     * Read a model.
+     *
+     * @param ch the channel to read. It is not closed
+     * @return the resulting model
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid model
+     */
+    public Model readModel(ReadableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryInput in = new BinaryInput(ch);
+        header(in, MODEL);
+        return model(in);
+    }
+
+    /**
+     * Read a model delta.
+     *
+     * @param ch the channel to read. It is not closed
+     * @return the resulting delta
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid delta
+     */
+    public ModelDelta readModelDelta(ReadableByteChannel ch) throws IOException, JSONConverterException {
+        BinaryInput in = new BinaryInput(ch);
+        header(in, DELTA);
+        ModelDelta.Operation[] ops = ModelDelta.Operation.values();
+        int nb = in.readVarInt();
+        ModelDelta d = new ModelDelta();
+        for (int i = 0; i < nb; i++) {
+            int tag = in.readVarInt();
+            if (tag >> 1 >= ops.length) {
+                throw new JSONConverterException("Unsupported delta operation " + (tag >> 1));
+            }
+            ModelDelta.Operation op = ops[tag >> 1];
+            int id = in.readVarInt();
+            Element e = (tag & 1) == 1 ? new VM(id) : new Node(id);
+            Node host = null;
+            if (op == ModelDelta.Operation.RUNNING_VM || op == ModelDelta.Operation.SLEEPING_VM) {
+                host = new Node(in.readVarInt());
+            }
+            String key = null;
+            Object value = null;
+            if (op == ModelDelta.Operation.CONSUMPTION || op == ModelDelta.Operation.CAPACITY
+                    || op == ModelDelta.Operation.ATTRIBUTE) {
+                key = in.readString();
+                value = value(in);
+            }
+            d.add(new ModelDelta.Change(op, e, host, key, value));
+        }
+        return d;
+    }
+
+    /**
+     * Read a reconfiguration plan.
+     *
+     * @param ch the channel to read. It is not closed
+     * @return the resulting plan
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid plan
+     */
+    public ReconfigurationPlan readReconfigurationPlan(ReadableByteChannel ch) throws IOException, JSONConverterException {
+        return plan(new BinaryInput(ch));
+    }
+
+    /**
+     * Read an instance from a file.
+     * The file is memory-mapped.
+     *
+     * @param f the file to read
+     * @return the resulting instance
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid instance
+     */
+    public Instance readInstance(Path f) throws IOException, JSONConverterException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+            return instance(new BinaryInput(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())));
+        }
+    }
+
+    /**
+     * Read a reconfiguration plan from a file.
+     * The file is memory-mapped.
+     *
+     * @param f the file to read
+     * @return the resulting plan
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the document is not a valid plan
+     */
+    public ReconfigurationPlan readReconfigurationPlan(Path f) throws IOException, JSONConverterException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+            return plan(new BinaryInput(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())));
+        }
+    }
+
+    private Instance instance(BinaryInput in) throws IOException, JSONConverterException {
+        header(in, INSTANCE);
+        Model mo = model(in);
+        int nb = in.readVarInt();
+        List<SatConstraint> cstrs = new ArrayList<>(nb);
+        for (int i = 0; i < nb; i++) {
+            cstrs.add((SatConstraint) cc.fromJSON(mo, object(in)));
+        }
+        return new Instance(mo, cstrs, (OptConstraint) cc.fromJSON(mo, object(in)));
+    }
+
+    private ReconfigurationPlan plan(BinaryInput in) throws IOException, JSONConverterException {
+        header(in, PLAN);
+        Model mo = model(in);
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(mo);
+        ActionConverter ac = new ActionConverter(mo);
+        int nb = in.readVarInt();
+        for (int i = 0; i < nb; i++) {
+            plan.add(ac.fromJSON(object(in)));
+        }
+        return plan;
+    }
+
+    private static BinaryOutput header(WritableByteChannel ch, int kind) throws IOException {
+        BinaryOutput out = new BinaryOutput(ch);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.writeByte(MAGIC >>> shift);
+        }
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        return out;
+    }
+
+    private static void header(BinaryInput in, int kind) throws IOException, JSONConverterException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = (magic << 8) | in.readByte();
+        }
+        if (magic != MAGIC) {
+            throw new JSONConverterException("Not a binary btrplace document");
+        }
+        int v = in.readByte();
+        if (v != VERSION) {
+            throw new JSONConverterException("Unsupported binary format version " + v);
+        }
+        int k = in.readByte();
+        if (k != kind) {
+            throw new JSONConverterException("Unexpected kind of document: " + k + " instead of " + kind);
+        }
+    }
+
+    private void model(BinaryOutput out, Model mo) throws IOException, JSONConverterException {
+        Mapping map = mo.getMapping();
+        ids(out, map.getOfflineNodes());
+        ids(out, map.getReadyVMs());
+        int[] online = ids(out, map.getOnlineNodes());
+        for (int id : online) {
+            Node n = new Node(id);
+            ids(out, map.getRunningVMs(n));
+            ids(out, map.getSleepingVMs(n));
+        }
+
+        Attributes attrs = mo.getAttributes();
+        List<VM> vms = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        for (Element e : attrs.getDefined()) {
+            if (e instanceof VM) {
+                vms.add((VM) e);
+            } else {
+                nodes.add((Node) e);
+            }
+        }
+        attributes(out, attrs, vms);
+        attributes(out, attrs, nodes);
+
+        out.writeVarInt(mo.getViews().size());
+        for (ModelView v : mo.getViews()) {
+            if (v instanceof ShareableResource && vc.getConverter(v.getClass()) instanceof ShareableResourceConverter) {
+                out.writeByte(VIEW_RESOURCE);
+                resource(out, (ShareableResource) v);
+            } else {
+                out.writeByte(VIEW_JSON);
+                value(out, vc.toJSON(v));
+            }
+        }
+    }
+
+    private Model model(BinaryInput in) throws IOException, JSONConverterException {
+        Model mo = new DefaultModel();
+        Mapping map = mo.getMapping();
+        for (int id : in.readSortedIds()) {
+            map.addOfflineNode(newNode(mo, id));
+        }
+        for (int id : in.readSortedIds()) {
+            map.addReadyVM(newVM(mo, id));
+        }
+        for (int id : in.readSortedIds()) {
+            Node n = newNode(mo, id);
+            map.addOnlineNode(n);
+            for (int v : in.readSortedIds()) {
+                map.addRunningVM(newVM(mo, v), n);
+            }
+            for (int v : in.readSortedIds()) {
+                map.addSleepingVM(newVM(mo, v), n);
+            }
+        }
+
+        Attributes attrs = mc.getAttributesFactory().get();
+        for (int id : in.readSortedIds()) {
+            attributes(in, attrs, getVM(mo, id));
+        }
+        for (int id : in.readSortedIds()) {
+            attributes(in, attrs, getNode(mo, id));
+        }
+        mo.setAttributes(attrs);
+
+        int nb = in.readVarInt();
+        for (int i = 0; i < nb; i++) {
+            int kind = in.readByte();
+            if (kind == VIEW_RESOURCE) {
+                mo.attach(resource(in, mo));
+            } else if (kind == VIEW_JSON) {
+                mo.attach(vc.fromJSON(mo, object(in)));
+            } else {
+                throw new JSONConverterException("Unsupported kind of view: " + kind);
+            }
+        }
+        return mo;
+    }
+
+    private static void attributes(BinaryOutput out, Attributes attrs, List<? extends Element> elems) throws IOException, JSONConverterException {
+        int[] ids = ids(out, elems);
+        Map<Integer, Element> byId = new HashMap<>(elems.size());
+        for (Element e : elems) {
+            byId.put(e.id(), e);
+        }
+        for (int id : ids) {
+            Element e = byId.get(id);
+            Set<String> keys = attrs.getKeys(e);
+            out.writeVarInt(keys.size());
+            for (String k : keys) {
+                out.writeString(k);
+                value(out, attrs.get(e, k));
+            }
+        }
+    }
+
+    private static void attributes(BinaryInput in, Attributes attrs, Element e) throws IOException, JSONConverterException {
+        int nb = in.readVarInt();
+        for (int i = 0; i < nb; i++) {
+            String k = in.readString();
+            Object v = value(in);
+            if (v instanceof Boolean) {
+                attrs.put(e, k, (Boolean) v);
+            } else if (v instanceof Integer) {
+                attrs.put(e, k, (Integer) v);
+            } else if (v instanceof Double) {
+                attrs.put(e, k, (Double) v);
+            } else if (v instanceof String) {
+                attrs.put(e, k, (String) v);
+            } else {
+                throw new JSONConverterException("Unsupported value for attribute '" + k + "' of '" + e + "'");
+            }
+        }
+    }
+
+    private static void resource(BinaryOutput out, ShareableResource rc) throws IOException {
+        out.writeString(rc.getResourceIdentifier());
+        out.writeSignedInt(rc.getDefaultCapacity());
+        out.writeSignedInt(rc.getDefaultConsumption());
+        for (int id : ids(out, rc.getDefinedVMs())) {
+            out.writeSignedInt(rc.getConsumption(new VM(id)));
+        }
+        for (int id : ids(out, rc.getDefinedNodes())) {
+            out.writeSignedInt(rc.getCapacity(new Node(id)));
+        }
+    }
+
+    private static ShareableResource resource(BinaryInput in, Model mo) throws IOException, JSONConverterException {
+        String id = in.readString();
+        int defCapa = in.readSignedInt();
+        int defCons = in.readSignedInt();
+        ShareableResource rc = new ShareableResource(id, defCapa, defCons);
+        int[] vms = in.readSortedIds();
+        for (int v : vms) {
+            rc.setConsumption(getVM(mo, v), in.readSignedInt());
+        }
+        int[] nodes = in.readSortedIds();
+        for (int n : nodes) {
+            rc.setCapacity(getNode(mo, n), in.readSignedInt());
+        }
+        return rc;
+    }
+
+    /**
+     * Write the sorted identifiers of some elements.
+     *
+     * @return the sorted identifiers
+     */
+    private static int[] ids(BinaryOutput out, Collection<? extends Element> elems) throws IOException {
+        int[] ids = new int[elems.size()];
+        int i = 0;
+        for (Element e : elems) {
+            ids[i++] = e.id();
+        }
+        Arrays.sort(ids);
+        out.writeSortedIds(ids, ids.length);
+        return ids;
+    }
+
+    /**
+     * Write a value that can be a JSON object, a JSON array or a primitive.
+     */
+    private static void value(BinaryOutput out, Object o) throws IOException, JSONConverterException {
+        if (o == null) {
+            out.writeByte(NULL);
+        } else if (o instanceof Boolean) {
+            out.writeByte((Boolean) o ? TRUE : FALSE);
+        } else if (o instanceof Integer || o instanceof Short || o instanceof Byte) {
+            int i = ((Number) o).intValue();
+            if (i >= 0) {
+                out.writeByte(INT);
+                out.writeVarInt(i);
+            } else {
+                out.writeByte(NEGATIVE_INT);
+                out.writeSignedInt(i);
+            }
+        } else if (o instanceof Long) {
+            out.writeByte(LONG);
+            out.writeSignedLong((Long) o);
+        } else if (o instanceof Double || o instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) o).doubleValue());
+        } else if (o instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeString(o.toString());
+        } else if (o instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) o);
+        } else if (o instanceof Map) {
+            out.writeByte(OBJECT);
+            Map<?, ?> m = (Map<?, ?>) o;
+            out.writeVarInt(m.size());
+            if (!m.isEmpty()) {
+                //The keys are written once, as an interned shape
+                StringJoiner shape = new StringJoiner(BinaryInput.KEY_SEPARATOR);
+                for (Object k : m.keySet()) {
+                    shape.add(k.toString());
+                }
+                out.writeString(shape.toString());
+                for (Object v : m.values()) {
+                    value(out, v);
+                }
+            }
+        } else if (o instanceof Collection) {
+            Collection<?> c = (Collection<?>) o;
+            if (!c.isEmpty() && allIntegers(c)) {
+                //Typically a list of elements, stored as deltas
+                out.writeByte(INT_ARRAY);
+                out.writeVarInt(c.size());
+                int prev = 0;
+                for (Object x : c) {
+                    int i = (Integer) x;
+                    out.writeSignedInt(i - prev);
+                    prev = i;
+                }
+                return;
+            }
+            out.writeByte(ARRAY);
+            out.writeVarInt(c.size());
+            for (Object x : c) {
+                value(out, x);
+            }
+        } else {
+            throw new JSONConverterException("Unsupported value '" + o + "' (" + o.getClass() + ")");
+        }
+    }
+
+    private static Object value(BinaryInput in) throws IOException, JSONConverterException {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return in.readVarInt();
+            case NEGATIVE_INT:
+                return in.readSignedInt();
+            case LONG:
+                return in.readSignedLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BIG_INTEGER:
+                return new BigInteger(in.readString());
+            case STRING:
+                return in.readString();
+            case OBJECT:
+                int nb = in.readVarInt();
+                JSONObject o = new JSONObject();
+                if (nb > 0) {
+                    for (String k : in.readKeys(nb)) {
+                        o.put(k, value(in));
+                    }
+                }
+                return o;
+            case ARRAY:
+                int size = in.readVarInt();
+                JSONArray a = new JSONArray();
+                for (int i = 0; i < size; i++) {
+                    a.add(value(in));
+                }
+                return a;
+            case INT_ARRAY:
+                int nbInts = in.readVarInt();
+                JSONArray ints = new JSONArray();
+                int prev = 0;
+                for (int i = 0; i < nbInts; i++) {
+                    prev += in.readSignedInt();
+                    ints.add(prev);
+                }
+                return ints;
+            default:
+                throw new JSONConverterException("Unsupported value type " + tag);
+        }
+    }
+
+    private static boolean allIntegers(Collection<?> c) {
+        for (Object x : c) {
+            if (!(x instanceof Integer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static JSONObject object(BinaryInput in) throws IOException, JSONConverterException {
+        Object o = value(in);
+        if (!(o instanceof JSONObject)) {
+            throw new JSONConverterException("Expected a JSONObject but got '" + o + "'");
+        }
+        return (JSONObject) o;
+    }
+
+    private static Node newNode(Model mo, int id) throws JSONConverterException {
+        Node n = mo.newNode(id);
+        if (n == null) {
+            throw JSONConverterException.nodeAlreadyDeclared(id);
+        }
+        return n;
+    }
+
+    private static VM newVM(Model mo, int id) throws JSONConverterException {
+        VM v = mo.newVM(id);
+        if (v == null) {
+            throw JSONConverterException.vmAlreadyDeclared(id);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.binary;
+
+import org.btrplace.json.JSONConverterException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A buffered input for the binary format written by {@link BinaryOutput}.
+ *
+ * @author Fabien Hermenier
+ */
+class BinaryInput {
+
+    /**
+     * The separator between the keys of an object shape.
+     */
+    static final String KEY_SEPARATOR = "\u0000";
+
+    private final ReadableByteChannel in;
+
+    private final ByteBuffer buf;
+
+    private final List<String> dictionary;
+
+    private final Map<String, String[]> shapes = new HashMap<>();
+
+    /**
+     * New input that reads from a channel.
+     *
+     * @param ch the channel to read
+     */
+    BinaryInput(ReadableByteChannel ch) {
+        in = ch;
+        buf = ByteBuffer.allocate(1 << 16);
+        buf.flip();
+        dictionary = new ArrayList<>();
+    }
+
+    /**
+     * New input that reads a buffer, typically a memory-mapped file.
+     *
+     * @param b the buffer to read
+     */
+    BinaryInput(ByteBuffer b) {
+        in = null;
+        buf = b;
+        dictionary = new ArrayList<>();
+    }
+
+    int readByte() throws IOException, JSONConverterException {
+        require(1);
+        return buf.get() & 0xFF;
+    }
+
+    int readVarInt() throws IOException, JSONConverterException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new JSONConverterException("Malformed variable-length integer");
+    }
+
+    long readVarLong() throws IOException, JSONConverterException {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new JSONConverterException("Malformed variable-length long");
+    }
+
+    int readSignedInt() throws IOException, JSONConverterException {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    long readSignedLong() throws IOException, JSONConverterException {
+        long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    double readDouble() throws IOException, JSONConverterException {
+        require(8);
+        return buf.getDouble();
+    }
+
+    String readString() throws IOException, JSONConverterException {
+        int ref = readVarInt();
+        if (ref > 0) {
+            if (ref > dictionary.size()) {
+                throw new JSONConverterException("Unknown string reference " + ref);
+            }
+            return dictionary.get(ref - 1);
+        }
+        int len = readVarInt();
+        byte[] bytes = new byte[len];
+        int off = 0;
+        while (off < len) {
+            require(1);
+            int nb = Math.min(buf.remaining(), len - off);
+            buf.get(bytes, off, nb);
+            off += nb;
+        }
+        String s = new String(bytes, UTF_8);
+        dictionary.add(s);
+        return s;
+    }
+
+    /**
+     * Read the keys of an object, written as a single interned string.
+     *
+     * @param nb the expected number of keys
+     */
+    String[] readKeys(int nb) throws IOException, JSONConverterException {
+        String[] keys = shapes.computeIfAbsent(readString(), s -> s.split(KEY_SEPARATOR, -1));
+        if (keys.length != nb) {
+            throw new JSONConverterException("Expected " + nb + " keys but got " + keys.length);
+        }
+        return keys;
+    }
+
+    /**
+     * Read identifiers written by {@link BinaryOutput#writeSortedIds(int[], int)}.
+     */
+    int[] readSortedIds() throws IOException, JSONConverterException {
+        int[] ids = new int[readVarInt()];
+        int prev = 0;
+        for (int i = 0; i < ids.length; i++) {
+            prev += readSignedInt();
+            ids[i] = prev;
+        }
+        return ids;
+    }
+
+    private void require(int nb) throws IOException, JSONConverterException {
+        if (buf.remaining() >= nb) {
+            return;
+        }
+        if (in != null) {
+            buf.compact();
+            while (buf.position() < nb) {
+                if (in.read(buf) < 0) {
+                    break;
+                }
+            }
+            buf.flip();
+        }
+        if (buf.remaining() < nb) {
+            throw new JSONConverterException("Unexpected end of the binary document");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.binary;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A buffered output for the binary format.
+ * Integers are written as variable-length quantities
+ * and strings are interned: a string already written is replaced by
+ * a reference.
+ *
+ * @author Fabien Hermenier
+ */
+class BinaryOutput {
+
+    private final WritableByteChannel out;
+
+    private final ByteBuffer buf;
+
+    private final TObjectIntHashMap<String> dictionary;
+
+    /**
+     * New output.
+     *
+     * @param ch the channel to write on
+     */
+    BinaryOutput(WritableByteChannel ch) {
+        out = ch;
+        buf = ByteBuffer.allocate(1 << 16);
+        dictionary = new TObjectIntHashMap<>(64, 0.5f, -1);
+    }
+
+    void writeByte(int b) throws IOException {
+        ensure(1);
+        buf.put((byte) b);
+    }
+
+    /**
+     * Write a non-negative integer using 1 to 5 bytes.
+     */
+    void writeVarInt(int v) throws IOException {
+        ensure(5);
+        int x = v;
+        while ((x & ~0x7F) != 0) {
+            buf.put((byte) ((x & 0x7F) | 0x80));
+            x >>>= 7;
+        }
+        buf.put((byte) x);
+    }
+
+    /**
+     * Write a non-negative long using 1 to 10 bytes.
+     */
+    void writeVarLong(long v) throws IOException {
+        ensure(10);
+        long x = v;
+        while ((x & ~0x7FL) != 0) {
+            buf.put((byte) ((x & 0x7F) | 0x80));
+            x >>>= 7;
+        }
+        buf.put((byte) x);
+    }
+
+    /**
+     * Write a signed integer. Small magnitudes use few bytes.
+     */
+    void writeSignedInt(int v) throws IOException {
+        writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * Write a signed long. Small magnitudes use few bytes.
+     */
+    void writeSignedLong(long v) throws IOException {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    void writeDouble(double d) throws IOException {
+        ensure(8);
+        buf.putDouble(d);
+    }
+
+    /**
+     * Write an interned string.
+     * The first occurrence is written as {@code 0}, the length, then the UTF-8 bytes.
+     * The next occurrences are written as the string index plus 1.
+     */
+    void writeString(String s) throws IOException {
+        int idx = dictionary.get(s);
+        if (idx >= 0) {
+            writeVarInt(idx + 1);
+            return;
+        }
+        dictionary.put(s, dictionary.size());
+        byte[] bytes = s.getBytes(UTF_8);
+        writeVarInt(0);
+        writeVarInt(bytes.length);
+        int off = 0;
+        while (off < bytes.length) {
+            int nb = Math.min(buf.capacity(), bytes.length - off);
+            ensure(nb);
+            buf.put(bytes, off, nb);
+            off += nb;
+        }
+    }
+
+    /**
+     * Write a sorted list of non-negative identifiers as a count followed by the gaps between
+     * consecutive identifiers.
+     *
+     * @param ids the identifiers, sorted in ascending order
+     * @param nb  the number of identifiers to consider
+     */
+    void writeSortedIds(int[] ids, int nb) throws IOException {
+        writeVarInt(nb);
+        int prev = 0;
+        for (int i = 0; i < nb; i++) {
+            writeSignedInt(ids[i] - prev);
+            prev = ids[i];
+        }
+    }
+
+    /**
+     * Write the buffered bytes.
+     */
+    void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    private void ensure(int nb) throws IOException {
+        if (buf.remaining() < nb) {
+            flush();
+        }
+    }
+}
@@ -23,8 +23,10 @@ import net.minidev.json.JSONObject;
 import org.btrplace.json.JSONConverterException;
 import org.btrplace.json.JSONObjectConverter;
 import org.btrplace.json.model.constraint.ConstraintsConverter;
+import org.btrplace.model.DefaultElementBuilder;
 import org.btrplace.model.Instance;
 import org.btrplace.model.Model;
+import org.btrplace.model.SynchronizedElementBuilder;
 import org.btrplace.model.constraint.OptConstraint;
 
 import static org.btrplace.json.JSONs.checkKeys;
@@ -39,17 +41,17 @@ public class InstanceConverter implements JSONObjectConverter<Instance> {
     /**
      * Key that indicates the model.
      */
-    private static final String MODEL_LABEL = "model";
+    public static final String MODEL_LABEL = "model";
 
     /**
      * Key that indicates the constraint list.
      */
-    private static final String CONSTRAINTS_LABEL = "constraints";
+    public static final String CONSTRAINTS_LABEL = "constraints";
 
     /**
      * Key that indicates the objective.
      */
-    private static final String OBJ_LABEL = "objective";
+    public static final String OBJ_LABEL = "objective";
 
     private ModelConverter moc;
 
@@ -66,7 +68,13 @@ public class InstanceConverter implements JSONObjectConverter<Instance> {
     @Override
     public Instance fromJSON(JSONObject in) throws JSONConverterException {
         checkKeys(in, MODEL_LABEL, CONSTRAINTS_LABEL, OBJ_LABEL);
-        Model mo = moc.fromJSON((JSONObject) in.get(MODEL_LABEL));
+        Model mo;
+        if (cc.getParallelism() > 1) {
+            //The constraints are decoded concurrently
+            mo = moc.fromJSON((JSONObject) in.get(MODEL_LABEL), new SynchronizedElementBuilder(new DefaultElementBuilder()));
+        } else {
+            mo = moc.fromJSON((JSONObject) in.get(MODEL_LABEL));
+        }
         return new Instance(mo, cc.listFromJSON(mo, (JSONArray) in.get(CONSTRAINTS_LABEL)),
                 (OptConstraint) cc.fromJSON(mo, (JSONObject) in.get(OBJ_LABEL)));
     }
@@ -29,6 +29,7 @@ import org.btrplace.model.view.ModelView;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.btrplace.json.JSONs.*;
 /**
@@ -56,11 +57,34 @@ public class ModelConverter implements JSONObjectConverter<Model> {
 
     private ModelViewsConverter viewsConverter;
 
+    private Supplier<Attributes> attributesFactory;
+
     /**
      * Make a new converter.
+     * The decoded models rely on {@link DefaultAttributes}.
      */
     public ModelConverter() {
         viewsConverter = ModelViewsConverter.newBundle();
+        attributesFactory = DefaultAttributes::new;
+    }
+
+    /**
+     * Get the factory that makes the attributes of the decoded models.
+     *
+     * @return the factory
+     */
+    public Supplier<Attributes> getAttributesFactory() {
+        return attributesFactory;
+    }
+
+    /**
+     * Set the factory that makes the attributes of the decoded models.
+     * For example {@code ColumnarAttributes::new}.
+     *
+     * @param f the factory to use. It must provide an empty instance at each call
+     */
+    public void setAttributesFactory(Supplier<Attributes> f) {
+        this.attributesFactory = f;
     }
 
     /**
@@ -97,12 +121,24 @@ public class ModelConverter implements JSONObjectConverter<Model> {
 
     @Override
     public Model fromJSON(JSONObject o) throws JSONConverterException {
+        return fromJSON(o, new DefaultElementBuilder());
+    }
+
+    /**
+     * Decode a model that will rely on a given element builder.
+     *
+     * @param o  the JSON model
+     * @param eb the element builder of the model
+     * @return the resulting model
+     * @throws JSONConverterException if the conversion failed
+     */
+    public Model fromJSON(JSONObject o, ElementBuilder eb) throws JSONConverterException {
         checkKeys(o, MAPPING_LABEL, ATTRS_LABEL, VIEWS_LABEL);
 
-        Model i = new DefaultModel();
+        Model i = new DefaultModel(eb);
         fillMapping(i, (JSONObject) o.get(MAPPING_LABEL));
 
-        i.setAttributes(AttributesConverter.fromJSON(i, (JSONObject) o.get(ATTRS_LABEL)));
+        i.setAttributes(AttributesConverter.fromJSON(i, (JSONObject) o.get(ATTRS_LABEL), attributesFactory.get()));
 
         for (Object view : (JSONArray) o.get(VIEWS_LABEL)) {
             i.attach(viewsConverter.fromJSON(i, (JSONObject) view));
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.model;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.json.JSONObjectConverter;
+import org.btrplace.model.Element;
+import org.btrplace.model.ModelDelta;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+
+import java.util.Locale;
+
+import static org.btrplace.json.JSONs.requiredInt;
+import static org.btrplace.json.JSONs.requiredString;
+
+/**
+ * Class to serialize/unSerialize a {@link ModelDelta} using the JSON format.
+ * The delta is an array of changes. Each change indicates the operation, the element
+ * (a key {@code vm} or {@code node}), the host for running or sleeping VMs, and the key and
+ * value for resources and attributes. A missing value denotes a value to unset.
+ * The elements are not resolved against a model as a delta may declare new elements.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaConverter implements JSONObjectConverter<ModelDelta> {
+
+    /**
+     * Key to indicate the changes.
+     */
+    public static final String CHANGES_LABEL = "changes";
+
+    /**
+     * Key to indicate the operation.
+     */
+    public static final String OP_LABEL = "op";
+
+    /**
+     * Key to indicate a VM.
+     */
+    public static final String VM_LABEL = "vm";
+
+    /**
+     * Key to indicate a node.
+     */
+    public static final String NODE_LABEL = "node";
+
+    /**
+     * Key to indicate the host of a VM.
+     */
+    public static final String ON_LABEL = "on";
+
+    /**
+     * Key to indicate a resource identifier or an attribute key.
+     */
+    public static final String KEY_LABEL = "key";
+
+    /**
+     * Key to indicate a value.
+     */
+    public static final String VALUE_LABEL = "value";
+
+    @Override
+    public ModelDelta fromJSON(JSONObject o) throws JSONConverterException {
+        Object changes = o.get(CHANGES_LABEL);
+        if (!(changes instanceof JSONArray)) {
+            throw new JSONConverterException("Missing required array '" + CHANGES_LABEL + "'");
+        }
+        ModelDelta d = new ModelDelta();
+        for (Object c : (JSONArray) changes) {
+            if (!(c instanceof JSONObject)) {
+                throw new JSONConverterException("Change expected. Got '" + c + "'");
+            }
+            d.add(changeFromJSON((JSONObject) c));
+        }
+        return d;
+    }
+
+    private static ModelDelta.Change changeFromJSON(JSONObject o) throws JSONConverterException {
+        ModelDelta.Operation op;
+        String id = requiredString(o, OP_LABEL);
+        try {
+            op = ModelDelta.Operation.valueOf(id.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            throw new JSONConverterException("Unsupported operation '" + id + "'", ex);
+        }
+        Element e;
+        if (o.containsKey(VM_LABEL)) {
+            e = new VM(requiredInt(o, VM_LABEL));
+        } else {
+            e = new Node(requiredInt(o, NODE_LABEL));
+        }
+        Node host = o.containsKey(ON_LABEL) ? new Node(requiredInt(o, ON_LABEL)) : null;
+        String key = o.containsKey(KEY_LABEL) ? requiredString(o, KEY_LABEL) : null;
+        Object value = o.get(VALUE_LABEL);
+        if (value != null && !(value instanceof Boolean || value instanceof Integer
+                || value instanceof Double || value instanceof String)) {
+            throw new JSONConverterException("Unsupported value '" + value + "' (" + value.getClass() + ")");
+        }
+        return new ModelDelta.Change(op, e, host, key, value);
+    }
+
+    @Override
+    public JSONObject toJSON(ModelDelta d) {
+        JSONArray changes = new JSONArray();
+        for (ModelDelta.Change c : d) {
+            JSONObject o = new JSONObject();
+            o.put(OP_LABEL, c.getOperation().toString().toLowerCase(Locale.ENGLISH));
+            o.put(c.getElement() instanceof VM ? VM_LABEL : NODE_LABEL, c.getElement().id());
+            if (c.getHost() != null) {
+                o.put(ON_LABEL, c.getHost().id());
+            }
+            if (c.getKey() != null) {
+                o.put(KEY_LABEL, c.getKey());
+            }
+            if (c.getValue() != null) {
+                o.put(VALUE_LABEL, c.getValue());
+            }
+            changes.add(o);
+        }
+        JSONObject res = new JSONObject();
+        res.put(CHANGES_LABEL, changes);
+        return res;
+    }
+}
@@ -31,11 +31,15 @@ import org.btrplace.model.constraint.Constraint;
 import org.btrplace.model.constraint.SatConstraint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.btrplace.json.JSONs.checkKeys;
 
@@ -49,6 +53,18 @@ public class ConstraintsConverter {
     private Map<Class<? extends Constraint>, ConstraintConverter<? extends Constraint>> java2json;
     private Map<String, ConstraintConverter<? extends Constraint>> json2java;
 
+    /**
+     * The number of constraints decoded by a single task when the decoding is parallel.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    private int parallelism = 1;
+
+    /**
+     * The pool to decode large lists. {@code null} to create one per decoding.
+     */
+    private ForkJoinPool executor;
+
     /**
      * Make a new empty converter.
      */
@@ -169,14 +185,119 @@ public class ConstraintsConverter {
      * @throws JSONConverterException if the conversion failed
      */
     public List<SatConstraint> listFromJSON(Model mo, JSONArray in) throws JSONConverterException {
-        List<SatConstraint> l = new ArrayList<>(in.size());
-        for (Object o : in) {
+        if (parallelism > 1 && in.size() > CHUNK_SIZE) {
+            return parallelListFromJSON(mo, in);
+        }
+        SatConstraint[] res = new SatConstraint[in.size()];
+        decode(mo, in, res, 0, res.length);
+        return new ArrayList<>(Arrays.asList(res));
+    }
+
+    /**
+     * Decode the constraints by chunks, on the pool stated by {@link #getExecutor()}, or
+     * on a pool created for this decoding otherwise.
+     * The constraints stay in their original order and the reported error
+     * is the one of the first constraint that cannot be decoded.
+     *
+     * @param mo the model to rely on
+     * @param in the constraints to decode
+     * @return the constraint list
+     * @throws JSONConverterException if the conversion failed
+     */
+    private List<SatConstraint> parallelListFromJSON(Model mo, JSONArray in) throws JSONConverterException {
+        SatConstraint[] res = new SatConstraint[in.size()];
+        ForkJoinPool pool = executor != null ? executor : new ForkJoinPool(parallelism);
+        try {
+            List<Future<JSONConverterException>> chunks = new ArrayList<>();
+            for (int from = 0; from < res.length; from += CHUNK_SIZE) {
+                int f = from;
+                int to = Math.min(res.length, from + CHUNK_SIZE);
+                chunks.add(pool.submit(() -> {
+                    try {
+                        decode(mo, in, res, f, to);
+                    } catch (JSONConverterException ex) {
+                        return ex;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<JSONConverterException> c : chunks) {
+                JSONConverterException ex = c.get();
+                if (ex != null) {
+                    throw ex;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JSONConverterException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new JSONConverterException(ex.getCause());
+        } finally {
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        }
+        return new ArrayList<>(Arrays.asList(res));
+    }
+
+    private void decode(Model mo, JSONArray in, SatConstraint[] res, int from, int to) throws JSONConverterException {
+        for (int i = from; i < to; i++) {
+            Object o = in.get(i);
             if (!(o instanceof JSONObject)) {
                 throw new JSONConverterException("Expected an array of JSONObject but got an array of " + o.getClass().getName());
             }
-            l.add((SatConstraint) fromJSON(mo, (JSONObject) o));
+            res[i] = (SatConstraint) fromJSON(mo, (JSONObject) o);
         }
-        return l;
+    }
+
+    /**
+     * Set the number of threads used to decode a list of constraints.
+     * With more than one thread, large lists are decoded by chunks on a fork-join pool.
+     * The model is then accessed concurrently, so the converters must not alter it
+     * unless its elements are created through a {@link org.btrplace.model.SynchronizedElementBuilder}.
+     *
+     * @param n a positive number. {@code 1} for a sequential decoding
+     * @return {@code this}
+     */
+    public ConstraintsConverter setParallelism(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The parallelism level must be strictly positive");
+        }
+        parallelism = n;
+        return this;
+    }
+
+    /**
+     * Get the number of threads used to decode a list of constraints.
+     *
+     * @return a positive number. {@code 1} by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the pool that decodes the large lists of constraints when the parallelism level is
+     * greater than 1. The pool is shared among the decodings and never shut down by the converter.
+     *
+     * @param p the pool to use. {@code null} to create a pool for each decoding, and shut it down once done
+     * @return {@code this}
+     */
+    public ConstraintsConverter setExecutor(ForkJoinPool p) {
+        executor = p;
+        return this;
+    }
+
+    /**
+     * Get the pool that decodes the large lists of constraints.
+     *
+     * @return the pool. {@code null} if a pool is created for each decoding
+     */
+    public ForkJoinPool getExecutor() {
+        return executor;
     }
 
     /**
@@ -95,6 +95,26 @@ public class ModelViewsConverter {
         return json2java.keySet();
     }
 
+    /**
+     * Get the converter registered for a JSON view.
+     *
+     * @param id the view identifier
+     * @return the converter if registered. {@code null} otherwise
+     */
+    public ModelViewConverter<? extends ModelView> getConverter(String id) {
+        return json2java.get(id);
+    }
+
+    /**
+     * Get the converter registered for a Java view.
+     *
+     * @param c the view class
+     * @return the converter if registered. {@code null} otherwise
+     */
+    public ModelViewConverter<? extends ModelView> getConverter(Class<? extends ModelView> c) {
+        return java2json.get(c);
+    }
+
     /**
      * Convert a json-encoded view.
      *
@@ -39,7 +39,8 @@ import static org.btrplace.json.JSONs.*;
 /**
  * Serialize/Un-serialize a {@link org.btrplace.model.view.network.Network} view.
  *
- * By default, it also registers a {@link DefaultRoutingConverter} and a {@link StaticRoutingConverter}.
+ * By default, it also registers a {@link DefaultRoutingConverter}, a {@link StaticRoutingConverter},
+ * and a {@link TreeRoutingConverter}.
  * @author Vincent Kherbache
  */
 public class NetworkConverter implements ModelViewConverter<Network> {
@@ -69,6 +70,7 @@ public class NetworkConverter implements ModelViewConverter<Network> {
         json2java = new HashMap<>();
         register(new DefaultRoutingConverter());
         register(new StaticRoutingConverter());
+        register(new TreeRoutingConverter());
     }
 
     /**
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.model.view.network;
+
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.model.Model;
+import org.btrplace.model.view.network.TreeRouting;
+/**
+ * A converter to (un-)serialise a {@link TreeRouting}.
+ *
+ * @author Fabien Hermenier
+ */
+public class TreeRoutingConverter implements RoutingConverter<TreeRouting> {
+
+    @Override
+    public Class<TreeRouting> getSupportedRouting() {
+        return TreeRouting.class;
+    }
+
+    /**
+     * Return the routing identifier.
+     *
+     * @return {@value "tree"}
+     */
+    @Override
+    public String getJSONId() {
+        return "tree";
+    }
+
+    @Override
+    public TreeRouting fromJSON(Model mo, JSONObject in) throws JSONConverterException {
+        return new TreeRouting();
+    }
+
+    @Override
+    public JSONObject toJSON(TreeRouting routing) {
+        JSONObject o = new JSONObject();
+        o.put("type", getJSONId());
+        return o;
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A pull parser that reads a JSON document one token at a time.
+ * <p>
+ * Values can be consumed token by token to decode large documents
+ * without building their tree, or materialised using {@link #nextValue()}.
+ * The materialised values use the same types than the json-smart parser
+ * used by the {@link org.btrplace.json.JSONObjectConverter}s so they can
+ * be decoded with the existing converters.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONReader implements Closeable {
+
+    /**
+     * The possible tokens.
+     */
+    public enum Token {
+        /**
+         * '{'.
+         */
+        BEGIN_OBJECT,
+        /**
+         * '}'.
+         */
+        END_OBJECT,
+        /**
+         * '['.
+         */
+        BEGIN_ARRAY,
+        /**
+         * ']'.
+         */
+        END_ARRAY,
+        /**
+         * A key inside an object.
+         */
+        NAME,
+        /**
+         * A string value.
+         */
+        STRING,
+        /**
+         * A number.
+         */
+        NUMBER,
+        /**
+         * {@code true} or {@code false}.
+         */
+        BOOLEAN,
+        /**
+         * {@code null}.
+         */
+        NULL,
+        /**
+         * The end of the document.
+         */
+        END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[8192];
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    private long consumed = 0;
+
+    private int[] stack = new int[32];
+
+    private int depth = 0;
+
+    private Token peeked;
+
+    private String text;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Make a new reader.
+     *
+     * @param r the stream to read. Buffered internally
+     */
+    public JSONReader(Reader r) {
+        in = r;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Get the type of the next token without consuming it.
+     *
+     * @return the next token
+     * @throws JSONConverterException if the document is malformed
+     */
+    public Token peek() throws JSONConverterException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonBlank();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonBlank();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                expected(c, ',');
+                c = nextNonBlank();
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonBlank();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    expected(c, ',');
+                    c = nextNonBlank();
+                }
+                expected(c, '"');
+                stack[depth - 1] = DANGLING_NAME;
+                text = readString();
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                expected(nextNonBlank(), ':');
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                c = nextNonBlank();
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                c = nextNonBlank();
+                break;
+            default:
+                c = nextNonBlank();
+                if (c == -1) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                throw error("Unexpected content after the document");
+        }
+        return peeked = valueToken(c);
+    }
+
+    private Token valueToken(int c) throws JSONConverterException {
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                text = readString();
+                return Token.STRING;
+            case 't':
+                literal("rue");
+                text = "true";
+                return Token.BOOLEAN;
+            case 'f':
+                literal("alse");
+                text = "false";
+                return Token.BOOLEAN;
+            case 'n':
+                literal("ull");
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    text = readNumber((char) c);
+                    return Token.NUMBER;
+                }
+                throw error(c == -1 ? "Unexpected end of document" : "Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Indicates if the current object or array has another element.
+     *
+     * @return {@code true} iff there is another element
+     * @throws JSONConverterException if the document is malformed
+     */
+    public boolean hasNext() throws JSONConverterException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consume the beginning of an object.
+     *
+     * @throws JSONConverterException if the next token is not {@link Token#BEGIN_OBJECT}
+     */
+    public void beginObject() throws JSONConverterException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consume the end of an object.
+     *
+     * @throws JSONConverterException if the next token is not {@link Token#END_OBJECT}
+     */
+    public void endObject() throws JSONConverterException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Consume the beginning of an array.
+     *
+     * @throws JSONConverterException if the next token is not {@link Token#BEGIN_ARRAY}
+     */
+    public void beginArray() throws JSONConverterException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consume the end of an array.
+     *
+     * @throws JSONConverterException if the next token is not {@link Token#END_ARRAY}
+     */
+    public void endArray() throws JSONConverterException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * Consume a key.
+     *
+     * @return the key
+     * @throws JSONConverterException if the next token is not {@link Token#NAME}
+     */
+    public String nextName() throws JSONConverterException {
+        consume(Token.NAME);
+        return text;
+    }
+
+    /**
+     * Consume a string.
+     *
+     * @return the string
+     * @throws JSONConverterException if the next token is not {@link Token#STRING}
+     */
+    public String nextString() throws JSONConverterException {
+        consume(Token.STRING);
+        return text;
+    }
+
+    /**
+     * Consume a boolean.
+     *
+     * @return the boolean
+     * @throws JSONConverterException if the next token is not {@link Token#BOOLEAN}
+     */
+    public boolean nextBoolean() throws JSONConverterException {
+        consume(Token.BOOLEAN);
+        return "true".equals(text);
+    }
+
+    /**
+     * Consume an integer.
+     *
+     * @return the integer
+     * @throws JSONConverterException if the next token is not a number that fits an int
+     */
+    public int nextInt() throws JSONConverterException {
+        consume(Token.NUMBER);
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException ex) {
+            throw error("Expected an int but got '" + text + "'");
+        }
+    }
+
+    /**
+     * Consume a number.
+     *
+     * @return an {@link Integer} or a {@link Long} or a {@link BigInteger} for integral values
+     * depending on their magnitude, a {@link Double} otherwise
+     * @throws JSONConverterException if the next token is not {@link Token#NUMBER}
+     */
+    public Number nextNumber() throws JSONConverterException {
+        consume(Token.NUMBER);
+        try {
+            if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                return Double.valueOf(text);
+            }
+            BigInteger b = new BigInteger(text);
+            if (b.bitLength() < 32) {
+                return b.intValue();
+            } else if (b.bitLength() < 64) {
+                return b.longValue();
+            }
+            return b;
+        } catch (NumberFormatException ex) {
+            throw error("Malformed number '" + text + "'");
+        }
+    }
+
+    /**
+     * Consume a {@code null}.
+     *
+     * @throws JSONConverterException if the next token is not {@link Token#NULL}
+     */
+    public void nextNull() throws JSONConverterException {
+        consume(Token.NULL);
+    }
+
+    /**
+     * Consume and materialise the next value.
+     *
+     * @return a {@link JSONObject}, a {@link JSONArray}, a {@link String}, a {@link Boolean},
+     * a {@link Number} or {@code null}
+     * @throws JSONConverterException if the document is malformed
+     */
+    public Object nextValue() throws JSONConverterException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                JSONObject o = new JSONObject();
+                beginObject();
+                while (hasNext()) {
+                    String k = nextName();
+                    o.put(k, nextValue());
+                }
+                endObject();
+                return o;
+            case BEGIN_ARRAY:
+                JSONArray a = new JSONArray();
+                beginArray();
+                while (hasNext()) {
+                    a.add(nextValue());
+                }
+                endArray();
+                return a;
+            case STRING:
+                return nextString();
+            case NUMBER:
+                return nextNumber();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            default:
+                throw error("Expected a value but got " + peeked);
+        }
+    }
+
+    /**
+     * Consume the next value without materialising it.
+     *
+     * @throws JSONConverterException if the document is malformed
+     */
+    public void skipValue() throws JSONConverterException {
+        int d = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    d++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    d++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    d--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    d--;
+                    break;
+                case END_DOCUMENT:
+                    throw error("Unexpected end of document");
+                default:
+                    peeked = null;
+            }
+        } while (d > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void consume(Token t) throws JSONConverterException {
+        if (peek() != t) {
+            throw error("Expected " + t + " but got " + peeked);
+        }
+        peeked = null;
+    }
+
+    private void push(int ctx) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = ctx;
+    }
+
+    private int read() throws JSONConverterException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws JSONConverterException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        try {
+            int nb = in.read(buffer, 0, buffer.length);
+            if (nb > 0) {
+                limit = nb;
+                return true;
+            }
+            return false;
+        } catch (IOException ex) {
+            throw new JSONConverterException(ex);
+        }
+    }
+
+    private int nextNonBlank() throws JSONConverterException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private void expected(int c, char e) throws JSONConverterException {
+        if (c != e) {
+            throw error("Expected '" + e + "' but got " + (c == -1 ? "the end of the document" : "'" + (char) c + "'"));
+        }
+    }
+
+    private void literal(String rest) throws JSONConverterException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw error("Malformed literal");
+            }
+        }
+    }
+
+    private String readString() throws JSONConverterException {
+        sb.setLength(0);
+        while (true) {
+            //Fast path for the unescaped characters available in the buffer
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\') {
+                pos++;
+            }
+            sb.append(buffer, start, pos - start);
+            int c = read();
+            if (c == '"') {
+                return sb.toString();
+            } else if (c == '\\') {
+                sb.append(escaped());
+            } else if (c == -1) {
+                throw error("Unterminated string");
+            } else {
+                //The buffer has been refilled
+                sb.append((char) c);
+            }
+        }
+    }
+
+    private char escaped() throws JSONConverterException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int v = 0;
+                for (int i = 0; i < 4; i++) {
+                    int d = Character.digit(read(), 16);
+                    if (d < 0) {
+                        throw error("Malformed unicode escape sequence");
+                    }
+                    v = (v << 4) | d;
+                }
+                return (char) v;
+            default:
+                throw error("Malformed escape sequence");
+        }
+    }
+
+    private String readNumber(char first) throws JSONConverterException {
+        sb.setLength(0);
+        sb.append(first);
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                sb.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private JSONConverterException error(String msg) {
+        return new JSONConverterException(msg + " at offset " + (consumed + pos));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import net.minidev.json.JSONValue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A writer that streams a JSON document token by token.
+ * The document is written in the compact format produced by json-smart.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONWriter {
+
+    private final Appendable out;
+
+    /**
+     * For each opened object or array, {@code true} while it is empty.
+     */
+    private boolean[] empty = new boolean[32];
+
+    private int depth = 0;
+
+    private boolean afterName = false;
+
+    /**
+     * Make a new writer.
+     *
+     * @param a the stream to write on
+     */
+    public JSONWriter(Appendable a) {
+        out = a;
+    }
+
+    /**
+     * Open an object.
+     *
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Close the current object.
+     *
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter endObject() throws IOException {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    /**
+     * Open an array.
+     *
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Close the current array.
+     *
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter endArray() throws IOException {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    /**
+     * Write the key of the next value inside the current object.
+     *
+     * @param k the key
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter name(String k) throws IOException {
+        separate();
+        string(k);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write the key of the next value inside the current object.
+     *
+     * @param k the key
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter name(int k) throws IOException {
+        separate();
+        out.append('"').append(Integer.toString(k)).append("\":");
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write an integer.
+     *
+     * @param v the value
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter value(int v) throws IOException {
+        beforeValue();
+        out.append(Integer.toString(v));
+        return this;
+    }
+
+    /**
+     * Write a string.
+     *
+     * @param v the value
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter value(String v) throws IOException {
+        beforeValue();
+        string(v);
+        return this;
+    }
+
+    /**
+     * Write any value supported by json-smart, including
+     * {@link net.minidev.json.JSONObject} and {@link net.minidev.json.JSONArray}.
+     *
+     * @param v the value
+     * @return {@code this}
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONWriter value(Object v) throws IOException {
+        beforeValue();
+        JSONValue.writeJSONString(v, out);
+        return this;
+    }
+
+    private void string(String s) throws IOException {
+        out.append('"').append(JSONValue.escape(s)).append('"');
+    }
+
+    private void push() {
+        if (depth == empty.length) {
+            empty = Arrays.copyOf(empty, depth * 2);
+        }
+        empty[depth++] = true;
+    }
+
+    private void separate() throws IOException {
+        if (depth > 0) {
+            if (!empty[depth - 1]) {
+                out.append(',');
+            }
+            empty[depth - 1] = false;
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else {
+            separate();
+        }
+    }
+}
@@ -0,0 +1,697 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.json.model.AttributesConverter;
+import org.btrplace.json.model.InstanceConverter;
+import org.btrplace.json.model.ModelConverter;
+import org.btrplace.json.model.constraint.ConstraintsConverter;
+import org.btrplace.json.model.view.ModelViewsConverter;
+import org.btrplace.json.model.view.ShareableResourceConverter;
+import org.btrplace.json.plan.ActionConverter;
+import org.btrplace.json.plan.ReconfigurationPlanConverter;
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.OptConstraint;
+import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.view.ModelView;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.Action;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.btrplace.json.JSONs.getNode;
+import static org.btrplace.json.JSONs.getVM;
+import static org.btrplace.json.model.InstanceConverter.CONSTRAINTS_LABEL;
+import static org.btrplace.json.model.InstanceConverter.MODEL_LABEL;
+import static org.btrplace.json.model.InstanceConverter.OBJ_LABEL;
+import static org.btrplace.json.model.ModelConverter.ATTRS_LABEL;
+import static org.btrplace.json.model.ModelConverter.MAPPING_LABEL;
+import static org.btrplace.json.model.ModelConverter.VIEWS_LABEL;
+import static org.btrplace.json.model.view.ShareableResourceConverter.DEFAULT_CAPACITY;
+import static org.btrplace.json.model.view.ShareableResourceConverter.DEFAULT_CONSUMPTION;
+import static org.btrplace.json.model.view.ShareableResourceConverter.NODES_LABEL;
+import static org.btrplace.json.plan.ReconfigurationPlanConverter.ACTIONS_LABEL;
+import static org.btrplace.json.plan.ReconfigurationPlanConverter.ORIGIN_LABEL;
+
+/**
+ * A streaming converter for instances, models and reconfiguration plans.
+ * <p>
+ * The format is the one of {@link InstanceConverter}, {@link ModelConverter}
+ * and {@link ReconfigurationPlanConverter}, but the documents are never
+ * fully materialised: the mapping, the attributes and the {@link ShareableResource}s
+ * are decoded directly into the model while the constraints, the other views and the actions
+ * are materialised one at a time and decoded using the registered converters.
+ * <p>
+ * The keys of an object can come in any order. When the constraints or the actions appear
+ * before the model they depend on, they are materialised first and decoded once the model is available.
+ * <p>
+ * When the parallelism of the constraint converter is greater than 1, the constraints of an instance
+ * are materialised as a whole and decoded by {@link ConstraintsConverter#listFromJSON(Model, JSONArray)}.
+ * The model then relies on a {@link SynchronizedElementBuilder}.
+ *
+ * @author Fabien Hermenier
+ */
+public class StreamingConverter {
+
+    private static final String VMS_LABEL = "vms";
+
+    private ModelViewsConverter vc;
+
+    private ModelConverter mc;
+
+    private ConstraintsConverter cc;
+
+    /**
+     * Make a new converter that relies on the default converters.
+     */
+    public StreamingConverter() {
+        this(new InstanceConverter());
+    }
+
+    /**
+     * Make a new converter that relies on the view and the constraint converters of an instance converter.
+     * The attributes of the decoded models are made by the factory of its model converter.
+     *
+     * @param ic the converter to rely on
+     */
+    public StreamingConverter(InstanceConverter ic) {
+        mc = ic.getModelConverter();
+        vc = mc.getViewsConverter();
+        cc = ic.getConstraintsConverter();
+    }
+
+    /**
+     * Read an instance.
+     *
+     * @param in the stream to read
+     * @return the resulting instance
+     * @throws JSONConverterException if the document is not a valid instance
+     */
+    public Instance readInstance(Reader in) throws JSONConverterException {
+        JSONReader r = new JSONReader(in);
+        Instance i = instance(r);
+        r.peek();
+        return i;
+    }
+
+    /**
+     * Read a model.
+     *
+     * @param in the stream to read
+     * @return the resulting model
+     * @throws JSONConverterException if the document is not a valid model
+     */
+    public Model readModel(Reader in) throws JSONConverterException {
+        JSONReader r = new JSONReader(in);
+        Model mo = model(r);
+        r.peek();
+        return mo;
+    }
+
+    /**
+     * Read a reconfiguration plan.
+     *
+     * @param in the stream to read
+     * @return the resulting plan
+     * @throws JSONConverterException if the document is not a valid plan
+     */
+    public ReconfigurationPlan readReconfigurationPlan(Reader in) throws JSONConverterException {
+        JSONReader r = new JSONReader(in);
+        ReconfigurationPlan p = plan(r);
+        r.peek();
+        return p;
+    }
+
+    /**
+     * Write an instance.
+     *
+     * @param i   the instance to write
+     * @param out the stream to write on
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the instance cannot be converted
+     */
+    public void write(Instance i, Appendable out) throws IOException, JSONConverterException {
+        JSONWriter w = new JSONWriter(out);
+        w.beginObject().name(MODEL_LABEL);
+        model(w, i.getModel());
+        w.name(CONSTRAINTS_LABEL).beginArray();
+        for (SatConstraint c : i.getSatConstraints()) {
+            w.value(cc.toJSON(c));
+        }
+        w.endArray();
+        w.name(OBJ_LABEL).value(cc.toJSON(i.getOptConstraint()));
+        w.endObject();
+    }
+
+    /**
+     * Write a model.
+     *
+     * @param mo  the model to write
+     * @param out the stream to write on
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the model cannot be converted
+     */
+    public void write(Model mo, Appendable out) throws IOException, JSONConverterException {
+        model(new JSONWriter(out), mo);
+    }
+
+    /**
+     * Write a reconfiguration plan.
+     *
+     * @param plan the plan to write
+     * @param out  the stream to write on
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the plan cannot be converted
+     */
+    public void write(ReconfigurationPlan plan, Appendable out) throws IOException, JSONConverterException {
+        JSONWriter w = new JSONWriter(out);
+        ActionConverter ac = new ActionConverter(plan.getOrigin());
+        w.beginObject().name(ORIGIN_LABEL);
+        model(w, plan.getOrigin());
+        w.name(ACTIONS_LABEL).beginArray();
+        for (Action a : plan.getActions()) {
+            w.value(ac.toJSON(a));
+        }
+        w.endArray().endObject();
+    }
+
+    private Instance instance(JSONReader r) throws JSONConverterException {
+        Model mo = null;
+        List<SatConstraint> cstrs = null;
+        JSONArray pending = null;
+        JSONObject obj = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if (MODEL_LABEL.equals(k)) {
+                if (cc.getParallelism() > 1) {
+                    //The constraints are decoded concurrently
+                    mo = model(r, new SynchronizedElementBuilder(new DefaultElementBuilder()));
+                } else {
+                    mo = model(r);
+                }
+            } else if (CONSTRAINTS_LABEL.equals(k)) {
+                if (mo != null) {
+                    cstrs = constraints(r, mo);
+                } else {
+                    pending = array(r, k);
+                }
+            } else if (OBJ_LABEL.equals(k)) {
+                obj = object(r, k);
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        required(mo, MODEL_LABEL);
+        if (cstrs == null) {
+            cstrs = cc.listFromJSON(mo, required(pending, CONSTRAINTS_LABEL));
+        }
+        return new Instance(mo, cstrs, (OptConstraint) cc.fromJSON(mo, required(obj, OBJ_LABEL)));
+    }
+
+    private List<SatConstraint> constraints(JSONReader r, Model mo) throws JSONConverterException {
+        if (cc.getParallelism() > 1) {
+            return cc.listFromJSON(mo, array(r, CONSTRAINTS_LABEL));
+        }
+        List<SatConstraint> l = new ArrayList<>();
+        r.beginArray();
+        while (r.hasNext()) {
+            l.add((SatConstraint) cc.fromJSON(mo, object(r, CONSTRAINTS_LABEL)));
+        }
+        r.endArray();
+        return l;
+    }
+
+    private ReconfigurationPlan plan(JSONReader r) throws JSONConverterException {
+        ReconfigurationPlan plan = null;
+        JSONArray pending = null;
+        boolean actions = false;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if (ORIGIN_LABEL.equals(k)) {
+                plan = new DefaultReconfigurationPlan(model(r));
+            } else if (ACTIONS_LABEL.equals(k)) {
+                actions = true;
+                if (plan != null) {
+                    ActionConverter ac = new ActionConverter(plan.getOrigin());
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        plan.add(ac.fromJSON(object(r, k)));
+                    }
+                    r.endArray();
+                } else {
+                    pending = array(r, k);
+                }
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        required(plan, ORIGIN_LABEL);
+        if (!actions) {
+            required(null, ACTIONS_LABEL);
+        }
+        if (pending != null) {
+            for (Action a : new ActionConverter(plan.getOrigin()).listFromJSON(pending)) {
+                plan.add(a);
+            }
+        }
+        return plan;
+    }
+
+    private Model model(JSONReader r) throws JSONConverterException {
+        return model(r, new DefaultElementBuilder());
+    }
+
+    private Model model(JSONReader r, ElementBuilder eb) throws JSONConverterException {
+        Model mo = new DefaultModel(eb);
+        boolean mapping = false;
+        boolean attrs = false;
+        boolean views = false;
+        JSONObject pendingAttrs = null;
+        JSONArray pendingViews = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if (MAPPING_LABEL.equals(k)) {
+                mapping(r, mo);
+                mapping = true;
+            } else if (ATTRS_LABEL.equals(k)) {
+                attrs = true;
+                if (mapping) {
+                    mo.setAttributes(attributes(r, mo));
+                } else {
+                    pendingAttrs = object(r, k);
+                }
+            } else if (VIEWS_LABEL.equals(k)) {
+                views = true;
+                if (mapping) {
+                    views(r, mo);
+                } else {
+                    pendingViews = array(r, k);
+                }
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        if (!mapping) {
+            required(null, MAPPING_LABEL);
+        }
+        if (!attrs) {
+            required(null, ATTRS_LABEL);
+        }
+        if (!views) {
+            required(null, VIEWS_LABEL);
+        }
+        if (pendingAttrs != null) {
+            mo.setAttributes(AttributesConverter.fromJSON(mo, pendingAttrs, mc.getAttributesFactory().get()));
+        }
+        if (pendingViews != null) {
+            for (Object v : pendingViews) {
+                if (!(v instanceof JSONObject)) {
+                    throw new JSONConverterException("Expected an array of JSONObject at key '" + VIEWS_LABEL + "'");
+                }
+                mo.attach(vc.fromJSON(mo, (JSONObject) v));
+            }
+        }
+        return mo;
+    }
+
+    private static void mapping(JSONReader r, Model mo) throws JSONConverterException {
+        Mapping map = mo.getMapping();
+        boolean offline = false;
+        boolean ready = false;
+        boolean online = false;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if ("offlineNodes".equals(k)) {
+                offline = true;
+                r.beginArray();
+                while (r.hasNext()) {
+                    map.addOfflineNode(newNode(mo, r.nextInt()));
+                }
+                r.endArray();
+            } else if ("readyVMs".equals(k)) {
+                ready = true;
+                r.beginArray();
+                while (r.hasNext()) {
+                    map.addReadyVM(newVM(mo, r.nextInt()));
+                }
+                r.endArray();
+            } else if ("onlineNodes".equals(k)) {
+                online = true;
+                r.beginObject();
+                while (r.hasNext()) {
+                    Node n = newNode(mo, id(r.nextName()));
+                    map.addOnlineNode(n);
+                    onlineNode(r, mo, n);
+                }
+                r.endObject();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        if (!offline) {
+            required(null, "offlineNodes");
+        }
+        if (!ready) {
+            required(null, "readyVMs");
+        }
+        if (!online) {
+            required(null, "onlineNodes");
+        }
+    }
+
+    private static void onlineNode(JSONReader r, Model mo, Node n) throws JSONConverterException {
+        Mapping map = mo.getMapping();
+        boolean running = false;
+        boolean sleeping = false;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if ("runningVMs".equals(k)) {
+                running = true;
+                r.beginArray();
+                while (r.hasNext()) {
+                    map.addRunningVM(newVM(mo, r.nextInt()), n);
+                }
+                r.endArray();
+            } else if ("sleepingVMs".equals(k)) {
+                sleeping = true;
+                r.beginArray();
+                while (r.hasNext()) {
+                    map.addSleepingVM(newVM(mo, r.nextInt()), n);
+                }
+                r.endArray();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        if (!running) {
+            required(null, "runningVMs");
+        }
+        if (!sleeping) {
+            required(null, "sleepingVMs");
+        }
+    }
+
+    private Attributes attributes(JSONReader r, Model mo) throws JSONConverterException {
+        Attributes attrs = mc.getAttributesFactory().get();
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            if (VMS_LABEL.equals(k) || NODES_LABEL.equals(k)) {
+                boolean vms = VMS_LABEL.equals(k);
+                r.beginObject();
+                while (r.hasNext()) {
+                    int id = id(r.nextName());
+                    Element e = vms ? getVM(mo, id) : getNode(mo, id);
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        attribute(r, attrs, e, r.nextName());
+                    }
+                    r.endObject();
+                }
+                r.endObject();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        return attrs;
+    }
+
+    private static void attribute(JSONReader r, Attributes attrs, Element e, String key) throws JSONConverterException {
+        switch (r.peek()) {
+            case BOOLEAN:
+                attrs.put(e, key, r.nextBoolean());
+                break;
+            case STRING:
+                attrs.put(e, key, r.nextString());
+                break;
+            case NUMBER:
+                Number n = r.nextNumber();
+                if (n instanceof Integer) {
+                    attrs.put(e, key, n.intValue());
+                } else if (n instanceof Double) {
+                    attrs.put(e, key, n.doubleValue());
+                } else {
+                    throw new JSONConverterException(n + " is not a primitive (" + n.getClass() + ")");
+                }
+                break;
+            default:
+                throw new JSONConverterException("Unsupported value for attribute '" + key + "' of '" + e + "'");
+        }
+    }
+
+    private void views(JSONReader r, Model mo) throws JSONConverterException {
+        r.beginArray();
+        while (r.hasNext()) {
+            mo.attach(view(r, mo));
+        }
+        r.endArray();
+    }
+
+    /**
+     * Decode a view.
+     * The values of a {@link ShareableResource} are buffered as primitives rather than
+     * materialised.
+     */
+    private ModelView view(JSONReader r, Model mo) throws JSONConverterException {
+        String rcView = new ShareableResourceConverter().getJSONId();
+        boolean streamed = vc.getConverter(rcView) instanceof ShareableResourceConverter;
+        JSONObject o = new JSONObject();
+        TIntIntHashMap vms = null;
+        TIntIntHashMap nodes = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            Object id = o.get("id");
+            boolean values = streamed && (id == null || rcView.equals(id)) && r.peek() == JSONReader.Token.BEGIN_OBJECT;
+            if (values && VMS_LABEL.equals(k)) {
+                vms = intValues(r);
+            } else if (values && NODES_LABEL.equals(k)) {
+                nodes = intValues(r);
+            } else {
+                o.put(k, r.nextValue());
+            }
+        }
+        r.endObject();
+
+        if (streamed && rcView.equals(o.get("id")) && vms != null && nodes != null) {
+            return resource(mo, o, vms, nodes);
+        }
+        //Fallback to the registered converter
+        if (vms != null) {
+            o.put(VMS_LABEL, toJSON(vms));
+        }
+        if (nodes != null) {
+            o.put(NODES_LABEL, toJSON(nodes));
+        }
+        return vc.fromJSON(mo, o);
+    }
+
+    private static ShareableResource resource(Model mo, JSONObject o, TIntIntHashMap vms, TIntIntHashMap nodes) throws JSONConverterException {
+        ShareableResource rc = new ShareableResource(string(o, "rcId"), integer(o, DEFAULT_CAPACITY), integer(o, DEFAULT_CONSUMPTION));
+        for (int id : vms.keys()) {
+            rc.setConsumption(getVM(mo, id), vms.get(id));
+        }
+        for (int id : nodes.keys()) {
+            rc.setCapacity(getNode(mo, id), nodes.get(id));
+        }
+        return rc;
+    }
+
+    private static TIntIntHashMap intValues(JSONReader r) throws JSONConverterException {
+        TIntIntHashMap m = new TIntIntHashMap();
+        r.beginObject();
+        while (r.hasNext()) {
+            int id = id(r.nextName());
+            m.put(id, r.nextInt());
+        }
+        r.endObject();
+        return m;
+    }
+
+    private static JSONObject toJSON(TIntIntHashMap m) {
+        JSONObject o = new JSONObject();
+        m.forEachEntry((k, v) -> {
+            o.put(Integer.toString(k), v);
+            return true;
+        });
+        return o;
+    }
+
+    private void model(JSONWriter w, Model mo) throws IOException, JSONConverterException {
+        w.beginObject().name(MAPPING_LABEL);
+        mapping(w, mo.getMapping());
+        w.name(ATTRS_LABEL);
+        attributes(w, mo.getAttributes());
+        w.name(VIEWS_LABEL).beginArray();
+        for (ModelView v : mo.getViews()) {
+            if (v instanceof ShareableResource && vc.getConverter(v.getClass()) instanceof ShareableResourceConverter) {
+                resource(w, (ShareableResource) v);
+            } else {
+                w.value(vc.toJSON(v));
+            }
+        }
+        w.endArray().endObject();
+    }
+
+    private static void mapping(JSONWriter w, Mapping map) throws IOException {
+        w.beginObject().name("offlineNodes");
+        ids(w, map.getOfflineNodes());
+        w.name("readyVMs");
+        ids(w, map.getReadyVMs());
+        w.name("onlineNodes").beginObject();
+        for (Node n : map.getOnlineNodes()) {
+            w.name(n.id()).beginObject().name("runningVMs");
+            ids(w, map.getRunningVMs(n));
+            w.name("sleepingVMs");
+            ids(w, map.getSleepingVMs(n));
+            w.endObject();
+        }
+        w.endObject().endObject();
+    }
+
+    private static void ids(JSONWriter w, Collection<? extends Element> elems) throws IOException {
+        w.beginArray();
+        for (Element e : elems) {
+            w.value(e.id());
+        }
+        w.endArray();
+    }
+
+    private static void attributes(JSONWriter w, Attributes attrs) throws IOException {
+        w.beginObject().name(VMS_LABEL).beginObject();
+        for (Element e : attrs.getDefined()) {
+            if (e instanceof VM) {
+                attributes(w, attrs, e);
+            }
+        }
+        w.endObject().name(NODES_LABEL).beginObject();
+        for (Element e : attrs.getDefined()) {
+            if (e instanceof Node) {
+                attributes(w, attrs, e);
+            }
+        }
+        w.endObject().endObject();
+    }
+
+    private static void attributes(JSONWriter w, Attributes attrs, Element e) throws IOException {
+        w.name(e.id()).beginObject();
+        for (String k : attrs.getKeys(e)) {
+            w.name(k).value(attrs.get(e, k));
+        }
+        w.endObject();
+    }
+
+    private static void resource(JSONWriter w, ShareableResource rc) throws IOException {
+        w.beginObject()
+                .name("id").value(new ShareableResourceConverter().getJSONId())
+                .name(DEFAULT_CONSUMPTION).value(rc.getDefaultConsumption())
+                .name(DEFAULT_CAPACITY).value(rc.getDefaultCapacity())
+                .name("rcId").value(rc.getResourceIdentifier())
+                .name(VMS_LABEL).beginObject();
+        for (VM v : rc.getDefinedVMs()) {
+            w.name(v.id()).value(rc.getConsumption(v));
+        }
+        w.endObject().name(NODES_LABEL).beginObject();
+        for (Node n : rc.getDefinedNodes()) {
+            w.name(n.id()).value(rc.getCapacity(n));
+        }
+        w.endObject().endObject();
+    }
+
+    private static Node newNode(Model mo, int id) throws JSONConverterException {
+        Node n = mo.newNode(id);
+        if (n == null) {
+            throw JSONConverterException.nodeAlreadyDeclared(id);
+        }
+        return n;
+    }
+
+    private static VM newVM(Model mo, int id) throws JSONConverterException {
+        VM v = mo.newVM(id);
+        if (v == null) {
+            throw JSONConverterException.vmAlreadyDeclared(id);
+        }
+        return v;
+    }
+
+    private static int id(String k) throws JSONConverterException {
+        try {
+            return Integer.parseInt(k);
+        } catch (NumberFormatException ex) {
+            throw new JSONConverterException("Expected an element identifier but got '" + k + "'", ex);
+        }
+    }
+
+    private static JSONObject object(JSONReader r, String k) throws JSONConverterException {
+        Object o = r.nextValue();
+        if (!(o instanceof JSONObject)) {
+            throw new JSONConverterException("Expected a JSONObject at key '" + k + "'");
+        }
+        return (JSONObject) o;
+    }
+
+    private static JSONArray array(JSONReader r, String k) throws JSONConverterException {
+        Object o = r.nextValue();
+        if (!(o instanceof JSONArray)) {
+            throw new JSONConverterException("array expected at key '" + k + "'");
+        }
+        return (JSONArray) o;
+    }
+
+    private static String string(JSONObject o, String k) throws JSONConverterException {
+        Object x = required(o.get(k), k);
+        return x.toString();
+    }
+
+    private static int integer(JSONObject o, String k) throws JSONConverterException {
+        Object x = required(o.get(k), k);
+        if (!(x instanceof Number)) {
+            throw new JSONConverterException("Unable to read a int from string '" + x + "'");
+        }
+        return ((Number) x).intValue();
+    }
+
+    private static <T> T required(T o, String k) throws JSONConverterException {
+        if (o == null) {
+            throw new JSONConverterException("Missing key '" + k + "'");
+        }
+        return o;
+    }
+}
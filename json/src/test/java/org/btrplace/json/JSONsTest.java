@@ -18,12 +18,23 @@
 
 package org.btrplace.json;
 
+import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
+import org.btrplace.model.DefaultModel;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -96,4 +107,67 @@ public class JSONsTest {
         obj.put(storeKey, o);
         JSONs.requiredDouble(obj, readKey);
     }
+
+    @Test
+    public void testElementsFromJSON() throws JSONConverterException {
+        Model mo = new DefaultModel();
+        List<VM> vms = Arrays.asList(mo.newVM(), mo.newVM(), mo.newVM());
+        List<Node> ns = Arrays.asList(mo.newNode(), mo.newNode());
+        List<VM> l = JSONs.vmsFromJSON(mo, JSONs.vmsToJSON(vms));
+        Assert.assertEquals(l, vms);
+        //Interned
+        Assert.assertSame(JSONs.vmsFromJSON(mo, JSONs.vmsToJSON(vms)), l);
+        Assert.assertEquals(JSONs.vmsFromJSON(mo, JSONs.vmsToJSON(vms.subList(0, 2))), vms.subList(0, 2));
+        Assert.assertEquals(JSONs.nodesFromJSON(mo, JSONs.nodesToJSON(ns)), ns);
+
+        //Another model does not benefit from the decoded lists
+        Model mo2 = new DefaultModel();
+        mo2.newVM();
+        try {
+            JSONs.vmsFromJSON(mo2, JSONs.vmsToJSON(vms));
+            Assert.fail();
+        } catch (JSONConverterException ex) {
+            Assert.assertTrue(ex.getMessage().contains("Undeclared vm"), ex.getMessage());
+        }
+
+        JSONArray bad = new JSONArray();
+        bad.add("foo");
+        try {
+            JSONs.nodesFromJSON(mo, bad);
+            Assert.fail();
+        } catch (JSONConverterException ex) {
+            Assert.assertTrue(ex.getMessage().contains("foo"), ex.getMessage());
+        }
+    }
+
+    @Test(dependsOnMethods = "testElementsFromJSON")
+    public void testConcurrentElementsFromJSON() throws Exception {
+        Model mo = new DefaultModel();
+        List<JSONArray> arrays = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            arrays.add(JSONs.vmsToJSON(Arrays.asList(mo.newVM(), mo.newVM())));
+        }
+        JSONs.resetCaches(10);
+        ExecutorService exe = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> res = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                res.add(exe.submit(() -> {
+                    for (JSONArray a : arrays) {
+                        List<VM> l = JSONs.vmsFromJSON(mo, a);
+                        if (l.size() != 2 || l.get(0).id() != (int) a.get(0) || l.get(1).id() != (int) a.get(1)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> f : res) {
+                Assert.assertTrue(f.get());
+            }
+        } finally {
+            exe.shutdown();
+            JSONs.resetCaches(1024);
+        }
+    }
 }
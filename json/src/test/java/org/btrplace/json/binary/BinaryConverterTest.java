@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.binary;
+
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.json.model.InstanceConverter;
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.*;
+import org.btrplace.model.view.NamingService;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Unit tests for {@link BinaryConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class BinaryConverterTest {
+
+    private static Model makeModel(int nbNodes, int nbVMsPerNode) {
+        Model mo = new DefaultModel();
+        Mapping map = mo.getMapping();
+        ShareableResource cpu = new ShareableResource("cpu", 8, 1);
+        for (int i = 0; i < nbNodes; i++) {
+            Node n = mo.newNode();
+            if (i % 10 == 0) {
+                map.addOfflineNode(n);
+                continue;
+            }
+            map.addOnlineNode(n);
+            cpu.setCapacity(n, 16);
+            for (int j = 0; j < nbVMsPerNode; j++) {
+                VM v = mo.newVM();
+                if (j == 0) {
+                    map.addSleepingVM(v, n);
+                } else {
+                    map.addRunningVM(v, n);
+                }
+                cpu.setConsumption(v, j);
+                mo.getAttributes().put(v, "template", j % 2 == 0 ? "small" : "large");
+                mo.getAttributes().put(v, "boot", j);
+            }
+            mo.getAttributes().put(n, "load", 0.5);
+            mo.getAttributes().put(n, "ok", true);
+        }
+        map.addReadyVM(mo.newVM());
+        mo.attach(cpu);
+        NamingService<Node> ns = NamingService.newNodeNS();
+        ns.register(map.getOnlineNodes().iterator().next(), "n1");
+        mo.attach(ns);
+        return mo;
+    }
+
+    private static Instance makeInstance(Model mo) {
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.addAll(Running.newRunning(mo.getMapping().getRunningVMs()));
+        cstrs.add(new Spread(new HashSet<>(mo.getMapping().getRunningVMs()), true));
+        cstrs.addAll(Online.newOnline(mo.getMapping().getOnlineNodes()));
+        return new Instance(mo, cstrs, new MinMTTR());
+    }
+
+    @Test
+    public void testInstance() throws IOException, JSONConverterException {
+        Instance i = makeInstance(makeModel(30, 5));
+        BinaryConverter bc = new BinaryConverter();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bc.write(i, Channels.newChannel(bos));
+        Instance res = bc.readInstance(Channels.newChannel(new ByteArrayInputStream(bos.toByteArray())));
+        Assert.assertEquals(res, i);
+        Assert.assertEquals(res.getModel().getAttributes(), i.getModel().getAttributes());
+        Assert.assertEquals(res.getSatConstraints(), i.getSatConstraints());
+
+        //Much smaller than the JSON document
+        int json = new InstanceConverter().toJSONString(i).length();
+        Assert.assertTrue(bos.size() * 3 < json, bos.size() + " vs. " + json);
+    }
+
+    @Test
+    public void testModel() throws IOException, JSONConverterException {
+        Model mo = makeModel(12, 3);
+        BinaryConverter bc = new BinaryConverter();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bc.write(mo, Channels.newChannel(bos));
+        Model res = bc.readModel(Channels.newChannel(new ByteArrayInputStream(bos.toByteArray())));
+        Assert.assertEquals(res, mo);
+        ShareableResource rc = ShareableResource.get(res, "cpu");
+        Assert.assertEquals(rc.getConsumption(res.getMapping().getRunningVMs().iterator().next()) > 0, true);
+    }
+
+    @Test
+    public void testAttributesFactory() throws IOException, JSONConverterException {
+        Model mo = makeModel(12, 3);
+        InstanceConverter ic = new InstanceConverter();
+        ic.getModelConverter().setAttributesFactory(ColumnarAttributes::new);
+        BinaryConverter bc = new BinaryConverter(ic);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bc.write(mo, Channels.newChannel(bos));
+        Model res = bc.readModel(Channels.newChannel(new ByteArrayInputStream(bos.toByteArray())));
+        Attributes attrs = res.getAttributes();
+        Assert.assertTrue(attrs instanceof ColumnarAttributes);
+        Assert.assertEquals(attrs.getDefined(), mo.getAttributes().getDefined());
+        for (Element e : attrs.getDefined()) {
+            for (String k : mo.getAttributes().getKeys(e)) {
+                Assert.assertEquals(attrs.get(e, k), mo.getAttributes().get(e, k));
+            }
+        }
+    }
+
+    @Test
+    public void testFiles() throws IOException, JSONConverterException {
+        Model mo = makeModel(5, 2);
+        List<Node> ns = new ArrayList<>(mo.getMapping().getOnlineNodes());
+        List<VM> vms = new ArrayList<>(mo.getMapping().getRunningVMs(ns.get(0)));
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(mo);
+        MigrateVM a = new MigrateVM(vms.get(0), ns.get(0), ns.get(1), 0, 3);
+        a.addEvent(Action.Hook.POST, new AllocateEvent(vms.get(0), "cpu", 2));
+        plan.add(a);
+        plan.add(new ShutdownNode(ns.get(0), 3, 5));
+
+        BinaryConverter bc = new BinaryConverter();
+        Path p = Files.createTempFile("plan", ".bin");
+        Path q = Files.createTempFile("instance", ".bin");
+        try {
+            bc.write(plan, p);
+            Assert.assertEquals(bc.readReconfigurationPlan(p), plan);
+            Instance i = makeInstance(mo);
+            bc.write(i, q);
+            Assert.assertEquals(bc.readInstance(q), i);
+        } finally {
+            Files.delete(p);
+            Files.delete(q);
+        }
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testWrongKind() throws IOException, JSONConverterException {
+        BinaryConverter bc = new BinaryConverter();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bc.write(new DefaultModel(), Channels.newChannel(bos));
+        bc.readInstance(Channels.newChannel(new ByteArrayInputStream(bos.toByteArray())));
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testNotBinary() throws IOException, JSONConverterException {
+        new BinaryConverter().readModel(Channels.newChannel(new ByteArrayInputStream("{\"mapping\":{}}".getBytes())));
+    }
+
+    @Test
+    public void testModelDelta() throws IOException, JSONConverterException {
+        Model mo = makeModel(20, 5);
+        Model dst = mo.copy();
+        Node n = dst.newNode();
+        dst.getMapping().addOnlineNode(n);
+        VM v = dst.getMapping().getRunningVMs().iterator().next();
+        dst.getMapping().addRunningVM(v, n);
+        dst.getMapping().addReadyVM(dst.newVM());
+        ShareableResource.get(dst, "cpu").setCapacity(n, 32).unset(v);
+        dst.getAttributes().put(v, "load", 0.25);
+        dst.getAttributes().unset(v, "boot");
+        ModelDelta d = ModelDelta.diff(mo, dst);
+
+        BinaryConverter bc = new BinaryConverter();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bc.write(d, Channels.newChannel(bos));
+        ModelDelta res = bc.readModelDelta(Channels.newChannel(new ByteArrayInputStream(bos.toByteArray())));
+        Assert.assertEquals(res, d);
+        Assert.assertTrue(res.apply(mo));
+        Assert.assertEquals(mo, dst);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.binary;
+
+import org.btrplace.json.JSONConverterException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link BinaryOutput} and {@link BinaryInput}.
+ *
+ * @author Fabien Hermenier
+ */
+public class BinaryInputTest {
+
+    @Test
+    public void testRoundTrip() throws IOException, JSONConverterException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BinaryOutput out = new BinaryOutput(Channels.newChannel(bos));
+        char[] big = new char[100000];
+        Arrays.fill(big, 'é');
+        String huge = new String(big);
+        out.writeVarInt(0);
+        out.writeVarInt(127);
+        out.writeVarInt(128);
+        out.writeVarInt(Integer.MAX_VALUE);
+        out.writeSignedInt(-1);
+        out.writeSignedInt(Integer.MIN_VALUE);
+        out.writeSignedLong(Long.MIN_VALUE);
+        out.writeDouble(Math.PI);
+        out.writeString("foo");
+        out.writeString(huge);
+        out.writeString("foo");
+        out.writeSortedIds(new int[]{3, 5, 100000, 7}, 3);
+        out.writeByte(42);
+        out.flush();
+
+        byte[] bytes = bos.toByteArray();
+        for (BinaryInput in : Arrays.asList(new BinaryInput(Channels.newChannel(new ByteArrayInputStream(bytes))),
+                new BinaryInput(ByteBuffer.wrap(bytes)))) {
+            Assert.assertEquals(in.readVarInt(), 0);
+            Assert.assertEquals(in.readVarInt(), 127);
+            Assert.assertEquals(in.readVarInt(), 128);
+            Assert.assertEquals(in.readVarInt(), Integer.MAX_VALUE);
+            Assert.assertEquals(in.readSignedInt(), -1);
+            Assert.assertEquals(in.readSignedInt(), Integer.MIN_VALUE);
+            Assert.assertEquals(in.readSignedLong(), Long.MIN_VALUE);
+            Assert.assertEquals(in.readDouble(), Math.PI);
+            Assert.assertEquals(in.readString(), "foo");
+            Assert.assertEquals(in.readString(), huge);
+            Assert.assertEquals(in.readString(), "foo");
+            Assert.assertEquals(in.readSortedIds(), new int[]{3, 5, 100000});
+            Assert.assertEquals(in.readByte(), 42);
+        }
+    }
+
+    @Test
+    public void testCompactness() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BinaryOutput out = new BinaryOutput(Channels.newChannel(bos));
+        out.writeVarInt(5);
+        out.writeString("a long attribute key");
+        out.writeString("a long attribute key");
+        out.flush();
+        //1 byte for the int, 22 for the first string, 1 for the reference
+        Assert.assertEquals(bos.size(), 24);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testTruncated() throws IOException, JSONConverterException {
+        new BinaryInput(ByteBuffer.wrap(new byte[]{(byte) 0x80})).readVarInt();
+    }
+}
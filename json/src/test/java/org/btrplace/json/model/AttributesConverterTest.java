@@ -53,4 +53,25 @@ public class AttributesConverterTest {
         Attributes attrs2 = AttributesConverter.fromJSON(mo, o);
         Assert.assertTrue(attrs.equals(attrs2));
     }
+
+    @Test
+    public void testIntoColumnar() throws JSONConverterException {
+        Model mo = new DefaultModel();
+        Attributes attrs = new ColumnarAttributes();
+
+        VM vm1 = mo.newVM();
+        VM vm3 = mo.newVM(3);
+        Node n1 = mo.newNode();
+
+        attrs.put(n1, "boot", 7);
+        attrs.put(vm1, "template", "xen");
+        attrs.put(vm3, "template", "kvm");
+        attrs.put(vm3, "clone", true);
+        attrs.put(vm3, "foo", 1.3);
+
+        JSONObject o = AttributesConverter.toJSON(attrs);
+        Attributes attrs2 = new ColumnarAttributes();
+        Assert.assertSame(AttributesConverter.fromJSON(mo, o, attrs2), attrs2);
+        Assert.assertEquals(attrs2, attrs);
+    }
 }
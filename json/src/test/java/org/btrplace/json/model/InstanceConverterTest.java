@@ -20,15 +20,18 @@ package org.btrplace.json.model;
 
 import org.btrplace.json.JSONConverterException;
 import org.btrplace.model.*;
+import org.btrplace.model.constraint.Fence;
 import org.btrplace.model.constraint.MinMTTR;
 import org.btrplace.model.constraint.Online;
 import org.btrplace.model.constraint.Running;
 import org.btrplace.model.constraint.SatConstraint;
+import org.btrplace.model.constraint.Spread;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Unit tests for {@link InstanceConverter}.
@@ -61,4 +64,62 @@ public class InstanceConverterTest {
         Assert.assertEquals(i, res);
     }
 
+    @Test
+    public void testParallelConversion() throws JSONConverterException {
+        Model mo = new DefaultModel();
+        Mapping ma = mo.getMapping();
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            ma.addOnlineNode(n);
+        }
+        List<SatConstraint> cstrs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            VM v = mo.newVM();
+            ma.addRunningVM(v, ns.get(i % ns.size()));
+            cstrs.add(new Fence(v, ns.subList(0, 1 + i % ns.size())));
+            cstrs.add(new Running(v));
+        }
+        cstrs.add(new Spread(ma.getAllVMs()));
+        Instance i = new Instance(mo, cstrs, new MinMTTR());
+
+        InstanceConverter conv = new InstanceConverter();
+        Assert.assertEquals(conv.getConstraintsConverter().getParallelism(), 1);
+        conv.getConstraintsConverter().setParallelism(4);
+        Assert.assertEquals(conv.getConstraintsConverter().getParallelism(), 4);
+        String o = conv.toJSONString(i);
+        Instance res = conv.fromJSON(o);
+        Assert.assertEquals(res.getSatConstraints(), cstrs);
+        Assert.assertEquals(i, res);
+
+        //The first error is reported
+        o = o.replace("\"vm\":" + ma.getAllVMs().iterator().next().id(), "\"vm\":100000");
+        try {
+            conv.fromJSON(o);
+            Assert.fail();
+        } catch (JSONConverterException ex) {
+            Assert.assertTrue(ex.getMessage().contains("100000"), ex.getMessage());
+        }
+
+        //A shared pool is used as is, and left alive
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Assert.assertNull(conv.getConstraintsConverter().getExecutor());
+            conv.getConstraintsConverter().setExecutor(pool);
+            Assert.assertSame(conv.getConstraintsConverter().getExecutor(), pool);
+            String ok = conv.toJSONString(i);
+            for (int x = 0; x < 3; x++) {
+                Assert.assertEquals(conv.fromJSON(ok), i);
+            }
+            Assert.assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testBadParallelism() {
+        new InstanceConverter().getConstraintsConverter().setParallelism(0);
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.model;
+
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.model.ModelDelta;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link ModelDeltaConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaConverterTest {
+
+    @Test
+    public void testBundle() throws JSONConverterException {
+        VM v = new VM(3);
+        Node n = new Node(1);
+        ModelDelta d = new ModelDelta()
+                .addOnlineNode(n)
+                .addOfflineNode(new Node(2))
+                .addReadyVM(new VM(5))
+                .addRunningVM(v, n)
+                .addSleepingVM(new VM(4), n)
+                .remove(new VM(6))
+                .remove(new Node(7))
+                .setConsumption("cpu", v, 4)
+                .unsetConsumption("mem", v)
+                .setCapacity("cpu", n, 12)
+                .unsetCapacity("mem", n)
+                .put(v, "template", "small")
+                .put(v, "boot", 3)
+                .put(n, "load", 0.5)
+                .put(n, "ok", false)
+                .unset(n, "foo");
+        ModelDeltaConverter c = new ModelDeltaConverter();
+        String json = c.toJSONString(d);
+        Assert.assertEquals(c.fromJSON(json), d);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testUnsupportedOperation() throws JSONConverterException {
+        new ModelDeltaConverter().fromJSON("{\"changes\":[{\"op\":\"boot\",\"vm\":1}]}");
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testMissingChanges() throws JSONConverterException {
+        new ModelDeltaConverter().fromJSON("{}");
+    }
+}
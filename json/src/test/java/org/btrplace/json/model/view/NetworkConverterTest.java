@@ -29,6 +29,7 @@ import org.btrplace.model.view.network.Link;
 import org.btrplace.model.view.network.Network;
 import org.btrplace.model.view.network.StaticRouting;
 import org.btrplace.model.view.network.Switch;
+import org.btrplace.model.view.network.TreeRouting;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -102,4 +103,25 @@ public class NetworkConverterTest {
             }
         }
     }
+
+    @Test
+    public void treeRoutingTest() throws JSONConverterException {
+
+        Model mo = new DefaultModel();
+        Network net = new Network(new TreeRouting());
+        Switch s = net.newSwitch(1000);
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        mo.getMapping().addOnlineNode(n1);
+        mo.getMapping().addOnlineNode(n2);
+        net.connect(1000, s, n1, n2);
+        mo.attach(net);
+
+        ModelConverter mc = new ModelConverter();
+        Model mo2 = mc.fromJSON(mc.toJSON(mo));
+        Network net2 = Network.get(mo2);
+
+        Assert.assertTrue(net2.getRouting() instanceof TreeRouting);
+        Assert.assertEquals(net2.getRouting().getPath(n1, n2), net.getRouting().getPath(n1, n2));
+    }
 }
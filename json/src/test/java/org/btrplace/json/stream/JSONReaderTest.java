@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.btrplace.json.JSONConverterException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+
+/**
+ * Unit tests for {@link JSONReader}.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONReaderTest {
+
+    @Test
+    public void testTokens() throws JSONConverterException {
+        JSONReader r = new JSONReader(new StringReader(" {\"a\" : [1, -2.5e1, true, null], \"b\":{}, \"c\":\"x\\\"\\u0041\\n\"}\n"));
+        Assert.assertEquals(r.peek(), JSONReader.Token.BEGIN_OBJECT);
+        r.beginObject();
+        Assert.assertTrue(r.hasNext());
+        Assert.assertEquals(r.nextName(), "a");
+        r.beginArray();
+        Assert.assertEquals(r.nextInt(), 1);
+        Assert.assertEquals(r.nextNumber(), -25.0);
+        Assert.assertTrue(r.nextBoolean());
+        r.nextNull();
+        Assert.assertFalse(r.hasNext());
+        r.endArray();
+        Assert.assertEquals(r.nextName(), "b");
+        r.beginObject();
+        Assert.assertFalse(r.hasNext());
+        r.endObject();
+        Assert.assertEquals(r.nextName(), "c");
+        Assert.assertEquals(r.nextString(), "x\"A\n");
+        r.endObject();
+        Assert.assertEquals(r.peek(), JSONReader.Token.END_DOCUMENT);
+    }
+
+    @Test
+    public void testNextValue() throws JSONConverterException {
+        JSONReader r = new JSONReader(new StringReader("{\"i\":5,\"l\":5000000000,\"b\":123456789012345678901234567890,\"d\":1.0,\"a\":[\"s\",false]}"));
+        JSONObject o = (JSONObject) r.nextValue();
+        Assert.assertEquals(o.get("i"), 5);
+        Assert.assertEquals(o.get("l"), 5000000000L);
+        Assert.assertEquals(o.get("b"), new BigInteger("123456789012345678901234567890"));
+        Assert.assertEquals(o.get("d"), 1.0);
+        JSONArray a = (JSONArray) o.get("a");
+        Assert.assertEquals(a.get(0), "s");
+        Assert.assertEquals(a.get(1), false);
+    }
+
+    @Test
+    public void testSkipValue() throws JSONConverterException {
+        JSONReader r = new JSONReader(new StringReader("[{\"a\":[1,{\"b\":[]}]}, 3]"));
+        r.beginArray();
+        r.skipValue();
+        Assert.assertEquals(r.nextInt(), 3);
+        r.endArray();
+        Assert.assertEquals(r.peek(), JSONReader.Token.END_DOCUMENT);
+    }
+
+    @Test
+    public void testLargeDocument() throws JSONConverterException {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append(i);
+        }
+        b.append(']');
+        JSONReader r = new JSONReader(new StringReader(b.toString()));
+        r.beginArray();
+        int expected = 0;
+        while (r.hasNext()) {
+            Assert.assertEquals(r.nextInt(), expected++);
+        }
+        r.endArray();
+        Assert.assertEquals(expected, 10000);
+    }
+
+    /**
+     * Strings that cross the end of the read buffer.
+     */
+    @Test
+    public void testStringsAcrossBuffers() throws JSONConverterException {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append("\"continuous").append(i).append('"');
+        }
+        b.append(']');
+        JSONReader r = new JSONReader(new StringReader(b.toString()));
+        r.beginArray();
+        int expected = 0;
+        while (r.hasNext()) {
+            Assert.assertEquals(r.nextString(), "continuous" + expected++);
+        }
+        r.endArray();
+        Assert.assertEquals(expected, 5000);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testBadToken() throws JSONConverterException {
+        JSONReader r = new JSONReader(new StringReader("{\"a\":1}"));
+        r.beginArray();
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testMalformed() throws JSONConverterException {
+        new JSONReader(new StringReader("{\"a\" 1}")).nextValue();
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testTrailingContent() throws JSONConverterException {
+        JSONReader r = new JSONReader(new StringReader("{} {}"));
+        r.skipValue();
+        r.peek();
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testUnterminated() throws JSONConverterException {
+        new JSONReader(new StringReader("[\"abc")).nextValue();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link JSONWriter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONWriterTest {
+
+    @Test
+    public void testWrite() throws IOException {
+        StringBuilder b = new StringBuilder();
+        JSONObject raw = new JSONObject();
+        raw.put("k", 1.5);
+        JSONWriter w = new JSONWriter(b);
+        w.beginObject()
+                .name("a").beginArray().value(1).value("x\"y").value(true).endArray()
+                .name(7).value(raw)
+                .name("e").beginObject().endObject()
+                .name("l").beginArray().beginArray().endArray().value((Object) null).endArray()
+                .endObject();
+        Assert.assertEquals(b.toString(), "{\"a\":[1,\"x\\\"y\",true],\"7\":{\"k\":1.5},\"e\":{},\"l\":[[],null]}");
+    }
+
+    @Test
+    public void testCompatibility() throws IOException {
+        JSONObject o = new JSONObject();
+        JSONArray a = new JSONArray();
+        a.add(1);
+        a.add("s/t");
+        o.put("a", a);
+        StringBuilder b = new StringBuilder();
+        new JSONWriter(b).beginObject().name("a").beginArray().value(1).value("s/t").endArray().endObject();
+        Assert.assertEquals(b.toString(), o.toJSONString());
+    }
+}
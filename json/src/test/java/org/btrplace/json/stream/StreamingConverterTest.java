@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.json.stream;
+
+import org.btrplace.json.JSON;
+import org.btrplace.json.JSONConverterException;
+import org.btrplace.json.model.InstanceConverter;
+import org.btrplace.json.model.ModelConverter;
+import org.btrplace.json.plan.ReconfigurationPlanConverter;
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.*;
+import org.btrplace.model.view.NamingService;
+import org.btrplace.model.view.ShareableResource;
+import org.btrplace.model.view.network.Network;
+import org.btrplace.plan.DefaultReconfigurationPlan;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.plan.event.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Unit tests for {@link StreamingConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class StreamingConverterTest {
+
+    private static Model makeModel() {
+        Model mo = new DefaultModel();
+        Mapping map = mo.getMapping();
+        Node n1 = mo.newNode();
+        Node n2 = mo.newNode();
+        Node n3 = mo.newNode();
+        VM vm1 = mo.newVM();
+        VM vm2 = mo.newVM();
+        VM vm3 = mo.newVM();
+        VM vm4 = mo.newVM();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addSleepingVM(vm2, n1);
+        map.addRunningVM(vm3, n2);
+        map.addReadyVM(vm4);
+
+        Attributes attrs = mo.getAttributes();
+        attrs.put(vm1, "boot", 5);
+        attrs.put(vm1, "template", "a \"quoted\" name");
+        attrs.put(vm3, "load", 1.5);
+        attrs.put(n2, "maintenance", true);
+        attrs.put(n3, "ratio", 2.0);
+
+        ShareableResource cpu = new ShareableResource("cpu", 8, 1);
+        cpu.setConsumption(vm1, 4);
+        cpu.setCapacity(n2, 16);
+        mo.attach(cpu);
+        mo.attach(new ShareableResource("mem", 32, 2));
+
+        NamingService<VM> ns = NamingService.newVMNS();
+        ns.register(vm1, "vm1");
+        mo.attach(ns);
+
+        Network net = new Network();
+        net.connect(1000, net.newSwitch(), n1, n2, n3);
+        mo.attach(net);
+        return mo;
+    }
+
+    private static Instance makeInstance() {
+        Model mo = makeModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getAllNodes());
+        List<VM> vms = new ArrayList<>(mo.getMapping().getAllVMs());
+        List<SatConstraint> cstrs = new ArrayList<>();
+        cstrs.addAll(Running.newRunning(vms.subList(0, 2)));
+        cstrs.add(new Spread(new HashSet<>(vms.subList(0, 2)), false));
+        cstrs.add(new Fence(vms.get(2), ns.subList(0, 2)));
+        return new Instance(mo, cstrs, new MinMTTR());
+    }
+
+    @Test
+    public void testInstanceCompatibility() throws JSONConverterException, IOException {
+        Instance i = makeInstance();
+        StreamingConverter sc = new StreamingConverter();
+        InstanceConverter ic = new InstanceConverter();
+
+        //streaming writer -> DOM reader
+        StringBuilder b = new StringBuilder();
+        sc.write(i, b);
+        Assert.assertEquals(ic.fromJSON(b.toString()), i);
+
+        //DOM writer -> streaming reader
+        Instance res = sc.readInstance(new StringReader(ic.toJSONString(i)));
+        Assert.assertEquals(res, i);
+        Assert.assertEquals(res.getModel().getAttributes(), i.getModel().getAttributes());
+        Assert.assertEquals(res.getModel().getAttributes().get(res.getModel().getMapping().getOnlineNodes().iterator().next(), "boot", -1), -1);
+
+        //streaming round trip
+        Assert.assertEquals(sc.readInstance(new StringReader(b.toString())), i);
+        Assert.assertEquals(JSON.readInstance(new StringReader(JSON.toString(i))), i);
+    }
+
+    @Test
+    public void testAttributesFactory() throws JSONConverterException {
+        Instance i = makeInstance();
+        InstanceConverter ic = new InstanceConverter();
+        Assert.assertNotNull(ic.getModelConverter().getAttributesFactory());
+        ic.getModelConverter().setAttributesFactory(ColumnarAttributes::new);
+        String json = JSON.toString(i);
+        //The streaming and the DOM paths
+        checkAttributes(i.getModel().getAttributes(), JSON.readInstance(new StringReader(json), ic).getModel().getAttributes());
+        checkAttributes(i.getModel().getAttributes(), ic.fromJSON(json).getModel().getAttributes());
+    }
+
+    private static void checkAttributes(Attributes expected, Attributes res) {
+        Assert.assertTrue(res instanceof ColumnarAttributes);
+        Assert.assertEquals(res.getDefined(), expected.getDefined());
+        for (Element e : expected.getDefined()) {
+            Assert.assertEquals(res.getKeys(e), expected.getKeys(e));
+            for (String k : expected.getKeys(e)) {
+                Assert.assertEquals(res.get(e, k), expected.get(e, k));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelConstraints() {
+        Model mo = new DefaultModel();
+        Mapping ma = mo.getMapping();
+        List<Node> ns = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Node n = mo.newNode();
+            ns.add(n);
+            ma.addOnlineNode(n);
+        }
+        List<SatConstraint> cstrs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            VM v = mo.newVM();
+            ma.addRunningVM(v, ns.get(i % ns.size()));
+            cstrs.add(new Fence(v, ns.subList(0, 1 + i % ns.size())));
+            cstrs.add(new Running(v));
+        }
+        Instance i = new Instance(mo, cstrs, new MinMTTR());
+
+        InstanceConverter ic = new InstanceConverter();
+        ic.getConstraintsConverter().setParallelism(4);
+        String json = JSON.toString(i);
+        Instance res = JSON.readInstance(new StringReader(json), ic);
+        Assert.assertEquals(res.getSatConstraints(), cstrs);
+        Assert.assertEquals(res, i);
+
+        //The first error is reported
+        json = json.replace("\"vm\":" + ma.getAllVMs().iterator().next().id(), "\"vm\":100000");
+        try {
+            JSON.readInstance(new StringReader(json), ic);
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().contains("100000"), ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testModelCompatibility() throws JSONConverterException, IOException {
+        Model mo = makeModel();
+        StreamingConverter sc = new StreamingConverter();
+        StringBuilder b = new StringBuilder();
+        sc.write(mo, b);
+        Assert.assertEquals(new ModelConverter().fromJSON(b.toString()), mo);
+        Model res = sc.readModel(new StringReader(new ModelConverter().toJSONString(mo)));
+        Assert.assertEquals(res, mo);
+        Assert.assertEquals(ShareableResource.get(res, "cpu").getCapacity(res.getMapping().getOfflineNodes().iterator().next()), 8);
+    }
+
+    @Test
+    public void testUnorderedKeys() throws JSONConverterException {
+        //Constraints, attributes and views before the elements they refer to
+        String json = "{\"objective\":{\"id\":\"minimizeMTTR\"},"
+                + "\"constraints\":[{\"id\":\"running\",\"vm\":1,\"continuous\":false}],"
+                + "\"model\":{\"views\":[{\"vms\":{\"1\":3},\"nodes\":{},\"rcId\":\"cpu\",\"defCapacity\":8,\"defConsumption\":1,\"id\":\"shareableResource\"}],"
+                + "\"attributes\":{\"vms\":{\"1\":{\"a\":true}},\"nodes\":{}},"
+                + "\"mapping\":{\"onlineNodes\":{\"0\":{\"sleepingVMs\":[],\"runningVMs\":[1]}},\"readyVMs\":[2],\"offlineNodes\":[]}}}";
+        Instance i = new StreamingConverter().readInstance(new StringReader(json));
+        Assert.assertEquals(i, new InstanceConverter().fromJSON(json));
+        Model mo = i.getModel();
+        Assert.assertEquals(ShareableResource.get(mo, "cpu").getConsumption(new VM(1)), 3);
+        Assert.assertTrue(mo.getAttributes().get(new VM(1), "a", false));
+        Assert.assertEquals(i.getSatConstraints(), Collections.singletonList(new Running(new VM(1))));
+    }
+
+    @Test
+    public void testPlanCompatibility() throws JSONConverterException, IOException {
+        Model mo = makeModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getAllNodes());
+        List<VM> vms = new ArrayList<>(mo.getMapping().getAllVMs());
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(mo);
+        MigrateVM mig = new MigrateVM(vms.get(0), ns.get(0), ns.get(1), 0, 3);
+        mig.addEvent(Action.Hook.PRE, new AllocateEvent(vms.get(0), "cpu", 7));
+        plan.add(mig);
+        plan.add(new BootNode(ns.get(2), 0, 5));
+        plan.add(new BootVM(vms.get(3), ns.get(2), 5, 7));
+
+        StreamingConverter sc = new StreamingConverter();
+        ReconfigurationPlanConverter pc = new ReconfigurationPlanConverter();
+        StringBuilder b = new StringBuilder();
+        sc.write(plan, b);
+        Assert.assertEquals(pc.fromJSON(b.toString()), plan);
+        Assert.assertEquals(sc.readReconfigurationPlan(new StringReader(pc.toJSONString(plan))), plan);
+
+        //The actions before the origin
+        String json = "{\"actions\":[],\"origin\":" + new ModelConverter().toJSONString(mo) + "}";
+        Assert.assertEquals(sc.readReconfigurationPlan(new StringReader(json)).getOrigin(), mo);
+        Assert.assertEquals(JSON.readReconfigurationPlan(new StringReader(JSON.toString(plan))), plan);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testMissingKey() throws JSONConverterException {
+        new StreamingConverter().readModel(new StringReader("{\"mapping\":{\"onlineNodes\":{},\"readyVMs\":[],\"offlineNodes\":[]},\"views\":[]}"));
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testDuplicatedNode() throws JSONConverterException {
+        new StreamingConverter().readModel(new StringReader("{\"mapping\":{\"onlineNodes\":{\"1\":{\"runningVMs\":[],\"sleepingVMs\":[]}},\"readyVMs\":[],\"offlineNodes\":[1]},\"attributes\":{},\"views\":[]}"));
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testUndeclaredVM() throws JSONConverterException {
+        new StreamingConverter().readModel(new StringReader("{\"mapping\":{\"onlineNodes\":{},\"readyVMs\":[],\"offlineNodes\":[]},\"attributes\":{\"vms\":{\"3\":{\"a\":1}}},\"views\":[]}"));
+    }
+
+    @Test
+    public void testDefaultsConverters() throws JSONConverterException {
+        //Constraints registered in the instance converter are used
+        InstanceConverter ic = new InstanceConverter();
+        StreamingConverter sc = new StreamingConverter(ic);
+        Instance i = new Instance(new DefaultModel(), Arrays.asList(), new MinMigrations());
+        Assert.assertEquals(sc.readInstance(new StringReader(ic.toJSONString(i))), i);
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.runner.disjoint;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.btrplace.model.Instance;
+import org.btrplace.model.Mapping;
+import org.btrplace.model.Model;
+import org.btrplace.model.Node;
+import org.btrplace.model.VM;
+import org.btrplace.model.constraint.*;
+import org.btrplace.model.view.network.Link;
+import org.btrplace.model.view.network.Network;
+import org.btrplace.model.view.network.Switch;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.Parameters;
+
+import java.util.*;
+
+/**
+ * An extension of {@link FixedNodeSetsPartitioning} where
+ * the partitions of nodes are computed from the instance to solve.
+ * <p>
+ * The nodes that are coupled by a constraint are kept inside a same
+ * partition so that no constraint is ever cut. The coupling is computed
+ * using a union-find structure over the nodes:
+ * <ul>
+ * <li>the constraints listed in {@link #getIndependentConstraints()} can be split
+ * on any partitioning so they do not couple anything</li>
+ * <li>a {@link Fence} couples the current host of its VM with the allowed nodes if the VM is not already inside</li>
+ * <li>an {@link Among} couples the current hosts of its VMs, and one of the groups if no host is inside a group</li>
+ * <li>a {@link Gather} or a {@link Seq} couple the current hosts of their VMs</li>
+ * <li>any other constraint couples its nodes and the current hosts of its VMs</li>
+ * <li>when the network coupling is enabled and a {@link Network} view is attached, the nodes
+ * that may share bandwidth during their migrations are coupled: the nodes connected to a same
+ * switch having a limited capacity, and the nodes connected to the two ends of a link between two switches</li>
+ * </ul>
+ * The resulting groups of nodes are then spread over at most {@link #getPartitionsCount()}
+ * partitions. The groups are placed by decreasing weight (number of nodes plus number of hosted VMs)
+ * inside the currently lightest partition.
+ * <p>
+ * The VMs to launch are still dispatched evenly by {@link FixedNodeSetsPartitioning},
+ * so a constraint coupling a VM to launch with others may still prevent the split.
+ * <p>
+ * The network coupling is disabled by default as a single switch would
+ * collapse the whole instance into a single partition.
+ *
+ * @author Fabien Hermenier
+ */
+public class ConstraintAwarePartitioning extends FixedNodeSetsPartitioning {
+
+    private int nbParts;
+
+    private Set<Class<? extends SatConstraint>> independents;
+
+    private boolean networkCoupling;
+
+    /**
+     * Make a new partitioning algorithm.
+     * The instance will be split into as many partitions as workers.
+     */
+    public ConstraintAwarePartitioning() {
+        this(0);
+    }
+
+    /**
+     * Make a new partitioning algorithm.
+     *
+     * @param nb the maximum number of partitions. {@code 0} to rely on the number of workers
+     */
+    public ConstraintAwarePartitioning(int nb) {
+        super(Collections.singleton(new HashSet<>()));
+        this.nbParts = nb;
+        independents = new HashSet<>(Arrays.asList(
+                Ban.class, Killed.class, Lonely.class, Offline.class, Online.class,
+                Overbook.class, Preserve.class, Quarantine.class, Ready.class,
+                Root.class, Running.class, Sleeping.class, Split.class, Spread.class));
+    }
+
+    /**
+     * Get the maximum number of partitions to make.
+     *
+     * @return a value >= 0. {@code 0} means as many partitions as workers
+     */
+    public int getPartitionsCount() {
+        return nbParts;
+    }
+
+    /**
+     * Set the maximum number of partitions to make.
+     *
+     * @param nb a value >= 0. {@code 0} means as many partitions as workers
+     */
+    public void setPartitionsCount(int nb) {
+        this.nbParts = nb;
+    }
+
+    /**
+     * Indicate if the nodes that may share network bandwidth are coupled.
+     *
+     * @return {@code true} iff the network coupling is enabled
+     */
+    public boolean isNetworkCoupling() {
+        return networkCoupling;
+    }
+
+    /**
+     * Enable or disable the coupling of the nodes that may share network bandwidth
+     * during their migrations.
+     *
+     * @param b {@code true} to enable the coupling
+     */
+    public void setNetworkCoupling(boolean b) {
+        networkCoupling = b;
+    }
+
+    /**
+     * Get the constraints that can be split whatever the partitioning.
+     * The returned set can be modified to declare additional constraints.
+     *
+     * @return a mutable set of constraint classes
+     */
+    public Set<Class<? extends SatConstraint>> getIndependentConstraints() {
+        return independents;
+    }
+
+    @Override
+    public List<Instance> split(Parameters ps, Instance i) throws SchedulerException {
+        setPartitions(makePartitions(i));
+        return super.split(ps, i);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The partition is split in two using the same coupling rules.
+     */
+    @Override
+    protected List<Instance> refine(Parameters ps, Instance i) throws SchedulerException {
+        ConstraintAwarePartitioning sub = new ConstraintAwarePartitioning(2);
+        sub.getIndependentConstraints().addAll(independents);
+        sub.setNetworkCoupling(networkCoupling);
+        sub.setSplitterMapper(getSplitterMapper());
+        return sub.split(ps, i);
+    }
+
+    /**
+     * Compute the partitions of nodes for a given instance.
+     *
+     * @param i the instance to split
+     * @return disjoint and non-empty sets of nodes
+     */
+    public List<Collection<Node>> makePartitions(Instance i) {
+        Model mo = i.getModel();
+        Mapping map = mo.getMapping();
+        Couplings c = new Couplings(map);
+
+        for (SatConstraint cstr : i.getSatConstraints()) {
+            couple(cstr, map, c);
+        }
+
+        Network net = Network.get(mo);
+        if (networkCoupling && net != null) {
+            coupleSwitches(net, c);
+        }
+        return balance(c, nbParts > 0 ? nbParts : getWorkersCount());
+    }
+
+    private void couple(SatConstraint cstr, Mapping map, Couplings c) {
+        if (independents.contains(cstr.getClass())) {
+            return;
+        }
+        if (cstr instanceof Fence) {
+            Node host = map.getVMLocation(cstr.getInvolvedVMs().iterator().next());
+            if (host != null && !cstr.getInvolvedNodes().contains(host)) {
+                for (Node n : cstr.getInvolvedNodes()) {
+                    if (c.union(host, n)) {
+                        return;
+                    }
+                }
+            }
+            return;
+        }
+
+        Node pivot = coupleHosts(cstr.getInvolvedVMs(), map, c);
+        if (cstr instanceof Among) {
+            coupleGroup((Among) cstr, pivot, c);
+        } else if (!(cstr instanceof Gather) && !(cstr instanceof Seq)) {
+            for (Node n : cstr.getInvolvedNodes()) {
+                if (pivot == null && c.contains(n)) {
+                    pivot = n;
+                }
+                c.union(pivot, n);
+            }
+        }
+    }
+
+    /**
+     * Couple the current hosts of some VMs.
+     *
+     * @return one of the hosts. {@code null} if no VM is hosted
+     */
+    private static Node coupleHosts(Collection<VM> vms, Mapping map, Couplings c) {
+        Node pivot = null;
+        for (VM v : vms) {
+            Node host = map.getVMLocation(v);
+            if (host != null) {
+                if (pivot == null) {
+                    pivot = host;
+                }
+                c.union(pivot, host);
+            }
+        }
+        return pivot;
+    }
+
+    private static void coupleGroup(Among a, Node pivot, Couplings c) {
+        if (pivot == null) {
+            //Nothing running yet, the VMs to launch are not considered
+            return;
+        }
+        Node candidate = null;
+        for (Collection<Node> g : a.getGroupsOfNodes()) {
+            for (Node n : g) {
+                if (c.find(n) == c.find(pivot)) {
+                    //One group is already reachable
+                    return;
+                }
+                if (candidate == null && c.contains(n)) {
+                    candidate = n;
+                }
+            }
+        }
+        c.union(pivot, candidate);
+    }
+
+    /**
+     * Couple the nodes that may share some bandwidth.
+     * The link between a node and its switch is only used by the migrations of this node,
+     * so it does not couple anything.
+     */
+    private static void coupleSwitches(Network net, Couplings c) {
+        for (Switch sw : net.getSwitches()) {
+            if (sw.getCapacity() != Integer.MAX_VALUE) {
+                coupleNodes(net, sw, c);
+            }
+        }
+        for (Link l : net.getLinks()) {
+            if (l.getElement() instanceof Switch) {
+                Node pivot = coupleNodes(net, l.getSwitch(), c);
+                c.union(pivot, coupleNodes(net, (Switch) l.getElement(), c));
+            }
+        }
+    }
+
+    /**
+     * Couple the nodes connected to a switch.
+     *
+     * @return one of the nodes. {@code null} if no node is connected
+     */
+    private static Node coupleNodes(Network net, Switch sw, Couplings c) {
+        Node pivot = null;
+        for (Link l : net.getConnectedLinks(sw)) {
+            if (l.getElement() instanceof Node) {
+                Node n = (Node) l.getElement();
+                if (pivot == null) {
+                    pivot = n;
+                }
+                c.union(pivot, n);
+            }
+        }
+        return pivot;
+    }
+
+    private static List<Collection<Node>> balance(Couplings c, int nb) {
+        //The groups of nodes, with their weight
+        Map<Integer, List<Node>> groups = new HashMap<>();
+        TIntIntHashMap weights = new TIntIntHashMap();
+        for (Node n : c.nodes()) {
+            int root = c.find(n);
+            groups.computeIfAbsent(root, k -> new ArrayList<>()).add(n);
+            weights.adjustOrPutValue(root, c.weight(n), c.weight(n));
+        }
+        List<Integer> roots = new ArrayList<>(groups.keySet());
+        roots.sort((a, b) -> weights.get(b) - weights.get(a));
+
+        int nbPartitions = Math.max(1, Math.min(nb, roots.size()));
+        List<Collection<Node>> parts = new ArrayList<>(nbPartitions);
+        PriorityQueue<int[]> loads = new PriorityQueue<>(nbPartitions, (a, b) -> a[1] != b[1] ? a[1] - b[1] : a[0] - b[0]);
+        for (int p = 0; p < nbPartitions; p++) {
+            parts.add(new HashSet<>());
+            loads.add(new int[]{p, 0});
+        }
+        for (Integer r : roots) {
+            int[] lightest = loads.poll();
+            parts.get(lightest[0]).addAll(groups.get(r));
+            lightest[1] += weights.get(r);
+            loads.add(lightest);
+        }
+        return parts;
+    }
+
+    /**
+     * A union-find structure over the nodes of a mapping.
+     */
+    private static class Couplings {
+
+        private final List<Node> nodes;
+
+        private final TIntIntHashMap index;
+
+        private final int[] parent;
+
+        private final int[] rank;
+
+        private final int[] weight;
+
+        Couplings(Mapping map) {
+            nodes = new ArrayList<>(map.getAllNodes());
+            index = new TIntIntHashMap(nodes.size(), 0.5f, -1, -1);
+            parent = new int[nodes.size()];
+            rank = new int[nodes.size()];
+            weight = new int[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                Node n = nodes.get(i);
+                index.put(n.id(), i);
+                parent[i] = i;
+                weight[i] = 1 + map.getRunningVMs(n).size() + map.getSleepingVMs(n).size();
+            }
+        }
+
+        List<Node> nodes() {
+            return nodes;
+        }
+
+        boolean contains(Node n) {
+            return index.containsKey(n.id());
+        }
+
+        int weight(Node n) {
+            return weight[index.get(n.id())];
+        }
+
+        int find(Node n) {
+            int i = index.get(n.id());
+            return i < 0 ? -1 : root(i);
+        }
+
+        private int root(int i) {
+            int r = i;
+            while (parent[r] != r) {
+                r = parent[r];
+            }
+            //Path compression
+            while (parent[i] != r) {
+                int next = parent[i];
+                parent[i] = r;
+                i = next;
+            }
+            return r;
+        }
+
+        /**
+         * Couple two nodes.
+         *
+         * @return {@code true} iff both nodes are known and are now coupled
+         */
+        boolean union(Node a, Node b) {
+            if (a == null || b == null) {
+                return false;
+            }
+            int x = find(a);
+            int y = find(b);
+            if (x < 0 || y < 0) {
+                return false;
+            }
+            if (x != y) {
+                if (rank[x] < rank[y]) {
+                    parent[x] = y;
+                } else if (rank[x] > rank[y]) {
+                    parent[y] = x;
+                } else {
+                    parent[y] = x;
+                    rank[x]++;
+                }
+            }
+            return true;
+        }
+    }
+}
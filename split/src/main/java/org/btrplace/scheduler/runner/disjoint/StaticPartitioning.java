@@ -23,19 +23,21 @@ import org.btrplace.plan.DefaultReconfigurationPlan;
 import org.btrplace.plan.ReconfigurationPlan;
 import org.btrplace.plan.event.Action;
 import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
 import org.btrplace.scheduler.choco.Parameters;
 import org.btrplace.scheduler.choco.runner.InstanceSolver;
 import org.btrplace.scheduler.choco.runner.SolvingStatistics;
 import org.btrplace.scheduler.choco.runner.single.InstanceSolverRunner;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An abstract solver that decompose statically an instance
@@ -44,8 +46,18 @@ import java.util.concurrent.Executors;
  * The resulting reconfiguration plan is composed by all the sub
  * reconfiguration plans. Each sub-instance must then have a solution.
  * <p>
- * The solving process relies on a master/worker paradigm with a number
- * of workers equals to the number of available cores by default.
+ * The solving process relies on the work-stealing pool stated by {@link Parameters#getExecutor()}.
+ * Otherwise, it creates a pool with {@link #getWorkersCount()} workers, the number of available
+ * cores by default, and shuts it down once done.
+ * <p>
+ * When the parameters state a time limit, it is a deadline for the whole solving process.
+ * Each partition is solved with the time remaining at the moment its solving starts,
+ * and the solver returns once the deadline is reached. The partitions still running are then stopped
+ * and the plan merged from the solved partitions is available from
+ * {@link org.btrplace.scheduler.choco.runner.SolvingStatistics#partialSolution()}.
+ * When {@link #refineSlowPartitions(boolean)} is enabled, a partition only gets half of the remaining time.
+ * If it has no solution by then, it is re-split using {@link #refine(Parameters, Instance)}
+ * and the resulting sub-partitions are solved with the rest of the time.
  *
  * @author Fabien Hermenier
  */
@@ -53,6 +65,8 @@ public abstract class StaticPartitioning implements InstanceSolver {
 
     private int workersCount;
 
+    private boolean refine;
+
     private StaticPartitioningStatistics stats;
 
     /**
@@ -61,6 +75,7 @@ public abstract class StaticPartitioning implements InstanceSolver {
      */
     public StaticPartitioning() {
         workersCount = Runtime.getRuntime().availableProcessors();
+        refine = false;
     }
 
     /**
@@ -81,62 +96,98 @@ public abstract class StaticPartitioning implements InstanceSolver {
         this.workersCount = s;
     }
 
+    /**
+     * Ask to re-split the partitions that have no solution
+     * within their share of the time limit.
+     *
+     * @param b {@code true} to refine the slow partitions
+     */
+    public void refineSlowPartitions(boolean b) {
+        this.refine = b;
+    }
+
+    /**
+     * Indicate if the slow partitions are re-split.
+     *
+     * @return {@code true} if the slow partitions are refined
+     */
+    public boolean refineSlowPartitions() {
+        return refine;
+    }
 
     @Override
     public ReconfigurationPlan solve(Parameters cra, Instance orig) throws SchedulerException {
-        stats = new StaticPartitioningStatistics(cra, orig, System.currentTimeMillis(), workersCount);
+        long st = System.currentTimeMillis();
+        long deadline = cra.getTimeLimit() > 0 ? st + cra.getTimeLimit() * 1000L : Long.MAX_VALUE;
+        ForkJoinPool pool = cra.getExecutor() != null ? cra.getExecutor() : new ForkJoinPool(Math.max(1, workersCount));
+        stats = new StaticPartitioningStatistics(cra, orig, st, pool.getParallelism());
         long d = -System.currentTimeMillis();
         List<Instance> partitions = split(cra, orig);
         d += System.currentTimeMillis();
 
         stats.setSplittingStatistics(partitions.size(), d);
-        ExecutorService exe = Executors.newFixedThreadPool(this.workersCount);
-        CompletionService<SolvingStatistics> completionService = new ExecutorCompletionService<>(exe);
-        List<SolvingStatistics> results = new ArrayList<>(partitions.size());
 
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        AtomicInteger pending = new AtomicInteger(partitions.size());
+        AtomicInteger refined = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean(false);
 
         long duration = -System.currentTimeMillis();
         for (Instance partition : partitions) {
-            completionService.submit(new InstanceSolverRunner(cra, partition));
+            pool.execute(new PartitionTask(cra, partition, -duration, deadline, pending, refined, stop, outcomes));
         }
 
-        for (int i = 0; i < partitions.size(); i++) {
-            try {
-                results.add(completionService.take().get());
-            } catch (ExecutionException ignore) {
-                Throwable cause = ignore.getCause();
-                if (cause != null) {
-                    throw new SplitException(null, cause.getMessage(), ignore);
+        //The partial plans are merged as soon as they are available
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(orig.getModel());
+        boolean solved = true;
+        try {
+            for (int received = 0; received < pending.get(); received++) {
+                long timeout = deadline - System.currentTimeMillis();
+                Outcome o = deadline == Long.MAX_VALUE ? outcomes.take() : outcomes.poll(timeout, TimeUnit.MILLISECONDS);
+                if (o == null) {
+                    //Deadline reached, the remaining partitions are left behind
+                    solved = false;
+                    break;
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new SplitException(orig.getModel(), e.getMessage(), e);
+                if (o.error != null) {
+                    throw new SplitException(null, o.error.getMessage(), o.error);
+                }
+                solved &= merge(plan, o);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SplitException(orig.getModel(), e.getMessage(), e);
+        } finally {
+            //The partitions left behind must not keep the workers busy
+            stop.set(true);
+            if (pool != cra.getExecutor()) {
+                pool.shutdownNow();
             }
         }
         duration += System.currentTimeMillis();
         stats.setSolvingDuration(duration);
-        exe.shutdown();
-
-        return merge(orig, results);
+        stats.setNbRefinedPartitions(refined.get());
+        stats.setMergedPlan(plan, solved);
+        return solved ? plan : null;
     }
 
-    private ReconfigurationPlan merge(Instance i, Collection<SolvingStatistics> results) throws SplitException {
-        ReconfigurationPlan plan = new DefaultReconfigurationPlan(i.getModel());
-        //Only if there is a solution
-        for (SolvingStatistics result : results) {
-            getStatistics().addPartitionStatistics(result);
-            ReconfigurationPlan p = result.lastSolution();
-            if (p == null) {
-                return null;
+    private boolean merge(ReconfigurationPlan plan, Outcome o) throws SplitException {
+        if (o.result == null) {
+            //Not solved before the deadline
+            return false;
+        }
+        getStatistics().addPartitionStatistics(o.result, o.latency);
+        ReconfigurationPlan p = o.result.lastSolution();
+        if (p == null) {
+            return false;
+        }
+        for (Action a : p) {
+            if (!plan.add(a)) {
+                throw new SplitException(plan.getOrigin(),
+                        "Unable to add action '" + a + "' while merging the sub-plans");
             }
-            for (Action a : p) {
-                    if (!plan.add(a)) {
-                        throw new SplitException(plan.getOrigin(),
-                                "Unable to add action '" + a + "' while merging the sub-plans");
-                    }
-                }
         }
-        return plan;
+        return true;
     }
 
     @Override
@@ -153,4 +204,126 @@ public abstract class StaticPartitioning implements InstanceSolver {
      * @throws org.btrplace.scheduler.SchedulerException if an error prevent the splitting process
      */
     public abstract List<Instance> split(Parameters ps, Instance i) throws SchedulerException;
+
+    /**
+     * Split a partition that was not solved in time into finer partitions.
+     * By default, the nodes are split into two partitions of equal size.
+     * The partitions having VMs to launch are never refined as this would alter the shared mapping
+     * while other partitions are being solved.
+     *
+     * @param ps the parameters for the solver
+     * @param i  the partition to split
+     * @return a list of disjoint instances. A list with less than 2 instances to keep the partition as is
+     * @throws SchedulerException if an error prevent the splitting process
+     */
+    protected List<Instance> refine(Parameters ps, Instance i) throws SchedulerException {
+        int nbNodes = i.getModel().getMapping().getNbNodes();
+        return new FixedSizePartitioning((nbNodes + 1) / 2).split(ps, i);
+    }
+
+    /**
+     * The outcome of a partition solving process.
+     */
+    private static class Outcome {
+
+        private final SolvingStatistics result;
+
+        private final long latency;
+
+        private final Exception error;
+
+        Outcome(SolvingStatistics r, long l, Exception e) {
+            result = r;
+            latency = l;
+            error = e;
+        }
+    }
+
+    /**
+     * A task that solves a partition and refine it if needed.
+     */
+    private class PartitionTask extends RecursiveAction {
+
+        private final Parameters params;
+
+        private final Instance partition;
+
+        private final long start;
+
+        private final long deadline;
+
+        private final AtomicInteger pending;
+
+        private final AtomicInteger refined;
+
+        private final AtomicBoolean stop;
+
+        private final BlockingQueue<Outcome> outcomes;
+
+        PartitionTask(Parameters ps, Instance i, long st, long end, AtomicInteger p, AtomicInteger r, AtomicBoolean s, BlockingQueue<Outcome> out) {
+            params = ps;
+            partition = i;
+            start = st;
+            deadline = end;
+            pending = p;
+            refined = r;
+            stop = s;
+            outcomes = out;
+        }
+
+        @Override
+        protected void compute() {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || stop.get()) {
+                outcomes.add(new Outcome(null, System.currentTimeMillis() - start, null));
+                return;
+            }
+            boolean refinable = refine && deadline != Long.MAX_VALUE
+                    && partition.getModel().getMapping().getNbNodes() > 1
+                    && partition.getModel().getMapping().getReadyVMs().isEmpty();
+            try {
+                Parameters ps = params;
+                if (deadline != Long.MAX_VALUE) {
+                    long budget = refinable ? remaining / 2 : remaining;
+                    ps = new DefaultParameters(params).setTimeLimit((int) Math.max(1, (budget + 999) / 1000));
+                }
+                SolvingStatistics res = new InstanceSolverRunner(ps, partition)
+                        .setBeforeSolve(rp -> rp.getSolver().addStopCriterion(stop::get))
+                        .call();
+                if (refinable && res.lastSolution() == null && !res.completed() && !stop.get() && !refine(res)) {
+                    return;
+                }
+                outcomes.add(new Outcome(res, System.currentTimeMillis() - start, null));
+            } catch (Exception e) {
+                outcomes.add(new Outcome(null, System.currentTimeMillis() - start, e));
+            }
+        }
+
+        /**
+         * Refine the partition and solve the sub-partitions.
+         *
+         * @param res the statistics of the unsuccessful attempt
+         * @return {@code true} iff the partition was not refined, so the attempt is the outcome
+         */
+        private boolean refine(SolvingStatistics res) {
+            List<Instance> subs;
+            try {
+                subs = StaticPartitioning.this.refine(params, partition);
+            } catch (SchedulerException ignore) {
+                //Some constraints cannot be split, the partition is kept as is
+                return true;
+            }
+            if (subs.size() < 2) {
+                return true;
+            }
+            refined.incrementAndGet();
+            pending.addAndGet(subs.size() - 1);
+            List<PartitionTask> tasks = new ArrayList<>(subs.size());
+            for (Instance sub : subs) {
+                tasks.add(new PartitionTask(params, sub, start, deadline, pending, refined, stop, outcomes));
+            }
+            invokeAll(tasks);
+            return false;
+        }
+    }
 }
@@ -37,6 +37,14 @@ public class StaticPartitioningStatistics implements SolvingStatistics {
 
     private List<SolvingStatistics> partResults;
 
+    private List<Long> latencies;
+
+    private int nbRefined;
+
+    private ReconfigurationPlan merged;
+
+    private boolean partial;
+
     private int nbWorkers;
     private int nbPartitions;
     private long splitDuration;
@@ -68,6 +76,7 @@ public class StaticPartitioningStatistics implements SolvingStatistics {
         this.nbPartitions = -1;
         solvingDuration = -1;
         partResults = new ArrayList<>();
+        latencies = new ArrayList<>();
     }
 
     /**
@@ -121,9 +130,49 @@ public class StaticPartitioningStatistics implements SolvingStatistics {
         return completed;
     }
 
+    /**
+     * {@inheritDoc}
+     * This is the merged plan when every partition has a solution.
+     */
     @Override
     public ReconfigurationPlan lastSolution() {
-        return null;
+        return partial ? null : merged;
+    }
+
+    @Override
+    public ReconfigurationPlan partialSolution() {
+        return partial ? merged : null;
+    }
+
+    /**
+     * Set the plan merged from the solutions of the partitions.
+     *
+     * @param p        the merged plan
+     * @param complete {@code true} iff every partition has a solution
+     */
+    public void setMergedPlan(ReconfigurationPlan p, boolean complete) {
+        merged = p;
+        partial = !complete;
+    }
+
+    /**
+     * Get the plan merged from the solutions of the partitions.
+     * When {@link #isPartial()}, the plan only contains the actions of the solved partitions.
+     *
+     * @return the merged plan. {@code null} if the solving process is not over
+     */
+    public ReconfigurationPlan getMergedPlan() {
+        return merged;
+    }
+
+    /**
+     * Indicate if the merged plan is partial, as some partitions were not solved.
+     * This happens when the deadline was reached or when a partition has no solution.
+     *
+     * @return {@code true} iff the merged plan misses some partitions
+     */
+    public boolean isPartial() {
+        return partial;
     }
 
     /**
@@ -232,6 +281,56 @@ public class StaticPartitioningStatistics implements SolvingStatistics {
         partResults.add(stats);
     }
 
+    /**
+     * Add the statistics related to a partition.
+     *
+     * @param stats   the partition statistics.
+     * @param latency the duration between the beginning of the solving phase and the
+     *                moment the partition was solved, in milliseconds
+     */
+    public void addPartitionStatistics(SolvingStatistics stats, long latency) {
+        addPartitionStatistics(stats);
+        latencies.add(latency);
+    }
+
+    /**
+     * Get the statistics of the solved partitions, in their order of completion.
+     *
+     * @return a list that may be empty
+     */
+    public List<SolvingStatistics> getPartitionStatistics() {
+        return partResults;
+    }
+
+    /**
+     * Get the latency of the solved partitions, in their order of completion.
+     * The latency is the duration between the beginning of the solving phase and the
+     * moment a partition was solved.
+     *
+     * @return a list of durations in milliseconds. It may be empty
+     */
+    public List<Long> getPartitionLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Get the number of partitions that were re-split as they were not solved in time.
+     *
+     * @return a positive number
+     */
+    public int getNbRefinedPartitions() {
+        return nbRefined;
+    }
+
+    /**
+     * Set the number of partitions that were re-split as they were not solved in time.
+     *
+     * @param nb a positive number
+     */
+    public void setNbRefinedPartitions(int nb) {
+        nbRefined = nb;
+    }
+
     /**
      * Get the partition splitting duration in milliseconds.
      *
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 University Nice Sophia Antipolis
+ *
+ * This file is part of btrplace.
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.btrplace.scheduler.runner.disjoint;
+
+import org.btrplace.model.*;
+import org.btrplace.model.constraint.*;
+import org.btrplace.model.view.network.Network;
+import org.btrplace.model.view.network.Switch;
+import org.btrplace.plan.ReconfigurationPlan;
+import org.btrplace.scheduler.SchedulerException;
+import org.btrplace.scheduler.choco.DefaultParameters;
+import org.btrplace.scheduler.choco.Parameters;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link ConstraintAwarePartitioning}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ConstraintAwarePartitioningTest {
+
+    private static Instance makeInstance(int nbNodes) {
+        Model mo = new DefaultModel();
+        for (int i = 0; i < nbNodes; i++) {
+            Node n = mo.newNode();
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 2; j++) {
+                mo.getMapping().addRunningVM(mo.newVM(), n);
+            }
+        }
+        return new Instance(mo, new ArrayList<>(), new MinMTTR());
+    }
+
+    private static Collection<Node> partitionOf(List<Collection<Node>> parts, Node n) {
+        for (Collection<Node> p : parts) {
+            if (p.contains(n)) {
+                return p;
+            }
+        }
+        Assert.fail(n + " is not in any partition");
+        return null;
+    }
+
+    @Test
+    public void testBasics() {
+        ConstraintAwarePartitioning p = new ConstraintAwarePartitioning();
+        Assert.assertEquals(p.getPartitionsCount(), 0);
+        p.setPartitionsCount(3);
+        Assert.assertEquals(p.getPartitionsCount(), 3);
+        Assert.assertTrue(p.getIndependentConstraints().contains(Spread.class));
+        Assert.assertFalse(p.getIndependentConstraints().contains(Gather.class));
+    }
+
+    @Test
+    public void testBalancing() {
+        Instance i = makeInstance(12);
+        i.getSatConstraints().addAll(Running.newRunning(i.getModel().getMapping().getAllVMs()));
+        ConstraintAwarePartitioning p = new ConstraintAwarePartitioning(4);
+        List<Collection<Node>> parts = p.makePartitions(i);
+        Assert.assertEquals(parts.size(), 4);
+        Set<Node> all = new HashSet<>();
+        for (Collection<Node> part : parts) {
+            Assert.assertEquals(part.size(), 3);
+            all.addAll(part);
+        }
+        Assert.assertEquals(all, i.getModel().getMapping().getAllNodes());
+
+        //Less nodes than partitions
+        parts = new ConstraintAwarePartitioning(20).makePartitions(i);
+        Assert.assertEquals(parts.size(), 12);
+    }
+
+    @Test
+    public void testCoupling() {
+        Instance i = makeInstance(8);
+        Mapping map = i.getModel().getMapping();
+        List<Node> ns = new ArrayList<>(map.getAllNodes());
+        VM v0 = map.getRunningVMs(ns.get(0)).iterator().next();
+        VM v5 = map.getRunningVMs(ns.get(5)).iterator().next();
+        VM v1 = map.getRunningVMs(ns.get(1)).iterator().next();
+        VM v2 = map.getRunningVMs(ns.get(2)).iterator().next();
+        VM v3 = map.getRunningVMs(ns.get(3)).iterator().next();
+        i.getSatConstraints().add(new Gather(Arrays.asList(v0, v5)));
+        i.getSatConstraints().add(new Fence(v1, Collections.singleton(ns.get(6))));
+        i.getSatConstraints().add(new Among(Arrays.asList(v2, v3), Collections.singletonList(Collections.singleton(ns.get(7)))));
+        i.getSatConstraints().add(new Spread(new HashSet<>(Arrays.asList(v0, v1, v2))));
+
+        List<Collection<Node>> parts = new ConstraintAwarePartitioning(4).makePartitions(i);
+        Assert.assertEquals(parts.size(), 4);
+        Assert.assertSame(partitionOf(parts, ns.get(0)), partitionOf(parts, ns.get(5)));
+        Assert.assertSame(partitionOf(parts, ns.get(1)), partitionOf(parts, ns.get(6)));
+        Collection<Node> among = partitionOf(parts, ns.get(2));
+        Assert.assertTrue(among.contains(ns.get(3)));
+        Assert.assertTrue(among.contains(ns.get(7)));
+        //The spread does not couple anything
+        Assert.assertNotSame(partitionOf(parts, ns.get(0)), partitionOf(parts, ns.get(1)));
+    }
+
+    @Test
+    public void testNetworkCoupling() {
+        Instance i = makeInstance(6);
+        Model mo = i.getModel();
+        List<Node> ns = new ArrayList<>(mo.getMapping().getAllNodes());
+        Network net = new Network();
+        Switch s1 = net.newSwitch(1000);
+        Switch s2 = net.newSwitch(1000);
+        net.connect(1000, s1, ns.get(0), ns.get(1), ns.get(2));
+        net.connect(1000, s2, ns.get(3), ns.get(4), ns.get(5));
+        mo.attach(net);
+
+        ConstraintAwarePartitioning p = new ConstraintAwarePartitioning(3);
+        Assert.assertFalse(p.isNetworkCoupling());
+        Assert.assertEquals(p.makePartitions(i).size(), 3);
+
+        p.setNetworkCoupling(true);
+        List<Collection<Node>> parts = p.makePartitions(i);
+        Assert.assertEquals(parts.size(), 2);
+        Assert.assertTrue(partitionOf(parts, ns.get(0)).containsAll(ns.subList(0, 3)));
+        Assert.assertTrue(partitionOf(parts, ns.get(3)).containsAll(ns.subList(3, 6)));
+
+        //A link between the two switches couples their nodes
+        net.connect(1000, s1, s2);
+        Assert.assertEquals(p.makePartitions(i).size(), 1);
+    }
+
+    @Test
+    public void testSingleSwitch() {
+        Instance i = makeInstance(6);
+        Model mo = i.getModel();
+        Network.createDefaultNetwork(mo);
+
+        ConstraintAwarePartitioning p = new ConstraintAwarePartitioning(3);
+        Assert.assertEquals(p.makePartitions(i).size(), 3);
+        //A non-blocking switch does not couple its nodes
+        p.setNetworkCoupling(true);
+        Assert.assertEquals(p.makePartitions(i).size(), 3);
+    }
+
+    @Test
+    public void testSolve() throws SchedulerException {
+        Instance i = makeInstance(8);
+        Mapping map = i.getModel().getMapping();
+        List<Node> ns = new ArrayList<>(map.getAllNodes());
+        //Would fail with a linear split of 2 nodes per partition
+        VM v0 = map.getRunningVMs(ns.get(0)).iterator().next();
+        VM v7 = map.getRunningVMs(ns.get(7)).iterator().next();
+        i.getSatConstraints().add(new Gather(Arrays.asList(v0, v7)));
+        i.getSatConstraints().addAll(Running.newRunning(map.getAllVMs()));
+
+        ConstraintAwarePartitioning p = new ConstraintAwarePartitioning(4);
+        List<Instance> parts = p.split(new DefaultParameters(), i);
+        Assert.assertEquals(parts.size(), 4);
+
+        Parameters ps = new DefaultParameters();
+        ps.setTimeLimit(5);
+        ReconfigurationPlan plan = p.solve(ps, i);
+        Assert.assertNotNull(plan);
+        Assert.assertTrue(new Gather(Arrays.asList(v0, v7)).isSatisfied(plan.getResult()));
+    }
+}
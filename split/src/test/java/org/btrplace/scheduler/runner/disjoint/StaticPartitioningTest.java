@@ -30,9 +30,11 @@ import org.btrplace.scheduler.runner.disjoint.model.SubModel;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Unit tests for {@link StaticPartitioning}.
@@ -52,6 +54,86 @@ public class StaticPartitioningTest {
         Assert.assertEquals(st.getWorkersCount(), Runtime.getRuntime().availableProcessors());
         st.setWorkersCount(10);
         Assert.assertEquals(st.getWorkersCount(), 10);
+        Assert.assertFalse(st.refineSlowPartitions());
+        st.refineSlowPartitions(true);
+        Assert.assertTrue(st.refineSlowPartitions());
+    }
+
+    private static Instance makeInstance(int nbNodes) {
+        Model mo = new DefaultModel();
+        for (int i = 0; i < nbNodes; i++) {
+            Node n = mo.newNode();
+            mo.getMapping().addOnlineNode(n);
+            for (int j = 0; j < 2; j++) {
+                mo.getMapping().addRunningVM(mo.newVM(), n);
+            }
+        }
+        return new Instance(mo, Running.newRunning(mo.getMapping().getAllVMs()), new MinMTTR());
+    }
+
+    @Test
+    public void testSolveWithDeadline() throws SchedulerException {
+        Instance i = makeInstance(9);
+        FixedSizePartitioning st = new FixedSizePartitioning(3);
+        st.refineSlowPartitions(true);
+        Parameters p = new DefaultChocoScheduler().setTimeLimit(10);
+        ReconfigurationPlan plan = st.solve(p, i);
+        Assert.assertNotNull(plan);
+        StaticPartitioningStatistics stats = st.getStatistics();
+        Assert.assertEquals(stats.getNbParts(), 3);
+        Assert.assertEquals(stats.getPartitionStatistics().size(), 3);
+        Assert.assertEquals(stats.getPartitionLatencies().size(), 3);
+        for (long l : stats.getPartitionLatencies()) {
+            Assert.assertTrue(l >= 0 && l <= stats.getSolvingDuration());
+        }
+        Assert.assertEquals(stats.getNbRefinedPartitions(), 0);
+        Assert.assertFalse(stats.isPartial());
+        Assert.assertSame(stats.lastSolution(), plan);
+        Assert.assertNull(stats.partialSolution());
+    }
+
+    @Test
+    public void testPartialPlan() throws SchedulerException {
+        Instance i = makeInstance(4);
+        List<Node> ns = new ArrayList<>(i.getModel().getMapping().getAllNodes());
+        //The first partition needs to migrate its VMs, the second one has no solution
+        i.getSatConstraints().add(new Offline(ns.get(0)));
+        i.getSatConstraints().add(new Offline(ns.get(2)));
+        i.getSatConstraints().add(new Offline(ns.get(3)));
+        FixedSizePartitioning st = new FixedSizePartitioning(2);
+        Assert.assertNull(st.solve(new DefaultChocoScheduler().setTimeLimit(10), i));
+        StaticPartitioningStatistics stats = st.getStatistics();
+        Assert.assertTrue(stats.isPartial());
+        Assert.assertNull(stats.lastSolution());
+        ReconfigurationPlan merged = stats.getMergedPlan();
+        Assert.assertNotNull(merged);
+        Assert.assertSame(stats.partialSolution(), merged);
+        Assert.assertTrue(merged.getResult().getMapping().isOffline(ns.get(0)));
+        Assert.assertTrue(merged.getResult().getMapping().isOnline(ns.get(2)));
+    }
+
+    @Test
+    public void testSharedExecutor() throws SchedulerException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            FixedSizePartitioning st = new FixedSizePartitioning(3);
+            Parameters p = new DefaultChocoScheduler().setExecutor(pool);
+            Assert.assertNotNull(st.solve(p, makeInstance(9)));
+            Assert.assertEquals(st.getStatistics().getNbWorkers(), 2);
+            Assert.assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefine() throws SchedulerException {
+        Instance i = makeInstance(5);
+        FixedSizePartitioning st = new FixedSizePartitioning(5);
+        List<Instance> parts = st.refine(new DefaultChocoScheduler(), i);
+        Assert.assertEquals(parts.size(), 2);
+        Assert.assertEquals(parts.get(0).getModel().getMapping().getNbNodes(), 3);
+        Assert.assertEquals(parts.get(1).getModel().getMapping().getNbNodes(), 2);
     }
 
     @Test